@@ -0,0 +1,117 @@
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Random;
+
+import bench.AppDriver;
+
+/**
+ * BenchmarkDriver gives the packaged JMH benchmarks access to the application classes.
+ * It precomputes random user pairs, movies and reviews so that the benchmark methods
+ * only measure the application call itself.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class BenchmarkDriver implements AppDriver
+{
+    private final Genre.GenreType[] genres = Genre.GenreType.values();
+
+    private Graph graph;        // The loaded social graph
+    private User[] followers;   // First user of each sampled pair
+    private User[] targets;     // Second user of each sampled pair
+    private Movie[] movies;     // Movies of the sampled reviews
+    private Review[] reviews;   // Sampled reviews
+
+    @Override
+    public void prepare(String path, int reviewRows) throws Exception
+    {
+        SyntheticDatabase.ensure(path, reviewRows);
+        // Must be set before Database is first used
+        System.setProperty("app.db", path);
+    }
+
+    @Override
+    public void loadSamples(int samples) throws Exception
+    {
+        graph = Graph.getInstance();
+        int userCount = graph.snapshot().getUserCount();
+
+        followers = new User[samples];
+        targets = new User[samples];
+        Random random = new Random(7);
+        for (int i = 0; i < samples; i++)
+        {
+            followers[i] = graph.getUserByKey(1 + random.nextInt(userCount));
+            targets[i] = graph.getUserByKey(1 + random.nextInt(userCount));
+        }
+
+        ArrayList<Review> sampledReviews = new ArrayList<>();
+        ResultSet rs = Database.getInstance().executeQuery("benchmark.sampleReviews",
+                "SELECT reviewID FROM reviews ORDER BY RANDOM() LIMIT " + samples);
+        while (rs.next())
+        {
+            sampledReviews.add(Review.getReviewByID(rs.getInt("reviewID")));
+        }
+        rs.close();
+
+        reviews = new Review[samples];
+        movies = new Movie[samples];
+        for (int i = 0; i < samples; i++)
+        {
+            Review review = sampledReviews.get(i % sampledReviews.size());
+            reviews[i] = review;
+            movies[i] = new Movie(review.getMovieID(), Movie.getMovieTitleByID(review.getMovieID()), null);
+        }
+    }
+
+    @Override
+    public boolean isFollowing(int sample)
+    {
+        return graph.isFollowing(followers[sample], targets[sample]);
+    }
+
+    @Override
+    public boolean addThenRemoveFollower(int sample)
+    {
+        boolean added = graph.addFollower(followers[sample], targets[sample]);
+        if (added)
+        {
+            graph.removeFollower(followers[sample], targets[sample]);
+        }
+        return added;
+    }
+
+    @Override
+    public Object getPotentialConnections(int sample)
+    {
+        return UserGraphManager.getInstance().getPotentialConnections(followers[sample]);
+    }
+
+    @Override
+    public Object match(String titleKeyword)
+    {
+        return SearchReview.match(titleKeyword);
+    }
+
+    @Override
+    public Object findReviewsByGenre(int genreOrdinal)
+    {
+        return SearchReview.findReviewsByGenre(genres[genreOrdinal].name());
+    }
+
+    @Override
+    public int genreCount()
+    {
+        return genres.length;
+    }
+
+    @Override
+    public double getAverageRating(int sample)
+    {
+        return movies[sample].getAverageRating();
+    }
+
+    @Override
+    public String reviewToString(int sample)
+    {
+        return reviews[sample].toString();
+    }
+}
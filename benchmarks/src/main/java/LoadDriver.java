@@ -0,0 +1,481 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * LoadDriver replays a configurable traffic mix against the application without the
+ * interactive menu. Each virtual session runs the same operations MainMenu offers
+ * (login, write review, like, follow, search by title/genre/date, recommendations)
+ * in a loop, choosing movies, reviews and users with Zipfian popularity.
+ * Latency is recorded per operation in HdrHistograms; a throughput and percentile
+ * summary is printed and the full distributions are written as .hgrm files,
+ * together with the per-statement QueryMetrics dump.
+ *
+ * Usage: java -cp benchmarks.jar LoadDriver [--db=bench-data/load.db] [--rows=10000]
+ *        [--sessions=64] [--duration=60] [--zipf=1.0] [--seed=1] [--out=load-results]
+ *        [--mix=login:5,writeReview:10,like:15,follow:10,searchTitle:20,searchGenre:15,searchDate:15,recommend:10]
+ *
+ * Sessions run on virtual threads when the JVM supports them and on platform threads otherwise.
+ * Each virtual session logs in once and acts through its own Session, so every operation
+ * runs concurrently.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class LoadDriver
+{
+    /**
+     * The operations a session can perform, named as they appear in --mix
+     */
+    enum Operation
+    {
+        LOGIN("login"),
+        WRITE_REVIEW("writeReview"),
+        LIKE("like"),
+        FOLLOW("follow"),
+        SEARCH_TITLE("searchTitle"),
+        SEARCH_GENRE("searchGenre"),
+        SEARCH_DATE("searchDate"),
+        RECOMMEND("recommend");
+
+        final String key;
+
+        Operation(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    private static final String DEFAULT_MIX =
+        "login:5,writeReview:10,like:15,follow:10,searchTitle:20,searchGenre:15,searchDate:15,recommend:10";
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> failures = new EnumMap<>(Operation.class);
+
+    private Operation[] operations;     // Operations with a non-zero weight
+    private int[] cumulativeWeights;    // Running total of the weights, for picking an operation
+    private int[] movieIds;             // Movie IDs in popularity order
+    private String[] movieKeywords;     // Search keyword for each movie, same order as movieIds
+    private int[] userIds;              // User IDs in popularity order
+    private int reviewCount;            // Highest review ID in the database
+    private ZipfGenerator moviePopularity;
+    private ZipfGenerator userPopularity;
+    private ZipfGenerator reviewPopularity;
+
+    /**
+     * Entry point of the load driver
+     *
+     * @param args --key=value options, see the class comment
+     * @throws Exception if the run cannot be set up
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args)
+        {
+            if (!arg.startsWith("--") || !arg.contains("="))
+            {
+                System.err.println("Unrecognised argument: " + arg);
+                System.exit(1);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        String db = options.getOrDefault("db", "bench-data/load.db");
+        int rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "64"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        double zipf = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        String out = options.getOrDefault("out", "load-results");
+
+        SyntheticDatabase.ensure(db, rows);
+        System.setProperty("app.db", db);
+
+        LoadDriver driver = new LoadDriver();
+        driver.configureMix(options.getOrDefault("mix", DEFAULT_MIX));
+        driver.loadCatalog(zipf, seed);
+        driver.run(sessions, duration, seed, new File(out));
+    }
+
+    /**
+     * Parses the operation mix, e.g. "login:5,like:20"
+     *
+     * @param mix the comma separated operation:weight list
+     */
+    void configureMix(String mix)
+    {
+        Map<String, Operation> byKey = new HashMap<>();
+        for (Operation operation : Operation.values())
+        {
+            byKey.put(operation.key, operation);
+        }
+
+        List<Operation> chosen = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : mix.split(","))
+        {
+            String[] parts = entry.trim().split(":");
+            Operation operation = byKey.get(parts[0]);
+            if (operation == null || parts.length != 2)
+            {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1]);
+            if (weight > 0)
+            {
+                chosen.add(operation);
+                weights.add(weight);
+            }
+        }
+        if (chosen.isEmpty())
+        {
+            throw new IllegalArgumentException("The mix must contain at least one operation with a positive weight");
+        }
+
+        operations = chosen.toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++)
+        {
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+            latencies.put(operations[i], new ConcurrentHistogram(MAX_LATENCY_NANOS, 3));
+            failures.put(operations[i], new AtomicLong());
+        }
+    }
+
+    /**
+     * Loads movie, user and review identifiers and shuffles them into popularity order
+     *
+     * @param zipf the Zipf exponent for movies, users and reviews
+     * @param seed the seed for the popularity order
+     * @throws Exception if the database cannot be read
+     */
+    void loadCatalog(double zipf, long seed) throws Exception
+    {
+        List<Integer> ids = new ArrayList<>();
+        List<String> keywords = new ArrayList<>();
+        ResultSet rs = Database.getInstance().executeQuery("loadDriver.movies", "SELECT id, title FROM Movies");
+        while (rs.next())
+        {
+            String title = rs.getString("title");
+            // The search methods build SQL by concatenation, so skip titles with quotes
+            if (title == null || title.isEmpty() || title.indexOf('\'') >= 0)
+            {
+                continue;
+            }
+            ids.add(rs.getInt("id"));
+            keywords.add(title);
+        }
+        rs.close();
+
+        rs = Database.getInstance().executeQuery("loadDriver.maxReviewId", "SELECT MAX(reviewID) AS maxID FROM reviews");
+        reviewCount = rs.next() ? rs.getInt("maxID") : 0;
+        rs.close();
+
+        Random random = new Random(seed);
+        movieIds = new int[ids.size()];
+        movieKeywords = new String[ids.size()];
+        int[] order = shuffledRange(ids.size(), random);
+        for (int i = 0; i < order.length; i++)
+        {
+            movieIds[i] = ids.get(order[i]);
+            movieKeywords[i] = keywords.get(order[i]);
+        }
+
+        GraphSnapshot snapshot = Graph.getInstance().snapshot();
+        userIds = new int[snapshot.getUserCount()];
+        int[] userOrder = shuffledRange(userIds.length, random);
+        for (int i = 0; i < userIds.length; i++)
+        {
+            userIds[i] = snapshot.getUserId(userOrder[i]);
+        }
+
+        moviePopularity = new ZipfGenerator(movieIds.length, zipf);
+        userPopularity = new ZipfGenerator(userIds.length, zipf);
+        reviewPopularity = new ZipfGenerator(Math.max(1, reviewCount), zipf);
+    }
+
+    /**
+     * Creates a random permutation of 0..n-1
+     *
+     * @param n the size of the range
+     * @param random the random source
+     * @return the shuffled range
+     */
+    private static int[] shuffledRange(int n, Random random)
+    {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Runs all sessions for the given duration and reports the results
+     *
+     * @param sessions the number of concurrent sessions
+     * @param durationSeconds how long to run
+     * @param seed the base seed for the sessions
+     * @param outDir the directory for the .hgrm files
+     * @throws Exception if the run is interrupted or the results cannot be written
+     */
+    void run(int sessions, int durationSeconds, long seed, File outDir) throws Exception
+    {
+        PrintStream console = System.out;
+        PrintStream errors = System.err;
+        PrintStream discard = new PrintStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+            }
+        });
+
+        ExecutorService executor = newSessionExecutor();
+        console.println("Running " + sessions + " sessions for " + durationSeconds + "s...");
+
+        // The application prints to the console on every operation, hide that during the run
+        System.setOut(discard);
+        System.setErr(discard);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        try
+        {
+            for (int s = 0; s < sessions; s++)
+            {
+                final Random random = new Random(seed * 31 + s);
+                final int sessionUser = userIds[random.nextInt(userIds.length)];
+                executor.execute(() -> runSession(sessionUser, random, deadline));
+            }
+            executor.shutdown();
+            executor.awaitTermination(durationSeconds + 600L, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            System.setOut(console);
+            System.setErr(errors);
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        report(console, elapsedSeconds, outDir);
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor when available, otherwise a cached thread pool
+     *
+     * @return the executor sessions run on
+     */
+    private static ExecutorService newSessionExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Runs one session's operation loop until the deadline
+     *
+     * @param userID the user this session acts as
+     * @param random the session's random source
+     * @param deadline the System.nanoTime() value at which to stop
+     */
+    private void runSession(int userID, Random random, long deadline)
+    {
+        User user = Graph.getInstance().getUserByKey(userID);
+        Session session = login(user);
+        while (System.nanoTime() < deadline)
+        {
+            Operation operation = pickOperation(random);
+            long begin = System.nanoTime();
+            try
+            {
+                perform(operation, user, session, random);
+            }
+            catch (RuntimeException e)
+            {
+                failures.get(operation).incrementAndGet();
+            }
+            long took = System.nanoTime() - begin;
+            latencies.get(operation).recordValue(Math.min(took, MAX_LATENCY_NANOS));
+        }
+    }
+
+    /**
+     * Picks an operation according to the configured weights
+     *
+     * @param random the session's random source
+     * @return the chosen operation
+     */
+    private Operation pickOperation(Random random)
+    {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++)
+        {
+            if (ticket < cumulativeWeights[i])
+            {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * Performs one operation the same way the menus do, minus the prompts
+     *
+     * @param operation the operation
+     * @param user the session's user
+     * @param session the session's login
+     * @param random the session's random source
+     */
+    private void perform(Operation operation, User user, Session session, Random random)
+    {
+        switch (operation)
+        {
+            case LOGIN:
+            {
+                Session fresh = login(user);
+                UserGraphManager.getInstance().printFollowingLatestReviews(user);
+                AuthenticationManager.getInstance().logout(fresh);
+                break;
+            }
+            case WRITE_REVIEW:
+            {
+                int movieID = movieIds[moviePopularity.next(random)];
+                Review review = new Review(0, "Load test review " + random.nextInt(1000),
+                        1 + random.nextInt(5), user.getUserID(), movieID, new Date(), 0);
+                review.saveIfNotReviewed();
+                break;
+            }
+            case LIKE:
+            {
+                Review review = Review.getReviewByID(1 + reviewPopularity.next(random));
+                if (review != null)
+                {
+                    review.likeReview(session);
+                }
+                break;
+            }
+            case FOLLOW:
+            {
+                User target = Graph.getInstance().getUserByKey(userIds[userPopularity.next(random)]);
+                if (target != null && !target.equals(user) && !Graph.getInstance().isFollowing(user, target))
+                {
+                    target.displayProfile();
+                    Graph.getInstance().addFollower(user, target);
+                }
+                break;
+            }
+            case SEARCH_TITLE:
+                SearchReview.findReviewsByMovie(movieKeywords[moviePopularity.next(random)]);
+                break;
+            case SEARCH_GENRE:
+            {
+                Genre.GenreType[] genres = Genre.GenreType.values();
+                SearchReview.findReviewsByGenre(genres[random.nextInt(genres.length)].name());
+                break;
+            }
+            case SEARCH_DATE:
+            {
+                long end = System.currentTimeMillis() - (long) random.nextInt(365) * DAY_MILLIS;
+                SearchReview.findReviewsByDateRange(new Date(end - 7 * DAY_MILLIS), new Date(end));
+                break;
+            }
+            case RECOMMEND:
+                UserGraphManager.getInstance().recommendUsersBySimilarCategories(user);
+                UserGraphManager.getInstance().getPotentialConnections(user);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled operation " + operation);
+        }
+    }
+
+    /**
+     * Logs a user in through AuthenticationManager.
+     * Uses the credentials SyntheticDatabase generates.
+     *
+     * @param user the user to log in
+     * @return the new session
+     */
+    private static Session login(User user)
+    {
+        return AuthenticationManager.getInstance().login(
+                "user" + user.getUserID() + "@example.com", "password" + user.getUserID());
+    }
+
+    /**
+     * Prints the summary table and writes one .hgrm file per operation
+     *
+     * @param console the real standard output
+     * @param elapsedSeconds the wall-clock duration of the run
+     * @param outDir the directory for the .hgrm files
+     * @throws Exception if a file cannot be written
+     */
+    private void report(PrintStream console, double elapsedSeconds, File outDir) throws Exception
+    {
+        outDir.mkdirs();
+        long totalOps = 0;
+
+        console.println();
+        console.printf("%-12s %10s %10s %8s %12s %12s %12s %12s%n",
+                "operation", "count", "ops/s", "errors", "p50 (us)", "p99 (us)", "p999 (us)", "max (us)");
+        for (Operation operation : operations)
+        {
+            Histogram histogram = latencies.get(operation);
+            long count = histogram.getTotalCount();
+            totalOps += count;
+            console.printf("%-12s %10d %10.1f %8d %12.1f %12.1f %12.1f %12.1f%n",
+                    operation.key, count, count / elapsedSeconds, failures.get(operation).get(),
+                    histogram.getValueAtPercentile(50) / 1e3,
+                    histogram.getValueAtPercentile(99) / 1e3,
+                    histogram.getValueAtPercentile(99.9) / 1e3,
+                    histogram.getMaxValue() / 1e3);
+
+            try (PrintStream file = new PrintStream(new FileOutputStream(new File(outDir, operation.key + ".hgrm"))))
+            {
+                // Values are recorded in nanoseconds, scale the output to microseconds
+                histogram.outputPercentileDistribution(file, 1000.0);
+            }
+        }
+        console.printf("%ntotal: %d ops in %.1fs (%.1f ops/s)%n", totalOps, elapsedSeconds, totalOps / elapsedSeconds);
+        QueryMetrics.getInstance().writeDump(new File(outDir, "query-metrics.txt").getPath());
+        QueryMetrics.getInstance().writeDump(new File(outDir, "query-metrics.json").getPath());
+        console.println("Latency distributions and query metrics written to " + outDir.getPath());
+    }
+}
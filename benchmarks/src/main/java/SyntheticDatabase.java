@@ -0,0 +1,473 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SyntheticDatabase builds a SQLite database with the application's schema for benchmarks.
+ * Movies come from movies.csv; users, favorite genres, reviews, likes and follows are
+ * generated from a fixed seed so every run at the same scale sees the same data.
+ * The scale is the number of review rows; users, follows and likes are derived from it.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class SyntheticDatabase
+{
+    private static final long SEED = 42L;           // Seed for all generated data
+    private static final int BATCH_SIZE = 10_000;   // Rows inserted per JDBC batch
+    private static final long ONE_YEAR_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    // Matches the genre names inside the movies.csv genres column
+    private static final Pattern GENRE_NAME = Pattern.compile("'name': '([^']*)'");
+
+    /**
+     * Private constructor, this class only has static helpers
+     */
+    private SyntheticDatabase()
+    {
+    }
+
+    /**
+     * Command-line entry point: SyntheticDatabase &lt;db file&gt; &lt;review rows&gt;
+     *
+     * @param args the database path and the scale
+     * @throws Exception if the database cannot be built
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: SyntheticDatabase <db file> <review rows>");
+            System.exit(1);
+        }
+        ensure(args[0], Integer.parseInt(args[1]));
+    }
+
+    /**
+     * Builds the database at the given path unless one for the same scale already exists
+     *
+     * @param path the database file
+     * @param reviewRows the number of reviews to generate
+     * @throws SQLException if the database cannot be written
+     * @throws IOException if movies.csv cannot be read
+     */
+    public static void ensure(String path, int reviewRows) throws SQLException, IOException
+    {
+        File file = new File(path);
+        if (file.exists())
+        {
+            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+                 Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT reviewRows FROM bench_meta"))
+            {
+                if (rs.next() && rs.getInt(1) == reviewRows)
+                {
+                    return;
+                }
+            }
+            catch (SQLException e)
+            {
+                // Not a finished benchmark database, rebuild it below
+            }
+            if (!file.delete())
+            {
+                throw new IOException("Cannot replace " + path);
+            }
+        }
+        if (file.getParentFile() != null)
+        {
+            file.getParentFile().mkdirs();
+        }
+
+        System.out.println("Generating " + path + " with " + reviewRows + " reviews...");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + path))
+        {
+            try (Statement stmt = connection.createStatement())
+            {
+                stmt.execute("PRAGMA journal_mode = OFF");
+                stmt.execute("PRAGMA synchronous = OFF");
+            }
+            connection.setAutoCommit(false);
+            createSchema(connection);
+
+            Random random = new Random(SEED);
+            int[] movieIds = loadMovies(connection);
+            int userCount = userCount(reviewRows);
+            generateUsers(connection, random, userCount);
+            generateFollows(connection, random, userCount, reviewRows);
+            generateReviews(connection, random, userCount, movieIds, reviewRows);
+            generateLikes(connection, random, userCount, reviewRows);
+
+            try (Statement stmt = connection.createStatement())
+            {
+                stmt.execute("CREATE TABLE bench_meta (reviewRows INTEGER)");
+                stmt.execute("INSERT INTO bench_meta VALUES (" + reviewRows + ")");
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * Creates the tables the application reads and writes
+     *
+     * @param connection the open connection
+     * @throws SQLException if a table cannot be created
+     */
+    private static void createSchema(Connection connection) throws SQLException
+    {
+        try (Statement stmt = connection.createStatement())
+        {
+            stmt.execute("CREATE TABLE Movies (id INTEGER PRIMARY KEY, title TEXT NOT NULL, genres TEXT)");
+            stmt.execute("CREATE TABLE users (userID INTEGER PRIMARY KEY, username TEXT UNIQUE, email TEXT, password TEXT)");
+            stmt.execute("CREATE TABLE UserGenres (userID INTEGER, genre TEXT)");
+            stmt.execute("CREATE TABLE UserFollower (userID INTEGER, followerID INTEGER)");
+            stmt.execute("CREATE TABLE reviews (reviewID INTEGER PRIMARY KEY AUTOINCREMENT, movieID INTEGER, " +
+                         "userID INTEGER, content TEXT, rating INTEGER, reviewDate INTEGER, likeCount INTEGER)");
+            stmt.execute("CREATE TABLE Likes (reviewID INTEGER, userID INTEGER)");
+        }
+    }
+
+    /**
+     * Loads every movie with a genre the application knows from movies.csv
+     *
+     * @param connection the open connection
+     * @return the IDs of the inserted movies
+     * @throws SQLException if a movie cannot be inserted
+     * @throws IOException if movies.csv cannot be read
+     */
+    private static int[] loadMovies(Connection connection) throws SQLException, IOException
+    {
+        List<Integer> ids = new ArrayList<>();
+        InputStream csv = SyntheticDatabase.class.getResourceAsStream("/movies.csv");
+        if (csv == null)
+        {
+            throw new IOException("movies.csv not found on the classpath");
+        }
+
+        String sql = "INSERT OR IGNORE INTO Movies (id, title, genres) VALUES (?, ?, ?)";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+             PreparedStatement insert = connection.prepareStatement(sql))
+        {
+            reader.readLine(); // Skip the header
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                List<String> fields = parseCsvLine(line);
+                if (fields.size() < 3)
+                {
+                    continue;
+                }
+                Genre.GenreType genre = firstKnownGenre(fields.get(2));
+                if (genre == null)
+                {
+                    continue;
+                }
+                int id;
+                try
+                {
+                    id = Integer.parseInt(fields.get(0));
+                }
+                catch (NumberFormatException e)
+                {
+                    continue;
+                }
+
+                insert.setInt(1, id);
+                insert.setString(2, fields.get(1));
+                insert.setString(3, genre.name());
+                insert.addBatch();
+                ids.add(id);
+            }
+            insert.executeBatch();
+        }
+
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields
+     *
+     * @param line the CSV line
+     * @return the field values
+     */
+    private static List<String> parseCsvLine(String line)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (quoted)
+            {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                }
+                else if (c == '"')
+                {
+                    quoted = false;
+                }
+                else
+                {
+                    field.append(c);
+                }
+            }
+            else if (c == '"')
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Finds the first genre in a movies.csv genres column that maps to a GenreType
+     *
+     * @param genres the raw genres column
+     * @return the genre, or null if none is known
+     */
+    private static Genre.GenreType firstKnownGenre(String genres)
+    {
+        Matcher matcher = GENRE_NAME.matcher(genres);
+        while (matcher.find())
+        {
+            try
+            {
+                return Genre.GenreType.valueOf(matcher.group(1).trim().toUpperCase().replace(' ', '_'));
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Try the next genre
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generates users named user1..userN with one to three favorite genres each
+     *
+     * @param connection the open connection
+     * @param random the seeded random source
+     * @param userCount the number of users
+     * @throws SQLException if a row cannot be inserted
+     */
+    private static void generateUsers(Connection connection, Random random, int userCount) throws SQLException
+    {
+        Genre.GenreType[] genres = Genre.GenreType.values();
+        try (PreparedStatement users = connection.prepareStatement(
+                 "INSERT INTO users (userID, username, email, password) VALUES (?, ?, ?, ?)");
+             PreparedStatement userGenres = connection.prepareStatement(
+                 "INSERT INTO UserGenres (userID, genre) VALUES (?, ?)"))
+        {
+            for (int id = 1; id <= userCount; id++)
+            {
+                users.setInt(1, id);
+                users.setString(2, "user" + id);
+                users.setString(3, "user" + id + "@example.com");
+                users.setString(4, "password" + id);
+                users.addBatch();
+
+                int favorites = 1 + random.nextInt(3);
+                for (int g = 0; g < favorites; g++)
+                {
+                    userGenres.setInt(1, id);
+                    userGenres.setString(2, genres[random.nextInt(genres.length)].name());
+                    userGenres.addBatch();
+                }
+
+                if (id % BATCH_SIZE == 0)
+                {
+                    users.executeBatch();
+                    userGenres.executeBatch();
+                }
+            }
+            users.executeBatch();
+            userGenres.executeBatch();
+        }
+    }
+
+    /**
+     * Generates distinct follow relationships between random users
+     *
+     * @param connection the open connection
+     * @param random the seeded random source
+     * @param userCount the number of users
+     * @param followCount the number of follows to generate
+     * @throws SQLException if a row cannot be inserted
+     */
+    private static void generateFollows(Connection connection, Random random, int userCount, int followCount)
+            throws SQLException
+    {
+        // Cap the target so the graph can never run out of distinct pairs
+        long maxPairs = (long) userCount * (userCount - 1);
+        int target = (int) Math.min(followCount, maxPairs / 2);
+        LongHashSet seen = new LongHashSet(target);
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                 "INSERT INTO UserFollower (userID, followerID) VALUES (?, ?)"))
+        {
+            int added = 0;
+            while (added < target)
+            {
+                int user = 1 + random.nextInt(userCount);
+                int follower = 1 + random.nextInt(userCount);
+                if (user == follower || !seen.add(((long) follower << 32) | user))
+                {
+                    continue;
+                }
+                insert.setInt(1, user);
+                insert.setInt(2, follower);
+                insert.addBatch();
+                if (++added % BATCH_SIZE == 0)
+                {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Generates reviews spread over the last year, each from a random user for a random movie
+     *
+     * @param connection the open connection
+     * @param random the seeded random source
+     * @param userCount the number of users
+     * @param movieIds the IDs of the available movies
+     * @param reviewRows the number of reviews to generate
+     * @throws SQLException if a row cannot be inserted
+     */
+    private static void generateReviews(Connection connection, Random random, int userCount, int[] movieIds,
+                                        int reviewRows) throws SQLException
+    {
+        String[] phrases = {
+            "A masterpiece of modern cinema.",
+            "Great acting but the plot drags in the middle.",
+            "Not my kind of movie, though the soundtrack is excellent.",
+            "Fun for the whole family and surprisingly touching.",
+            "The ending was predictable but I enjoyed the ride anyway."
+        };
+        long now = System.currentTimeMillis();
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                 "INSERT INTO reviews (movieID, userID, content, rating, reviewDate, likeCount) VALUES (?, ?, ?, ?, ?, ?)"))
+        {
+            for (int i = 1; i <= reviewRows; i++)
+            {
+                insert.setInt(1, movieIds[random.nextInt(movieIds.length)]);
+                insert.setInt(2, 1 + random.nextInt(userCount));
+                insert.setString(3, phrases[random.nextInt(phrases.length)] + " " + phrases[random.nextInt(phrases.length)]);
+                insert.setInt(4, 1 + random.nextInt(5));
+                insert.setLong(5, now - (long) (random.nextDouble() * ONE_YEAR_MILLIS));
+                insert.setInt(6, 0);
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0)
+                {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Generates one like per ten reviews and sets each review's like count to match
+     *
+     * @param connection the open connection
+     * @param random the seeded random source
+     * @param userCount the number of users
+     * @param reviewRows the number of reviews
+     * @throws SQLException if a row cannot be inserted
+     */
+    private static void generateLikes(Connection connection, Random random, int userCount, int reviewRows)
+            throws SQLException
+    {
+        int likeCount = reviewRows / 10;
+        int[] likesPerReview = new int[reviewRows + 1];
+        LongHashSet seen = new LongHashSet(likeCount);
+        try (PreparedStatement insert = connection.prepareStatement(
+                 "INSERT INTO Likes (reviewID, userID) VALUES (?, ?)"))
+        {
+            int added = 0;
+            while (added < likeCount)
+            {
+                int review = 1 + random.nextInt(reviewRows);
+                int user = 1 + random.nextInt(userCount);
+                if (!seen.add(((long) review << 32) | user))
+                {
+                    continue;
+                }
+                insert.setInt(1, review);
+                insert.setInt(2, user);
+                insert.addBatch();
+                likesPerReview[review]++;
+                if (++added % BATCH_SIZE == 0)
+                {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        try (PreparedStatement update = connection.prepareStatement(
+                 "UPDATE reviews SET likeCount = ? WHERE reviewID = ?"))
+        {
+            int pending = 0;
+            for (int review = 1; review <= reviewRows; review++)
+            {
+                if (likesPerReview[review] == 0)
+                {
+                    continue;
+                }
+                update.setInt(1, likesPerReview[review]);
+                update.setInt(2, review);
+                update.addBatch();
+                if (++pending % BATCH_SIZE == 0)
+                {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+        }
+    }
+
+    /**
+     * Gets the number of users generated for a scale
+     *
+     * @param reviewRows the number of reviews
+     * @return the number of users
+     */
+    public static int userCount(int reviewRows)
+    {
+        return Math.max(1_000, reviewRows / 10);
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.Random;
+
+/**
+ * ZipfGenerator draws ranks 0..n-1 where rank k is chosen with probability
+ * proportional to 1 / (k + 1)^exponent, modelling skewed popularity such as a few
+ * blockbuster movies or celebrity users receiving most of the traffic.
+ * The cumulative distribution is precomputed once, so each draw is a binary search.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ZipfGenerator
+{
+    private final double[] cumulative; // cumulative[k] = P(rank <= k)
+
+    /**
+     * Constructs a generator over n ranks
+     *
+     * @param n the number of ranks
+     * @param exponent the skew, 0 gives a uniform distribution
+     */
+    public ZipfGenerator(int n, double exponent)
+    {
+        if (n <= 0)
+        {
+            throw new IllegalArgumentException("Zipf range must be positive: " + n);
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++)
+        {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+        {
+            cumulative[k] /= sum;
+        }
+    }
+
+    /**
+     * Draws the next rank
+     *
+     * @param random the random source, one per thread
+     * @return a rank between 0 and n-1, small ranks being the most likely
+     */
+    public int next(Random random)
+    {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+/**
+ * AppDriver is the bridge between the packaged JMH benchmarks and the application,
+ * whose classes live in the default package and so cannot be referenced from here.
+ * BenchmarkDriver in the default package implements it and is loaded by name.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface AppDriver
+{
+    /**
+     * Generates the synthetic database if needed and points the application at it
+     *
+     * @param path the database file
+     * @param reviewRows the number of review rows
+     * @throws Exception if the database cannot be generated
+     */
+    void prepare(String path, int reviewRows) throws Exception;
+
+    /**
+     * Loads the graph and precomputes random user pairs and a review sample
+     *
+     * @param samples the number of pairs and reviews to precompute, a power of two
+     * @throws Exception if the sample cannot be loaded
+     */
+    void loadSamples(int samples) throws Exception;
+
+    boolean isFollowing(int sample);
+
+    boolean addThenRemoveFollower(int sample);
+
+    Object getPotentialConnections(int sample);
+
+    Object match(String titleKeyword);
+
+    Object findReviewsByGenre(int genreOrdinal);
+
+    int genreCount();
+
+    double getAverageRating(int sample);
+
+    String reviewToString(int sample);
+
+    /**
+     * Loads the default-package driver implementation
+     *
+     * @return the application driver
+     */
+    static AppDriver load()
+    {
+        try
+        {
+            return (AppDriver) Class.forName("BenchmarkDriver").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("BenchmarkDriver not found on the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * BenchmarkDatabase is the shared JMH state that points the application at a synthetic app.db.
+ * The database for the selected scale is generated on first use and reused afterwards.
+ * Choose scales with -p reviewRows=10000,1000000,10000000 and the directory with -Dbench.dir.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase
+{
+    static final int SAMPLES = 1 << 12; // Number of precomputed pairs and reviews, power of two
+
+    @Param({"10000", "1000000", "10000000"})
+    public int reviewRows; // Number of review rows in the synthetic database
+
+    AppDriver app; // Bridge into the application
+
+    /**
+     * Generates the database if needed, configures the application to use it and loads samples.
+     *
+     * @throws Exception if the database cannot be generated
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        app = AppDriver.load();
+        app.prepare(System.getProperty("bench.dir", "bench-data") + "/app-" + reviewRows + ".db", reviewRows);
+        app.loadSamples(SAMPLES);
+    }
+}
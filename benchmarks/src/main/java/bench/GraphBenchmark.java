@@ -0,0 +1,55 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the in-memory social graph: follow, follow check and friends-of-friends.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark
+{
+    private int next; // Index of the next precomputed user pair
+
+    private int nextSample()
+    {
+        next = (next + 1) & (BenchmarkDatabase.SAMPLES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean isFollowing(BenchmarkDatabase db)
+    {
+        return db.app.isFollowing(nextSample());
+    }
+
+    /**
+     * Adds a follow and removes it again so the graph keeps its size across iterations
+     */
+    @Benchmark
+    public boolean addFollower(BenchmarkDatabase db)
+    {
+        return db.app.addThenRemoveFollower(nextSample());
+    }
+
+    @Benchmark
+    public Object getPotentialConnections(BenchmarkDatabase db)
+    {
+        return db.app.getPotentialConnections(nextSample());
+    }
+}
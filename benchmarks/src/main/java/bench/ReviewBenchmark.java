@@ -0,0 +1,46 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for per-movie rating aggregation and review rendering.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewBenchmark
+{
+    private int next; // Index of the next sampled review
+
+    private int nextSample()
+    {
+        next = (next + 1) & (BenchmarkDatabase.SAMPLES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public double getAverageRating(BenchmarkDatabase db)
+    {
+        return db.app.getAverageRating(nextSample());
+    }
+
+    @Benchmark
+    public String reviewToString(BenchmarkDatabase db)
+    {
+        return db.app.reviewToString(nextSample());
+    }
+}
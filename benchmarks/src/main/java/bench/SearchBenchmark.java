@@ -0,0 +1,44 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for SearchReview title matching and genre search.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark
+{
+    private static final String[] KEYWORDS = {"love", "night", "star", "the man", "zzz"};
+
+    private int next; // Rotates through keywords and genres
+
+    @Benchmark
+    public Object match(BenchmarkDatabase db)
+    {
+        next++;
+        return db.app.match(KEYWORDS[next % KEYWORDS.length]);
+    }
+
+    @Benchmark
+    public Object findReviewsByGenre(BenchmarkDatabase db)
+    {
+        next++;
+        return db.app.findReviewsByGenre(next % db.app.genreCount());
+    }
+}
@@ -0,0 +1,204 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * AccountDirectory answers registration-time questions about existing accounts without
+ * a database round trip in the common case. Bloom filters over every username and email,
+ * built with one scan at startup and updated when users register, answer "definitely free"
+ * from memory; only a possible hit falls through to an indexed query. New user IDs come
+ * from a persistent IdAllocator, so concurrent registrations never receive the same ID.
+ * Implements the Singleton pattern so every registration path shares one directory.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class AccountDirectory implements UserEventListener
+{
+    private static final double FALSE_POSITIVE_RATE = 0.01; // Target rate of needless queries
+    private static final int MIN_CAPACITY = 1024;            // Smallest filter size in entries
+
+    private static AccountDirectory instance;               // Singleton instance
+
+    private volatile BloomFilter usernames;                 // Every registered username
+    private volatile BloomFilter emails;                    // Every registered email
+    private final IdAllocator userIds;                      // Source of new user IDs
+
+    /**
+     * Private constructor for Singleton pattern; loads the filters and the ID sequence
+     */
+    private AccountDirectory()
+    {
+        this.userIds = new IdAllocator("users", "users", "userID");
+        try
+        {
+            Database.getInstance().executeUpdate("account.createIndexes",
+                    "CREATE INDEX IF NOT EXISTS idx_users_username ON users(username)");
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to create username index: " + e.getMessage());
+        }
+        rebuild();
+    }
+
+    /**
+     * Gets the singleton instance of AccountDirectory
+     *
+     * @return the singleton instance
+     */
+    public static synchronized AccountDirectory getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new AccountDirectory();
+            UserEvents.getInstance().addListener(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Rebuilds both filters from the users table, sized for twice the current number of accounts
+     */
+    private synchronized void rebuild()
+    {
+        try
+        {
+            int users;
+            try (ResultSet count = Database.getInstance().executeQuery("account.count", "SELECT COUNT(*) FROM users"))
+            {
+                users = count.next() ? count.getInt(1) : 0;
+            }
+
+            int capacity = Math.max(MIN_CAPACITY, users * 2);
+            BloomFilter newUsernames = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+            BloomFilter newEmails = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+
+            ResultSet resultSet = Database.getInstance().executeQuery("account.loadNames",
+                    "SELECT username, email FROM users");
+            while (resultSet.next())
+            {
+                String username = resultSet.getString("username");
+                String email = resultSet.getString("email");
+                if (username != null)
+                {
+                    newUsernames.add(username);
+                }
+                if (email != null)
+                {
+                    newEmails.add(email);
+                }
+            }
+
+            usernames = newUsernames;
+            emails = newEmails;
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to load account names: " + e.getMessage());
+            // Without filters every check falls through to the database
+            usernames = null;
+            emails = null;
+        }
+    }
+
+    /**
+     * Checks if a username is already taken
+     *
+     * @param username the username to check
+     * @return true if the username is taken, false otherwise
+     */
+    public boolean isUsernameTaken(String username)
+    {
+        BloomFilter filter = usernames;
+        if (filter != null && !filter.mightContain(username))
+        {
+            return false;
+        }
+        return exists("user.usernameTaken", "SELECT 1 FROM users WHERE username = ? LIMIT 1", username);
+    }
+
+    /**
+     * Checks if an email is already used by an account
+     *
+     * @param email the email to check
+     * @return true if the email is taken, false otherwise
+     */
+    public boolean isEmailTaken(String email)
+    {
+        BloomFilter filter = emails;
+        if (filter != null && !filter.mightContain(email))
+        {
+            return false;
+        }
+        return exists("user.emailTaken", "SELECT 1 FROM users WHERE email = ? LIMIT 1", email);
+    }
+
+    /**
+     * Reserves the next user ID
+     *
+     * @return a user ID no other caller has received
+     */
+    public int nextUserID()
+    {
+        return Math.toIntExact(userIds.next());
+    }
+
+    /**
+     * Runs an existence query, treating errors as taken so a name is never reused by mistake
+     *
+     * @param name the statement name for QueryMetrics
+     * @param sql the query, with one ? placeholder
+     * @param value the value to look for
+     * @return true if a row exists or the query failed
+     */
+    private static boolean exists(String name, String sql, String value)
+    {
+        try (ResultSet resultSet = Database.getInstance().executeQuery(name, sql, value))
+        {
+            return resultSet.next();
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to check account: " + e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Adds a new account's username and email to the filters. Holds the same lock as rebuild,
+     * so a name added while the filters are being rebuilt is not lost when they are replaced.
+     *
+     * @param user the registered user
+     */
+    @Override
+    public synchronized void onUserRegistered(User user)
+    {
+        BloomFilter usernameFilter = usernames;
+        BloomFilter emailFilter = emails;
+        if (usernameFilter != null && user.getUserName() != null)
+        {
+            usernameFilter.add(user.getUserName());
+        }
+        if (emailFilter != null && user.getEmail() != null)
+        {
+            emailFilter.add(user.getEmail());
+        }
+
+        // Resize once the filters hold more names than they were sized for
+        if ((usernameFilter != null && usernameFilter.isSaturated()) ||
+            (emailFilter != null && emailFilter.isSaturated()))
+        {
+            rebuild();
+        }
+    }
+
+    /**
+     * Ignored; genres play no part in account lookups
+     *
+     * @param userID the ID of the user
+     * @param genres the user's new favorite genres
+     */
+    @Override
+    public void onUserGenresChanged(int userID, List<Genre.GenreType> genres)
+    {
+    }
+}
@@ -2,23 +2,42 @@ import java.util.Scanner;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * AuthenticationManager handles user authentication and registration functionalities.
+ * Logging in creates a Session in the SessionStore; the manager itself keeps no
+ * logged-in state, so callers pass their Session to the operations they perform.
  * This class follows the Singleton design pattern to ensure only one instance exists.
  * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
  */
 public class AuthenticationManager
 {
     private static AuthenticationManager instance; // Singleton instance
-    private User currentUser; // Currently logged-in user
-    private boolean loggedIn = false; // Flag to track if a user is logged in
+    private final UnknownEmailCache unknownEmails; // Emails recently found to have no account
+    private final CompletableFuture<String> dummyHash; // Checked against for unknown emails
 
     /**
-     * Private constructor to prevent multiple instances
+     * Private constructor to prevent multiple instances.
+     * Makes sure the indexes used by login exist.
      */
     private AuthenticationManager()
     {
+        unknownEmails = new UnknownEmailCache();
+        // Hashed once at the current work factor, so a check against it costs what a real one does
+        dummyHash = PasswordHasher.getInstance().hash("no account has this password");
+        try
+        {
+            Database.getInstance().executeUpdate("auth.createIndexes",
+                    "CREATE INDEX IF NOT EXISTS idx_users_email ON users(email)");
+            Database.getInstance().executeUpdate("auth.createIndexes",
+                    "CREATE INDEX IF NOT EXISTS idx_usergenres_user ON UserGenres(userID)");
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to create login indexes: " + e.getMessage());
+        }
     }
 
     /**
@@ -26,7 +45,7 @@ public class AuthenticationManager
      * 
      * @return the singleton instance
      */
-    public static AuthenticationManager getInstance()
+    public static synchronized AuthenticationManager getInstance()
     {
         if (instance == null)
         {
@@ -36,53 +55,133 @@ public class AuthenticationManager
     }
 
     /**
-     * Checks if a user is currently logged in
+     * Checks if a session is still logged in
      * 
-     * @return true if a user is logged in, false otherwise
+     * @param session the session to check, may be null
+     * @return true if the session exists and has not expired, false otherwise
      */
-    public boolean isUserLoggedIn()
+    public boolean isLoggedIn(Session session)
     {
-        return loggedIn;
+        return SessionStore.getInstance().isValid(session);
     }
 
     /**
-     * Gets the currently logged-in user
+     * Attempts to log in a user with the provided credentials
      * 
-     * @return the current user object or null if no user is logged in
+     * @param email the user's email
+     * @param password the user's password
+     * @return the new session if login is successful, null otherwise
      */
-    public User getCurrentUser()
+    public Session login(String email, String password)
     {
-        return currentUser;
+        User user = authenticate(email, password);
+        if (user == null)
+        {
+            return null;
+        }
+
+        Session session = SessionStore.getInstance().create(user);
+        System.out.println("Login successful. Welcome, " + user.getUserName() + "!");
+        return session;
     }
 
     /**
-     * Attempts to log in a user with the provided credentials
+     * Checks a user's credentials without creating a session.
+     * Waits for the password check, which runs on the PasswordHasher pool.
      * 
      * @param email the user's email
      * @param password the user's password
-     * @return true if login is successful, false otherwise
+     * @return the matching user with their favorite genres, or null if the credentials are wrong
      */
-    public boolean login(String email, String password)
+    public User authenticate(String email, String password)
     {
-        // Created SQL query to validate user credentials
-        String query = "SELECT * FROM users WHERE email = '" + email + "' AND password = '" + password + "'";
-
         try
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(query);
+            return authenticateAsync(email, password).get();
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Login failed: " + e.getCause().getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Checks a user's credentials without blocking on the password hash.
+     * The user and their genres are loaded with one indexed query on the calling thread;
+     * the key derivation then runs on the PasswordHasher pool. Emails without an account
+     * are remembered for a while so repeated attempts skip the database; their password is
+     * still checked against a dummy hash, so the answer takes as long as for a real account
+     * and does not reveal which emails are registered. A password stored
+     * as plaintext or with an outdated work factor is rehashed after a successful check.
+     * 
+     * @param email the user's email
+     * @param password the user's password
+     * @return a future completing with the matching user, or with null if the credentials are wrong
+     */
+    public CompletableFuture<User> authenticateAsync(String email, String password)
+    {
+        if (email == null || password == null)
+        {
+            return CompletableFuture.completedFuture(null);
+        }
 
-            if (resultSet.next())
+        PasswordHasher hasher = PasswordHasher.getInstance();
+        User stored = unknownEmails.contains(email) ? null : loadUserByEmail(email);
+        if (stored == null)
+        {
+            return dummyHash.thenCompose(hash -> hasher.verify(password, hash)).thenApply(matches -> (User) null);
+        }
+
+        String storedPassword = stored.getPassword();
+        return hasher.verify(password, storedPassword).thenCompose(matches ->
+        {
+            if (!matches)
             {
-                ArrayList<Genre.GenreType> favoriteGenres = new ArrayList<>();
-                int userID = resultSet.getInt("userID");
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!hasher.needsRehash(storedPassword))
+            {
+                return CompletableFuture.completedFuture(stored);
+            }
+            return hasher.hash(password).thenApply(newHash ->
+            {
+                storePasswordHash(stored.getUserID(), newHash);
+                return stored;
+            });
+        });
+    }
 
-                // Fetch user's favorite genres from UserGenres table
-                String genreQuery = "SELECT genre FROM UserGenres WHERE userID = " + userID;
-                ResultSet genreResults = Database.getInstance().executeQuery(genreQuery);
+    /**
+     * Loads a user and their favorite genres by email in a single query.
+     * Remembers the email in the negative cache when no account uses it.
+     * 
+     * @param email the email to look up
+     * @return the user with their stored password hash, or null if there is none
+     */
+    private User loadUserByEmail(String email)
+    {
+        String query = "SELECT u.userID, u.username, u.password, GROUP_CONCAT(g.genre) AS genres " +
+                       "FROM users u LEFT JOIN UserGenres g ON g.userID = u.userID " +
+                       "WHERE u.email = ? GROUP BY u.userID LIMIT 1";
+        try (ResultSet resultSet = Database.getInstance().executeQuery("user.login", query, email))
+        {
+            if (!resultSet.next())
+            {
+                unknownEmails.add(email);
+                return null;
+            }
 
-                while (genreResults.next())
+            ArrayList<Genre.GenreType> favoriteGenres = new ArrayList<>();
+            String genreList = resultSet.getString("genres");
+            if (genreList != null)
+            {
+                for (String genreName : genreList.split(","))
                 {
-                    String genreName = genreResults.getString("genre");
                     try
                     {
                         favoriteGenres.add(Genre.GenreType.valueOf(genreName.trim()));
@@ -92,29 +191,44 @@ public class AuthenticationManager
                         System.err.println("Invalid genre in UserGenres: " + genreName);
                     }
                 }
-
-                // Create user object and set login status
-                currentUser = new User(userID, resultSet.getString("username"), email, password, favoriteGenres);
-
-                loggedIn = true;
-                System.out.println("Login successful. Welcome, " + currentUser.getUserName() + "!");
-                return true;
             }
 
-            return false;
+            return new User(resultSet.getInt("userID"), resultSet.getString("username"), email,
+                            resultSet.getString("password"), favoriteGenres);
         }
         catch (SQLException e)
         {
             System.err.println("Database error: " + e.getMessage());
-            return false;
+            return null;
+        }
+    }
+
+    /**
+     * Replaces a user's stored password with a new hash
+     * 
+     * @param userID the ID of the user
+     * @param passwordHash the encoded hash
+     */
+    private void storePasswordHash(int userID, String passwordHash)
+    {
+        try
+        {
+            Database.getInstance().executeUpdate("user.rehashPassword",
+                    "UPDATE users SET password = ? WHERE userID = ?", passwordHash, userID);
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to upgrade password hash: " + e.getMessage());
         }
     }
 
     /**
      * Handles the user registration process by collecting user information
-     * and saving it to the database
+     * and saving it to the database. The new user is logged in.
+     * 
+     * @return the new user's session, or null if registration was cancelled
      */
-    public void register()
+    public Session register()
     {
         Scanner scanner = new Scanner(System.in);
 
@@ -128,26 +242,44 @@ public class AuthenticationManager
         if (!confirm.equals("y"))
         {
             System.out.println("Registration cancelled.");
-            return;
+            return null;
         }
 
-        // Create and save the new user
+        // Create and save the new user, storing only a salted hash of the password
+        String passwordHash;
+        try
+        {
+            passwordHash = PasswordHasher.getInstance().hash(password).get();
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Registration failed: " + e.getCause().getMessage());
+            return null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
         int userID = User.getNextUserID();
-        User newUser = new User(userID, username, email, password, favoriteGenres);
+        User newUser = new User(userID, username, email, passwordHash, favoriteGenres);
         newUser.save();
 
         System.out.println("Registration successful!");
-        currentUser = newUser;
-        loggedIn = true;
+        return SessionStore.getInstance().create(newUser);
     }
 
     /**
-     * Logs out the current user
+     * Logs out a session
+     * 
+     * @param session the session to end
      */
-    public void logout()
+    public void logout(Session session)
     {
-        currentUser = null;
-        loggedIn = false;
+        if (session != null)
+        {
+            SessionStore.getInstance().invalidate(session.getToken());
+        }
         System.out.println("Logged out successfully.\n");
     }
 
@@ -172,7 +304,7 @@ public class AuthenticationManager
     }
 
     /**
-     * Prompts the user for a valid email address
+     * Prompts the user for a valid email address that no account uses yet
      * 
      * @param scanner Scanner object for input
      * @return a valid email address
@@ -183,11 +315,18 @@ public class AuthenticationManager
         {
             System.out.print("Enter email: ");
             String email = scanner.nextLine();
-            if (InputValidator.isValidEmail(email))
+            if (!InputValidator.isValidEmail(email))
+            {
+                System.out.println("Invalid email format.");
+            }
+            else if (User.isEmailTaken(email))
+            {
+                System.out.println("Email already registered!");
+            }
+            else
             {
                 return email;
             }
-            System.out.println("Invalid email format.");
         }
     }
 
@@ -0,0 +1,149 @@
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter is a probabilistic set of strings. mightContain never returns false for a
+ * string that was added, and returns true for a string that was not added with roughly
+ * the configured false-positive probability, so a false answer means "definitely absent"
+ * without any I/O. Strings cannot be removed.
+ * Bits are set with compare-and-set, so adds and lookups are safe from any thread without locking.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class BloomFilter
+{
+    private final AtomicLongArray words;    // Bit array, 64 bits per word
+    private final long bitCount;            // Number of bits in the filter
+    private final int hashCount;            // Number of bit positions per string
+    private final int capacity;             // Strings the filter was sized for
+    private final AtomicInteger added;      // Strings added so far, including duplicates
+
+    /**
+     * Creates a filter sized for the expected number of strings
+     *
+     * @param expectedInsertions the number of strings expected to be added
+     * @param falsePositiveRate the acceptable false-positive probability, e.g. 0.01
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate)
+    {
+        int n = Math.max(1, expectedInsertions);
+        // Optimal sizes: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = Math.max(64, (bits + 63) / 64 * 64);
+
+        this.words = new AtomicLongArray((int) (bits / 64));
+        this.bitCount = bits;
+        this.hashCount = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        this.capacity = n;
+        this.added = new AtomicInteger();
+    }
+
+    /**
+     * Adds a string to the filter
+     *
+     * @param value the string to add
+     */
+    public void add(String value)
+    {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++)
+        {
+            long bit = position(h1, h2, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do
+            {
+                current = words.get(word);
+                if ((current & mask) != 0)
+                {
+                    break;
+                }
+            }
+            while (!words.compareAndSet(word, current, current | mask));
+        }
+        added.incrementAndGet();
+    }
+
+    /**
+     * Checks whether a string may have been added
+     *
+     * @param value the string to check
+     * @return false if the string was definitely never added, true if it probably was
+     */
+    public boolean mightContain(String value)
+    {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++)
+        {
+            long bit = position(h1, h2, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether more strings were added than the filter was sized for,
+     * so its false-positive rate is higher than configured
+     *
+     * @return true if the filter is over capacity
+     */
+    public boolean isSaturated()
+    {
+        return added.get() > capacity;
+    }
+
+    /**
+     * Gets the number of strings the filter was sized for
+     *
+     * @return the expected number of insertions
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Derives the i-th bit position from two base hashes (Kirsch-Mitzenmacher double hashing)
+     *
+     * @param h1 the first base hash
+     * @param h2 the second base hash
+     * @param i the index of the hash function
+     * @return a bit position in [0, bitCount)
+     */
+    private long position(int h1, int h2, int i)
+    {
+        long combined = h1 + (long) i * h2;
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * Hashes a string to 64 bits with FNV-1a over its UTF-8 bytes and a final avalanche step
+     *
+     * @param value the string to hash
+     * @return the 64-bit hash
+     */
+    private static long hash(String value)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8))
+        {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        // MurmurHash3 fmix64, so both halves of the hash are well mixed
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * CountMinSketch estimates how many times each int key was counted, in fixed memory.
+ * Each key adds to one counter in each of several rows and its estimate is the smallest of
+ * them, so the estimate never undercounts and overcounts by at most e/width of the total with
+ * high probability. Unlike FrequencySketch its counters are full longs and never decay, so it
+ * answers lifetime totals. Sketches with the same shape merge by adding their counters,
+ * which lets shards be combined, and they can be written to and read from a stream.
+ * Not thread-safe; callers synchronize.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class CountMinSketch
+{
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L,
+        0x9e3779b97f4a7c15L, 0xbf58476d1ce4e5b9L, 0x94d049bb133111ebL, 0xd6e8feb86659fd93L
+    };
+
+    private final int depth;        // Number of rows, at most SEEDS.length
+    private final int width;        // Counters per row, a power of two
+    private final long[] counters;  // depth rows of width counters
+    private long total;             // Sum of every count added
+
+    /**
+     * Creates an empty sketch
+     *
+     * @param depth the number of rows, 1 to 8; more rows lower the chance of a bad estimate
+     * @param width the counters per row, rounded up to a power of two; more lower the error
+     */
+    public CountMinSketch(int depth, int width)
+    {
+        if (depth < 1 || depth > SEEDS.length)
+        {
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+        }
+        int size = 1;
+        while (size < width)
+        {
+            size <<= 1;
+        }
+        this.depth = depth;
+        this.width = size;
+        this.counters = new long[depth * size];
+    }
+
+    /**
+     * Adds to a key's count
+     *
+     * @param key the key
+     * @param count the amount to add, must not be negative
+     */
+    public void add(int key, long count)
+    {
+        for (int row = 0; row < depth; row++)
+        {
+            counters[index(key, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimates a key's count
+     *
+     * @param key the key
+     * @return an estimate that is never below the true count
+     */
+    public long estimate(int key)
+    {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+        {
+            estimate = Math.min(estimate, counters[index(key, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Gets the sum of every count added
+     *
+     * @return the total count
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Adds another sketch's counts into this one
+     *
+     * @param other a sketch with the same depth and width
+     */
+    public void merge(CountMinSketch other)
+    {
+        if (other.depth != depth || other.width != width)
+        {
+            throw new IllegalArgumentException("Cannot merge sketches of different shapes");
+        }
+        for (int i = 0; i < counters.length; i++)
+        {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Writes the sketch to a stream
+     *
+     * @param out the stream
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeLong(total);
+        for (long counter : counters)
+        {
+            out.writeLong(counter);
+        }
+    }
+
+    /**
+     * Reads a sketch written by writeTo
+     *
+     * @param in the stream
+     * @return the sketch
+     * @throws IOException if reading fails or the data is not a sketch
+     */
+    public static CountMinSketch readFrom(DataInput in) throws IOException
+    {
+        int depth = in.readInt();
+        int width = in.readInt();
+        if (depth < 1 || depth > SEEDS.length || width < 1 || Integer.bitCount(width) != 1)
+        {
+            throw new IOException("Corrupt Count-Min sketch");
+        }
+        CountMinSketch sketch = new CountMinSketch(depth, width);
+        sketch.total = in.readLong();
+        for (int i = 0; i < sketch.counters.length; i++)
+        {
+            sketch.counters[i] = in.readLong();
+        }
+        return sketch;
+    }
+
+    /**
+     * Picks the counter a key uses in one row
+     *
+     * @param key the key
+     * @param row the row
+     * @return the index into counters
+     */
+    private int index(int key, int row)
+    {
+        long h = (key ^ SEEDS[row]) * 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return row * width + ((int) h & (width - 1));
+    }
+}
@@ -9,7 +9,10 @@ public class Database
 {
     private static Database instance;   // The single instance of the Database class
     private Connection connection;  // Connection to the database
-    private static final String DATABASE_URL = "jdbc:sqlite:app.db"; // The URL to connect to the SQLite database
+    // The URL to connect to the SQLite database, the file can be overridden with -Dapp.db=<path>
+    private static final String DATABASE_URL = "jdbc:sqlite:" + System.getProperty("app.db", "app.db");
+    // Metrics name for statements executed without a logical name
+    private static final String UNNAMED_STATEMENT = "unnamed";
 
     /**
      * Private constructor that connects to the database.
@@ -25,7 +28,7 @@ public class Database
      *
      * @return the instance of the Database class
      */
-    public static Database getInstance()
+    public static synchronized Database getInstance()
     {
         if (instance == null)
         {
@@ -80,6 +83,8 @@ public class Database
 
     /**
      * Executes a SQL query and returns the result set.
+     * The statement is recorded in QueryMetrics under a generic name;
+     * prefer the overload that takes a logical statement name.
      * 
      * @param sql the SQL query to execute
      * @return the ResultSet containing query results
@@ -87,12 +92,66 @@ public class Database
      */
     public ResultSet executeQuery(String sql) throws SQLException
     {
-        Statement stmt = connection.createStatement();
-        return stmt.executeQuery(sql);
+        return executeQuery(UNNAMED_STATEMENT, sql);
+    }
+
+    /**
+     * Executes a SQL query and returns the result set.
+     * Call count, latency and returned rows are recorded in QueryMetrics under the given name.
+     * 
+     * @param name the logical name of the statement, e.g. "movie.avgRating"
+     * @param sql the SQL query to execute
+     * @return the ResultSet containing query results
+     * @throws SQLException if a database error occurs
+     */
+    public ResultSet executeQuery(String name, String sql) throws SQLException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            Statement stmt = connection.createStatement();
+            ResultSet resultSet = stmt.executeQuery(sql);
+            return QueryMetrics.getInstance().recordQuery(name, System.nanoTime() - start, resultSet);
+        }
+        catch (SQLException e)
+        {
+            QueryMetrics.getInstance().recordError(name, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a parameterised SQL query and returns the result set.
+     * Values are bound to the ? placeholders in order, so user input never becomes part of the SQL.
+     * Call count, latency and returned rows are recorded in QueryMetrics under the given name.
+     * 
+     * @param name the logical name of the statement, e.g. "user.login"
+     * @param sql the SQL query to execute, with ? placeholders
+     * @param params the values for the placeholders
+     * @return the ResultSet containing query results
+     * @throws SQLException if a database error occurs
+     */
+    public ResultSet executeQuery(String name, String sql, Object... params) throws SQLException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            bind(stmt, params);
+            ResultSet resultSet = stmt.executeQuery();
+            return QueryMetrics.getInstance().recordQuery(name, System.nanoTime() - start, resultSet);
+        }
+        catch (SQLException e)
+        {
+            QueryMetrics.getInstance().recordError(name, System.nanoTime() - start);
+            throw e;
+        }
     }
 
     /**
      * Executes a SQL update (INSERT, UPDATE, or DELETE) statement.
+     * The statement is recorded in QueryMetrics under a generic name;
+     * prefer the overload that takes a logical statement name.
      * 
      * @param sql the SQL statement to execute
      * @return the number of rows affected
@@ -100,16 +159,93 @@ public class Database
      */
     public int executeUpdate(String sql) throws SQLException
     {
-        Statement stmt = connection.createStatement();
-        return stmt.executeUpdate(sql);
+        return executeUpdate(UNNAMED_STATEMENT, sql);
+    }
+
+    /**
+     * Executes a SQL update (INSERT, UPDATE, or DELETE) statement.
+     * Call count, latency and affected rows are recorded in QueryMetrics under the given name.
+     * 
+     * @param name the logical name of the statement, e.g. "review.like"
+     * @param sql the SQL statement to execute
+     * @return the number of rows affected
+     * @throws SQLException if a database error occurs
+     */
+    public int executeUpdate(String name, String sql) throws SQLException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            Statement stmt = connection.createStatement();
+            int rowsAffected = stmt.executeUpdate(sql);
+            QueryMetrics.getInstance().recordUpdate(name, System.nanoTime() - start, rowsAffected);
+            return rowsAffected;
+        }
+        catch (SQLException e)
+        {
+            QueryMetrics.getInstance().recordError(name, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a parameterised SQL update (INSERT, UPDATE, or DELETE) statement.
+     * Values are bound to the ? placeholders in order, so user input never becomes part of the SQL.
+     * Call count, latency and affected rows are recorded in QueryMetrics under the given name.
+     * 
+     * @param name the logical name of the statement, e.g. "user.insert"
+     * @param sql the SQL statement to execute, with ? placeholders
+     * @param params the values for the placeholders
+     * @return the number of rows affected
+     * @throws SQLException if a database error occurs
+     */
+    public int executeUpdate(String name, String sql, Object... params) throws SQLException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            bind(stmt, params);
+            int rowsAffected = stmt.executeUpdate();
+            QueryMetrics.getInstance().recordUpdate(name, System.nanoTime() - start, rowsAffected);
+            return rowsAffected;
+        }
+        catch (SQLException e)
+        {
+            QueryMetrics.getInstance().recordError(name, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Binds values to the placeholders of a prepared statement
+     * 
+     * @param stmt the prepared statement
+     * @param params the values, in placeholder order
+     * @throws SQLException if a value cannot be bound
+     */
+    private static void bind(PreparedStatement stmt, Object[] params) throws SQLException
+    {
+        for (int i = 0; i < params.length; i++)
+        {
+            stmt.setObject(i + 1, params[i]);
+        }
     }
 
     /**
      * Closes the database connection if it's open and nullifies the connection object.
      * Should be called when the application is shutting down.
+     * Writes the query metrics dump first when -Dquery.metrics.dump is set.
      */
     public void disconnect()
     {
+        // Write the query statistics if a dump file was requested with -Dquery.metrics.dump=<file>
+        String metricsDump = System.getProperty("query.metrics.dump");
+        if (metricsDump != null)
+        {
+            QueryMetrics.getInstance().writeDump(metricsDump);
+        }
+
         try {
             if (connection != null && !connection.isClosed())
             {
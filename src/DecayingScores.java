@@ -0,0 +1,341 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DecayingScores keeps an exponentially time-decayed score per int key and the top K keys.
+ *
+ * Decay uses a landmark time instead of touching every score as time passes: a weight w added
+ * at time t is stored as w * e^(lambda * (t - landmark)), and the current score of a key is its
+ * stored value times e^(-lambda * (now - landmark)). Every score decays by the same factor, so
+ * the order of stored values is the order of current scores. When the stored values grow large
+ * the landmark is moved forward, all values are scaled down once, and keys whose score has
+ * decayed to almost nothing are dropped.
+ *
+ * Because stored values only grow, the top K are kept exactly in a min-heap of size K: a key
+ * outside the heap can only enter by beating the heap minimum, which costs O(log K).
+ * Scores live in flat arrays indexed by a slot, with an IntIntMap from key to slot.
+ * Not thread-safe; TrendingEngine serialises access.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class DecayingScores
+{
+    private static final int INITIAL_CAPACITY = 64;     // Slots allocated before the first resize
+    private static final double RESCALE_HALF_LIVES = 16; // Move the landmark after this many half-lives
+    private static final double MIN_SCORE = 1e-3;       // Keys below this score are dropped on rescale
+    private static final int NOT_IN_HEAP = -1;          // Heap position of a slot outside the heap
+    private static final int FREE = -2;                 // Heap position of a released slot
+
+    private final double lambda;        // Decay rate per millisecond, ln 2 / half-life
+    private final int capacity;         // K, the number of top keys kept
+    private long landmark;              // Time the stored values are relative to
+
+    private final IntIntMap slotsByKey; // Key to slot
+    private int[] keys;                 // Key per slot
+    private double[] values;            // Stored (landmark-relative) score per slot
+    private int[] heapPositions;        // Position of each slot in the heap, NOT_IN_HEAP or FREE
+    private int[] freeSlots;            // Stack of slots released by remove
+    private int freeCount;              // Entries in freeSlots
+    private int slotCount;              // Slots handed out so far
+
+    private final int[] heap;           // Min-heap of slots, ordered by stored value
+    private int heapSize;               // Slots in the heap
+
+    /**
+     * Constructs an empty score table
+     *
+     * @param halfLifeMillis the time after which a score has halved
+     * @param capacity the number of top keys to keep
+     * @param landmark the starting landmark time in epoch milliseconds, usually now
+     */
+    public DecayingScores(long halfLifeMillis, int capacity, long landmark)
+    {
+        this.lambda = Math.log(2) / halfLifeMillis;
+        this.capacity = capacity;
+        this.landmark = landmark;
+        this.slotsByKey = new IntIntMap();
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+        this.heapPositions = new int[INITIAL_CAPACITY];
+        this.freeSlots = new int[INITIAL_CAPACITY];
+        this.heap = new int[capacity];
+    }
+
+    /**
+     * Adds weight to a key's score
+     *
+     * @param key the key
+     * @param weight the weight of the event, ignored unless positive
+     * @param time when the event happened, in epoch milliseconds
+     */
+    public void add(int key, double weight, long time)
+    {
+        if (!(weight > 0))
+        {
+            return;
+        }
+        if ((time - landmark) * lambda > RESCALE_HALF_LIVES * Math.log(2))
+        {
+            rescale(time);
+        }
+        int slot = slotsByKey.get(key);
+        if (slot < 0)
+        {
+            slot = allocateSlot(key);
+        }
+        values[slot] += weight * Math.exp(lambda * (time - landmark));
+
+        int position = heapPositions[slot];
+        if (position != NOT_IN_HEAP)
+        {
+            siftDown(position);
+        }
+        else if (heapSize < capacity)
+        {
+            heap[heapSize] = slot;
+            heapPositions[slot] = heapSize;
+            siftUp(heapSize++);
+        }
+        else if (capacity > 0 && values[slot] > values[heap[0]])
+        {
+            heapPositions[heap[0]] = NOT_IN_HEAP;
+            heap[0] = slot;
+            heapPositions[slot] = 0;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the current score of a key
+     *
+     * @param key the key
+     * @param now the current time in epoch milliseconds
+     * @return the decayed score, or 0 if the key has no score
+     */
+    public double score(int key, long now)
+    {
+        int slot = slotsByKey.get(key);
+        return slot < 0 ? 0 : values[slot] * Math.exp(-lambda * (now - landmark));
+    }
+
+    /**
+     * Removes a key and its score. If the key was in the top K, the best remaining key
+     * takes its place, found with a scan of all keys.
+     *
+     * @param key the key to remove
+     */
+    public void remove(int key)
+    {
+        int slot = slotsByKey.remove(key);
+        if (slot < 0)
+        {
+            return;
+        }
+        int position = heapPositions[slot];
+        releaseSlot(slot);
+        if (position == NOT_IN_HEAP)
+        {
+            return;
+        }
+
+        // Fill the heap gap with the last heap entry, then refill the heap from outside it
+        int last = heap[--heapSize];
+        if (position < heapSize)
+        {
+            heap[position] = last;
+            heapPositions[last] = position;
+            siftDown(position);
+            siftUp(heapPositions[last]);
+        }
+        int best = -1;
+        for (int candidate = 0; candidate < slotCount; candidate++)
+        {
+            if (heapPositions[candidate] == NOT_IN_HEAP
+                    && (best < 0 || values[candidate] > values[best]))
+            {
+                best = candidate;
+            }
+        }
+        if (best >= 0)
+        {
+            heap[heapSize] = best;
+            heapPositions[best] = heapSize;
+            siftUp(heapSize++);
+        }
+    }
+
+    /**
+     * Gets the top keys with their current scores, highest first
+     *
+     * @param limit the maximum number of keys, at most K are available
+     * @param now the current time in epoch milliseconds
+     * @return the top keys
+     */
+    public List<TrendingEntry> top(int limit, long now)
+    {
+        int[] slots = Arrays.copyOf(heap, heapSize);
+        // Sort the heap slots by stored value, highest first; K is small
+        Integer[] order = new Integer[heapSize];
+        for (int i = 0; i < heapSize; i++)
+        {
+            order[i] = slots[i];
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[b], values[a]));
+
+        double decay = Math.exp(-lambda * (now - landmark));
+        List<TrendingEntry> entries = new ArrayList<>();
+        for (int i = 0; i < order.length && i < limit; i++)
+        {
+            entries.add(new TrendingEntry(keys[order[i]], values[order[i]] * decay));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the number of keys with a score
+     *
+     * @return the number of keys
+     */
+    public int size()
+    {
+        return slotsByKey.size();
+    }
+
+    /**
+     * Moves the landmark to a new time, scaling every stored value down to match, dropping
+     * keys whose score has become negligible and rebuilding the heap
+     *
+     * @param time the new landmark
+     */
+    private void rescale(long time)
+    {
+        double factor = Math.exp(-lambda * (time - landmark));
+        landmark = time;
+        heapSize = 0;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (heapPositions[slot] == FREE)
+            {
+                continue;
+            }
+            heapPositions[slot] = NOT_IN_HEAP;
+            values[slot] *= factor;
+            if (values[slot] < MIN_SCORE)
+            {
+                slotsByKey.remove(keys[slot]);
+                releaseSlot(slot);
+            }
+            else if (heapSize < capacity)
+            {
+                heap[heapSize] = slot;
+                heapPositions[slot] = heapSize;
+                siftUp(heapSize++);
+            }
+            else if (capacity > 0 && values[slot] > values[heap[0]])
+            {
+                heapPositions[heap[0]] = NOT_IN_HEAP;
+                heap[0] = slot;
+                heapPositions[slot] = 0;
+                siftDown(0);
+            }
+        }
+    }
+
+    /**
+     * Hands out a slot for a new key, reusing released slots first
+     *
+     * @param key the key
+     * @return the slot
+     */
+    private int allocateSlot(int key)
+    {
+        int slot;
+        if (freeCount > 0)
+        {
+            slot = freeSlots[--freeCount];
+        }
+        else
+        {
+            if (slotCount == keys.length)
+            {
+                int grown = keys.length * 2;
+                keys = Arrays.copyOf(keys, grown);
+                values = Arrays.copyOf(values, grown);
+                heapPositions = Arrays.copyOf(heapPositions, grown);
+                freeSlots = Arrays.copyOf(freeSlots, grown);
+            }
+            slot = slotCount++;
+        }
+        keys[slot] = key;
+        values[slot] = 0;
+        heapPositions[slot] = NOT_IN_HEAP;
+        slotsByKey.put(key, slot);
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the free stack
+     *
+     * @param slot the slot
+     */
+    private void releaseSlot(int slot)
+    {
+        values[slot] = 0;
+        heapPositions[slot] = FREE;
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Moves a heap entry towards the root while it is smaller than its parent
+     *
+     * @param position the heap position
+     */
+    private void siftUp(int position)
+    {
+        int slot = heap[position];
+        while (position > 0)
+        {
+            int parent = (position - 1) >>> 1;
+            if (values[heap[parent]] <= values[slot])
+            {
+                break;
+            }
+            heap[position] = heap[parent];
+            heapPositions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * Moves a heap entry towards the leaves while it is larger than a child
+     *
+     * @param position the heap position
+     */
+    private void siftDown(int position)
+    {
+        int slot = heap[position];
+        while (true)
+        {
+            int child = 2 * position + 1;
+            if (child >= heapSize)
+            {
+                break;
+            }
+            if (child + 1 < heapSize && values[heap[child + 1]] < values[heap[child]])
+            {
+                child++;
+            }
+            if (values[heap[child]] >= values[slot])
+            {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+}
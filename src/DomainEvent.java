@@ -0,0 +1,181 @@
+/**
+ * DomainEvent is one change published on the DomainEventBus.
+ * Events are slots of the bus's ring buffer and are reused once every subscriber has seen
+ * them, so a subscriber must copy anything it wants to keep instead of holding on to the event.
+ * Fields that do not apply to an event's type are 0 or null.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class DomainEvent
+{
+    /**
+     * Kinds of change
+     */
+    public enum Type
+    {
+        REVIEW_PUBLISHED,
+        REVIEW_UPDATED,
+        REVIEW_DELETED,
+        REVIEW_LIKED,
+        MOVIE_CREATED,
+        MOVIE_MERGED,
+        USER_REGISTERED,
+        USER_GENRES_CHANGED,
+        USER_FOLLOWED,
+        USER_UNFOLLOWED
+    }
+
+    private Type type;              // Kind of change
+    private long publishedNanos;    // System.nanoTime() when published
+    private int reviewID;           // Review events
+    private int movieID;            // Review and movie events; the merged-away movie for MOVIE_MERGED
+    private int userID;             // Review author, liker, follower or the user changed
+    private int targetID;           // Followed or unfollowed user, or the movie a merged one went into
+    private Review review;          // REVIEW_PUBLISHED and REVIEW_UPDATED
+    private User user;              // USER_REGISTERED
+    private Movie movie;            // MOVIE_CREATED
+
+    /**
+     * Fills the slot for a new event, clearing what the previous event left behind
+     *
+     * @param type the kind of change
+     * @param reviewID the review ID, or 0
+     * @param movieID the movie ID, or 0
+     * @param userID the user ID, or 0
+     * @param targetID the target user ID, or 0
+     */
+    void set(Type type, int reviewID, int movieID, int userID, int targetID)
+    {
+        this.type = type;
+        this.publishedNanos = System.nanoTime();
+        this.reviewID = reviewID;
+        this.movieID = movieID;
+        this.userID = userID;
+        this.targetID = targetID;
+        this.review = null;
+        this.user = null;
+        this.movie = null;
+    }
+
+    /**
+     * Attaches the published or updated review
+     *
+     * @param review the review
+     */
+    void setReview(Review review)
+    {
+        this.review = review;
+    }
+
+    /**
+     * Attaches the registered user
+     *
+     * @param user the user
+     */
+    void setUser(User user)
+    {
+        this.user = user;
+    }
+
+    /**
+     * Attaches the created movie
+     *
+     * @param movie the movie
+     */
+    void setMovie(Movie movie)
+    {
+        this.movie = movie;
+    }
+
+    /**
+     * Get the kind of change
+     * @return the event type
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Get the time the event was published
+     * @return System.nanoTime() at publication
+     */
+    public long getPublishedNanos()
+    {
+        return publishedNanos;
+    }
+
+    /**
+     * Get the ID of the review the event is about
+     * @return the review ID, or 0
+     */
+    public int getReviewID()
+    {
+        return reviewID;
+    }
+
+    /**
+     * Get the ID of the movie the event is about
+     * @return the movie ID, or 0
+     */
+    public int getMovieID()
+    {
+        return movieID;
+    }
+
+    /**
+     * Get the user the event is about
+     * @return the review's author for review events (the liker for REVIEW_LIKED),
+     *         the follower for follow events, otherwise the user who changed
+     */
+    public int getUserID()
+    {
+        return userID;
+    }
+
+    /**
+     * Get the second user or movie of the event
+     * @return the author of the liked review for REVIEW_LIKED, the followed user for follow events,
+     *         the movie that kept the reviews for MOVIE_MERGED
+     */
+    public int getTargetID()
+    {
+        return targetID;
+    }
+
+    /**
+     * Get the review for REVIEW_PUBLISHED and REVIEW_UPDATED
+     * @return the review, or null
+     */
+    public Review getReview()
+    {
+        return review;
+    }
+
+    /**
+     * Get the user for USER_REGISTERED
+     * @return the user, or null
+     */
+    public User getUser()
+    {
+        return user;
+    }
+
+    /**
+     * Get the movie for MOVIE_CREATED
+     * @return the movie, or null
+     */
+    public Movie getMovie()
+    {
+        return movie;
+    }
+
+    /**
+     * Describes the event for logging
+     * @return the type and IDs
+     */
+    @Override
+    public String toString()
+    {
+        return type + " review=" + reviewID + " movie=" + movieID + " user=" + userID + " target=" + targetID;
+    }
+}
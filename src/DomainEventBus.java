@@ -0,0 +1,613 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.ObjectName;
+
+/**
+ * DomainEventBus hands changes to in-memory structures that can be updated after the write
+ * returns, such as caches, so the code that changes data does not need to know them.
+ * ReviewEvents, UserEvents and Movie.createMovie publish here; subscribers run on their own
+ * threads and catch up asynchronously.
+ *
+ * The bus is a ring buffer of preallocated DomainEvent slots in the style of the LMAX Disruptor.
+ * A producer claims a sequence with one atomic increment, fills the slot and marks it published
+ * with the sequence's lap number; nothing is allocated or locked per event. Each subscriber
+ * thread keeps its own sequence and handles every published event after it in one batch.
+ * A producer that would overwrite a slot some subscriber has not handled yet waits, so no
+ * subscriber falls more than a ring's worth of events behind; isCurrent additionally lets a cache
+ * bypass itself while the oldest event it has not handled is older than a time bound.
+ *
+ * Ring size: -Devents.ringSize (default 4096, rounded up to a power of two).
+ * Lag, handling delay and errors per subscriber are exposed as the MBean
+ * "MovieReviewSocialNetwork:type=DomainEventBus".
+ * Implements the Singleton pattern so every publisher and subscriber shares one bus.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class DomainEventBus implements DomainEventBusMXBean
+{
+    private static final String MBEAN_NAME = "MovieReviewSocialNetwork:type=DomainEventBus";
+    private static final int SPIN_TRIES = 100;                  // Yields before an idle subscriber parks
+    private static final long IDLE_PARK_NANOS = 1000000L;       // Longest park before re-checking
+    private static final long FULL_PARK_NANOS = 1000L;          // Producer park while the ring is full
+
+    private static DomainEventBus instance;     // Singleton instance
+
+    /**
+     * A registered subscriber, its thread and its progress
+     */
+    public final class Subscription implements Runnable
+    {
+        private final String name;
+        private final DomainEventSubscriber subscriber;
+        private final AtomicLong sequence;              // Last handled sequence
+        private final LatencyHistogram delays;          // Publication to handling
+        private final Thread thread;
+        private volatile boolean parked;                // Set while waiting for events
+        private volatile boolean running;
+        private volatile long maxLag;
+        private volatile long handled;
+        private volatile long errors;
+
+        /**
+         * Creates a subscription that starts after the given sequence
+         *
+         * @param name the subscriber name
+         * @param subscriber the subscriber
+         * @param start the last sequence it is not interested in
+         */
+        private Subscription(String name, DomainEventSubscriber subscriber, long start)
+        {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.sequence = new AtomicLong(start);
+            this.delays = new LatencyHistogram();
+            this.running = true;
+            this.thread = new Thread(this, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Handles published events in batches until the subscription is cancelled or the
+         * subscriber throws an Error, which unsubscribes it
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                int idle = 0;
+                while (running)
+                {
+                    long next = sequence.get() + 1;
+                    long last = highestPublished(next);
+                    if (last < next)
+                    {
+                        if (++idle < SPIN_TRIES)
+                        {
+                            Thread.yield();
+                        }
+                        else
+                        {
+                            parked = true;
+                            if (highestPublished(next) < next)
+                            {
+                                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                            }
+                            parked = false;
+                        }
+                        continue;
+                    }
+                    idle = 0;
+                    long lag = cursor.get() - next + 1;
+                    if (lag > maxLag)
+                    {
+                        maxLag = lag;
+                    }
+                    long now = System.nanoTime();
+                    for (long s = next; s <= last; s++)
+                    {
+                        DomainEvent event = slots[(int) (s & mask)];
+                        delays.record(now - event.getPublishedNanos());
+                        try
+                        {
+                            subscriber.onEvent(event, s == last);
+                        }
+                        catch (RuntimeException e)
+                        {
+                            errors++;
+                            System.err.println("Event subscriber " + name + " failed on " + event + ": " + e.getMessage());
+                        }
+                    }
+                    handled += last - next + 1;
+                    // Release the slots to producers only after the whole batch is handled
+                    sequence.set(last);
+                }
+            }
+            finally
+            {
+                // An Error thrown by the subscriber ends the thread; stop holding producers back
+                if (running)
+                {
+                    running = false;
+                    unsubscribe(this);
+                    System.err.println("Event subscriber " + name + " stopped and was unsubscribed");
+                }
+            }
+        }
+
+        /**
+         * Checks whether the subscriber has handled every event published more than a given
+         * time ago, so a cache can decide whether its contents may be served
+         *
+         * @param maxDelayNanos the longest acceptable delay
+         * @return true if nothing older than maxDelayNanos is still waiting for this subscriber
+         */
+        public boolean isCurrent(long maxDelayNanos)
+        {
+            if (!running)
+            {
+                return false; // Its slots may have been reused since it stopped
+            }
+            long next = sequence.get() + 1;
+            if (!isPublished(next))
+            {
+                return true;
+            }
+            // The slot cannot be reused before this subscriber moves past it
+            return System.nanoTime() - slots[(int) (next & mask)].getPublishedNanos() <= maxDelayNanos;
+        }
+
+        /**
+         * Waits until the subscriber has handled every event published so far
+         *
+         * @param timeoutMillis the longest time to wait
+         * @return true if it caught up, false on timeout
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public boolean awaitCaughtUp(long timeoutMillis) throws InterruptedException
+        {
+            long target = cursor.get();
+            long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+            while (sequence.get() < target)
+            {
+                if (System.nanoTime() > deadline)
+                {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+
+        /**
+         * Stops the subscriber thread; events it has not handled are no longer waited for
+         */
+        public void cancel()
+        {
+            running = false;
+            unsubscribe(this);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Gets the subscriber name
+         * @return the name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Gets the number of published events not yet handled
+         * @return the lag
+         */
+        public long getLag()
+        {
+            return Math.max(0, cursor.get() - sequence.get());
+        }
+    }
+
+    private final DomainEvent[] slots;              // Ring of reusable events
+    private final AtomicIntegerArray published;     // Lap number of the event in each slot
+    private final int mask;                         // slots.length - 1
+    private final int lapShift;                     // log2(slots.length)
+    private final AtomicLong cursor;                // Highest claimed sequence
+    private final AtomicLong producerWaitNanos;
+    private volatile Subscription[] subscriptions;  // Replaced on every change
+
+    /**
+     * Creates a bus with a ring of at least the given size
+     *
+     * @param ringSize the minimum number of slots
+     */
+    DomainEventBus(int ringSize)
+    {
+        int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+        this.slots = new DomainEvent[size];
+        for (int i = 0; i < size; i++)
+        {
+            slots[i] = new DomainEvent();
+        }
+        this.published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++)
+        {
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+        this.lapShift = Integer.numberOfTrailingZeros(size);
+        this.cursor = new AtomicLong(-1);
+        this.producerWaitNanos = new AtomicLong();
+        this.subscriptions = new Subscription[0];
+    }
+
+    /**
+     * Gets the singleton instance of DomainEventBus, registering its MBean on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized DomainEventBus getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new DomainEventBus(Integer.getInteger("events.ringSize", 4096));
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(MBEAN_NAME));
+            }
+            catch (Exception e)
+            {
+                System.err.println("Event bus MBean not registered: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a subscriber and starts its thread. It receives events published from now on.
+     *
+     * @param name a short name used for the thread and the metrics
+     * @param subscriber the subscriber
+     * @return the subscription, used to check staleness or cancel
+     */
+    public synchronized Subscription subscribe(String name, DomainEventSubscriber subscriber)
+    {
+        Subscription subscription = new Subscription(name, subscriber, cursor.get());
+        Subscription[] current = subscriptions;
+        Subscription[] next = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = subscription;
+        subscriptions = next;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription from the list producers wait for
+     *
+     * @param subscription the subscription
+     */
+    private synchronized void unsubscribe(Subscription subscription)
+    {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++)
+        {
+            if (current[i] == subscription)
+            {
+                Subscription[] next = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting while the slowest subscriber still needs it
+     *
+     * @return the claimed sequence
+     */
+    private long claim()
+    {
+        long sequence = cursor.incrementAndGet();
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > minimumSequence(sequence))
+        {
+            long start = System.nanoTime();
+            while (wrapPoint > minimumSequence(sequence))
+            {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            producerWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+        return sequence;
+    }
+
+    /**
+     * Marks a claimed slot as published and wakes idle subscribers
+     *
+     * @param sequence the sequence
+     */
+    private void publish(long sequence)
+    {
+        published.set((int) (sequence & mask), (int) (sequence >>> lapShift));
+        for (Subscription subscription : subscriptions)
+        {
+            if (subscription.parked)
+            {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Gets the lowest sequence handled by any subscriber
+     *
+     * @param fallback the value to use when there are no subscribers
+     * @return the minimum sequence
+     */
+    private long minimumSequence(long fallback)
+    {
+        long minimum = fallback;
+        for (Subscription subscription : subscriptions)
+        {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Checks whether the event with a sequence has been published
+     *
+     * @param sequence the sequence
+     * @return true if its slot holds that event
+     */
+    private boolean isPublished(long sequence)
+    {
+        return published.get((int) (sequence & mask)) == (int) (sequence >>> lapShift);
+    }
+
+    /**
+     * Finds the end of the run of published events starting at a sequence.
+     * Producers may finish out of order, so a later slot can be ready before an earlier one.
+     *
+     * @param from the first sequence to check
+     * @return the last published sequence of the run, or from - 1 if from is not published
+     */
+    private long highestPublished(long from)
+    {
+        long claimed = cursor.get();
+        long s = from;
+        while (s <= claimed && isPublished(s))
+        {
+            s++;
+        }
+        return s - 1;
+    }
+
+    /**
+     * Publishes an event
+     *
+     * @param type the kind of change
+     * @param reviewID the review ID, or 0
+     * @param movieID the movie ID, or 0
+     * @param userID the user ID, or 0
+     * @param targetID the target user ID, or 0
+     * @param review the review, or null
+     * @param user the user, or null
+     * @param movie the movie, or null
+     * @return the event's sequence
+     */
+    private long publish(DomainEvent.Type type, int reviewID, int movieID, int userID, int targetID,
+                         Review review, User user, Movie movie)
+    {
+        long sequence = claim();
+        DomainEvent event = slots[(int) (sequence & mask)];
+        event.set(type, reviewID, movieID, userID, targetID);
+        event.setReview(review);
+        event.setUser(user);
+        event.setMovie(movie);
+        publish(sequence);
+        return sequence;
+    }
+
+    /**
+     * Publishes that a review was saved
+     *
+     * @param review the new review
+     */
+    public void reviewPublished(Review review)
+    {
+        publish(DomainEvent.Type.REVIEW_PUBLISHED, review.getReviewID(), review.getMovieID(),
+                review.getUserID(), 0, review, null, null);
+    }
+
+    /**
+     * Publishes that a review's rating and text changed
+     *
+     * @param review the updated review
+     */
+    public void reviewUpdated(Review review)
+    {
+        publish(DomainEvent.Type.REVIEW_UPDATED, review.getReviewID(), review.getMovieID(),
+                review.getUserID(), 0, review, null, null);
+    }
+
+    /**
+     * Publishes that a review was deleted
+     *
+     * @param review the deleted review
+     */
+    public void reviewDeleted(Review review)
+    {
+        publish(DomainEvent.Type.REVIEW_DELETED, review.getReviewID(), review.getMovieID(),
+                review.getUserID(), 0, null, null, null);
+    }
+
+    /**
+     * Publishes that a review was liked
+     *
+     * @param review the liked review
+     * @param userID the ID of the user who liked it
+     */
+    public void reviewLiked(Review review, int userID)
+    {
+        publish(DomainEvent.Type.REVIEW_LIKED, review.getReviewID(), review.getMovieID(),
+                userID, review.getUserID(), null, null, null);
+    }
+
+    /**
+     * Publishes that a movie was created
+     *
+     * @param movie the new movie
+     */
+    public void movieCreated(Movie movie)
+    {
+        publish(DomainEvent.Type.MOVIE_CREATED, 0, movie.getMovieID(), 0, 0, null, null, movie);
+    }
+
+    /**
+     * Publishes that a duplicate movie was merged into another
+     *
+     * @param duplicateID the movie merged away
+     * @param movieID the movie that kept its reviews
+     */
+    public void movieMerged(int duplicateID, int movieID)
+    {
+        publish(DomainEvent.Type.MOVIE_MERGED, 0, duplicateID, 0, movieID, null, null, null);
+    }
+
+    /**
+     * Publishes that a user registered
+     *
+     * @param user the new user
+     */
+    public void userRegistered(User user)
+    {
+        publish(DomainEvent.Type.USER_REGISTERED, 0, 0, user.getUserID(), 0, null, user, null);
+    }
+
+    /**
+     * Publishes that a user's favorite genres changed
+     *
+     * @param userID the user's ID
+     */
+    public void userGenresChanged(int userID)
+    {
+        publish(DomainEvent.Type.USER_GENRES_CHANGED, 0, 0, userID, 0, null, null, null);
+    }
+
+    /**
+     * Publishes that one user followed another
+     *
+     * @param followerID the follower
+     * @param targetID the followed user
+     */
+    public void userFollowed(int followerID, int targetID)
+    {
+        publish(DomainEvent.Type.USER_FOLLOWED, 0, 0, followerID, targetID, null, null, null);
+    }
+
+    /**
+     * Publishes that one user unfollowed another
+     *
+     * @param followerID the former follower
+     * @param targetID the unfollowed user
+     */
+    public void userUnfollowed(int followerID, int targetID)
+    {
+        publish(DomainEvent.Type.USER_UNFOLLOWED, 0, 0, followerID, targetID, null, null, null);
+    }
+
+    @Override
+    public int getRingSize()
+    {
+        return slots.length;
+    }
+
+    @Override
+    public long getPublishedCount()
+    {
+        return cursor.get() + 1;
+    }
+
+    @Override
+    public long getProducerWaitMillis()
+    {
+        return producerWaitNanos.get() / 1000000L;
+    }
+
+    @Override
+    public String[] getSubscriberNames()
+    {
+        Subscription[] current = subscriptions;
+        String[] names = new String[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            names[i] = current[i].name;
+        }
+        return names;
+    }
+
+    @Override
+    public long[] getSubscriberLags()
+    {
+        Subscription[] current = subscriptions;
+        long[] lags = new long[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            lags[i] = current[i].getLag();
+        }
+        return lags;
+    }
+
+    @Override
+    public long[] getSubscriberMaxLags()
+    {
+        Subscription[] current = subscriptions;
+        long[] lags = new long[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            lags[i] = current[i].maxLag;
+        }
+        return lags;
+    }
+
+    @Override
+    public long[] getSubscriberHandledCounts()
+    {
+        Subscription[] current = subscriptions;
+        long[] counts = new long[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            counts[i] = current[i].handled;
+        }
+        return counts;
+    }
+
+    @Override
+    public long[] getSubscriberErrorCounts()
+    {
+        Subscription[] current = subscriptions;
+        long[] counts = new long[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            counts[i] = current[i].errors;
+        }
+        return counts;
+    }
+
+    @Override
+    public double[] getSubscriberP99DelayMillis()
+    {
+        Subscription[] current = subscriptions;
+        double[] delays = new double[current.length];
+        for (int i = 0; i < current.length; i++)
+        {
+            delays[i] = current[i].delays.getValueAtPercentile(99) / 1e6;
+        }
+        return delays;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Management interface for DomainEventBus, registered with the platform MBean server
+ * as "MovieReviewSocialNetwork:type=DomainEventBus" so subscriber lag can be watched
+ * with JConsole or any other JMX client. Per-subscriber arrays follow getSubscriberNames.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface DomainEventBusMXBean
+{
+    /**
+     * @return the number of slots in the ring buffer
+     */
+    int getRingSize();
+
+    /**
+     * @return the number of events published
+     */
+    long getPublishedCount();
+
+    /**
+     * @return the total time producers waited for a full ring buffer, in milliseconds
+     */
+    long getProducerWaitMillis();
+
+    /**
+     * @return the subscriber names
+     */
+    String[] getSubscriberNames();
+
+    /**
+     * @return the number of published events each subscriber has not handled yet
+     */
+    long[] getSubscriberLags();
+
+    /**
+     * @return the largest lag each subscriber has had
+     */
+    long[] getSubscriberMaxLags();
+
+    /**
+     * @return the number of events each subscriber has handled
+     */
+    long[] getSubscriberHandledCounts();
+
+    /**
+     * @return the number of events each subscriber failed to handle
+     */
+    long[] getSubscriberErrorCounts();
+
+    /**
+     * @return the 99th percentile time from publication to handling for each subscriber, in milliseconds
+     */
+    double[] getSubscriberP99DelayMillis();
+}
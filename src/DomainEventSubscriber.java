@@ -0,0 +1,17 @@
+/**
+ * DomainEventSubscriber receives events from the DomainEventBus on its own thread.
+ * Events arrive in publication order, in batches of whatever was published while the
+ * subscriber was busy, so caches can apply the batch and publish their result once.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface DomainEventSubscriber
+{
+    /**
+     * Called for each event. The event object is reused afterwards, so copy what is needed.
+     * Must not publish to the bus: with a full ring buffer that would wait for itself.
+     *
+     * @param event the event
+     * @param endOfBatch true for the last event currently available
+     */
+    void onEvent(DomainEvent event, boolean endOfBatch);
+}
@@ -0,0 +1,512 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EventLog is the append-only journal of review, like and follow changes, and the system of
+ * record for them: a change is appended here and made durable before it is applied to SQLite
+ * by the LogProjection, so the database tables can always be caught up or rebuilt from the log.
+ *
+ * Records get consecutive sequence numbers from 1 and are written with a FileChannel into
+ * segment files named after the sequence of their first record (00000000000000000001.log);
+ * a new segment is started when the current one reaches -Deventlog.segmentBytes (default 64 MB).
+ * Each record carries a CRC-32, so a record torn by a crash is detected and cut off when the
+ * log is reopened.
+ *
+ * Durability uses group commit: write() only hands a record to the operating system, and
+ * sync(sequence) waits until it is on disk. The first waiting thread forces the file for
+ * everyone who wrote before it, and threads that arrive during that force wait for the next
+ * one, so a burst of concurrent writes costs a few fsyncs instead of one each.
+ * Readers created with openReader see only durable records and can wait for new ones.
+ * The directory is -Deventlog.dir, by default the database file name followed by .eventlog
+ * (app.db.eventlog), so each database keeps its own log. Only one log may have the directory
+ * open: opening takes an exclusive lock on its LOCK file and fails if another process holds it,
+ * since a second writer would truncate the live segment's tail and interleave its records.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class EventLog
+{
+    private static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOCK_FILE = "LOCK";
+
+    private static EventLog instance;           // Singleton instance
+
+    private final File directory;               // Folder holding the segments
+    private final long maxSegmentBytes;         // Size at which a new segment is started
+    private final List<Long> segmentBases;      // First sequence of each segment, ascending; guarded by writeLock
+    private final FileChannel lockChannel;      // Open LOCK file
+    private final FileLock directoryLock;       // Exclusive lock on the LOCK file while the log is open
+
+    private final ReentrantLock writeLock;      // Serialises writes and segment changes
+    private FileChannel channel;                // Current segment, open for appending
+    private long segmentSize;                   // Bytes in the current segment
+    private long nextSequence;                  // Sequence the next record gets
+    private volatile long writtenSequence;      // Last sequence handed to the operating system
+
+    private final Object syncMonitor;           // Guards syncing and signals durableSequence changes
+    private boolean syncing;                    // True while a thread is forcing the file
+    private volatile long durableSequence;      // Last sequence known to be on disk
+
+    /**
+     * Opens a log, creating the directory if needed, locking it and cutting off a torn record at the end
+     *
+     * @param directory the folder holding the segments
+     * @param maxSegmentBytes the size at which a new segment is started
+     * @throws IOException if the log cannot be opened or another log has the directory open
+     */
+    public EventLog(File directory, long maxSegmentBytes) throws IOException
+    {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.segmentBases = new ArrayList<>();
+        this.writeLock = new ReentrantLock();
+        this.syncMonitor = new Object();
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create event log directory " + directory);
+        }
+        this.lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+                                            StandardOpenOption.WRITE);
+        this.directoryLock = tryLock(lockChannel);
+        if (directoryLock == null)
+        {
+            lockChannel.close();
+            throw new IOException("The event log in " + directory + " is in use by another process");
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                try
+                {
+                    segmentBases.add(Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length())));
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Ignoring unexpected file in event log: " + file);
+                }
+            }
+        }
+        Collections.sort(segmentBases);
+        if (segmentBases.isEmpty())
+        {
+            segmentBases.add(1L);
+        }
+        try
+        {
+            recover(segmentBases.get(segmentBases.size() - 1));
+        }
+        catch (IOException e)
+        {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the exclusive lock on the directory's LOCK file without waiting
+     *
+     * @param lockFile the open LOCK file
+     * @return the lock, or null if another process or another log in this one holds it
+     * @throws IOException if the lock cannot be requested
+     */
+    private static FileLock tryLock(FileChannel lockFile) throws IOException
+    {
+        try
+        {
+            return lockFile.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the shared event log, opening it on first use
+     *
+     * @return the singleton instance
+     * @throws UncheckedIOException if the log cannot be opened
+     */
+    public static synchronized EventLog getInstance()
+    {
+        if (instance == null)
+        {
+            File directory = new File(System.getProperty("eventlog.dir",
+                    System.getProperty("app.db", "app.db") + ".eventlog"));
+            long segmentBytes = Long.getLong("eventlog.segmentBytes", DEFAULT_SEGMENT_BYTES);
+            try
+            {
+                instance = new EventLog(directory, Math.max(4096, segmentBytes));
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to open the event log in " + directory, e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Opens the last segment for appending, scanning it to find the last intact record
+     * and truncating anything after it
+     *
+     * @param base the first sequence of the last segment
+     * @throws IOException if the segment cannot be read or truncated
+     */
+    private void recover(long base) throws IOException
+    {
+        channel = FileChannel.open(segmentFile(base).toPath(), StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long position = 0;
+        long expected = base;
+        ByteBuffer header = ByteBuffer.allocate(LogRecord.HEADER_BYTES);
+        while (true)
+        {
+            header.clear();
+            if (!readFully(channel, header, position))
+            {
+                break;
+            }
+            int length = header.getInt(0);
+            if (length <= 0 || length > LogRecord.MAX_BODY_BYTES)
+            {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            if (!readFully(channel, body, position + LogRecord.HEADER_BYTES)
+                    || !LogRecord.checksumMatches(body.array(), header.getInt(4))
+                    || body.getLong(0) != expected)
+            {
+                break;
+            }
+            position += LogRecord.HEADER_BYTES + length;
+            expected++;
+        }
+        if (position < channel.size())
+        {
+            System.err.println("Event log: discarding " + (channel.size() - position) +
+                               " bytes of incomplete records from " + segmentFile(base));
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        segmentSize = position;
+        nextSequence = expected;
+        writtenSequence = expected - 1;
+        durableSequence = expected - 1;
+    }
+
+    /**
+     * Appends a record and waits until it is on disk
+     *
+     * @param record the record
+     * @return the record's sequence number
+     * @throws UncheckedIOException if the record cannot be written or synced
+     */
+    public long append(LogRecord record)
+    {
+        long sequence = write(record);
+        sync(sequence);
+        return sequence;
+    }
+
+    /**
+     * Appends a record without waiting for it to reach the disk; call sync to wait
+     *
+     * @param record the record
+     * @return the record's sequence number
+     * @throws UncheckedIOException if the record cannot be written
+     */
+    public long write(LogRecord record)
+    {
+        writeLock.lock();
+        try
+        {
+            long sequence = nextSequence;
+            byte[] frame = record.encode(sequence);
+            if (segmentSize > 0 && segmentSize + frame.length > maxSegmentBytes)
+            {
+                roll(sequence);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            segmentSize += frame.length;
+            nextSequence = sequence + 1;
+            writtenSequence = sequence;
+            return sequence;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to write to the event log", e);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record up to a sequence is on disk, forcing the file if no other
+     * thread is already doing so
+     *
+     * @param sequence the sequence that must be durable
+     * @throws UncheckedIOException if forcing the file fails
+     */
+    public void sync(long sequence)
+    {
+        while (durableSequence < sequence)
+        {
+            synchronized (syncMonitor)
+            {
+                if (durableSequence >= sequence)
+                {
+                    return;
+                }
+                if (syncing)
+                {
+                    try
+                    {
+                        syncMonitor.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new UncheckedIOException(new IOException("Interrupted while syncing the event log"));
+                    }
+                    continue;
+                }
+                syncing = true;
+            }
+
+            try
+            {
+                FileChannel target;
+                long upTo;
+                writeLock.lock();
+                try
+                {
+                    target = channel;
+                    upTo = writtenSequence;
+                }
+                finally
+                {
+                    writeLock.unlock();
+                }
+                try
+                {
+                    target.force(false);
+                }
+                catch (ClosedChannelException e)
+                {
+                    // The segment was rolled, which forced it and advanced durableSequence
+                }
+                markDurable(upTo);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Failed to sync the event log", e);
+            }
+            finally
+            {
+                synchronized (syncMonitor)
+                {
+                    syncing = false;
+                    syncMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that every sequence up to the given one is on disk and wakes waiting readers
+     *
+     * @param sequence the last durable sequence
+     */
+    private void markDurable(long sequence)
+    {
+        synchronized (syncMonitor)
+        {
+            if (sequence > durableSequence)
+            {
+                durableSequence = sequence;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Closes the current segment, after forcing it, and starts a new one. Caller holds writeLock.
+     *
+     * @param base the sequence of the first record of the new segment
+     * @throws IOException if the segments cannot be forced or created
+     */
+    private void roll(long base) throws IOException
+    {
+        channel.force(false);
+        markDurable(writtenSequence);
+        channel.close();
+        channel = FileChannel.open(segmentFile(base).toPath(), StandardOpenOption.CREATE_NEW,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentBases.add(base);
+        segmentSize = 0;
+    }
+
+    /**
+     * Waits until a record after the given sequence is durable
+     *
+     * @param sequence the last sequence the caller has seen
+     * @param timeoutMillis the longest time to wait
+     * @return true if a newer durable record exists
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitDurable(long sequence, long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (syncMonitor)
+        {
+            while (durableSequence <= sequence)
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                {
+                    return false;
+                }
+                syncMonitor.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Opens a reader positioned at a sequence
+     *
+     * @param fromSequence the first sequence to read, 1 for the whole log
+     * @return the reader
+     */
+    public EventLogReader openReader(long fromSequence)
+    {
+        return new EventLogReader(this, Math.max(1, fromSequence));
+    }
+
+    /** @return the folder holding the segments */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /** @return the sequence of the last record on disk, 0 if the log is empty */
+    public long getDurableSequence()
+    {
+        return durableSequence;
+    }
+
+    /** @return the sequence of the last record written, 0 if the log is empty */
+    public long getLastSequence()
+    {
+        return writtenSequence;
+    }
+
+    /**
+     * Finds the segment holding a sequence
+     *
+     * @param sequence the sequence
+     * @return the first sequence of the segment, the last segment's if the sequence is newer
+     */
+    long segmentFor(long sequence)
+    {
+        writeLock.lock();
+        try
+        {
+            long base = segmentBases.get(0);
+            for (long candidate : segmentBases)
+            {
+                if (candidate > sequence)
+                {
+                    break;
+                }
+                base = candidate;
+            }
+            return base;
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the file of a segment
+     *
+     * @param base the first sequence of the segment
+     * @return the segment file
+     */
+    File segmentFile(long base)
+    {
+        return new File(directory, String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Forces and closes the current segment and releases the directory lock
+     */
+    public void close()
+    {
+        writeLock.lock();
+        try
+        {
+            channel.force(false);
+            markDurable(writtenSequence);
+            channel.close();
+            directoryLock.release();
+            lockChannel.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to close the event log: " + e.getMessage());
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Fills a buffer from a channel at a position
+     *
+     * @param source the channel
+     * @param buffer the buffer to fill
+     * @param position the file position to read from
+     * @return true if the buffer was filled, false if the file ended first
+     * @throws IOException if reading fails
+     */
+    static boolean readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = source.read(buffer, position);
+            if (read < 0)
+            {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+}
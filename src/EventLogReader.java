@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * EventLogReader reads EventLog records in sequence order, moving across segment files, and
+ * can tail the log: next() returns null when it has caught up, and poll() waits for the next
+ * record to become durable. Only records that are on disk are returned, so a consumer never
+ * acts on a change that could still be lost. Reads use positional FileChannel reads and do
+ * not block writers. A reader is used by one thread at a time.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class EventLogReader implements AutoCloseable
+{
+    private final EventLog log;         // Log being read
+    private final ByteBuffer header;    // Reused buffer for record headers
+    private FileChannel channel;        // Segment being read
+    private long segmentBase;           // First sequence of that segment
+    private long position;              // File position of the next record
+    private long nextSequence;          // Sequence of the next record to return
+
+    /**
+     * Opens a reader; use EventLog.openReader
+     *
+     * @param log the log
+     * @param fromSequence the first sequence to return
+     */
+    EventLogReader(EventLog log, long fromSequence)
+    {
+        this.log = log;
+        this.header = ByteBuffer.allocate(LogRecord.HEADER_BYTES);
+        this.nextSequence = fromSequence;
+        openSegment(log.segmentFor(fromSequence));
+    }
+
+    /**
+     * Gets the sequence the next record will have
+     *
+     * @return the next sequence
+     */
+    public long getNextSequence()
+    {
+        return nextSequence;
+    }
+
+    /**
+     * Reads the next durable record
+     *
+     * @return the record, or null if the reader has caught up with the durable log
+     * @throws UncheckedIOException if a segment cannot be read or a durable record is corrupt
+     */
+    public LogRecord next()
+    {
+        try
+        {
+            while (nextSequence <= log.getDurableSequence())
+            {
+                LogRecord record = readAt(position);
+                if (record == null)
+                {
+                    // End of this segment: continue in the one that starts at nextSequence
+                    long following = log.segmentFor(nextSequence);
+                    if (following == segmentBase)
+                    {
+                        throw new IOException("Event log is missing record " + nextSequence);
+                    }
+                    channel.close();
+                    openSegment(following);
+                    continue;
+                }
+                if (record.getSequence() < nextSequence)
+                {
+                    continue; // Skipping to the starting sequence
+                }
+                if (record.getSequence() != nextSequence)
+                {
+                    throw new IOException("Event log jumps from record " + nextSequence + " to " + record.getSequence());
+                }
+                nextSequence++;
+                return record;
+            }
+            return null;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to read the event log", e);
+        }
+    }
+
+    /**
+     * Reads the next durable record, waiting for one to be appended if the reader has caught up
+     *
+     * @param timeoutMillis the longest time to wait
+     * @return the record, or null if none arrived in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public LogRecord poll(long timeoutMillis) throws InterruptedException
+    {
+        LogRecord record = next();
+        if (record == null && log.awaitDurable(nextSequence - 1, timeoutMillis))
+        {
+            record = next();
+        }
+        return record;
+    }
+
+    /**
+     * Reads the record at a file position and advances past it
+     *
+     * @param at the file position
+     * @return the record, or null at the end of the segment
+     * @throws IOException if reading fails or the record is corrupt
+     */
+    private LogRecord readAt(long at) throws IOException
+    {
+        header.clear();
+        if (!EventLog.readFully(channel, header, at))
+        {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length <= 0 || length > LogRecord.MAX_BODY_BYTES)
+        {
+            throw new IOException("Corrupt event log record length at " + log.segmentFile(segmentBase) + ":" + at);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (!EventLog.readFully(channel, body, at + LogRecord.HEADER_BYTES))
+        {
+            return null;
+        }
+        if (!LogRecord.checksumMatches(body.array(), header.getInt(4)))
+        {
+            throw new IOException("Event log checksum mismatch at " + log.segmentFile(segmentBase) + ":" + at);
+        }
+        position = at + LogRecord.HEADER_BYTES + length;
+        return LogRecord.decode(body.array());
+    }
+
+    /**
+     * Opens a segment for reading from its start
+     *
+     * @param base the first sequence of the segment
+     */
+    private void openSegment(long base)
+    {
+        try
+        {
+            channel = FileChannel.open(log.segmentFile(base).toPath(), StandardOpenOption.READ);
+            segmentBase = base;
+            position = 0;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Failed to open event log segment " + log.segmentFile(base), e);
+        }
+    }
+
+    /**
+     * Closes the segment being read
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to close event log reader: " + e.getMessage());
+        }
+    }
+}
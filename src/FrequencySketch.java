@@ -0,0 +1,108 @@
+/**
+ * FrequencySketch estimates how often keys were seen recently, in a fixed amount of memory.
+ * It is a Count-Min sketch of 4-bit counters packed sixteen to a long: each key increments
+ * one counter in each of four rows and its estimate is the smallest of the four. After a
+ * sample of ten times the cache size all counters are halved, so old popularity fades and
+ * the sketch follows changes in the workload. Used by ReviewCache for TinyLFU admission.
+ * Not thread-safe; callers synchronize.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class FrequencySketch
+{
+    private static final long RESET_MASK = 0x7777777777777777L; // Clears each counter's top bit after a shift
+    private static final int MAX_COUNT = 15;                      // Largest value of a 4-bit counter
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final long[] table;     // Counters, 16 per long
+    private final int tableMask;    // table.length - 1
+    private final int sampleSize;   // Increments between halvings
+    private int additions;          // Increments since the last halving
+
+    /**
+     * Creates a sketch sized for a cache of the given maximum size
+     *
+     * @param maximumSize the number of entries the cache holds
+     */
+    public FrequencySketch(int maximumSize)
+    {
+        int length = 1;
+        while (length < Math.max(1, maximumSize))
+        {
+            length <<= 1;
+        }
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = Math.max(10, 10 * maximumSize);
+    }
+
+    /**
+     * Estimates how many times a key was seen, capped at 15
+     *
+     * @param key the key
+     * @return the estimated recent frequency
+     */
+    public int frequency(int key)
+    {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < 4; row++)
+        {
+            int counter = counterIndex(key, row);
+            int count = (int) ((table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one occurrence of a key
+     *
+     * @param key the key
+     */
+    public void increment(int key)
+    {
+        boolean added = false;
+        for (int row = 0; row < 4; row++)
+        {
+            int counter = counterIndex(key, row);
+            int word = counter >>> 4;
+            int shift = (counter & 15) << 2;
+            if (((table[word] >>> shift) & 0xF) < MAX_COUNT)
+            {
+                table[word] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize)
+        {
+            reset();
+        }
+    }
+
+    /**
+     * Halves every counter
+     */
+    private void reset()
+    {
+        for (int i = 0; i < table.length; i++)
+        {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * Picks the counter a key uses in one row
+     *
+     * @param key the key
+     * @param row the row, 0 to 3
+     * @return the index of the counter across the whole table
+     */
+    private int counterIndex(int key, int row)
+    {
+        long h = (key + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 32;
+        return (int) h & ((tableMask << 4) | 15);
+    }
+}
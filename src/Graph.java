@@ -1,23 +1,40 @@
 import java.util.*;
 import java.sql.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A social network graph implementation using HashMaps to store user relationships.
  * Optimized for follower/following relationships between users.
  * Implements the Singleton pattern to ensure only one graph instance exists.
+ * Listens for user events so registrations and genre changes made after loading are
+ * applied incrementally instead of reloading the graph.
+ * Lookups share a read lock, so they only wait for follows, unfollows and registrations.
  * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
  */
-public class Graph
+public class Graph implements UserEventListener
 {
-    // Singleton instance
-    private static Graph instance = null;
-    
     // Maps each user to their followers
     private final Map<User, List<User>> followers;
     // Maps each user to users they are following
     private final Map<User, List<User>> following;
-    // Secondary index for faster user lookups
-    private final Map<Object, User> userIndex;
+    // Every (follower, target) edge packed into one long, for constant-time membership checks
+    private final LongHashSet edges;
+    // Index of users by ID, keyed on the primitive ID to avoid boxing
+    private final IntObjectMap<User> usersById;
+    // Index of users by username, supports exact and prefix lookups
+    private final UsernameIndex usersByName;
+    // Incremented on every change to users or relationships, used to detect stale snapshots
+    private volatile long version;
+    // Readers share it; follows, unfollows and registrations take it exclusively
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * Holds the singleton, created by the class loader on first use
+     */
+    private static class Holder
+    {
+        private static final Graph INSTANCE = new Graph();
+    }
     
     /**
      * Private constructor for Singleton pattern.
@@ -27,13 +44,16 @@ public class Graph
     {
         this.followers = new HashMap<>();
         this.following = new HashMap<>();
-        this.userIndex = new HashMap<>();
+        this.edges = new LongHashSet();
+        this.usersById = new IntObjectMap<>();
+        this.usersByName = new UsernameIndex();
+        this.lock = new ReentrantReadWriteLock();
 
         try
         {
             // First, load all users from the Users table
             String userQuery = "SELECT userID, username, email FROM Users";
-            ResultSet resultSet = Database.getInstance().executeQuery(userQuery);
+            ResultSet resultSet = Database.getInstance().executeQuery("graph.loadUsers", userQuery);
             
             // Create and load users
             while (resultSet.next())
@@ -45,12 +65,9 @@ public class Graph
                 // Create user object with additional query to load genres
                 User user = createUserObject(userId, username, email);
                 
-                // Add user to graph
+                // Add user to graph and index it by ID and username
                 addUser(user);
-                
-                // Index user by ID and username for quick lookups
-                indexUser(userId, user);
-                indexUser(username, user);
+                indexUser(user);
             }
             
             // Close resources
@@ -58,7 +75,7 @@ public class Graph
             
             // Now load all follower relationships from UserFollower table
             String followerQuery = "SELECT uf.userID, uf.followerID FROM UserFollower uf";
-            resultSet = Database.getInstance().executeQuery(followerQuery);
+            resultSet = Database.getInstance().executeQuery("graph.loadFollows", followerQuery);
             
             // Add each follower relationship
             while (resultSet.next())
@@ -83,6 +100,9 @@ public class Graph
             System.err.println("Error loading social graph from database: " + e.getMessage());
             e.printStackTrace();
         }
+
+        // Keep the graph in sync with users created or changed after loading
+        UserEvents.getInstance().addListener(this);
     }
     
     /**
@@ -102,7 +122,7 @@ public class Graph
         {
             // Query to get user's favorite genres
             String genreQuery = "SELECT genre FROM UserGenres WHERE userID = " + userId;
-            ResultSet genreResultSet = Database.getInstance().executeQuery(genreQuery);
+            ResultSet genreResultSet = Database.getInstance().executeQuery("user.genres", genreQuery);
             
             while (genreResultSet.next())
             {
@@ -132,11 +152,7 @@ public class Graph
      */
     public static Graph getInstance()
     {
-        if (instance == null)
-        {
-            instance = new Graph();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
     
     /**
@@ -150,6 +166,18 @@ public class Graph
         following.putIfAbsent(user, new ArrayList<>());
     }
     
+    /**
+     * Packs a follower relationship into a single long key
+     * 
+     * @param followerId the ID of the user who is following
+     * @param targetId the ID of the user being followed
+     * @return the edge key, follower ID in the high 32 bits and target ID in the low 32 bits
+     */
+    private static long edgeKey(int followerId, int targetId)
+    {
+        return ((long) followerId << 32) | (targetId & 0xFFFFFFFFL);
+    }
+
     /**
      * Adds a follower relationship (follower follows target)
      * 
@@ -159,19 +187,28 @@ public class Graph
      */
     public boolean addFollower(User follower, User target)
     {
-        // Add users if they don't exist
-        addUser(follower);
-        addUser(target);
+        lock.writeLock().lock();
+        try
+        {
+            // Add users if they don't exist
+            addUser(follower);
+            addUser(target);
         
-        // Check if the relationship already exists
-        if (!followers.get(target).contains(follower))
+            // Only add the relationship if the edge was not already present
+            if (edges.add(edgeKey(follower.getUserID(), target.getUserID())))
+            {
+                // Add the follower relationship
+                followers.get(target).add(follower);  // target's followers include follower
+                following.get(follower).add(target);  // follower is following target
+                version++;
+                return true; // Relationship successfully added
+            }
+            return false; // Relationship already exists
+        }
+        finally
         {
-            // Add the follower relationship
-            followers.get(target).add(follower);  // target's followers include follower
-            following.get(follower).add(target);  // follower is following target
-            return true; // Relationship successfully added
+            lock.writeLock().unlock();
         }
-        return false; // Relationship already exists
     }
     
     /**
@@ -183,53 +220,112 @@ public class Graph
      */
     public boolean removeFollower(User follower, User target)
     {
-        boolean removed = false;
-        
-        // Remove from target's followers list
-        if (followers.containsKey(target))
+        lock.writeLock().lock();
+        try
         {
-            if (followers.get(target).remove(follower))
+            if (!edges.remove(edgeKey(follower.getUserID(), target.getUserID())))
             {
-                removed = true;
-            } 
-        }
-        
-        // Remove from follower's following list
-        if (following.containsKey(follower))
-        {
-            if (following.get(follower).remove(target))
+                return false;
+            }
+
+            // Remove from target's followers list and from follower's following list
+            if (followers.containsKey(target))
+            {
+                followers.get(target).remove(follower);
+            }
+            if (following.containsKey(follower))
             {
-                removed = true;
+                following.get(follower).remove(target);
             }
+            version++;
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
         }
-        
-        return removed;
     }
     
     /**
-     * Indexes a user by a specific key for faster lookups
-     * Useful for looking up users by ID or username
+     * Indexes a user by ID and username for faster lookups
      * 
-     * @param key the key to index by (e.g., user ID)
      * @param user the user to index
      */
-    private void indexUser(Object key, User user)
+    private void indexUser(User user)
     {
         if (followers.containsKey(user))
         {
-            userIndex.put(key, user);
+            usersById.put(user.getUserID(), user);
+            usersByName.put(user);
         }
     }
-    
+
+    /**
+     * Adds a newly registered user to the graph and its indexes.
+     * Lets users who register after the graph was loaded be found immediately.
+     * 
+     * @param user the user to add
+     */
+    @Override
+    public void onUserRegistered(User user)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            // Store a copy without the password, matching users loaded from the database
+            User graphUser = new User(user.getUserID(), user.getUserName(), user.getEmail(), null,
+                                      new ArrayList<>(user.getFavoriteGenres()));
+            addUser(graphUser);
+            indexUser(graphUser);
+            version++;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
     /**
-     * Gets a user by its index key
+     * Updates the favorite genres of the graph's copy of a user
      * 
-     * @param key the key to look up (e.g., user ID)
+     * @param userID the ID of the user
+     * @param genres the user's new favorite genres
+     */
+    @Override
+    public void onUserGenresChanged(int userID, List<Genre.GenreType> genres)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            User user = usersById.get(userID);
+            if (user != null)
+            {
+                user.setFavoriteGenres(new ArrayList<>(genres));
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a user by their user ID
+     * 
+     * @param userId the user ID to look up
      * @return the user if found, null otherwise
      */
-    public User getUserByKey(Object key)
+    public User getUserByKey(int userId)
     {
-        return userIndex.get(key);
+        lock.readLock().lock();
+        try
+        {
+            return usersById.get(userId);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
     
     /**
@@ -240,7 +336,36 @@ public class Graph
      */
     public User getUserByUsername(String username)
     {
-        return userIndex.get(username);
+        lock.readLock().lock();
+        try
+        {
+            return usersByName.get(username);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds users whose username starts with a prefix, ignoring case.
+     * Used to suggest usernames when an exact match is not found.
+     * 
+     * @param prefix the prefix to match
+     * @param limit the maximum number of users to return
+     * @return a list of matching users in alphabetical order
+     */
+    public List<User> findUsersByPrefix(String prefix, int limit)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return usersByName.findByPrefix(prefix, limit);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
     
     /**
@@ -251,7 +376,16 @@ public class Graph
      */
     public List<User> getFollowers(User user)
     {
-        return followers.getOrDefault(user, new ArrayList<>());
+        lock.readLock().lock();
+        try
+        {
+            // Return a copy so callers can iterate while other threads change the graph
+            return new ArrayList<>(followers.getOrDefault(user, Collections.emptyList()));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -262,7 +396,16 @@ public class Graph
      */
     public List<User> getFollowing(User user)
     {
-        return following.getOrDefault(user, new ArrayList<>());
+        lock.readLock().lock();
+        try
+        {
+            // Return a copy so callers can iterate while other threads change the graph
+            return new ArrayList<>(following.getOrDefault(user, Collections.emptyList()));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
     
     /**
@@ -274,16 +417,15 @@ public class Graph
      */
     public boolean isFollowing(User follower, User target)
     {
-        for (Map.Entry<User, List<User>> entry : following.entrySet())
+        lock.readLock().lock();
+        try
         {
-            // Use equals() to find the correct follower
-            if (entry.getKey().equals(follower))
-            {
-                // Use contains() which will use the equals() method internally
-                return entry.getValue().contains(target);
-            }
+            return edges.contains(edgeKey(follower.getUserID(), target.getUserID()));
+        }
+        finally
+        {
+            lock.readLock().unlock();
         }
-        return false;
     }
     
     /**
@@ -294,7 +436,15 @@ public class Graph
      */
     public int getFollowerCount(User user)
     {
-        return followers.getOrDefault(user, Collections.emptyList()).size();
+        lock.readLock().lock();
+        try
+        {
+            return followers.getOrDefault(user, Collections.emptyList()).size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -305,9 +455,86 @@ public class Graph
      */
     public int getFollowingCount(User user)
     {
-        return following.getOrDefault(user, Collections.emptyList()).size();
+        lock.readLock().lock();
+        try
+        {
+            return following.getOrDefault(user, Collections.emptyList()).size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
     }
     
+    /**
+     * Gets the modification counter of the graph.
+     * It changes whenever a user or relationship is added or removed.
+     * 
+     * @return the current graph version
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Takes an immutable, compact copy of the current graph.
+     * The read lock is only held while copying, so long-running analytics can work
+     * on the snapshot without blocking follows and unfollows.
+     * 
+     * @return a snapshot of all users and follow relationships
+     */
+    public GraphSnapshot snapshot()
+    {
+        int[] userIds;
+        String[] usernames;
+        int[] edgeFollowers;
+        int[] edgeTargets;
+        int edgeCount = 0;
+        long snapshotVersion;
+
+        lock.readLock().lock();
+        try
+        {
+            snapshotVersion = version;
+
+            // Number the users in ascending ID order
+            User[] users = following.keySet().toArray(new User[0]);
+            Arrays.sort(users, Comparator.comparingInt(User::getUserID));
+            userIds = new int[users.length];
+            usernames = new String[users.length];
+            for (int i = 0; i < users.length; i++)
+            {
+                userIds[i] = users[i].getUserID();
+                usernames[i] = users[i].getUserName();
+            }
+
+            // Copy every edge as a pair of dense indexes
+            edgeFollowers = new int[edges.size()];
+            edgeTargets = new int[edges.size()];
+            for (int i = 0; i < users.length; i++)
+            {
+                for (User target : following.get(users[i]))
+                {
+                    int targetIndex = Arrays.binarySearch(userIds, target.getUserID());
+                    if (targetIndex >= 0 && edgeCount < edgeFollowers.length)
+                    {
+                        edgeFollowers[edgeCount] = i;
+                        edgeTargets[edgeCount] = targetIndex;
+                        edgeCount++;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        // Building the compressed rows happens outside the lock
+        return new GraphSnapshot(snapshotVersion, userIds, usernames, edgeFollowers, edgeTargets, edgeCount);
+    }
+
     /**
      * DEBUGGING METHOD - Prints a graph representation of the social network.
      * This method is for development/debugging visualization only and not needed for
@@ -368,42 +595,4 @@ public class Graph
         return sb.toString();
     }
     */
-
-    /**
-     * Syncs the database with the graph structure.
-     * This method exports the current state of the graph into the database.
-     * It clears the existing relationships in the database and re-adds them based on the current graph state.
-     */
-    public void disconnect()
-    {
-        try
-        {
-            // Delete existing relationships
-            String deleteQuery = "DELETE FROM UserFollower";
-            Database.getInstance().executeUpdate(deleteQuery);
-            
-            // Iterate through all users in the graph
-            for (Map.Entry<User, List<User>> entry : this.following.entrySet())
-            {
-                User currentUser = entry.getKey();
-                List<User> followedUsers = entry.getValue();
-                
-                // For each user this user is following
-                for (User followedUser : followedUsers)
-                {
-                    // Insert the relationship
-                    String insertQuery = "INSERT INTO UserFollower (userID, followerID) VALUES (" +
-                                         followedUser.getUserID() + ", " + currentUser.getUserID() + ")";
-                    Database.getInstance().executeUpdate(insertQuery);
-                }
-            }
-            
-            System.out.println("Successfully synced graph relationships to database.");
-            
-        } catch (SQLException e)
-        {
-            System.err.println("Error syncing graph to database: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
 }
\ No newline at end of file
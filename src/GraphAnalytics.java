@@ -0,0 +1,448 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * GraphAnalytics runs batch statistics over a snapshot of the social graph:
+ * follower and following degree distributions, mutual-follow (reciprocity) counts,
+ * weakly connected components and top influencers by follower count.
+ * Work is split across the fork-join pool and always runs on a GraphSnapshot,
+ * so follows and unfollows are never blocked while a report is being computed.
+ * Results can be exported as CSV files to a local directory.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class GraphAnalytics
+{
+    // Number of users handled by one fork-join task before it stops splitting
+    private static final int SPLIT_THRESHOLD = 4096;
+
+    private final GraphSnapshot snapshot;   // The graph state being analysed
+    private final ForkJoinPool pool;        // Pool the parallel passes run on
+
+    /**
+     * Constructs an analytics job over a snapshot using the common fork-join pool
+     *
+     * @param snapshot the graph snapshot to analyse
+     */
+    public GraphAnalytics(GraphSnapshot snapshot)
+    {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an analytics job over a snapshot using the given fork-join pool
+     *
+     * @param snapshot the graph snapshot to analyse
+     * @param pool the pool to run parallel passes on
+     */
+    public GraphAnalytics(GraphSnapshot snapshot, ForkJoinPool pool)
+    {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    /**
+     * Creates an analytics job over a fresh snapshot of the live Graph
+     *
+     * @return an analytics job for the current graph
+     */
+    public static GraphAnalytics ofCurrentGraph()
+    {
+        return new GraphAnalytics(Graph.getInstance().snapshot());
+    }
+
+    /**
+     * Computes how many users have each follower count.
+     * Index d of the result is the number of users with exactly d followers.
+     *
+     * @return the follower (in-degree) distribution
+     */
+    public long[] followerDistribution()
+    {
+        return pool.invoke(new DegreeHistogramTask(snapshot, 0, snapshot.getUserCount(), true));
+    }
+
+    /**
+     * Computes how many users follow each number of other users.
+     * Index d of the result is the number of users following exactly d users.
+     *
+     * @return the following (out-degree) distribution
+     */
+    public long[] followingDistribution()
+    {
+        return pool.invoke(new DegreeHistogramTask(snapshot, 0, snapshot.getUserCount(), false));
+    }
+
+    /**
+     * Counts pairs of users who follow each other
+     *
+     * @return the number of mutual-follow pairs
+     */
+    public long mutualFollowPairs()
+    {
+        // Every mutual pair is seen once from each side
+        return pool.invoke(new ReciprocalEdgeTask(snapshot, 0, snapshot.getUserCount())) / 2;
+    }
+
+    /**
+     * Gets the fraction of follow relationships that are returned
+     *
+     * @return reciprocal edges divided by all edges, or 0 for an empty graph
+     */
+    public double reciprocity()
+    {
+        int edgeCount = snapshot.getEdgeCount();
+        return edgeCount == 0 ? 0.0 : (2.0 * mutualFollowPairs()) / edgeCount;
+    }
+
+    /**
+     * Labels every user with a weakly connected component, ignoring edge direction.
+     * Uses union-find with union by size and path halving.
+     *
+     * @return the component root of each dense user index
+     */
+    public int[] weaklyConnectedComponents()
+    {
+        int n = snapshot.getUserCount();
+        int[] parent = new int[n];
+        int[] size = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            parent[i] = i;
+            size[i] = 1;
+        }
+
+        int[] targets = snapshot.getFollowingTargets();
+        for (int u = 0; u < n; u++)
+        {
+            for (int e = snapshot.followingStart(u); e < snapshot.followingEnd(u); e++)
+            {
+                int a = find(parent, u);
+                int b = find(parent, targets[e]);
+                if (a != b)
+                {
+                    if (size[a] < size[b])
+                    {
+                        int tmp = a;
+                        a = b;
+                        b = tmp;
+                    }
+                    parent[b] = a;
+                    size[a] += size[b];
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++)
+        {
+            parent[i] = find(parent, i);
+        }
+        return parent;
+    }
+
+    /**
+     * Finds the root of a union-find set, halving the path on the way
+     *
+     * @param parent the parent array
+     * @param x the element
+     * @return the root of the element's set
+     */
+    private static int find(int[] parent, int x)
+    {
+        while (parent[x] != x)
+        {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Gets the size of every weakly connected component, largest first
+     *
+     * @return the component sizes in descending order
+     */
+    public int[] componentSizes()
+    {
+        int[] roots = weaklyConnectedComponents();
+        int[] counts = new int[roots.length];
+        for (int root : roots)
+        {
+            counts[root]++;
+        }
+
+        int components = 0;
+        for (int count : counts)
+        {
+            if (count > 0) components++;
+        }
+
+        int[] sizes = new int[components];
+        int next = 0;
+        for (int count : counts)
+        {
+            if (count > 0) sizes[next++] = count;
+        }
+        Arrays.sort(sizes);
+        // Reverse into descending order
+        for (int i = 0, j = sizes.length - 1; i < j; i++, j--)
+        {
+            int tmp = sizes[i];
+            sizes[i] = sizes[j];
+            sizes[j] = tmp;
+        }
+        return sizes;
+    }
+
+    /**
+     * Finds the users with the most followers
+     *
+     * @param limit the maximum number of users to return
+     * @return dense user indexes ordered by follower count, highest first
+     */
+    public int[] topInfluencers(int limit)
+    {
+        if (limit <= 0)
+        {
+            return new int[0];
+        }
+
+        // Min-heap of the best candidates seen so far, weakest at the head
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, (a, b) ->
+        {
+            int byFollowers = Integer.compare(snapshot.getFollowerCount(a), snapshot.getFollowerCount(b));
+            return byFollowers != 0 ? byFollowers : Integer.compare(b, a);
+        });
+        for (int i = 0; i < snapshot.getUserCount(); i++)
+        {
+            heap.offer(i);
+            if (heap.size() > limit)
+            {
+                heap.poll();
+            }
+        }
+
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--)
+        {
+            result[i] = heap.poll();
+        }
+        return result;
+    }
+
+    /**
+     * Computes every statistic and writes them as CSV files into a directory:
+     * summary.csv, degree_distribution.csv, components.csv and top_influencers.csv.
+     *
+     * @param directory the directory to write to, created if it does not exist
+     * @param influencerLimit the number of top influencers to export
+     * @return the paths of the files written
+     * @throws IOException if a file cannot be written
+     */
+    public List<Path> exportCsv(String directory, int influencerLimit) throws IOException
+    {
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        List<Path> written = new ArrayList<>();
+
+        long[] inDegrees = followerDistribution();
+        long[] outDegrees = followingDistribution();
+        long mutualPairs = mutualFollowPairs();
+        int[] componentSizes = componentSizes();
+        int[] influencers = topInfluencers(influencerLimit);
+
+        Path summary = dir.resolve("summary.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(summary, StandardCharsets.UTF_8))
+        {
+            int edgeCount = snapshot.getEdgeCount();
+            out.write("metric,value\n");
+            out.write("users," + snapshot.getUserCount() + "\n");
+            out.write("follows," + edgeCount + "\n");
+            out.write("mutual_follow_pairs," + mutualPairs + "\n");
+            out.write("reciprocity," + (edgeCount == 0 ? 0.0 : (2.0 * mutualPairs) / edgeCount) + "\n");
+            out.write("weak_components," + componentSizes.length + "\n");
+            out.write("largest_component," + (componentSizes.length == 0 ? 0 : componentSizes[0]) + "\n");
+        }
+        written.add(summary);
+
+        Path degrees = dir.resolve("degree_distribution.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(degrees, StandardCharsets.UTF_8))
+        {
+            out.write("degree,users_with_followers,users_with_following\n");
+            int maxDegree = Math.max(inDegrees.length, outDegrees.length);
+            for (int d = 0; d < maxDegree; d++)
+            {
+                long in = d < inDegrees.length ? inDegrees[d] : 0;
+                long outCount = d < outDegrees.length ? outDegrees[d] : 0;
+                if (in > 0 || outCount > 0)
+                {
+                    out.write(d + "," + in + "," + outCount + "\n");
+                }
+            }
+        }
+        written.add(degrees);
+
+        Path components = dir.resolve("components.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(components, StandardCharsets.UTF_8))
+        {
+            out.write("rank,size\n");
+            for (int i = 0; i < componentSizes.length; i++)
+            {
+                out.write((i + 1) + "," + componentSizes[i] + "\n");
+            }
+        }
+        written.add(components);
+
+        Path top = dir.resolve("top_influencers.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(top, StandardCharsets.UTF_8))
+        {
+            out.write("rank,userID,username,followers,following\n");
+            for (int i = 0; i < influencers.length; i++)
+            {
+                int user = influencers[i];
+                out.write((i + 1) + "," + snapshot.getUserId(user) + "," +
+                          csvField(snapshot.getUsername(user)) + "," +
+                          snapshot.getFollowerCount(user) + "," + snapshot.getFollowingCount(user) + "\n");
+            }
+        }
+        written.add(top);
+
+        return written;
+    }
+
+    /**
+     * Quotes a value for CSV output when it contains separators or quotes
+     *
+     * @param value the raw value
+     * @return the value escaped for CSV
+     */
+    static String csvField(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+        {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Fork-join task that builds a degree histogram for a range of users
+     */
+    private static class DegreeHistogramTask extends RecursiveTask<long[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final GraphSnapshot snapshot;
+        private final int from;
+        private final int to;
+        private final boolean followers; // true for in-degree, false for out-degree
+
+        DegreeHistogramTask(GraphSnapshot snapshot, int from, int to, boolean followers)
+        {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+            this.followers = followers;
+        }
+
+        @Override
+        protected long[] compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int mid = (from + to) >>> 1;
+                DegreeHistogramTask left = new DegreeHistogramTask(snapshot, from, mid, followers);
+                left.fork();
+                long[] right = new DegreeHistogramTask(snapshot, mid, to, followers).compute();
+                return merge(left.join(), right);
+            }
+
+            int maxDegree = 0;
+            for (int i = from; i < to; i++)
+            {
+                maxDegree = Math.max(maxDegree, degree(i));
+            }
+            long[] histogram = new long[maxDegree + 1];
+            for (int i = from; i < to; i++)
+            {
+                histogram[degree(i)]++;
+            }
+            return histogram;
+        }
+
+        private int degree(int user)
+        {
+            return followers ? snapshot.getFollowerCount(user) : snapshot.getFollowingCount(user);
+        }
+
+        private static long[] merge(long[] a, long[] b)
+        {
+            long[] longer = a.length >= b.length ? a : b;
+            long[] shorter = a.length >= b.length ? b : a;
+            for (int i = 0; i < shorter.length; i++)
+            {
+                longer[i] += shorter[i];
+            }
+            return longer;
+        }
+    }
+
+    /**
+     * Fork-join task that counts edges whose reverse edge also exists, for a range of users
+     */
+    private static class ReciprocalEdgeTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final GraphSnapshot snapshot;
+        private final int from;
+        private final int to;
+
+        ReciprocalEdgeTask(GraphSnapshot snapshot, int from, int to)
+        {
+            this.snapshot = snapshot;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int mid = (from + to) >>> 1;
+                ReciprocalEdgeTask left = new ReciprocalEdgeTask(snapshot, from, mid);
+                left.fork();
+                long right = new ReciprocalEdgeTask(snapshot, mid, to).compute();
+                return left.join() + right;
+            }
+
+            long count = 0;
+            int[] targets = snapshot.getFollowingTargets();
+            for (int u = from; u < to; u++)
+            {
+                for (int e = snapshot.followingStart(u); e < snapshot.followingEnd(u); e++)
+                {
+                    if (snapshot.isFollowing(targets[e], u))
+                    {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
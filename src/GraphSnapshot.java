@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+/**
+ * GraphSnapshot is an immutable, compact copy of the social graph at one point in time.
+ * Users are numbered 0..n-1 in ascending user ID order and the follow relationships are
+ * stored in compressed sparse row form: the users followed by user i are
+ * followingTargets[followingOffsets[i] .. followingOffsets[i + 1]), sorted ascending.
+ * The same layout is used for followers. Readers can work on a snapshot from many
+ * threads at once without holding the Graph lock.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class GraphSnapshot
+{
+    private final long version;             // Graph version the snapshot was taken at
+    private final int[] userIds;            // User ID of each dense index, sorted ascending
+    private final String[] usernames;       // Username of each dense index
+    private final int[] followingOffsets;   // Start of each user's following range, length n + 1
+    private final int[] followingTargets;   // Dense indexes of followed users
+    private final int[] followerOffsets;    // Start of each user's follower range, length n + 1
+    private final int[] followerSources;    // Dense indexes of followers
+
+    /**
+     * Constructs a snapshot from a user list and a list of edges.
+     * The arrays passed in are owned by the snapshot afterwards.
+     *
+     * @param version the graph version the data was copied at
+     * @param userIds the user IDs, sorted ascending
+     * @param usernames the usernames, in the same order as userIds
+     * @param edgeFollowers dense index of the follower of each edge
+     * @param edgeTargets dense index of the followed user of each edge
+     * @param edgeCount the number of edges stored in the edge arrays
+     */
+    GraphSnapshot(long version, int[] userIds, String[] usernames, int[] edgeFollowers, int[] edgeTargets, int edgeCount)
+    {
+        this.version = version;
+        this.userIds = userIds;
+        this.usernames = usernames;
+
+        int n = userIds.length;
+        this.followingOffsets = new int[n + 1];
+        this.followerOffsets = new int[n + 1];
+        this.followingTargets = new int[edgeCount];
+        this.followerSources = new int[edgeCount];
+
+        // Count degrees, then turn the counts into starting offsets
+        for (int e = 0; e < edgeCount; e++)
+        {
+            followingOffsets[edgeFollowers[e] + 1]++;
+            followerOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++)
+        {
+            followingOffsets[i + 1] += followingOffsets[i];
+            followerOffsets[i + 1] += followerOffsets[i];
+        }
+
+        // Scatter the edges into their rows
+        int[] followingFill = Arrays.copyOf(followingOffsets, n);
+        int[] followerFill = Arrays.copyOf(followerOffsets, n);
+        for (int e = 0; e < edgeCount; e++)
+        {
+            followingTargets[followingFill[edgeFollowers[e]]++] = edgeTargets[e];
+            followerSources[followerFill[edgeTargets[e]]++] = edgeFollowers[e];
+        }
+
+        // Sort each row so membership can be checked with a binary search
+        for (int i = 0; i < n; i++)
+        {
+            Arrays.sort(followingTargets, followingOffsets[i], followingOffsets[i + 1]);
+            Arrays.sort(followerSources, followerOffsets[i], followerOffsets[i + 1]);
+        }
+    }
+
+    /**
+     * Gets the graph version this snapshot was taken at
+     *
+     * @return the graph version
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Gets the number of users in the snapshot
+     *
+     * @return the number of users
+     */
+    public int getUserCount()
+    {
+        return userIds.length;
+    }
+
+    /**
+     * Gets the number of follow relationships in the snapshot
+     *
+     * @return the number of edges
+     */
+    public int getEdgeCount()
+    {
+        return followingTargets.length;
+    }
+
+    /**
+     * Gets the dense index of a user ID
+     *
+     * @param userId the user ID
+     * @return the dense index, or -1 if the user is not in the snapshot
+     */
+    public int indexOf(int userId)
+    {
+        int index = Arrays.binarySearch(userIds, userId);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Gets the user ID stored at a dense index
+     *
+     * @param index the dense index
+     * @return the user ID
+     */
+    public int getUserId(int index)
+    {
+        return userIds[index];
+    }
+
+    /**
+     * Gets the username stored at a dense index
+     *
+     * @param index the dense index
+     * @return the username
+     */
+    public String getUsername(int index)
+    {
+        return usernames[index];
+    }
+
+    /**
+     * Gets the number of users a user follows
+     *
+     * @param index the dense index of the user
+     * @return the out-degree
+     */
+    public int getFollowingCount(int index)
+    {
+        return followingOffsets[index + 1] - followingOffsets[index];
+    }
+
+    /**
+     * Gets the number of followers of a user
+     *
+     * @param index the dense index of the user
+     * @return the in-degree
+     */
+    public int getFollowerCount(int index)
+    {
+        return followerOffsets[index + 1] - followerOffsets[index];
+    }
+
+    /**
+     * Gets the start of a user's row in the following arrays
+     *
+     * @param index the dense index of the user
+     * @return the first position of the user's followed users in getFollowingTargets()
+     */
+    public int followingStart(int index)
+    {
+        return followingOffsets[index];
+    }
+
+    /**
+     * Gets the end (exclusive) of a user's row in the following arrays
+     *
+     * @param index the dense index of the user
+     * @return the position after the user's last followed user in getFollowingTargets()
+     */
+    public int followingEnd(int index)
+    {
+        return followingOffsets[index + 1];
+    }
+
+    /**
+     * Gets the start of a user's row in the follower arrays
+     *
+     * @param index the dense index of the user
+     * @return the first position of the user's followers in getFollowerSources()
+     */
+    public int followerStart(int index)
+    {
+        return followerOffsets[index];
+    }
+
+    /**
+     * Gets the end (exclusive) of a user's row in the follower arrays
+     *
+     * @param index the dense index of the user
+     * @return the position after the user's last follower in getFollowerSources()
+     */
+    public int followerEnd(int index)
+    {
+        return followerOffsets[index + 1];
+    }
+
+    /**
+     * Gets the concatenated following rows. Callers must not modify the array.
+     *
+     * @return the dense indexes of followed users for every row
+     */
+    public int[] getFollowingTargets()
+    {
+        return followingTargets;
+    }
+
+    /**
+     * Gets the concatenated follower rows. Callers must not modify the array.
+     *
+     * @return the dense indexes of followers for every row
+     */
+    public int[] getFollowerSources()
+    {
+        return followerSources;
+    }
+
+    /**
+     * Checks whether one user follows another in this snapshot
+     *
+     * @param follower the dense index of the follower
+     * @param target the dense index of the followed user
+     * @return true if the edge exists, false otherwise
+     */
+    public boolean isFollowing(int follower, int target)
+    {
+        return Arrays.binarySearch(followingTargets, followingOffsets[follower],
+                                   followingOffsets[follower + 1], target) >= 0;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * HeavyHitter is one entry of a SpaceSaving summary: a key, its estimated count and the most
+ * the estimate can be above the true count.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class HeavyHitter
+{
+    private final int key;      // Movie or user ID
+    private final long count;   // Estimated count, never below the true count
+    private final long error;   // Largest possible overcount
+
+    /**
+     * Constructs a heavy hitter
+     *
+     * @param key the key
+     * @param count the estimated count
+     * @param error the largest possible overcount
+     */
+    public HeavyHitter(int key, long count, long error)
+    {
+        this.key = key;
+        this.count = count;
+        this.error = error;
+    }
+
+    /**
+     * Get the key
+     * @return the key
+     */
+    public int getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Get the estimated count
+     * @return the count, never below the true count
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Get the largest possible overcount
+     * @return the error bound
+     */
+    public long getError()
+    {
+        return error;
+    }
+
+    /**
+     * Get the count the key is guaranteed to have reached
+     * @return count minus error
+     */
+    public long getGuaranteedCount()
+    {
+        return count - error;
+    }
+}
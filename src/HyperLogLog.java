@@ -0,0 +1,154 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog estimates the number of distinct int values added to it, in fixed memory.
+ * Each value is hashed; the first p bits pick one of 2^p registers and the register keeps
+ * the longest run of leading zeros seen in the rest of the hash. The harmonic mean of the
+ * registers gives the estimate with a standard error of about 1.04 / sqrt(2^p); small counts
+ * use linear counting over the empty registers instead. Sketches with the same precision
+ * merge by taking the larger of each register pair, and can be written to and read from a stream.
+ * Not thread-safe; callers synchronize.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class HyperLogLog
+{
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;    // p, the number of hash bits that pick a register
+    private final byte[] registers; // 2^p registers
+
+    /**
+     * Creates an empty sketch
+     *
+     * @param precision the number of register bits, 4 to 18; the sketch uses 2^precision bytes
+     */
+    public HyperLogLog(int precision)
+    {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+        {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value
+     *
+     * @param value the value, e.g. a user ID
+     */
+    public void add(int value)
+    {
+        // MurmurHash3 fmix64 of the value
+        long h = value * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        int register = (int) (h >>> (64 - precision));
+        // The guard bit caps the rank when the remaining bits are all zero
+        long rest = (h << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[register])
+        {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values added
+     *
+     * @return the estimate
+     */
+    public long estimate()
+    {
+        int m = registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers)
+        {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+            {
+                empty++;
+            }
+        }
+        double alpha;
+        switch (m)
+        {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1 + 1.079 / m);
+        }
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && empty > 0)
+        {
+            estimate = m * Math.log((double) m / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds every value of another sketch into this one
+     *
+     * @param other a sketch with the same precision
+     */
+    public void merge(HyperLogLog other)
+    {
+        if (other.precision != precision)
+        {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++)
+        {
+            if (other.registers[i] > registers[i])
+            {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Writes the sketch to a stream
+     *
+     * @param out the stream
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+
+    /**
+     * Reads a sketch written by writeTo
+     *
+     * @param in the stream
+     * @return the sketch
+     * @throws IOException if reading fails or the data is not a sketch
+     */
+    public static HyperLogLog readFrom(DataInput in) throws IOException
+    {
+        int precision = in.readByte();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+        {
+            throw new IOException("Corrupt HyperLogLog sketch");
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        in.readFully(sketch.registers);
+        return sketch;
+    }
+}
@@ -0,0 +1,123 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IdAllocator hands out unique IDs for one table from a persistent sequence.
+ * The sequence lives in the id_sequences table; each reservation advances it by a whole
+ * block of IDs in one atomic UPDATE, and the block is then handed out from memory with
+ * an AtomicLong, so most allocations cost no I/O and no lock. IDs from a block that is
+ * not used up before the application exits are skipped, leaving gaps but never duplicates,
+ * also across several processes sharing the database.
+ * Block size: -Did.blockSize (default 100).
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class IdAllocator
+{
+    /**
+     * A reserved range of IDs [cursor, end)
+     */
+    private static final class Block
+    {
+        final AtomicLong cursor;
+        final long end;
+
+        Block(long start, long end)
+        {
+            this.cursor = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    private final String sequence;          // Name of the row in id_sequences
+    private final String table;             // Table the IDs are used in
+    private final String column;            // ID column of that table
+    private final int blockSize;            // IDs reserved per database round trip
+    private volatile Block block;           // Block currently being handed out
+
+    /**
+     * Creates an allocator for an ID column, creating its sequence row if needed
+     *
+     * @param sequence the name of the sequence
+     * @param table the table the IDs are used in
+     * @param column the ID column of that table
+     */
+    public IdAllocator(String sequence, String table, String column)
+    {
+        this.sequence = sequence;
+        this.table = table;
+        this.column = column;
+        this.blockSize = Math.max(1, Integer.getInteger("id.blockSize", 100));
+        this.block = new Block(0, 0);
+
+        try
+        {
+            Database.getInstance().executeUpdate("id.createTable",
+                    "CREATE TABLE IF NOT EXISTS id_sequences (name TEXT PRIMARY KEY, next_value INTEGER NOT NULL)");
+            Database.getInstance().executeUpdate("id.seed",
+                    "INSERT OR IGNORE INTO id_sequences (name, next_value) " +
+                    "SELECT ?, COALESCE(MAX(" + column + "), 0) + 1 FROM " + table, sequence);
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to create ID sequence " + sequence + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Allocates the next ID
+     *
+     * @return an ID no other caller has received
+     * @throws IllegalStateException if a new block cannot be reserved
+     */
+    public long next()
+    {
+        while (true)
+        {
+            Block current = block;
+            long id = current.cursor.getAndIncrement();
+            if (id < current.end)
+            {
+                return id;
+            }
+            refill(current);
+        }
+    }
+
+    /**
+     * Replaces an exhausted block with a newly reserved one.
+     * Only the first thread to find the block exhausted reserves; the others reuse its block.
+     *
+     * @param exhausted the block the caller found empty
+     */
+    private synchronized void refill(Block exhausted)
+    {
+        if (block != exhausted)
+        {
+            return;
+        }
+        // Never start below the table's largest ID, in case rows were inserted without the sequence
+        String sql = "UPDATE id_sequences SET next_value = " +
+                     "MAX(next_value, (SELECT COALESCE(MAX(" + column + "), 0) + 1 FROM " + table + ")) + ? " +
+                     "WHERE name = ? RETURNING next_value";
+        try
+        {
+            ResultSet resultSet = Database.getInstance().executeQuery("id.reserve", sql, blockSize, sequence);
+            if (!resultSet.next())
+            {
+                throw new IllegalStateException("ID sequence " + sequence + " does not exist");
+            }
+            long end = resultSet.getLong(1);
+            // Step the statement to completion so the UPDATE is committed before IDs are used
+            while (resultSet.next())
+            {
+            }
+            resultSet.close();
+            block = new Block(end - blockSize, end);
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Failed to reserve IDs from " + sequence + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * IntIntMap is a hash map from primitive int keys to primitive int values.
+ * It uses open addressing with linear probing over two flat int arrays, so neither
+ * keys nor values are boxed. Values must not be negative because -1 marks an
+ * empty slot and is returned for absent keys.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class IntIntMap
+{
+    private static final int DEFAULT_CAPACITY = 16; // Initial number of slots (power of two)
+    private static final float LOAD_FACTOR = 0.5f;  // Resize once half the slots are used
+    private static final int EMPTY = -1;            // Value of an empty slot
+
+    private int[] keys;         // Keys, valid only where the matching value slot is not EMPTY
+    private int[] values;       // Values, EMPTY marks an empty slot
+    private int size;           // Number of stored entries
+    private int mask;           // keys.length - 1, used instead of modulo
+    private int resizeAt;       // Size at which the table doubles
+
+    /**
+     * Constructs an empty map with the default capacity.
+     */
+    public IntIntMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map sized to hold the expected number of entries without resizing.
+     *
+     * @param expectedSize the number of entries the map is expected to hold
+     */
+    public IntIntMap(int expectedSize)
+    {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Allocates empty key and value arrays of the given capacity.
+     *
+     * @param capacity the number of slots, must be a power of two
+     */
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads the bits of a key so sequential IDs do not cluster in adjacent slots.
+     *
+     * @param key the key to hash
+     * @return the starting slot for the key
+     */
+    private int slot(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the value mapped to a key
+     *
+     * @param key the key to look up
+     * @return the mapped value, or -1 if the key is not present
+     */
+    public int get(int key)
+    {
+        int i = slot(key);
+        while (values[i] != EMPTY)
+        {
+            if (keys[i] == key)
+            {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous mapping
+     *
+     * @param key the key
+     * @param value the value, must not be negative
+     * @return the previous value, or -1 if there was none
+     */
+    public int put(int key, int value)
+    {
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("IntIntMap does not support negative values");
+        }
+
+        int i = slot(key);
+        while (values[i] != EMPTY)
+        {
+            if (keys[i] == key)
+            {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt)
+        {
+            resize();
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Removes the mapping for a key.
+     * Uses backward-shift deletion so no tombstones are left behind.
+     *
+     * @param key the key to remove
+     * @return the removed value, or -1 if the key was not present
+     */
+    public int remove(int key)
+    {
+        int i = slot(key);
+        while (values[i] != EMPTY)
+        {
+            if (keys[i] == key)
+            {
+                int removed = values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Closes the gap left at a removed slot by moving later entries of the same probe run back.
+     *
+     * @param gap the slot that was just emptied
+     */
+    private void shiftBack(int gap)
+    {
+        int i = gap;
+        while (true)
+        {
+            i = (i + 1) & mask;
+            if (values[i] == EMPTY)
+            {
+                break;
+            }
+            int home = slot(keys[i]);
+            // Move the entry only if its home slot is not between the gap and its current slot
+            boolean movable = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (movable)
+            {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = EMPTY;
+    }
+
+    /**
+     * Doubles the table and re-inserts every entry
+     */
+    private void resize()
+    {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] != EMPTY)
+            {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Calls an action for every entry, in no particular order
+     *
+     * @param action the action, given each key and its value
+     */
+    public void forEach(EntryConsumer action)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (values[i] != EMPTY)
+            {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries in the map
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes every entry from the map while keeping its capacity
+     */
+    public void clear()
+    {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * An action taking a key and its value without boxing them
+     */
+    public interface EntryConsumer
+    {
+        /**
+         * Performs the action on one entry
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(int key, int value);
+    }
+}
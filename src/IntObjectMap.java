@@ -0,0 +1,247 @@
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * IntObjectMap is a hash map from primitive int keys to object values.
+ * It uses open addressing with linear probing so lookups never box the key
+ * and entries are stored in two flat arrays instead of per-entry node objects.
+ * Null values are not supported because a null slot marks an empty bucket.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ *
+ * @param <V> the type of the mapped values
+ */
+public class IntObjectMap<V>
+{
+    private static final int DEFAULT_CAPACITY = 16; // Initial number of slots (power of two)
+    private static final float LOAD_FACTOR = 0.5f;  // Resize once half the slots are used
+
+    private int[] keys;         // Keys, valid only where the matching value slot is non-null
+    private Object[] values;    // Values, null marks an empty slot
+    private int size;           // Number of stored entries
+    private int mask;           // keys.length - 1, used instead of modulo
+    private int resizeAt;       // Size at which the table doubles
+
+    /**
+     * Constructs an empty map with the default capacity.
+     */
+    public IntObjectMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map sized to hold the expected number of entries without resizing.
+     *
+     * @param expectedSize the number of entries the map is expected to hold
+     */
+    public IntObjectMap(int expectedSize)
+    {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Allocates empty key and value arrays of the given capacity.
+     *
+     * @param capacity the number of slots, must be a power of two
+     */
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads the bits of a key so sequential IDs do not cluster in adjacent slots.
+     *
+     * @param key the key to hash
+     * @return the starting slot for the key
+     */
+    private int slot(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the value mapped to a key
+     *
+     * @param key the key to look up
+     * @return the mapped value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        int i = slot(key);
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+            {
+                return (V) values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a key is present in the map
+     *
+     * @param key the key to check
+     * @return true if the key is mapped to a value, false otherwise
+     */
+    public boolean containsKey(int key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous mapping
+     *
+     * @param key the key
+     * @param value the value, must not be null
+     * @return the previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("IntObjectMap does not support null values");
+        }
+
+        int i = slot(key);
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+            {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt)
+        {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for a key.
+     * Uses backward-shift deletion so no tombstones are left behind.
+     *
+     * @param key the key to remove
+     * @return the removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key)
+    {
+        int i = slot(key);
+        while (values[i] != null)
+        {
+            if (keys[i] == key)
+            {
+                V removed = (V) values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Closes the gap left at a removed slot by moving later entries of the same probe run back.
+     *
+     * @param gap the slot that was just emptied
+     */
+    private void shiftBack(int gap)
+    {
+        int i = gap;
+        while (true)
+        {
+            i = (i + 1) & mask;
+            if (values[i] == null)
+            {
+                break;
+            }
+            int home = slot(keys[i]);
+            // Move the entry only if its home slot is not between the gap and its current slot
+            boolean movable = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (movable)
+            {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    /**
+     * Doubles the table and re-inserts every entry
+     */
+    @SuppressWarnings("unchecked")
+    private void resize()
+    {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Calls an action for every entry, in no particular order
+     *
+     * @param action the action, given the value and its key
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjIntConsumer<V> action)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (values[i] != null)
+            {
+                action.accept((V) values[i], keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries in the map
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes every entry from the map while keeping its capacity
+     */
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,554 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * JobScheduler runs work that keeps derived data up to date off the request path, such as
+ * graph snapshots and sketch checkpoints. Each job has a name and is either periodic or
+ * on-demand; both kinds can also be started with runNow or through JMX.
+ *
+ * A single timer thread only decides when a run is due; runs themselves go to a worker
+ * executor (virtual threads where the JVM has them, otherwise a cached pool of daemon threads).
+ * Periodic intervals are jittered by up to -Djobs.jitter (default 0.1) of the interval either
+ * way, so jobs with the same interval do not keep firing together. Runs are single-flight:
+ * a periodic run that comes due while the previous one is still going is skipped, and runNow
+ * during a run returns the future of the run already in progress.
+ *
+ * Shutdown cancels every job cooperatively: no new runs start, running jobs see isCancelled
+ * and return early, and the caller waits for them up to a timeout before the database closes.
+ * Runs, failures, skips and run times per job are exposed as the MBean
+ * "MovieReviewSocialNetwork:type=JobScheduler".
+ * Implements the Singleton pattern so the console, the HTTP service and their jobs share one scheduler.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class JobScheduler implements JobSchedulerMXBean
+{
+    private static final String MBEAN_NAME = "MovieReviewSocialNetwork:type=JobScheduler";
+
+    private static JobScheduler instance;       // Singleton instance
+
+    /**
+     * A registered job, its schedule, its in-flight run and its metrics
+     */
+    public final class Job
+    {
+        private final String name;
+        private final ScheduledJob work;
+        private final long intervalMillis;                                  // 0 for on-demand jobs
+        private final AtomicReference<CompletableFuture<Boolean>> current;  // The run in progress, if any
+        private final LatencyHistogram runTimes;
+        private final LongAdder runs;
+        private final LongAdder failures;
+        private final LongAdder skipped;
+        private final LongAdder cancellations;                              // Runs ended by cancellation
+        private volatile ScheduledFuture<?> nextRun;
+        private volatile boolean cancelled;
+
+        /**
+         * Creates a job
+         *
+         * @param name the job name
+         * @param work the work of one run
+         * @param intervalMillis the mean time between periodic runs, or 0 for an on-demand job
+         */
+        private Job(String name, ScheduledJob work, long intervalMillis)
+        {
+            this.name = name;
+            this.work = work;
+            this.intervalMillis = intervalMillis;
+            this.current = new AtomicReference<>();
+            this.runTimes = new LatencyHistogram();
+            this.runs = new LongAdder();
+            this.failures = new LongAdder();
+            this.skipped = new LongAdder();
+            this.cancellations = new LongAdder();
+        }
+
+        /**
+         * Starts a run now unless one is already in progress
+         *
+         * @return a future completed with true if the run finished, or false if it failed or
+         *         was cancelled; the in-progress run's future if there is one
+         */
+        public CompletableFuture<Boolean> runNow()
+        {
+            CompletableFuture<Boolean> run = new CompletableFuture<>();
+            while (true)
+            {
+                CompletableFuture<Boolean> running = current.get();
+                if (running != null)
+                {
+                    return running;
+                }
+                if (cancelled)
+                {
+                    run.complete(false);
+                    return run;
+                }
+                if (current.compareAndSet(null, run))
+                {
+                    break;
+                }
+            }
+            try
+            {
+                workers.execute(() -> execute(run));
+            }
+            catch (RejectedExecutionException e)
+            {
+                current.set(null);
+                run.complete(false);
+            }
+            return run;
+        }
+
+        /**
+         * Does one run on a worker thread and records its outcome
+         *
+         * @param run the future to complete when the run ends
+         */
+        private void execute(CompletableFuture<Boolean> run)
+        {
+            long start = System.nanoTime();
+            boolean finished = false;
+            try
+            {
+                work.run(this);
+                finished = !cancelled;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (Exception e)
+            {
+                if (!cancelled)
+                {
+                    failures.increment();
+                    System.err.println("Job " + name + " failed: " + e.getMessage());
+                }
+            }
+            finally
+            {
+                runTimes.record(System.nanoTime() - start);
+                runs.increment();
+                if (cancelled)
+                {
+                    cancellations.increment();
+                }
+                current.set(null);
+                run.complete(finished);
+            }
+        }
+
+        /**
+         * Runs the job if it is free and schedules the next periodic run
+         */
+        private void trigger()
+        {
+            if (cancelled)
+            {
+                return;
+            }
+            if (current.get() != null)
+            {
+                skipped.increment();
+            }
+            else
+            {
+                runNow();
+            }
+            scheduleNext();
+        }
+
+        /**
+         * Schedules the next periodic run one jittered interval from now
+         */
+        private void scheduleNext()
+        {
+            double offset = (ThreadLocalRandom.current().nextDouble() * 2 - 1) * jitter;
+            long delay = Math.max(1, Math.round(intervalMillis * (1 + offset)));
+            try
+            {
+                nextRun = timer.schedule(this::trigger, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The scheduler is shutting down
+            }
+        }
+
+        /**
+         * Stops future runs and asks a run in progress to return early
+         */
+        public void cancel()
+        {
+            cancelled = true;
+            ScheduledFuture<?> next = nextRun;
+            if (next != null)
+            {
+                next.cancel(false);
+            }
+        }
+
+        /**
+         * Checks whether the job has been cancelled, for runs to poll between steps
+         *
+         * @return true once the job or the scheduler has been shut down
+         */
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        /**
+         * Checks whether a run is in progress
+         *
+         * @return true while a run is going
+         */
+        public boolean isRunning()
+        {
+            return current.get() != null;
+        }
+
+        /**
+         * Gets the job name
+         * @return the name
+         */
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    private final ScheduledExecutorService timer;   // Fires periodic runs
+    private final ExecutorService workers;          // Does the runs
+    private final double jitter;                    // Largest interval change as a fraction of the interval
+    private final Map<String, Job> jobs;            // Jobs by name, in registration order
+    private boolean shutDown;
+
+    /**
+     * Creates a scheduler
+     *
+     * @param jitter the largest change to a periodic interval as a fraction of it, between 0 and 1
+     */
+    JobScheduler(double jitter)
+    {
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        this.jobs = new LinkedHashMap<>();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = newWorkerExecutor();
+    }
+
+    /**
+     * Gets the singleton instance of JobScheduler, registering its MBean on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized JobScheduler getInstance()
+    {
+        if (instance == null)
+        {
+            String jitter = System.getProperty("jobs.jitter", "0.1");
+            instance = new JobScheduler(Double.parseDouble(jitter));
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(MBEAN_NAME));
+            }
+            catch (Exception e)
+            {
+                System.err.println("Job scheduler MBean not registered: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor when available, otherwise a cached pool of daemon threads
+     *
+     * @return the executor runs happen on
+     */
+    private static ExecutorService newWorkerExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "job-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Registers a job that runs about every intervalMillis, the first time one jittered interval from now
+     *
+     * @param name a unique short name used in the metrics
+     * @param intervalMillis the mean time between runs
+     * @param work the work of one run
+     * @return the registered job
+     * @throws IllegalArgumentException if the name is taken or the interval is not positive
+     * @throws IllegalStateException if the scheduler has shut down
+     */
+    public synchronized Job schedule(String name, long intervalMillis, ScheduledJob work)
+    {
+        if (intervalMillis <= 0)
+        {
+            throw new IllegalArgumentException("Job interval must be positive: " + name);
+        }
+        Job job = add(name, work, intervalMillis);
+        job.scheduleNext();
+        return job;
+    }
+
+    /**
+     * Registers a job that only runs when started with runNow or through JMX
+     *
+     * @param name a unique short name used in the metrics
+     * @param work the work of one run
+     * @return the registered job
+     * @throws IllegalArgumentException if the name is taken
+     * @throws IllegalStateException if the scheduler has shut down
+     */
+    public synchronized Job register(String name, ScheduledJob work)
+    {
+        return add(name, work, 0);
+    }
+
+    /**
+     * Adds a job to the registry
+     *
+     * @param name the job name
+     * @param work the work of one run
+     * @param intervalMillis the mean time between periodic runs, or 0 for an on-demand job
+     * @return the new job
+     */
+    private Job add(String name, ScheduledJob work, long intervalMillis)
+    {
+        if (shutDown)
+        {
+            throw new IllegalStateException("Job scheduler has shut down");
+        }
+        if (jobs.containsKey(name))
+        {
+            throw new IllegalArgumentException("Job already registered: " + name);
+        }
+        Job job = new Job(name, work, intervalMillis);
+        jobs.put(name, job);
+        return job;
+    }
+
+    /**
+     * Gets a registered job
+     *
+     * @param name the job name
+     * @return the job, or null if there is none with that name
+     */
+    public synchronized Job getJob(String name)
+    {
+        return jobs.get(name);
+    }
+
+    /**
+     * Starts a run of a job unless one is already in progress
+     *
+     * @param name the job name
+     * @return the future of the run, or null if there is no job with that name
+     */
+    public CompletableFuture<Boolean> runNow(String name)
+    {
+        Job job = getJob(name);
+        return job == null ? null : job.runNow();
+    }
+
+    /**
+     * Cancels every job and waits up to -Djobs.shutdownTimeoutSeconds (default 5) for runs in progress
+     *
+     * @return true if no run was still going when this returned
+     */
+    public boolean shutdown()
+    {
+        return shutdown(TimeUnit.SECONDS.toMillis(Long.getLong("jobs.shutdownTimeoutSeconds", 5)));
+    }
+
+    /**
+     * Cancels every job and waits for runs in progress to return. Runs still going when
+     * the timeout passes are interrupted. Later calls return immediately.
+     *
+     * @param timeoutMillis the longest time to wait for runs in progress
+     * @return true if no run was still going when this returned
+     */
+    public boolean shutdown(long timeoutMillis)
+    {
+        List<Job> registered;
+        synchronized (this)
+        {
+            shutDown = true;
+            registered = new ArrayList<>(jobs.values());
+        }
+        timer.shutdownNow();
+        for (Job job : registered)
+        {
+            job.cancel();
+        }
+        // A runNow racing with the cancels may still start a run, so wait for the workers
+        // themselves rather than for the runs seen here
+        workers.shutdown();
+
+        boolean finished;
+        try
+        {
+            finished = workers.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        if (!finished)
+        {
+            workers.shutdownNow();
+            System.err.println("Background jobs still running at shutdown were interrupted.");
+        }
+        return finished;
+    }
+
+    /**
+     * Takes a copy of the registered jobs
+     *
+     * @return the jobs in registration order
+     */
+    private synchronized Job[] jobs()
+    {
+        return jobs.values().toArray(new Job[0]);
+    }
+
+    @Override
+    public String[] getJobNames()
+    {
+        Job[] all = jobs();
+        String[] names = new String[all.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            names[i] = all[i].name;
+        }
+        return names;
+    }
+
+    @Override
+    public long[] getRunCounts()
+    {
+        Job[] all = jobs();
+        long[] counts = new long[all.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            counts[i] = all[i].runs.sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public long[] getFailureCounts()
+    {
+        Job[] all = jobs();
+        long[] counts = new long[all.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            counts[i] = all[i].failures.sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public long[] getSkippedCounts()
+    {
+        Job[] all = jobs();
+        long[] counts = new long[all.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            counts[i] = all[i].skipped.sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public double[] getP99RunMillis()
+    {
+        Job[] all = jobs();
+        double[] millis = new double[all.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            millis[i] = all[i].runTimes.getValueAtPercentile(99) / 1e6;
+        }
+        return millis;
+    }
+
+    @Override
+    public boolean[] getRunningFlags()
+    {
+        Job[] all = jobs();
+        boolean[] flags = new boolean[all.length];
+        for (int i = 0; i < all.length; i++)
+        {
+            flags[i] = all[i].isRunning();
+        }
+        return flags;
+    }
+
+    @Override
+    public String dumpText()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-20s %10s %7s %7s %7s %9s %10s %10s %10s%n",
+                "job", "every(s)", "runs", "failed", "skipped", "cancelled", "mean(ms)", "p99(ms)", "max(ms)"));
+        for (Job job : jobs())
+        {
+            LatencyHistogram runTimes = job.runTimes;
+            sb.append(String.format(Locale.ROOT, "%-20s %10s %7d %7d %7d %9d %10.1f %10.1f %10.1f%n",
+                    job.name, job.intervalMillis == 0 ? "on demand" : String.format(Locale.ROOT, "%.1f", job.intervalMillis / 1e3),
+                    job.runs.sum(), job.failures.sum(), job.skipped.sum(), job.cancellations.sum(),
+                    runTimes.getMean() / 1e6,
+                    runTimes.getValueAtPercentile(99) / 1e6,
+                    runTimes.getMax() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean runJob(String name)
+    {
+        Job job = getJob(name);
+        if (job == null || job.isCancelled())
+        {
+            return false;
+        }
+        job.runNow();
+        return true;
+    }
+}
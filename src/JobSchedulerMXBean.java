@@ -0,0 +1,51 @@
+/**
+ * Management interface for JobScheduler, registered with the platform MBean server
+ * as "MovieReviewSocialNetwork:type=JobScheduler" so background jobs can be watched and
+ * started with JConsole or any other JMX client. Per-job arrays follow getJobNames.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface JobSchedulerMXBean
+{
+    /**
+     * @return the job names in registration order
+     */
+    String[] getJobNames();
+
+    /**
+     * @return the number of runs each job has finished, including failed and cancelled runs
+     */
+    long[] getRunCounts();
+
+    /**
+     * @return the number of runs of each job that threw
+     */
+    long[] getFailureCounts();
+
+    /**
+     * @return the number of periodic runs of each job skipped because the previous run was still going
+     */
+    long[] getSkippedCounts();
+
+    /**
+     * @return the 99th percentile run time of each job, in milliseconds
+     */
+    double[] getP99RunMillis();
+
+    /**
+     * @return whether each job is running now
+     */
+    boolean[] getRunningFlags();
+
+    /**
+     * @return all job statistics as a plain-text table
+     */
+    String dumpText();
+
+    /**
+     * Starts a run of a job unless one is already going
+     *
+     * @param name the job name
+     * @return false if there is no job with that name or the scheduler has shut down
+     */
+    boolean runJob(String name);
+}
@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Json is a small JSON reader and writer for the HTTP service.
+ * Parsing produces Map (objects), List (arrays), String, Double, Boolean or null;
+ * writing accepts the same types plus any Number and arrays of values.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class Json
+{
+    private final String text;  // The JSON text being parsed
+    private int pos;            // Current parse position
+
+    /**
+     * Private constructor, use parse()
+     *
+     * @param text the JSON text
+     */
+    private Json(String text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON document
+     *
+     * @param text the JSON text
+     * @return the parsed value
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public static Object parse(String text)
+    {
+        Json parser = new Json(text);
+        parser.skipWhitespace();
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.pos != text.length())
+        {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    /**
+     * Parses a JSON document that must be an object
+     *
+     * @param text the JSON text, an empty body counts as an empty object
+     * @return the parsed object
+     * @throws IllegalArgumentException if the text is not a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text)
+    {
+        if (text == null || text.trim().isEmpty())
+        {
+            return new LinkedHashMap<>();
+        }
+        Object value = parse(text);
+        if (!(value instanceof Map))
+        {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private Object readValue()
+    {
+        if (pos >= text.length())
+        {
+            throw error("Unexpected end of input");
+        }
+        char c = text.charAt(pos);
+        switch (c)
+        {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                expect("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject()
+    {
+        Map<String, Object> object = new LinkedHashMap<>();
+        pos++; // {
+        skipWhitespace();
+        if (peek() == '}')
+        {
+            pos++;
+            return object;
+        }
+        while (true)
+        {
+            skipWhitespace();
+            if (peek() != '"')
+            {
+                throw error("Expected a field name");
+            }
+            String key = readString();
+            skipWhitespace();
+            if (peek() != ':')
+            {
+                throw error("Expected ':'");
+            }
+            pos++;
+            skipWhitespace();
+            object.put(key, readValue());
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == '}')
+            {
+                return object;
+            }
+            if (c != ',')
+            {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray()
+    {
+        List<Object> array = new ArrayList<>();
+        pos++; // [
+        skipWhitespace();
+        if (peek() == ']')
+        {
+            pos++;
+            return array;
+        }
+        while (true)
+        {
+            skipWhitespace();
+            array.add(readValue());
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == ']')
+            {
+                return array;
+            }
+            if (c != ',')
+            {
+                throw error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString()
+    {
+        StringBuilder sb = new StringBuilder();
+        pos++; // opening quote
+        while (pos < text.length())
+        {
+            char c = text.charAt(pos++);
+            if (c == '"')
+            {
+                return sb.toString();
+            }
+            if (c != '\\')
+            {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length())
+            {
+                break;
+            }
+            char escaped = text.charAt(pos++);
+            switch (escaped)
+            {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > text.length())
+                    {
+                        throw error("Invalid unicode escape");
+                    }
+                    sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double readNumber()
+    {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0)
+        {
+            pos++;
+        }
+        if (start == pos)
+        {
+            throw error("Unexpected character '" + text.charAt(pos) + "'");
+        }
+        try
+        {
+            return Double.valueOf(text.substring(start, pos));
+        }
+        catch (NumberFormatException e)
+        {
+            throw error("Invalid number");
+        }
+    }
+
+    private void expect(String literal)
+    {
+        if (!text.startsWith(literal, pos))
+        {
+            throw error("Expected " + literal);
+        }
+        pos += literal.length();
+    }
+
+    private char peek()
+    {
+        if (pos >= text.length())
+        {
+            throw error("Unexpected end of input");
+        }
+        return text.charAt(pos);
+    }
+
+    private void skipWhitespace()
+    {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+        {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+
+    /**
+     * Serialises a value as JSON
+     *
+     * @param value a Map, Iterable, array, String, Number, Boolean or null
+     * @return the JSON text
+     */
+    public static String write(Object value)
+    {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder sb, Object value)
+    {
+        if (value == null)
+        {
+            sb.append("null");
+        }
+        else if (value instanceof String)
+        {
+            quote(sb, (String) value);
+        }
+        else if (value instanceof Number || value instanceof Boolean)
+        {
+            sb.append(value);
+        }
+        else if (value instanceof Map)
+        {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                if (!first) sb.append(',');
+                first = false;
+                quote(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                write(sb, entry.getValue());
+            }
+            sb.append('}');
+        }
+        else if (value instanceof Iterable)
+        {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : (Iterable<?>) value)
+            {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, item);
+            }
+            sb.append(']');
+        }
+        else if (value instanceof Object[])
+        {
+            write(sb, java.util.Arrays.asList((Object[]) value));
+        }
+        else
+        {
+            quote(sb, value.toString());
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s)
+    {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch (c)
+            {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
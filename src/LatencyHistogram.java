@@ -0,0 +1,147 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations in nanoseconds into log-linear buckets:
+ * every power of two is split into eight equal sub-buckets, so any reported
+ * percentile is within 12.5% of the true value. Recording is a handful of
+ * bit operations and one atomic increment, cheap enough for every query.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;                       // 8 sub-buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder total = new LongAdder();        // Number of recorded values
+    private final LongAdder sum = new LongAdder();          // Sum of recorded values
+    private final AtomicLong max = new AtomicLong();        // Largest recorded value
+
+    /**
+     * Records one duration
+     *
+     * @param nanos the duration in nanoseconds, negative values are treated as 0
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.increment();
+        sum.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+        {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Finds the bucket a value falls into
+     *
+     * @param value a non-negative value
+     * @return the bucket index
+     */
+    private static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the largest value that falls into a bucket
+     *
+     * @param bucket the bucket index
+     * @return the bucket's inclusive upper bound
+     */
+    private static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    /**
+     * Gets the number of recorded values
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return total.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values
+     *
+     * @return the mean in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean()
+    {
+        long count = total.sum();
+        return count == 0 ? 0.0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Gets the largest recorded value
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Estimates the value at a percentile
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding that percentile, in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long count = total.sum();
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            seen += counts.get(bucket);
+            if (seen >= rank)
+            {
+                return Math.min(upperBoundOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all recorded values
+     */
+    public void reset()
+    {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            counts.set(bucket, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
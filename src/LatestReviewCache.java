@@ -0,0 +1,159 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LatestReviewCache keeps each user's most recent review in memory so profiles, the feed
+ * and follow recommendations do not query the reviews table for every user shown.
+ * Users without reviews are cached too. Up to -Dcache.latestReviews.size users
+ * (default 10000) are kept, least recently used first out.
+ *
+ * Entries are loaded by User.getLatestReview on a miss and dropped when the DomainEventBus
+ * reports a review by that user being published, updated, deleted or liked; a merged movie
+ * empties the cache. Events are handled asynchronously, so while the bus has events older
+ * than -Devents.maxStalenessMillis (default 100) that the cache has not handled, lookups miss
+ * and go to the database. A read that started before an invalidation is not cached.
+ * Implements the Singleton pattern so all lookups share one cache.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class LatestReviewCache implements DomainEventSubscriber
+{
+    /**
+     * Returned by get for a user known to have no reviews
+     */
+    public static final Review NONE = new Review(0, null, 0, 0, 0, null, 0);
+
+    private static LatestReviewCache instance;  // Singleton instance
+
+    private final LinkedHashMap<Integer, Review> entries;   // User ID to latest review or NONE, in access order
+    private final long maxStalenessNanos;                   // Longest unhandled event age served from memory
+    private DomainEventBus.Subscription subscription;       // Event feed, null until subscribed
+    private long invalidations;                             // Bumped on every invalidation, see readStamp
+
+    /**
+     * Creates an empty cache
+     *
+     * @param maximumSize the maximum number of users
+     * @param maxStalenessMillis the longest time an unhandled event may wait before lookups bypass the cache
+     */
+    LatestReviewCache(final int maximumSize, long maxStalenessMillis)
+    {
+        this.entries = new LinkedHashMap<Integer, Review>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Review> eldest)
+            {
+                return size() > maximumSize;
+            }
+        };
+        this.maxStalenessNanos = maxStalenessMillis * 1000000L;
+    }
+
+    /**
+     * Gets the singleton instance of LatestReviewCache, subscribing it to the event bus on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized LatestReviewCache getInstance()
+    {
+        if (instance == null)
+        {
+            LatestReviewCache cache = new LatestReviewCache(Math.max(1, Integer.getInteger("cache.latestReviews.size", 10000)),
+                    Long.getLong("events.maxStalenessMillis", 100));
+            cache.subscription = DomainEventBus.getInstance().subscribe("latest-reviews", cache);
+            instance = cache;
+        }
+        return instance;
+    }
+
+    /**
+     * Gets a user's cached latest review
+     *
+     * @param userID the user ID
+     * @return a copy of the review, NONE if the user has no reviews, or null on a miss
+     */
+    public synchronized Review get(int userID)
+    {
+        if (subscription != null && !subscription.isCurrent(maxStalenessNanos))
+        {
+            return null;
+        }
+        Review review = entries.get(userID);
+        return review == null || review == NONE ? review : copy(review);
+    }
+
+    /**
+     * Gets a stamp to take before reading from the database, to pass to put afterwards
+     *
+     * @return the current invalidation count
+     */
+    public synchronized long readStamp()
+    {
+        return invalidations;
+    }
+
+    /**
+     * Caches a user's latest review read from the database, unless something was invalidated since the read began
+     *
+     * @param userID the user ID
+     * @param review the latest review, or null if the user has none
+     * @param stamp the value of readStamp taken before the read
+     */
+    public synchronized void put(int userID, Review review, long stamp)
+    {
+        if (stamp == invalidations)
+        {
+            entries.put(userID, review == null ? NONE : copy(review));
+        }
+    }
+
+    /**
+     * Copies a review so callers cannot change the cached one
+     *
+     * @param review the review
+     * @return a copy
+     */
+    private static Review copy(Review review)
+    {
+        return new Review(review.getReviewID(), review.getText(), review.getRating(), review.getUserID(),
+                review.getMovieID(), review.getReviewDate(), review.getLikeCount());
+    }
+
+    /**
+     * Applies an event from the bus
+     *
+     * @param event the event
+     * @param endOfBatch true for the last event currently available
+     */
+    @Override
+    public synchronized void onEvent(DomainEvent event, boolean endOfBatch)
+    {
+        switch (event.getType())
+        {
+            case REVIEW_PUBLISHED:
+            case REVIEW_UPDATED:
+            case REVIEW_DELETED:
+                invalidations++;
+                entries.remove(event.getUserID());
+                break;
+            case REVIEW_LIKED:
+                invalidations++;
+                entries.remove(event.getTargetID());
+                break;
+            case MOVIE_MERGED:
+                // Any cached review may belong to the merged movie; merges are rare
+                clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Removes every entry
+     */
+    public synchronized void clear()
+    {
+        invalidations++;
+        entries.clear();
+    }
+}
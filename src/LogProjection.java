@@ -0,0 +1,466 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+/**
+ * LogProjection keeps the reviews, Likes and UserFollower tables in step with the EventLog.
+ * Writers append a record to the log and then call catchUpTo, which applies every durable
+ * record up to theirs in sequence order, so the tables always show a prefix of the log.
+ * The sequence applied last is stored in the event_log_position table, and startup applies
+ * whatever came after it, e.g. records appended just before a crash.
+ *
+ * Every record is applied so that applying it again leaves the same result (a created review
+ * is inserted only if its ID is free, a like or follow only if it is not there yet), so
+ * replaying a few records after a crash between a change and the position update is harmless.
+ * Each record is a single statement; a like's likeCount increment is done by a trigger on Likes,
+ * so it cannot be lost between the insert and a separate update.
+ * This lets writers apply their record without a transaction: the shared connection may have
+ * other threads' statements open, and SQLite cannot commit a transaction while it does.
+ * Catching up at startup and rebuilding use transactions of BATCH_SIZE records instead.
+ * A merged movie's record moves its reviews to the movie it was merged into; the Movies table
+ * itself is not part of the projection.
+ *
+ * The first time the log is used with a database that already has data, that data is written
+ * to the log as created, liked and followed records, so the log holds the full history from then on.
+ * The position is marked as bootstrapping until the last of those records is durable, so an
+ * interrupted bootstrap is recognised instead of being mistaken for a complete log.
+ * An empty database without a stored position next to a non-empty log (e.g. a fresh database) is
+ * rebuilt from the log, as any database is when started with -Deventlog.rebuild=true.
+ * Startup refuses to continue rather than guess when the tables could be lost or writes skipped:
+ * when the position cannot be read, a bootstrap was interrupted, the stored position is ahead
+ * of the log (e.g. a different -Deventlog.dir), or a database with data has no position.
+ * Implements the Singleton pattern so all writers share one projection.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class LogProjection
+{
+    private static final String PROJECTION_NAME = "sqlite";    // Row in event_log_position
+    private static final int BATCH_SIZE = 10000;               // Records per transaction when catching up
+    private static final int OUTCOME_WINDOW = 4096;            // Recent records whose outcome is kept (power of two)
+    private static final long NO_POSITION = -1;                // No position stored yet
+    private static final long BOOTSTRAPPING = -2;              // Stored while the database is written to the log
+
+    private static LogProjection instance;                     // Singleton instance
+
+    private final EventLog log;         // Log being projected
+    private IdAllocator reviewIds;      // Review IDs for created records, made after catching up
+    private EventLogReader reader;      // Positioned after the last applied record
+    private long position;              // Sequence of the last applied record
+    // Whether each recent record changed the database, by sequence modulo OUTCOME_WINDOW, so a
+    // writer whose record was applied by another writer's catch-up can still learn the outcome
+    private final boolean[] outcomes = new boolean[OUTCOME_WINDOW];
+
+    /**
+     * Creates a projection of a log
+     *
+     * @param log the event log
+     */
+    LogProjection(EventLog log)
+    {
+        this.log = log;
+    }
+
+    /**
+     * Gets the projection of the shared EventLog, bringing the database up to date on first use
+     *
+     * @return the singleton instance
+     * @throws IllegalStateException if the database and the log do not belong together or the
+     *         position cannot be read, so starting could lose data
+     */
+    public static synchronized LogProjection getInstance()
+    {
+        if (instance == null)
+        {
+            LogProjection projection = new LogProjection(EventLog.getInstance());
+            projection.open();
+            instance = projection;
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the position table and indexes, then bootstraps, rebuilds or catches up
+     *
+     * @throws IllegalStateException if starting could lose data
+     */
+    private synchronized void open()
+    {
+        Database db = Database.getInstance();
+        try
+        {
+            db.executeUpdate("projection.createTable",
+                    "CREATE TABLE IF NOT EXISTS event_log_position (name TEXT PRIMARY KEY, sequence INTEGER NOT NULL)");
+            db.executeUpdate("projection.likesIndex",
+                    "CREATE INDEX IF NOT EXISTS idx_likes_review_user ON Likes (reviewID, userID)");
+            db.executeUpdate("projection.likeCountTrigger",
+                    "CREATE TRIGGER IF NOT EXISTS trg_likes_count AFTER INSERT ON Likes BEGIN " +
+                    "UPDATE reviews SET likeCount = likeCount + 1 WHERE reviewID = NEW.reviewID; END");
+            db.executeUpdate("projection.followsIndex",
+                    "CREATE INDEX IF NOT EXISTS idx_userfollower_user_follower ON UserFollower (userID, followerID)");
+            db.executeUpdate("projection.reviewsMovieIndex",
+                    "CREATE INDEX IF NOT EXISTS idx_reviews_movie ON reviews (movieID)");
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to prepare the event log projection: " + e.getMessage());
+        }
+
+        long stored;
+        boolean hasData;
+        try
+        {
+            stored = storedPosition();
+            hasData = stored == NO_POSITION && hasProjectedRows();
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Cannot read the event log position: " + e.getMessage(), e);
+        }
+        File directory = log.getDirectory();
+
+        if (stored == BOOTSTRAPPING && log.getLastSequence() > 0)
+        {
+            throw new IllegalStateException("Writing the database to the event log in " + directory +
+                    " was interrupted. Delete that directory and start again.");
+        }
+        if (stored > log.getLastSequence())
+        {
+            throw new IllegalStateException("The database has applied event log records up to " + stored +
+                    " but the log in " + directory + " ends at " + log.getLastSequence() +
+                    ". Start with the log this database was used with (-Deventlog.dir).");
+        }
+
+        if ((stored == NO_POSITION || stored == BOOTSTRAPPING) && log.getDurableSequence() == 0)
+        {
+            bootstrap();
+        }
+        else if (Boolean.getBoolean("eventlog.rebuild"))
+        {
+            rebuild();
+        }
+        else if (stored == NO_POSITION)
+        {
+            if (hasData)
+            {
+                throw new IllegalStateException("The database has reviews, likes or follows that were never written to" +
+                        " the event log in " + directory + ". Start with -Deventlog.rebuild=true to replace them with" +
+                        " the log, or move the log away to write the database to a new one.");
+            }
+            rebuild();
+        }
+        else
+        {
+            position = stored;
+            reader = log.openReader(position + 1);
+            catchUp();
+        }
+    }
+
+    /**
+     * Checks whether any of the projected tables has a row
+     *
+     * @return true if reviews, Likes or UserFollower is not empty
+     * @throws SQLException if the database fails
+     */
+    private boolean hasProjectedRows() throws SQLException
+    {
+        ResultSet resultSet = Database.getInstance().executeQuery("projection.hasRows",
+                "SELECT EXISTS (SELECT 1 FROM reviews) OR EXISTS (SELECT 1 FROM Likes) OR EXISTS (SELECT 1 FROM UserFollower)");
+        boolean hasRows = resultSet.next() && resultSet.getBoolean(1);
+        resultSet.close();
+        return hasRows;
+    }
+
+    /**
+     * Applies every durable record that has not been applied yet, in batched transactions.
+     * Meant for startup, before other threads use the database.
+     *
+     * @return the number of records applied
+     */
+    public synchronized long catchUp()
+    {
+        long before = position;
+        apply(log.getDurableSequence(), true);
+        return position - before;
+    }
+
+    /**
+     * Applies every record up to and including a sequence, normally one the caller just appended.
+     * Another writer may already have applied it while catching up to a later record.
+     *
+     * @param sequence the sequence
+     * @return true if that record changed the database, false if it had no effect
+     *         (e.g. it updated a review that no longer exists), failed, or was applied too long ago
+     */
+    public synchronized boolean catchUpTo(long sequence)
+    {
+        apply(sequence, false);
+        return sequence <= position && position - sequence < OUTCOME_WINDOW
+                && outcomes[(int) (sequence & (OUTCOME_WINDOW - 1))];
+    }
+
+    /**
+     * Allocates the ID of a review about to be appended as a created record.
+     * Runs under the projection's lock because reserving a block of IDs is a write on the shared
+     * connection that takes several calls, and a record applied in between would fail to commit.
+     *
+     * @return an unused review ID
+     * @throws IllegalStateException if no ID can be reserved
+     */
+    public synchronized long nextReviewID()
+    {
+        if (reviewIds == null)
+        {
+            reviewIds = new IdAllocator("reviews", "reviews", "reviewID");
+        }
+        return reviewIds.next();
+    }
+
+    /**
+     * Empties the projected tables and applies the whole log again.
+     * In-memory copies of the tables (ReviewStore, Graph) are not refreshed, so this should
+     * run before they are loaded.
+     */
+    public synchronized void rebuild()
+    {
+        Database db = Database.getInstance();
+        try
+        {
+            db.executeUpdate("projection.clearReviews", "DELETE FROM reviews");
+            db.executeUpdate("projection.clearLikes", "DELETE FROM Likes");
+            db.executeUpdate("projection.clearFollows", "DELETE FROM UserFollower");
+            savePosition(0);
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to clear tables for rebuild: " + e.getMessage());
+            return;
+        }
+        if (reader != null)
+        {
+            reader.close();
+        }
+        position = 0;
+        reader = log.openReader(1);
+        long applied = catchUp();
+        System.out.println("Rebuilt reviews, likes and follows from " + applied + " event log records.");
+    }
+
+    /**
+     * Applies records in order up to a sequence and stores the new position
+     *
+     * @param upTo the last sequence to apply
+     * @param batched true to commit every BATCH_SIZE records in one transaction,
+     *                false to let each statement commit on its own
+     */
+    private void apply(long upTo, boolean batched)
+    {
+        if (position >= upTo)
+        {
+            return;
+        }
+        Connection connection = Database.getInstance().getConnection();
+        // Last record whose effect is committed: after each record when statements commit on
+        // their own, after each batch otherwise
+        long committed = position;
+        try
+        {
+            if (batched)
+            {
+                connection.setAutoCommit(false);
+            }
+            try
+            {
+                int inBatch = 0;
+                while (position < upTo)
+                {
+                    LogRecord record = reader.next();
+                    if (record == null)
+                    {
+                        break;
+                    }
+                    outcomes[(int) (record.getSequence() & (OUTCOME_WINDOW - 1))] = applyRecord(record);
+                    position = record.getSequence();
+                    if (!batched)
+                    {
+                        committed = position;
+                    }
+                    else if (++inBatch == BATCH_SIZE)
+                    {
+                        savePosition(position);
+                        connection.commit();
+                        committed = position;
+                        inBatch = 0;
+                    }
+                }
+                savePosition(position);
+                if (batched)
+                {
+                    connection.commit();
+                }
+            }
+            catch (SQLException e)
+            {
+                if (batched)
+                {
+                    connection.rollback();
+                }
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to apply event log records: " + e.getMessage());
+            // Re-read from the first record not committed next time
+            reader.close();
+            position = committed;
+            reader = log.openReader(position + 1);
+        }
+    }
+
+    /**
+     * Applies one record to the tables
+     *
+     * @param record the record
+     * @return true if a row changed
+     * @throws SQLException if the database fails
+     */
+    private boolean applyRecord(LogRecord record) throws SQLException
+    {
+        Database db = Database.getInstance();
+        switch (record.getType())
+        {
+            case REVIEW_CREATED:
+                return db.executeUpdate("projection.insertReview",
+                        "INSERT OR IGNORE INTO reviews (reviewID, movieID, userID, content, rating, reviewDate, likeCount) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        record.getReviewID(), record.getMovieID(), record.getUserID(), record.getText(),
+                        record.getRating(), record.getTimestamp(), record.getLikeCount()) > 0;
+            case REVIEW_UPDATED:
+                return db.executeUpdate("projection.updateReview",
+                        "UPDATE reviews SET content = ?, rating = ? WHERE reviewID = ?",
+                        record.getText(), record.getRating(), record.getReviewID()) > 0;
+            case REVIEW_DELETED:
+                return db.executeUpdate("projection.deleteReview",
+                        "DELETE FROM reviews WHERE reviewID = ?", record.getReviewID()) > 0;
+            case REVIEW_LIKED:
+                // trg_likes_count increments likeCount as part of the same statement
+                return db.executeUpdate("projection.insertLike",
+                        "INSERT INTO Likes (reviewID, userID) SELECT ?, ? WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM Likes WHERE reviewID = ? AND userID = ?)",
+                        record.getReviewID(), record.getUserID(), record.getReviewID(), record.getUserID()) > 0;
+            case USER_FOLLOWED:
+                return db.executeUpdate("projection.insertFollow",
+                        "INSERT INTO UserFollower (userID, followerID) SELECT ?, ? WHERE NOT EXISTS " +
+                        "(SELECT 1 FROM UserFollower WHERE userID = ? AND followerID = ?)",
+                        record.getTargetID(), record.getUserID(), record.getTargetID(), record.getUserID()) > 0;
+            case USER_UNFOLLOWED:
+                return db.executeUpdate("projection.deleteFollow",
+                        "DELETE FROM UserFollower WHERE userID = ? AND followerID = ?",
+                        record.getTargetID(), record.getUserID()) > 0;
+            case MOVIE_MERGED:
+                return db.executeUpdate("projection.mergeMovie",
+                        "UPDATE reviews SET movieID = ? WHERE movieID = ?",
+                        record.getTargetID(), record.getMovieID()) > 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Writes the current reviews, likes and follows to the empty log, so the log describes the
+     * database from the start. Likes are written as like records; each review's starting like
+     * count is the part of its likeCount not explained by those records. The position reads
+     * BOOTSTRAPPING until every record is durable, and the records are already in the tables.
+     *
+     * @throws IllegalStateException if the database cannot be written to the log
+     */
+    private void bootstrap()
+    {
+        Database db = Database.getInstance();
+        long last = 0;
+        try
+        {
+            savePosition(BOOTSTRAPPING);
+            ResultSet reviews = db.executeQuery("projection.exportReviews",
+                    "SELECT r.reviewID, r.movieID, r.userID, r.content, r.rating, r.reviewDate, r.likeCount, " +
+                    "COALESCE(l.likes, 0) AS likes FROM reviews r " +
+                    "LEFT JOIN (SELECT reviewID, COUNT(*) AS likes FROM Likes GROUP BY reviewID) l " +
+                    "ON l.reviewID = r.reviewID ORDER BY r.reviewID");
+            while (reviews.next())
+            {
+                int startingLikes = Math.max(0, reviews.getInt("likeCount") - reviews.getInt("likes"));
+                Review review = new Review(reviews.getInt("reviewID"), reviews.getString("content"),
+                        reviews.getInt("rating"), reviews.getInt("userID"), reviews.getInt("movieID"),
+                        new Date(reviews.getLong("reviewDate")), startingLikes);
+                last = log.write(LogRecord.reviewCreated(review));
+            }
+            ResultSet likes = db.executeQuery("projection.exportLikes", "SELECT reviewID, userID FROM Likes");
+            while (likes.next())
+            {
+                last = log.write(LogRecord.reviewLiked(likes.getInt("reviewID"), likes.getInt("userID")));
+            }
+            ResultSet follows = db.executeQuery("projection.exportFollows", "SELECT userID, followerID FROM UserFollower");
+            while (follows.next())
+            {
+                last = log.write(LogRecord.userFollowed(follows.getInt("followerID"), follows.getInt("userID")));
+            }
+            log.sync(last);
+            savePosition(last);
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Failed to write the database to the event log in " +
+                    log.getDirectory() + ": " + e.getMessage(), e);
+        }
+        position = last;
+        reader = log.openReader(position + 1);
+        if (last > 0)
+        {
+            System.out.println("Started the event log with " + last + " records from the database.");
+        }
+    }
+
+    /**
+     * Stores the last applied sequence
+     *
+     * @param sequence the sequence
+     * @throws SQLException if the database fails
+     */
+    private void savePosition(long sequence) throws SQLException
+    {
+        Database.getInstance().executeUpdate("projection.savePosition",
+                "INSERT OR REPLACE INTO event_log_position (name, sequence) VALUES (?, ?)", PROJECTION_NAME, sequence);
+    }
+
+    /**
+     * Reads the stored position
+     *
+     * @return the stored sequence, NO_POSITION if none is stored, or BOOTSTRAPPING
+     * @throws SQLException if the position cannot be read
+     */
+    private long storedPosition() throws SQLException
+    {
+        ResultSet resultSet = Database.getInstance().executeQuery("projection.position",
+                "SELECT sequence FROM event_log_position WHERE name = ?", PROJECTION_NAME);
+        long stored = resultSet.next() ? resultSet.getLong(1) : NO_POSITION;
+        resultSet.close();
+        return stored;
+    }
+
+    /**
+     * Gets the sequence of the last applied record
+     *
+     * @return the position
+     */
+    public synchronized long getPosition()
+    {
+        return position;
+    }
+}
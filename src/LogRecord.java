@@ -0,0 +1,296 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * LogRecord is one entry of the EventLog: a review, like, follow or movie merge with the
+ * sequence number the log gave it. Records are built with the static factory methods and
+ * only the fields their type uses are set; the others are 0.
+ *
+ * On disk a record is framed as [int bodyLength][int CRC-32 of the body][body], the body being
+ * sequence, timestamp, type, reviewID, userID, movieID, targetID, rating, likeCount and the text
+ * as a length-prefixed UTF-8 string (length -1 for no text).
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class LogRecord
+{
+    /** Bytes before the body: length and CRC */
+    static final int HEADER_BYTES = 8;
+    /** Largest body accepted when reading, guards against reading garbage as a length */
+    static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+    // Body bytes besides the text
+    private static final int FIXED_BODY_BYTES = 8 + 8 + 1 + 4 + 4 + 4 + 4 + 1 + 4 + 4;
+
+    /**
+     * The kinds of change a record describes
+     */
+    public enum Type
+    {
+        REVIEW_CREATED,     // reviewID, userID, movieID, rating, likeCount, text; timestamp is the review date
+        REVIEW_UPDATED,     // reviewID, rating, text
+        REVIEW_DELETED,     // reviewID
+        REVIEW_LIKED,       // reviewID, userID
+        USER_FOLLOWED,      // userID follows targetID
+        USER_UNFOLLOWED,    // userID unfollows targetID
+        MOVIE_MERGED        // movieID's reviews move to the movie targetID
+    }
+
+    private final long sequence;    // Position in the log, 0 until appended
+    private final long timestamp;   // When the change happened, epoch milliseconds
+    private final Type type;        // Kind of change
+    private final int reviewID;
+    private final int userID;       // Author, liker or follower
+    private final int movieID;
+    private final int targetID;     // Followed or unfollowed user, or the movie a merged one went into
+    private final int rating;
+    private final int likeCount;    // Likes a created review starts with
+    private final String text;      // Review text, or null
+
+    private LogRecord(long sequence, long timestamp, Type type, int reviewID, int userID, int movieID,
+                      int targetID, int rating, int likeCount, String text)
+    {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.reviewID = reviewID;
+        this.userID = userID;
+        this.movieID = movieID;
+        this.targetID = targetID;
+        this.rating = rating;
+        this.likeCount = likeCount;
+        this.text = text;
+    }
+
+    /**
+     * Creates a record of a published review
+     *
+     * @param review the review, with its ID
+     * @return the record
+     */
+    public static LogRecord reviewCreated(Review review)
+    {
+        return new LogRecord(0, review.getReviewDate().getTime(), Type.REVIEW_CREATED, review.getReviewID(),
+                review.getUserID(), review.getMovieID(), 0, review.getRating(), review.getLikeCount(), review.getText());
+    }
+
+    /**
+     * Creates a record of a review's new rating and text
+     *
+     * @param reviewID the review ID
+     * @param rating the new rating
+     * @param text the new text
+     * @return the record
+     */
+    public static LogRecord reviewUpdated(int reviewID, int rating, String text)
+    {
+        return new LogRecord(0, System.currentTimeMillis(), Type.REVIEW_UPDATED, reviewID, 0, 0, 0, rating, 0, text);
+    }
+
+    /**
+     * Creates a record of a deleted review
+     *
+     * @param reviewID the review ID
+     * @return the record
+     */
+    public static LogRecord reviewDeleted(int reviewID)
+    {
+        return new LogRecord(0, System.currentTimeMillis(), Type.REVIEW_DELETED, reviewID, 0, 0, 0, 0, 0, null);
+    }
+
+    /**
+     * Creates a record of a like
+     *
+     * @param reviewID the liked review
+     * @param userID the user who liked it
+     * @return the record
+     */
+    public static LogRecord reviewLiked(int reviewID, int userID)
+    {
+        return new LogRecord(0, System.currentTimeMillis(), Type.REVIEW_LIKED, reviewID, userID, 0, 0, 0, 0, null);
+    }
+
+    /**
+     * Creates a record of a follow
+     *
+     * @param followerID the user who follows
+     * @param targetID the user being followed
+     * @return the record
+     */
+    public static LogRecord userFollowed(int followerID, int targetID)
+    {
+        return new LogRecord(0, System.currentTimeMillis(), Type.USER_FOLLOWED, 0, followerID, 0, targetID, 0, 0, null);
+    }
+
+    /**
+     * Creates a record of an unfollow
+     *
+     * @param followerID the user who stops following
+     * @param targetID the user no longer followed
+     * @return the record
+     */
+    public static LogRecord userUnfollowed(int followerID, int targetID)
+    {
+        return new LogRecord(0, System.currentTimeMillis(), Type.USER_UNFOLLOWED, 0, followerID, 0, targetID, 0, 0, null);
+    }
+
+    /**
+     * Creates a record of a duplicate movie merged into another
+     *
+     * @param duplicateID the movie merged away
+     * @param movieID the movie that keeps its reviews
+     * @return the record
+     */
+    public static LogRecord movieMerged(int duplicateID, int movieID)
+    {
+        return new LogRecord(0, System.currentTimeMillis(), Type.MOVIE_MERGED, 0, 0, duplicateID, movieID, 0, 0, null);
+    }
+
+    /** @return the position of the record in the log, 0 if it has not been appended */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /** @return when the change happened, in epoch milliseconds */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /** @return the kind of change */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /** @return the review ID */
+    public int getReviewID()
+    {
+        return reviewID;
+    }
+
+    /** @return the author, liker or follower */
+    public int getUserID()
+    {
+        return userID;
+    }
+
+    /** @return the movie ID */
+    public int getMovieID()
+    {
+        return movieID;
+    }
+
+    /** @return the followed or unfollowed user, or the movie a merged one went into */
+    public int getTargetID()
+    {
+        return targetID;
+    }
+
+    /** @return the rating */
+    public int getRating()
+    {
+        return rating;
+    }
+
+    /** @return the likes a created review starts with */
+    public int getLikeCount()
+    {
+        return likeCount;
+    }
+
+    /** @return the review text, or null */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Encodes the record with a sequence number as a framed byte array
+     *
+     * @param sequence the sequence number given by the log
+     * @return the header and body
+     */
+    byte[] encode(long sequence)
+    {
+        byte[] textBytes = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_BYTES + (textBytes == null ? 0 : textBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0); // CRC, filled in below
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.put((byte) type.ordinal());
+        buffer.putInt(reviewID);
+        buffer.putInt(userID);
+        buffer.putInt(movieID);
+        buffer.putInt(targetID);
+        buffer.put((byte) rating);
+        buffer.putInt(likeCount);
+        buffer.putInt(textBytes == null ? -1 : textBytes.length);
+        if (textBytes != null)
+        {
+            buffer.put(textBytes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Checks a body against the CRC from its header
+     *
+     * @param body the body bytes
+     * @param expectedCrc the CRC stored in the header
+     * @return true if the body is intact
+     */
+    static boolean checksumMatches(byte[] body, int expectedCrc)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue() == expectedCrc;
+    }
+
+    /**
+     * Decodes a record body whose CRC has been checked
+     *
+     * @param body the body bytes
+     * @return the record
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    static LogRecord decode(byte[] body)
+    {
+        if (body.length < FIXED_BODY_BYTES)
+        {
+            throw new IllegalArgumentException("Log record body too short");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        int typeIndex = buffer.get();
+        if (typeIndex < 0 || typeIndex >= Type.values().length)
+        {
+            throw new IllegalArgumentException("Unknown log record type " + typeIndex);
+        }
+        int reviewID = buffer.getInt();
+        int userID = buffer.getInt();
+        int movieID = buffer.getInt();
+        int targetID = buffer.getInt();
+        int rating = buffer.get();
+        int likeCount = buffer.getInt();
+        int textLength = buffer.getInt();
+        String text = null;
+        if (textLength >= 0)
+        {
+            if (textLength != buffer.remaining())
+            {
+                throw new IllegalArgumentException("Log record text length does not match the body");
+            }
+            text = new String(body, buffer.position(), textLength, StandardCharsets.UTF_8);
+        }
+        return new LogRecord(sequence, timestamp, Type.values()[typeIndex], reviewID, userID, movieID,
+                             targetID, rating, likeCount, text);
+    }
+}
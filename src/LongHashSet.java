@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * LongHashSet is a hash set of primitive long values.
+ * It uses open addressing with linear probing over a single long array,
+ * so membership checks never box and need no per-entry objects.
+ * The value 0 marks an empty slot and is tracked separately when stored.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class LongHashSet
+{
+    private static final int DEFAULT_CAPACITY = 16; // Initial number of slots (power of two)
+    private static final float LOAD_FACTOR = 0.5f;  // Resize once half the slots are used
+
+    private long[] slots;           // Stored values, 0 marks an empty slot
+    private boolean containsZero;   // Whether the value 0 is in the set
+    private int size;               // Number of stored values, including 0
+    private int mask;               // slots.length - 1, used instead of modulo
+    private int resizeAt;           // Number of non-zero values at which the table doubles
+
+    /**
+     * Constructs an empty set with the default capacity.
+     */
+    public LongHashSet()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty set sized to hold the expected number of values without resizing.
+     *
+     * @param expectedSize the number of values the set is expected to hold
+     */
+    public LongHashSet(int expectedSize)
+    {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Allocates an empty slot array of the given capacity.
+     *
+     * @param capacity the number of slots, must be a power of two
+     */
+    private void allocate(int capacity)
+    {
+        slots = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Mixes all 64 bits of a value into its starting slot.
+     *
+     * @param value the value to hash
+     * @return the starting slot for the value
+     */
+    private int slot(long value)
+    {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Checks whether a value is in the set
+     *
+     * @param value the value to check
+     * @return true if the value is present, false otherwise
+     */
+    public boolean contains(long value)
+    {
+        if (value == 0)
+        {
+            return containsZero;
+        }
+        int i = slot(value);
+        while (slots[i] != 0)
+        {
+            if (slots[i] == value)
+            {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value to the set
+     *
+     * @param value the value to add
+     * @return true if the value was added, false if it was already present
+     */
+    public boolean add(long value)
+    {
+        if (value == 0)
+        {
+            if (containsZero)
+            {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int i = slot(value);
+        while (slots[i] != 0)
+        {
+            if (slots[i] == value)
+            {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        if (size - (containsZero ? 1 : 0) > resizeAt)
+        {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     * Uses backward-shift deletion so no tombstones are left behind.
+     *
+     * @param value the value to remove
+     * @return true if the value was removed, false if it was not present
+     */
+    public boolean remove(long value)
+    {
+        if (value == 0)
+        {
+            if (!containsZero)
+            {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+
+        int i = slot(value);
+        while (slots[i] != 0)
+        {
+            if (slots[i] == value)
+            {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the gap left at a removed slot by moving later values of the same probe run back.
+     *
+     * @param gap the slot that was just emptied
+     */
+    private void shiftBack(int gap)
+    {
+        int i = gap;
+        while (true)
+        {
+            i = (i + 1) & mask;
+            if (slots[i] == 0)
+            {
+                break;
+            }
+            int home = slot(slots[i]);
+            // Move the value only if its home slot is not between the gap and its current slot
+            boolean movable = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+            if (movable)
+            {
+                slots[gap] = slots[i];
+                gap = i;
+            }
+        }
+        slots[gap] = 0;
+    }
+
+    /**
+     * Doubles the table and re-inserts every value
+     */
+    private void resize()
+    {
+        long[] old = slots;
+        allocate(old.length << 1);
+        for (long value : old)
+        {
+            if (value != 0)
+            {
+                int i = slot(value);
+                while (slots[i] != 0)
+                {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values in the set
+     *
+     * @return the number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes every value from the set while keeping its capacity
+     */
+    public void clear()
+    {
+        Arrays.fill(slots, 0L);
+        containsZero = false;
+        size = 0;
+    }
+}
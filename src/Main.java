@@ -1,18 +1,48 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main class contains the entry point of the application.
- * It initializes the main menu and starts the application loop.
+ * It initializes the main menu, schedules the background jobs and starts the application loop.
  * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
  */
 public class Main
 {
     /**
      * The main method that serves as the entry point of the application.
-     * Creates an instance of MainMenu and enters the main application loop.
+     * Creates an instance of MainMenu and enters the main application loop,
+     * starts the HTTP service when run with "--serve [port]", or finds duplicate
+     * movies when run with "--merge-duplicates [--apply]".
      * 
-     * @param args command line arguments (not used)
+     * @param args command line arguments, optionally "--serve [port]" or "--merge-duplicates [--apply]"
+     * @throws Exception if the HTTP service cannot be started
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws Exception
     {
+        // Bring the database up to date with the event log before anything reads it
+        LogProjection.getInstance();
+
+        // Start tracking activity before any review, like or follow can happen
+        TrendingEngine.getInstance();
+        PopularitySketches.getInstance();
+
+        if (args.length > 0 && args[0].equals("--merge-duplicates"))
+        {
+            new MovieDeduplicator().run(args.length > 1 && args[1].equals("--apply"));
+            System.exit(0);
+        }
+
+        scheduleJobs();
+
+        if (args.length > 0 && args[0].equals("--serve"))
+        {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            ReviewService service = new ReviewService(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+            service.start();
+            return;
+        }
+
         // Get the singleton instance of MainMenu
         MainMenu mainMenu = MainMenu.getInstance();
         
@@ -22,4 +52,54 @@ public class Main
             mainMenu.displayMainMenu();
         }
     }
+
+    /**
+     * Registers the background jobs that keep derived data up to date:
+     * "graph-snapshot" rebuilds the degrees-of-separation snapshot after follows change
+     * (every -Djobs.graphSnapshotSeconds, default 30), "checkpoint" saves the popularity
+     * sketches and review bitmaps (every -Djobs.checkpointMinutes, default 5), the
+     * on-demand "graph-analytics" writes graph statistics as CSV to -Djobs.analyticsDir
+     * (default "analytics"), and the on-demand "merge-duplicates" merges duplicate movies.
+     */
+    private static void scheduleJobs()
+    {
+        JobScheduler scheduler = JobScheduler.getInstance();
+
+        scheduler.schedule("graph-snapshot",
+                TimeUnit.SECONDS.toMillis(Long.getLong("jobs.graphSnapshotSeconds", 30)),
+                job -> UserGraphManager.getInstance().refreshGraphSnapshot());
+
+        scheduler.schedule("checkpoint",
+                TimeUnit.MINUTES.toMillis(Long.getLong("jobs.checkpointMinutes", 5)),
+                job ->
+                {
+                    PopularitySketches.getInstance().checkpoint();
+                    // The bitmap index is only loaded once a combined search has used it
+                    ReviewBitmapIndex index = ReviewBitmapIndex.getInstanceIfLoaded();
+                    if (index != null && !job.isCancelled())
+                    {
+                        index.checkpoint();
+                    }
+                });
+
+        scheduler.register("graph-analytics", job ->
+        {
+            GraphAnalytics analytics = GraphAnalytics.ofCurrentGraph();
+            if (!job.isCancelled())
+            {
+                analytics.exportCsv(System.getProperty("jobs.analyticsDir", "analytics"), 100);
+            }
+        });
+
+        scheduler.register("merge-duplicates", job ->
+        {
+            MovieDeduplicator deduplicator = new MovieDeduplicator();
+            List<MovieDeduplicator.Duplicate> duplicates = deduplicator.findDuplicates();
+            if (!job.isCancelled())
+            {
+                int merged = deduplicator.merge(duplicates, job::isCancelled);
+                System.out.println("Merged " + merged + " of " + duplicates.size() + " duplicate movies.");
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ public class MainMenu
 {
     private static MainMenu instance; // Singleton instance of MainMenu
     private AuthenticationManager authManager; // AuthManager instance to handle authentication
+    private Session session; // Session of the user logged in at the console, null if none
     private Scanner scanner; // Single Scanner instance for the application
 
     /**
@@ -46,11 +47,21 @@ public class MainMenu
      */
     public void displayMainMenu()
     {
-        if (!authManager.isUserLoggedIn())
+        if (!authManager.isLoggedIn(session))
         {
+            if (session != null)
+            {
+                System.out.println("Your session has expired. Please log in again.\n");
+            }
             displayAuthMenu();
         }
-        User currentUser = authManager.getCurrentUser();
+        User currentUser = session.getUser();
+        if (currentUser == null)
+        {
+            System.out.println("Your account is no longer available.\n");
+            session = null;
+            return;
+        }
 
         System.out.println();
         System.out.println("1. Write Movie Review");
@@ -60,8 +71,9 @@ public class MainMenu
         System.out.println("5. Follow User");
         System.out.println("6. Unfollow User");
         System.out.println("7. Ask for Follow Suggestion");
-        System.out.println("8. Logout");
-        System.out.println("9. Exit");
+        System.out.println("8. Degrees of Separation");
+        System.out.println("9. Logout");
+        System.out.println("10. Exit");
 
         // Get validated user input
         int option = InputValidator.getValidatedInt(scanner, "Enter your choice: ");
@@ -82,28 +94,24 @@ public class MainMenu
                 searchReviewMenu(scanner);
                 break;
             case 5:
-                UserGraphManager.getInstance().followUser(scanner);
+                UserGraphManager.getInstance().followUser(session, scanner);
                 break;
             case 6:
-                UserGraphManager.getInstance().unfollowUser(scanner);
+                UserGraphManager.getInstance().unfollowUser(session, scanner);
                 break;
             case 7:
-                UserGraphManager.getInstance().followRecomendations();
+                UserGraphManager.getInstance().followRecomendations(session);
                 return;
             case 8:
-                authManager.logout();
+                UserGraphManager.getInstance().showConnection(session, scanner);
                 break;
             case 9:
-                // Synchronize graph data with database before exit
-                Graph.getInstance().disconnect();
-                try
-                {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e)
-                {
-                    System.out.println("Thread was interrupted: " + e.getMessage());
-                    Thread.currentThread().interrupt();
-                }
+                authManager.logout(session);
+                session = null;
+                break;
+            case 10:
+                // Let background jobs finish with the database before closing it
+                JobScheduler.getInstance().shutdown();
                 Database.getInstance().disconnect();
                 scanner.close();
                 System.exit(0);
@@ -136,9 +144,10 @@ public class MainMenu
                     System.out.print("Enter password: ");
                     String password = scanner.nextLine();
                     System.out.println();
-                    if (authManager.login(email, password))
+                    session = authManager.login(email, password);
+                    if (session != null)
                     {
-                        UserGraphManager.getInstance().displayLatestReviews();
+                        UserGraphManager.getInstance().displayLatestReviews(session);
                         return;
                     }
                     else
@@ -147,19 +156,15 @@ public class MainMenu
                     }
                     break;
                 case 2:
-                    authManager.register();
-                    break;
-                case 3:
-                    // Clean disconnect from graph and database
-                    Graph.getInstance().disconnect();
-                    try
+                    session = authManager.register();
+                    if (session != null)
                     {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e)
-                    {
-                        System.out.println("Thread was interrupted: " + e.getMessage());
-                        Thread.currentThread().interrupt(); // Restore interrupted status
+                        return;
                     }
+                    break;
+                case 3:
+                    // Stop background jobs, then disconnect from the database
+                    JobScheduler.getInstance().shutdown();
                     Database.getInstance().disconnect();
                     scanner.close();
                     System.exit(0);
@@ -185,7 +190,10 @@ public class MainMenu
             System.out.println("2. Genre");
             System.out.println("3. Review Date");
             System.out.println("4. User");
-            System.out.println("5. Go Back");
+            System.out.println("5. Review Statistics");
+            System.out.println("6. Trending Now");
+            System.out.println("7. Combined Search");
+            System.out.println("8. Go Back");
 
             int choice = InputValidator.getValidatedInt(scanner, "Enter your choice: ");
             System.out.println();
@@ -193,18 +201,27 @@ public class MainMenu
             switch (choice)
             {
                 case 1:
-                    SearchReview.searchByMovieTitle(scanner);
+                    SearchReview.searchByMovieTitle(session, scanner);
                     break;
                 case 2:
-                    SearchReview.searchByGenre(scanner);
+                    SearchReview.searchByGenre(session, scanner);
                     break;
                 case 3:
-                    SearchReview.searchByDateRange(scanner);
+                    SearchReview.searchByDateRange(session, scanner);
                     break;
                 case 4:
-                    SearchReview.searchByUsername(scanner);
+                    SearchReview.searchByUsername(session, scanner);
                     break;
                 case 5:
+                    SearchReview.showReviewStatistics(scanner);
+                    break;
+                case 6:
+                    SearchReview.showTrending(session, scanner);
+                    break;
+                case 7:
+                    SearchReview.searchCombined(session, scanner);
+                    break;
+                case 8:
                     return;
                 default:
                     System.out.println("Invalid choice. Try again.");
@@ -0,0 +1,73 @@
+import java.util.Arrays;
+
+/**
+ * MinuteCounter counts events in the recent past with one bucket per minute in a circular array.
+ * Each bucket remembers which minute it holds, so buckets left over from an earlier lap of the
+ * array are reset when reused and skipped when summed, and nothing has to run on a timer.
+ * A counter with 10080 buckets answers the last hour, day and week.
+ * Not thread-safe; TrendingEngine serialises access.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class MinuteCounter
+{
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private final long[] minutes;   // Minute number (epoch minutes) each bucket holds
+    private final int[] counts;     // Events in each bucket
+
+    /**
+     * Constructs a counter covering the given number of minutes
+     *
+     * @param windowMinutes the longest window that can be asked for
+     */
+    public MinuteCounter(int windowMinutes)
+    {
+        this.minutes = new long[windowMinutes];
+        this.counts = new int[windowMinutes];
+        Arrays.fill(minutes, Long.MIN_VALUE);
+    }
+
+    /**
+     * Records one event
+     *
+     * @param time when the event happened, in epoch milliseconds
+     */
+    public void record(long time)
+    {
+        long minute = Math.floorDiv(time, MINUTE_MILLIS);
+        int bucket = (int) Math.floorMod(minute, (long) counts.length);
+        if (minutes[bucket] != minute)
+        {
+            if (minutes[bucket] > minute)
+            {
+                return; // Older than the whole window
+            }
+            minutes[bucket] = minute;
+            counts[bucket] = 0;
+        }
+        counts[bucket]++;
+    }
+
+    /**
+     * Counts the events in the last minutes, including the current one
+     *
+     * @param windowMinutes the length of the window, at most the counter's size
+     * @param now the current time in epoch milliseconds
+     * @return the number of events in the window
+     */
+    public long count(int windowMinutes, long now)
+    {
+        long current = Math.floorDiv(now, MINUTE_MILLIS);
+        int window = Math.min(windowMinutes, counts.length);
+        long total = 0;
+        for (long minute = current - window + 1; minute <= current; minute++)
+        {
+            int bucket = (int) Math.floorMod(minute, (long) counts.length);
+            if (minutes[bucket] == minute)
+            {
+                total += counts[bucket];
+            }
+        }
+        return total;
+    }
+}
@@ -36,22 +36,50 @@ public class Movie
         return movieID;
     }
 
+    /**
+     * Returns the movie title
+     * @return the movie title
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+
+    /**
+     * Returns the movie genre
+     * @return the movie genre
+     */
+    public Genre.GenreType getGenre()
+    {
+        return genre;
+    }
+
     /**
      * Get the average rating of the movie based on existing reviews in the database.
-     * Calculates the average of all ratings for this movie.
+     * Calculates the average of all ratings for this movie, from the MovieCache when possible.
      *
      * @return the average rating, or 0.0 if there are no reviews or an error occurs
      */
     public double getAverageRating()
     {
+        MovieCache cache = MovieCache.getInstance();
+        Double cached = cache.getAverageRating(this.movieID);
+        if (cached != null)
+        {
+            return cached;
+        }
+        long stamp = cache.readStamp();
+
         // Query to calculate average rating for this movie
         String sql = "SELECT AVG(rating) AS averageRating FROM reviews WHERE movieID = " + this.movieID;
         try
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(sql);
+            ResultSet resultSet = Database.getInstance().executeQuery("movie.avgRating", sql);
             if (resultSet.next())
             {
-                return resultSet.getDouble("averageRating");
+                double averageRating = resultSet.getDouble("averageRating");
+                cache.putAverageRating(this.movieID, averageRating, stamp);
+                return averageRating;
             }
         }
         catch (SQLException e)
@@ -91,18 +119,19 @@ public class Movie
         String sql = "INSERT INTO Movies (title, genres) VALUES ('" + title + "', '" + genre.name() + "')";
         try
         {
-            int rowsAffected = Database.getInstance().executeUpdate(sql);
+            int rowsAffected = Database.getInstance().executeUpdate("movie.insert", sql);
             
             if (rowsAffected > 0)
             {
                 // Get the ID of the newly inserted movie
                 String idQuery = "SELECT last_insert_rowid() as last_id";
-                ResultSet resultSet = Database.getInstance().executeQuery(idQuery);
+                ResultSet resultSet = Database.getInstance().executeQuery("movie.lastInsertId", idQuery);
                 
                 if (resultSet.next())
                 {
-                    int newMovieID = resultSet.getInt("last_id");
-                    return new Movie(newMovieID, title, genre);
+                    Movie movie = new Movie(resultSet.getInt("last_id"), title, genre);
+                    DomainEventBus.getInstance().movieCreated(movie);
+                    return movie;
                 }
             }
         }
@@ -125,7 +154,7 @@ public class Movie
     }
 
     /**
-     * Get the title of a movie from the database using its ID.
+     * Get the title of a movie using its ID.
      * Static utility method to lookup a movie title.
      * 
      * @param movieID the ID of the movie to look up
@@ -133,22 +162,77 @@ public class Movie
      */
     public static String getMovieTitleByID(int movieID)
     {
-        String title = "Unknown";
-        // Query to get movie title
-        String sql = "SELECT title FROM Movies WHERE id = " + movieID;
+        Movie movie = getMovieByID(movieID);
+        return movie != null ? movie.getTitle() : "Unknown";
+    }
+
+    /**
+     * Get the genre of a movie using its ID.
+     * 
+     * @param movieID the ID of the movie to look up
+     * @return the genre, or null if the movie is not found or its genre is not recognised
+     */
+    public static Genre.GenreType getGenreByID(int movieID)
+    {
+        Movie movie = getMovieByID(movieID);
+        return movie != null ? movie.getGenre() : null;
+    }
+
+    /**
+     * Get a movie by its ID, from the MovieCache when possible and otherwise from the database.
+     * 
+     * @param movieID the ID of the movie to look up
+     * @return the movie (with a null genre if it is not recognised), or null if not found or an error occurs
+     */
+    public static Movie getMovieByID(int movieID)
+    {
+        MovieCache cache = MovieCache.getInstance();
+        Movie cached = cache.getMovie(movieID);
+        if (cached != null)
+        {
+            return cached;
+        }
+        long stamp = cache.readStamp();
 
         try
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(sql);
+            ResultSet resultSet = Database.getInstance().executeQuery("movie.byId",
+                    "SELECT title, genres FROM Movies WHERE id = ?", movieID);
             if (resultSet.next())
             {
-                title = resultSet.getString("title");
+                Movie movie = new Movie(movieID, resultSet.getString("title"), parseGenre(resultSet.getString("genres")));
+                resultSet.close();
+                cache.putMovie(movie, stamp);
+                return movie;
             }
         }
         catch (SQLException e)
         {
-            System.err.println("Error fetching movie title: " + e.getMessage());
+            System.err.println("Error fetching movie: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Converts a genre stored in the Movies table to a GenreType
+     * 
+     * @param genres the stored genre
+     * @return the genre, or null if it is missing or not recognised
+     */
+    private static Genre.GenreType parseGenre(String genres)
+    {
+        if (genres == null)
+        {
+            return null;
+        }
+        try
+        {
+            return Genre.GenreType.valueOf(genres.trim().toUpperCase().replace(' ', '_'));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Unrecognised genre
+            return null;
         }
-        return title;
     }
-}
\ No newline at end of file
+}
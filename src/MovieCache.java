@@ -0,0 +1,162 @@
+/**
+ * MovieCache keeps movie titles, genres and average ratings in memory so listing reviews
+ * and movies does not query the Movies and reviews tables for every line.
+ * Entries are loaded by Movie on a miss and kept up to date by subscribing to the
+ * DomainEventBus: a new movie is added, a published, updated or deleted review drops its
+ * movie's average, and a merged movie is dropped along with both movies' averages.
+ * Events are handled asynchronously, so while the bus has events older than
+ * -Devents.maxStalenessMillis (default 100) that the cache has not handled, lookups
+ * miss and go to the database. A read that started before an invalidation is not cached.
+ * Implements the Singleton pattern so all lookups share one cache.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class MovieCache implements DomainEventSubscriber
+{
+    private static MovieCache instance;     // Singleton instance
+
+    private final IntObjectMap<Movie> movies;           // Movie ID to title and genre
+    private final IntObjectMap<Double> averageRatings;  // Movie ID to average rating
+    private final long maxStalenessNanos;               // Longest unhandled event age served from memory
+    private DomainEventBus.Subscription subscription;   // Event feed, null until subscribed
+    private long invalidations;                         // Bumped on every invalidation, see readStamp
+
+    /**
+     * Creates an empty cache
+     *
+     * @param maxStalenessMillis the longest time an unhandled event may wait before lookups bypass the cache
+     */
+    MovieCache(long maxStalenessMillis)
+    {
+        this.movies = new IntObjectMap<>();
+        this.averageRatings = new IntObjectMap<>();
+        this.maxStalenessNanos = maxStalenessMillis * 1000000L;
+    }
+
+    /**
+     * Gets the singleton instance of MovieCache, subscribing it to the event bus on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized MovieCache getInstance()
+    {
+        if (instance == null)
+        {
+            MovieCache cache = new MovieCache(Long.getLong("events.maxStalenessMillis", 100));
+            cache.subscription = DomainEventBus.getInstance().subscribe("movies", cache);
+            instance = cache;
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether the cache has handled every event older than the staleness bound
+     *
+     * @return true if cached values may be served
+     */
+    private boolean isCurrent()
+    {
+        return subscription == null || subscription.isCurrent(maxStalenessNanos);
+    }
+
+    /**
+     * Gets a cached movie
+     *
+     * @param movieID the movie ID
+     * @return the movie, or null on a miss
+     */
+    public synchronized Movie getMovie(int movieID)
+    {
+        return isCurrent() ? movies.get(movieID) : null;
+    }
+
+    /**
+     * Gets a cached average rating
+     *
+     * @param movieID the movie ID
+     * @return the average rating, or null on a miss
+     */
+    public synchronized Double getAverageRating(int movieID)
+    {
+        return isCurrent() ? averageRatings.get(movieID) : null;
+    }
+
+    /**
+     * Gets a stamp to take before reading from the database, to pass to a put afterwards
+     *
+     * @return the current invalidation count
+     */
+    public synchronized long readStamp()
+    {
+        return invalidations;
+    }
+
+    /**
+     * Caches a movie read from the database, unless something was invalidated since the read began
+     *
+     * @param movie the movie
+     * @param stamp the value of readStamp taken before the read
+     */
+    public synchronized void putMovie(Movie movie, long stamp)
+    {
+        if (stamp == invalidations)
+        {
+            movies.put(movie.getMovieID(), movie);
+        }
+    }
+
+    /**
+     * Caches an average rating read from the database, unless something was invalidated since the read began
+     *
+     * @param movieID the movie ID
+     * @param averageRating the average rating
+     * @param stamp the value of readStamp taken before the read
+     */
+    public synchronized void putAverageRating(int movieID, double averageRating, long stamp)
+    {
+        if (stamp == invalidations)
+        {
+            averageRatings.put(movieID, averageRating);
+        }
+    }
+
+    /**
+     * Applies an event from the bus
+     *
+     * @param event the event
+     * @param endOfBatch true for the last event currently available
+     */
+    @Override
+    public synchronized void onEvent(DomainEvent event, boolean endOfBatch)
+    {
+        switch (event.getType())
+        {
+            case MOVIE_CREATED:
+                movies.put(event.getMovieID(), event.getMovie());
+                break;
+            case REVIEW_PUBLISHED:
+            case REVIEW_UPDATED:
+            case REVIEW_DELETED:
+                invalidations++;
+                averageRatings.remove(event.getMovieID());
+                break;
+            case MOVIE_MERGED:
+                invalidations++;
+                movies.remove(event.getMovieID());
+                averageRatings.remove(event.getMovieID());
+                averageRatings.remove(event.getTargetID());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Removes every entry
+     */
+    public synchronized void clear()
+    {
+        invalidations++;
+        movies.clear();
+        averageRatings.clear();
+    }
+}
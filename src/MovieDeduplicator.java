@@ -0,0 +1,978 @@
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * MovieDeduplicator finds movies that were entered more than once under slightly different
+ * titles and merges each into one movie, so their reviews are counted together.
+ *
+ * Titles are normalized (lower case, no accents or punctuation, roman numerals as digits, no
+ * leading or trailing article) and cut into overlapping three-character shingles. A MinHash
+ * signature estimates how many shingles two titles share; titles whose signatures agree on a
+ * whole band of it become candidate pairs (locality-sensitive hashing), so titles are never
+ * compared all against all. A candidate is confirmed when both movies have the same genre and
+ * the same numbers (so sequels stay apart) and their normalized titles are at least the
+ * threshold similar by edit distance, or equal apart from spaces. Titles of as many words that
+ * differ in a word used by other titles on both sides ("Cat People", "Fat People") or only in
+ * a plural are different movies: a typo rarely makes a word that other titles use.
+ * Confirmed pairs are grouped with union-find; each group keeps its oldest movie (the lowest
+ * ID, normally the original entry) and the others are merged into it.
+ *
+ * A duplicate that shares a reviewer with the movie it would go into is skipped and listed,
+ * since merging would give that user two reviews of one movie and no review is ever deleted
+ * by a merge. Every other merge is appended to the EventLog and applied by the LogProjection
+ * like any other write: one indexed UPDATE of the movie's reviews, committed on its own, so
+ * merging does not hold long database locks and can run while the application is in use.
+ * Each chunk of CHUNK_SIZE merges holds Review.CREATE_LOCK, so no review is published on
+ * either movie between the reviewer check and the merged-away rows being deleted from Movies;
+ * in-memory structures are told through ReviewEvents before that delete. In the running
+ * application this is the on-demand background job "merge-duplicates"; "--merge-duplicates"
+ * runs it from the command line, where it only lists what it would merge, and what it would
+ * skip, unless "--apply" follows. The event log belongs to one process, so
+ * the command line stops if another process has the database's log open.
+ * Identical titles are merged too, so remakes sharing a title and genre should be checked in
+ * that list first.
+ * Signatures and scores are computed on the fork-join pool. The threshold is set with
+ * -Ddedupe.threshold (default 0.9).
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class MovieDeduplicator
+{
+    private static final int SHINGLE_LENGTH = 3;        // Characters per shingle
+    private static final int BANDS = 16;                // LSH bands
+    private static final int ROWS_PER_BAND = 4;         // Signature hashes per band
+    private static final int SIGNATURE_SIZE = BANDS * ROWS_PER_BAND;
+    private static final int INDEX_BITS = 24;           // Bits of a movie index packed with a band key
+    private static final int MAX_BUCKET = 64;           // Larger buckets pair every member with the first only
+    private static final int SPLIT_THRESHOLD = 2048;    // Items handled by one fork-join task before it stops splitting
+    private static final int CHUNK_SIZE = 500;          // Merges per ReviewEvents notification and Movies delete
+    private static final String[] ARTICLES = {"the", "a", "an"};
+
+    // Multipliers and offsets of the MinHash functions, fixed so runs are repeatable
+    private static final long[] HASH_MULTIPLIERS = new long[SIGNATURE_SIZE];
+    private static final long[] HASH_OFFSETS = new long[SIGNATURE_SIZE];
+
+    static
+    {
+        Random random = new Random(0x6d696e68L);
+        for (int i = 0; i < SIGNATURE_SIZE; i++)
+        {
+            HASH_MULTIPLIERS[i] = random.nextLong() | 1;
+            HASH_OFFSETS[i] = random.nextLong();
+        }
+    }
+
+    private final ForkJoinPool pool;    // Pool the parallel passes run on
+    private final double threshold;     // Smallest title similarity that confirms a pair
+
+    /**
+     * Constructs a job on the common fork-join pool with the threshold from -Ddedupe.threshold
+     */
+    public MovieDeduplicator()
+    {
+        this(ForkJoinPool.commonPool(), Double.parseDouble(System.getProperty("dedupe.threshold", "0.9")));
+    }
+
+    /**
+     * Constructs a job
+     *
+     * @param pool the pool to run parallel passes on
+     * @param threshold the smallest title similarity, from 0 to 1, that confirms a pair
+     */
+    public MovieDeduplicator(ForkJoinPool pool, double threshold)
+    {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Finds duplicates, prints them and merges them if asked to
+     *
+     * @param apply true to merge, false to only list the merges
+     */
+    public void run(boolean apply)
+    {
+        long start = System.currentTimeMillis();
+        List<Duplicate> duplicates = findDuplicates();
+        int skipped = 0;
+        for (Duplicate duplicate : duplicates)
+        {
+            System.out.println(duplicate);
+            if (!apply && sharedReviewers(duplicate.getMovieID(), duplicate.getIntoMovieID()) != 0)
+            {
+                System.out.println("  will be skipped: a user reviewed both movies");
+                skipped++;
+            }
+        }
+        System.out.println("Found " + duplicates.size() + " duplicate movies in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        if (!apply)
+        {
+            if (skipped > 0)
+            {
+                System.out.println(skipped + " of them share a reviewer with the movie they duplicate"
+                        + " and will not be merged.");
+            }
+            if (!duplicates.isEmpty())
+            {
+                System.out.println("Run with --merge-duplicates --apply to merge them.");
+            }
+            return;
+        }
+        start = System.currentTimeMillis();
+        int merged = merge(duplicates);
+        System.out.println("Merged " + merged + " movies in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    /**
+     * Finds every movie that duplicates another
+     *
+     * @return one entry per movie to merge away, naming the movie it goes into
+     */
+    public List<Duplicate> findDuplicates()
+    {
+        Catalog catalog = Catalog.load();
+        int n = catalog.size();
+        List<Duplicate> duplicates = new ArrayList<>();
+        if (n < 2)
+        {
+            return duplicates;
+        }
+        if (n >= 1 << INDEX_BITS)
+        {
+            throw new IllegalStateException("Too many movies to deduplicate: " + n);
+        }
+
+        // Normalize, shingle and sign every title, then pair titles sharing a band
+        long[][] bandKeys = new long[BANDS][n];
+        pool.invoke(new SignatureTask(catalog, bandKeys, 0, n));
+        catalog.countWords();
+        long[] candidates = unique(pool.invoke(new BandTask(bandKeys, 0, BANDS)));
+
+        // Score the candidates and group the confirmed pairs
+        double[] scores = new double[candidates.length];
+        pool.invoke(new ScoreTask(catalog, candidates, scores, 0, candidates.length));
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            parent[i] = i;
+        }
+        for (int c = 0; c < candidates.length; c++)
+        {
+            if (scores[c] >= threshold)
+            {
+                int a = find(parent, (int) (candidates[c] >>> 32));
+                int b = find(parent, (int) candidates[c]);
+                if (a != b)
+                {
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+
+        // Each group keeps its oldest movie; members too far from it are left alone
+        int[] keeper = new int[n];
+        Arrays.fill(keeper, -1);
+        for (int i = 0; i < n; i++)
+        {
+            int root = find(parent, i);
+            if (keeper[root] < 0 || catalog.ids[i] < catalog.ids[keeper[root]])
+            {
+                keeper[root] = i;
+            }
+        }
+        for (int i = 0; i < n; i++)
+        {
+            int root = find(parent, i);
+            int kept = keeper[root];
+            if (kept < 0 || kept == i)
+            {
+                continue;
+            }
+            double similarity = catalog.similarity(i, kept);
+            if (similarity >= threshold)
+            {
+                duplicates.add(new Duplicate(catalog.ids[i], catalog.titles[i], catalog.ids[kept],
+                                             catalog.titles[kept], similarity));
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Merges duplicates into the movies they duplicate, CHUNK_SIZE at a time
+     *
+     * @param duplicates the merges, as returned by findDuplicates
+     * @return the number of movies merged away
+     */
+    public int merge(List<Duplicate> duplicates)
+    {
+        return merge(duplicates, () -> false);
+    }
+
+    /**
+     * Merges duplicates into the movies they duplicate, CHUNK_SIZE at a time, stopping
+     * between chunks once asked to. Duplicates sharing a reviewer with the movie they
+     * duplicate are skipped and printed.
+     *
+     * @param duplicates the merges, as returned by findDuplicates
+     * @param stop returns true when merging should stop, e.g. a cancelled background job
+     * @return the number of movies merged away
+     */
+    public int merge(List<Duplicate> duplicates, BooleanSupplier stop)
+    {
+        int merged = 0;
+        List<Duplicate> skipped = new ArrayList<>();
+        for (int from = 0; from < duplicates.size() && !stop.getAsBoolean(); from += CHUNK_SIZE)
+        {
+            List<Duplicate> chunk = duplicates.subList(from, Math.min(from + CHUNK_SIZE, duplicates.size()));
+            int skippedBefore = skipped.size();
+            int done = mergeChunk(chunk, skipped);
+            merged += done;
+            if (done + skipped.size() - skippedBefore < chunk.size())
+            {
+                break;
+            }
+        }
+        for (Duplicate duplicate : skipped)
+        {
+            System.out.println("Skipped, a user reviewed both movies: " + duplicate);
+        }
+        return merged;
+    }
+
+    /**
+     * Merges one chunk, then deletes the merged-away movies. Each merge is appended to the log
+     * and applied like any other write, so the chunk can run while the application is in use.
+     * Review.CREATE_LOCK is held throughout, so no review is published on these movies meanwhile.
+     *
+     * @param chunk the merges
+     * @param skipped receives the duplicates left alone because a user reviewed both movies
+     * @return the number of merges applied before the first failure
+     */
+    private int mergeChunk(List<Duplicate> chunk, List<Duplicate> skipped)
+    {
+        synchronized (Review.CREATE_LOCK)
+        {
+            long write = ReviewEvents.getInstance().beginWrite();
+            try
+            {
+                IntIntMap mergedInto = new IntIntMap(chunk.size());
+                StringBuilder ids = new StringBuilder();
+                int applied = 0;
+                for (Duplicate duplicate : chunk)
+                {
+                    if (sharedReviewers(duplicate.getMovieID(), duplicate.getIntoMovieID()) != 0)
+                    {
+                        skipped.add(duplicate);
+                        continue;
+                    }
+                    if (!mergeOne(duplicate.getMovieID(), duplicate.getIntoMovieID()))
+                    {
+                        break;
+                    }
+                    mergedInto.put(duplicate.getMovieID(), duplicate.getIntoMovieID());
+                    ids.append(ids.length() == 0 ? "" : ",").append(duplicate.getMovieID());
+                    applied++;
+                }
+                if (applied == 0)
+                {
+                    return 0;
+                }
+                ReviewEvents.getInstance().moviesMerged(mergedInto);
+
+                try
+                {
+                    Database.getInstance().executeUpdate("dedupe.deleteMovies",
+                            "DELETE FROM Movies WHERE id IN (" + ids + ")");
+                }
+                catch (SQLException e)
+                {
+                    // The movies have no reviews left, so the next run merges them again
+                    System.err.println("Failed to delete merged movies: " + e.getMessage());
+                    return 0;
+                }
+                return applied;
+            }
+            finally
+            {
+                ReviewEvents.getInstance().endWrite(write);
+            }
+        }
+    }
+
+    /**
+     * Counts the users who reviewed both movies
+     *
+     * @param duplicateID the movie merged away
+     * @param movieID the movie kept
+     * @return the number of such users, or -1 if the reviews could not be read
+     */
+    private static int sharedReviewers(int duplicateID, int movieID)
+    {
+        try (ResultSet resultSet = Database.getInstance().executeQuery("dedupe.sharedReviewers",
+                "SELECT COUNT(DISTINCT d.userID) FROM reviews d JOIN reviews k ON k.userID = d.userID " +
+                "WHERE d.movieID = ? AND k.movieID = ?", duplicateID, movieID))
+        {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to read the reviews of duplicate movies: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Moves the reviews of one movie to another
+     *
+     * @param duplicateID the movie merged away
+     * @param movieID the movie kept
+     * @return true if the merge is in the log and applied
+     */
+    private boolean mergeOne(int duplicateID, int movieID)
+    {
+        List<Integer> movedReviews = new ArrayList<>();
+        try (ResultSet resultSet = Database.getInstance().executeQuery("dedupe.movieReviews",
+                "SELECT reviewID FROM reviews WHERE movieID = ?", duplicateID))
+        {
+            while (resultSet.next())
+            {
+                movedReviews.add(resultSet.getInt(1));
+            }
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to read the reviews of a duplicate movie: " + e.getMessage());
+            return false;
+        }
+
+        long sequence;
+        try
+        {
+            sequence = EventLog.getInstance().append(LogRecord.movieMerged(duplicateID, movieID));
+        }
+        catch (UncheckedIOException e)
+        {
+            System.err.println("Failed to write a merge to the event log: " + e.getMessage());
+            return false;
+        }
+        LogProjection projection = LogProjection.getInstance();
+        projection.catchUpTo(sequence);
+        if (projection.getPosition() < sequence)
+        {
+            System.err.println("Failed to apply a merge; it will be applied on the next start.");
+            return false;
+        }
+
+        // Reviews cached by ID still name the old movie
+        ReviewCache cache = ReviewCache.getInstance();
+        for (int reviewID : movedReviews)
+        {
+            cache.invalidate(reviewID);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts pairs and drops repeats
+     *
+     * @param pairs the pairs
+     * @return the distinct pairs in ascending order
+     */
+    private static long[] unique(long[] pairs)
+    {
+        Arrays.sort(pairs);
+        int count = 0;
+        for (int i = 0; i < pairs.length; i++)
+        {
+            if (i == 0 || pairs[i] != pairs[i - 1])
+            {
+                pairs[count++] = pairs[i];
+            }
+        }
+        return Arrays.copyOf(pairs, count);
+    }
+
+    /**
+     * Finds the root of a union-find set, halving the path on the way
+     *
+     * @param parent the parent array
+     * @param x the element
+     * @return the root of the element's set
+     */
+    private static int find(int[] parent, int x)
+    {
+        while (parent[x] != x)
+        {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Normalizes a title for comparison: lower case without accents or punctuation, "&amp;" as
+     * "and", roman numerals from 2 to 39 as digits, and no article at the start or end
+     *
+     * @param title the title
+     * @return the words of the normalized title separated by single spaces
+     */
+    static String normalize(String title)
+    {
+        String decomposed = Normalizer.normalize(title, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= decomposed.length(); i++)
+        {
+            char c = i < decomposed.length() ? decomposed.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == '\'' || c == '\u2019')
+            {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c))
+            {
+                word.append(c);
+                continue;
+            }
+            if (word.length() > 0)
+            {
+                words.add(romanToDigits(word.toString()));
+                word.setLength(0);
+            }
+            if (c == '&')
+            {
+                words.add("and");
+            }
+        }
+        // "The Matrix" and "Matrix, The"
+        if (words.size() > 1 && Arrays.asList(ARTICLES).contains(words.get(0)))
+        {
+            words.remove(0);
+        }
+        if (words.size() > 1 && Arrays.asList(ARTICLES).contains(words.get(words.size() - 1)))
+        {
+            words.remove(words.size() - 1);
+        }
+        return String.join(" ", words);
+    }
+
+    /**
+     * Replaces a roman numeral from 2 to 39 with its digits
+     *
+     * @param word a lower-case word
+     * @return the digits, or the word itself if it is not such a numeral
+     */
+    private static String romanToDigits(String word)
+    {
+        if (word.length() < 2 || word.length() > 6)
+        {
+            return word;
+        }
+        int value = 0;
+        for (int i = 0; i < word.length(); i++)
+        {
+            int digit = romanDigit(word.charAt(i));
+            if (digit == 0)
+            {
+                return word;
+            }
+            int next = i + 1 < word.length() ? romanDigit(word.charAt(i + 1)) : 0;
+            value += digit < next ? -digit : digit;
+        }
+        // Only accept the canonical spelling, so "iiv" or "vx" stay words
+        StringBuilder canonical = new StringBuilder();
+        for (int i = 0; i < value / 10; i++)
+        {
+            canonical.append('x');
+        }
+        String[] units = {"", "i", "ii", "iii", "iv", "v", "vi", "vii", "viii", "ix"};
+        canonical.append(units[value % 10]);
+        return value >= 2 && value <= 39 && canonical.toString().equals(word) ? Integer.toString(value) : word;
+    }
+
+    /**
+     * Gets the value of a roman digit up to ten
+     *
+     * @param c a lower-case character
+     * @return 1, 5 or 10, or 0 if the character is not one of i, v and x
+     */
+    private static int romanDigit(char c)
+    {
+        return c == 'i' ? 1 : c == 'v' ? 5 : c == 'x' ? 10 : 0;
+    }
+
+    /**
+     * Gets the numbers in a normalized title, including those inside words such as "d2"
+     *
+     * @param normalized the normalized title
+     * @return its runs of digits separated by spaces
+     */
+    static String numbers(String normalized)
+    {
+        StringBuilder result = new StringBuilder();
+        boolean inNumber = false;
+        for (int i = 0; i < normalized.length(); i++)
+        {
+            char c = normalized.charAt(i);
+            if (Character.isDigit(c))
+            {
+                if (!inNumber && result.length() > 0)
+                {
+                    result.append(' ');
+                }
+                result.append(c);
+            }
+            inNumber = Character.isDigit(c);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Computes the edit similarity of two strings
+     *
+     * @param a the first string
+     * @param b the second string
+     * @return 1 minus the Levenshtein distance divided by the longer length, 1 for two empty strings
+     */
+    static double similarity(String a, String b)
+    {
+        int longer = Math.max(a.length(), b.length());
+        if (longer == 0)
+        {
+            return 1.0;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+        {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++)
+        {
+            row[0] = i;
+            for (int j = 1; j <= b.length(); j++)
+            {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(substitute, Math.min(previous[j], row[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return 1.0 - (double) previous[b.length()] / longer;
+    }
+
+    /**
+     * Mixes the bits of a value (the MurmurHash3 finalizer)
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    private static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The movies being deduplicated, by dense index
+     */
+    private static final class Catalog
+    {
+        int[] ids;              // Movie ID
+        String[] titles;        // Title as stored
+        String[] normalized;    // Normalized title
+        String[] numbers;       // Numbers in the normalized title
+        int[] genres;           // Genre ordinal, -1 if unknown
+        Map<String, Integer> titlesByWord;  // Number of normalized titles using each word
+        int size;
+
+        /**
+         * Reads every movie
+         *
+         * @return the catalog, empty if the database cannot be read
+         */
+        static Catalog load()
+        {
+            Catalog catalog = new Catalog();
+            catalog.ids = new int[1024];
+            catalog.titles = new String[1024];
+            catalog.genres = new int[1024];
+            try
+            {
+                ResultSet resultSet = Database.getInstance().executeQuery("dedupe.movies",
+                        "SELECT id, title, genres FROM Movies");
+                while (resultSet.next())
+                {
+                    String title = resultSet.getString("title");
+                    if (title != null)
+                    {
+                        catalog.add(resultSet.getInt("id"), title, resultSet.getString("genres"));
+                    }
+                }
+                resultSet.close();
+            }
+            catch (SQLException e)
+            {
+                System.err.println("Failed to load movies for deduplication: " + e.getMessage());
+                catalog.size = 0;
+            }
+            catalog.normalized = new String[catalog.size];
+            catalog.numbers = new String[catalog.size];
+            return catalog;
+        }
+
+        /**
+         * Adds a movie
+         */
+        void add(int id, String title, String genre)
+        {
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+                titles = Arrays.copyOf(titles, size * 2);
+                genres = Arrays.copyOf(genres, size * 2);
+            }
+            ids[size] = id;
+            titles[size] = title;
+            genres[size] = -1;
+            if (genre != null)
+            {
+                try
+                {
+                    genres[size] = Genre.GenreType.valueOf(genre.trim().toUpperCase().replace(' ', '_')).ordinal();
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Unrecognised genre, never confirmed as a duplicate
+                }
+            }
+            size++;
+        }
+
+        /**
+         * Counts the titles using each word, once the titles are normalized
+         */
+        void countWords()
+        {
+            titlesByWord = new HashMap<>();
+            for (int i = 0; i < size; i++)
+            {
+                for (String word : new HashSet<>(Arrays.asList(normalized[i].split(" "))))
+                {
+                    titlesByWord.merge(word, 1, Integer::sum);
+                }
+            }
+        }
+
+        /**
+         * Gets the number of movies
+         */
+        int size()
+        {
+            return size;
+        }
+
+        /**
+         * Scores two movies as duplicates
+         *
+         * @return the similarity of their normalized titles, 1 if they only differ in spaces,
+         *         or 0 if their genres or numbers differ or they differ in a word other titles use
+         *         or in a plural
+         */
+        double similarity(int a, int b)
+        {
+            if (genres[a] < 0 || genres[a] != genres[b] || !numbers[a].equals(numbers[b])
+                    || normalized[a].isEmpty())
+            {
+                return 0.0;
+            }
+            if (normalized[a].replace(" ", "").equals(normalized[b].replace(" ", "")))
+            {
+                return 1.0;
+            }
+            String[] wordsA = normalized[a].split(" ");
+            String[] wordsB = normalized[b].split(" ");
+            if (wordsA.length == wordsB.length)
+            {
+                for (int k = 0; k < wordsA.length; k++)
+                {
+                    String wordA = wordsA[k];
+                    String wordB = wordsB[k];
+                    if (wordA.equals(wordB))
+                    {
+                        continue;
+                    }
+                    if ((titlesByWord.get(wordA) > 1 && titlesByWord.get(wordB) > 1)
+                            || wordA.equals(wordB + "s") || wordB.equals(wordA + "s"))
+                    {
+                        return 0.0;
+                    }
+                }
+            }
+            return MovieDeduplicator.similarity(normalized[a], normalized[b]);
+        }
+    }
+
+    /**
+     * Normalizes a range of titles and computes the key of each band of their MinHash signatures
+     */
+    private static final class SignatureTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Catalog catalog;
+        private final long[][] bandKeys;
+        private final int from;
+        private final int to;
+
+        SignatureTask(Catalog catalog, long[][] bandKeys, int from, int to)
+        {
+            this.catalog = catalog;
+            this.bandKeys = bandKeys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SignatureTask(catalog, bandKeys, from, middle),
+                          new SignatureTask(catalog, bandKeys, middle, to));
+                return;
+            }
+            long[] signature = new long[SIGNATURE_SIZE];
+            for (int i = from; i < to; i++)
+            {
+                String normalized = normalize(catalog.titles[i]);
+                catalog.normalized[i] = normalized;
+                catalog.numbers[i] = numbers(normalized);
+                if (normalized.isEmpty())
+                {
+                    // A key of its own in every band, so the movie is never a candidate
+                    for (int band = 0; band < BANDS; band++)
+                    {
+                        bandKeys[band][i] = ((long) ~i << INDEX_BITS) | i;
+                    }
+                    continue;
+                }
+
+                Arrays.fill(signature, Long.MAX_VALUE);
+                String padded = " " + normalized + " ";
+                for (int start = 0; start + SHINGLE_LENGTH <= padded.length(); start++)
+                {
+                    long shingle = 0;
+                    for (int k = 0; k < SHINGLE_LENGTH; k++)
+                    {
+                        shingle = (shingle << 16) | padded.charAt(start + k);
+                    }
+                    for (int h = 0; h < SIGNATURE_SIZE; h++)
+                    {
+                        long hash = mix(shingle * HASH_MULTIPLIERS[h] + HASH_OFFSETS[h]);
+                        if (hash < signature[h])
+                        {
+                            signature[h] = hash;
+                        }
+                    }
+                }
+                for (int band = 0; band < BANDS; band++)
+                {
+                    long key = band;
+                    for (int row = 0; row < ROWS_PER_BAND; row++)
+                    {
+                        key = mix(key * 31 + signature[band * ROWS_PER_BAND + row]);
+                    }
+                    // High bits: the band key; low bits: the movie, so sorting groups a bucket
+                    bandKeys[band][i] = (key << INDEX_BITS) | i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the candidate pairs of a range of bands: every two movies in the same bucket
+     */
+    private static final class BandTask extends RecursiveTask<long[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long[][] bandKeys;
+        private final int from;
+        private final int to;
+
+        BandTask(long[][] bandKeys, int from, int to)
+        {
+            this.bandKeys = bandKeys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute()
+        {
+            if (to - from > 1)
+            {
+                int middle = (from + to) >>> 1;
+                BandTask right = new BandTask(bandKeys, middle, to);
+                right.fork();
+                long[] left = new BandTask(bandKeys, from, middle).compute();
+                long[] rightPairs = right.join();
+                long[] pairs = Arrays.copyOf(left, left.length + rightPairs.length);
+                System.arraycopy(rightPairs, 0, pairs, left.length, rightPairs.length);
+                return pairs;
+            }
+
+            long[] keys = bandKeys[from].clone();
+            Arrays.sort(keys);
+            long mask = (1L << INDEX_BITS) - 1;
+            long[] pairs = new long[64];
+            int count = 0;
+            int start = 0;
+            while (start < keys.length)
+            {
+                int end = start + 1;
+                while (end < keys.length && (keys[end] >>> INDEX_BITS) == (keys[start] >>> INDEX_BITS))
+                {
+                    end++;
+                }
+                for (int a = start; a < end; a++)
+                {
+                    // Pair a huge bucket as a star instead of all against all
+                    int last = end - start > MAX_BUCKET ? Math.min(a, start + 1) : a;
+                    for (int b = start; b < last; b++)
+                    {
+                        long first = keys[b] & mask;
+                        long second = keys[a] & mask;
+                        if (count == pairs.length)
+                        {
+                            pairs = Arrays.copyOf(pairs, count * 2);
+                        }
+                        pairs[count++] = (Math.min(first, second) << 32) | Math.max(first, second);
+                    }
+                }
+                start = end;
+            }
+            return Arrays.copyOf(pairs, count);
+        }
+    }
+
+    /**
+     * Scores a range of candidate pairs
+     */
+    private static final class ScoreTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Catalog catalog;
+        private final long[] candidates;
+        private final double[] scores;
+        private final int from;
+        private final int to;
+
+        ScoreTask(Catalog catalog, long[] candidates, double[] scores, int from, int to)
+        {
+            this.catalog = catalog;
+            this.candidates = candidates;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreTask(catalog, candidates, scores, from, middle),
+                          new ScoreTask(catalog, candidates, scores, middle, to));
+                return;
+            }
+            for (int c = from; c < to; c++)
+            {
+                scores[c] = catalog.similarity((int) (candidates[c] >>> 32), (int) candidates[c]);
+            }
+        }
+    }
+
+    /**
+     * A movie found to duplicate another
+     */
+    public static final class Duplicate
+    {
+        private final int movieID;          // Movie to merge away
+        private final String title;
+        private final int intoMovieID;      // Movie that keeps the reviews
+        private final String intoTitle;
+        private final double similarity;    // Similarity of the normalized titles
+
+        /**
+         * Constructs a duplicate
+         *
+         * @param movieID the movie to merge away
+         * @param title its title
+         * @param intoMovieID the movie that keeps the reviews
+         * @param intoTitle its title
+         * @param similarity the similarity of the normalized titles
+         */
+        public Duplicate(int movieID, String title, int intoMovieID, String intoTitle, double similarity)
+        {
+            this.movieID = movieID;
+            this.title = title;
+            this.intoMovieID = intoMovieID;
+            this.intoTitle = intoTitle;
+            this.similarity = similarity;
+        }
+
+        /** @return the movie to merge away */
+        public int getMovieID()
+        {
+            return movieID;
+        }
+
+        /** @return the movie that keeps the reviews */
+        public int getIntoMovieID()
+        {
+            return intoMovieID;
+        }
+
+        /** @return the similarity of the normalized titles, from 0 to 1 */
+        public double getSimilarity()
+        {
+            return similarity;
+        }
+
+        /**
+         * Describes the merge
+         *
+         * @return both movies and their similarity
+         */
+        @Override
+        public String toString()
+        {
+            return String.format("Movie ID: %d, Title: %s -> Movie ID: %d, Title: %s (similarity %.2f)",
+                                 movieID, title, intoMovieID, intoTitle, similarity);
+        }
+    }
+}
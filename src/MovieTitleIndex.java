@@ -0,0 +1,461 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MovieTitleIndex finds movies whose titles nearly match what the user typed, so a typo
+ * suggests the existing movie instead of leading to a duplicate one.
+ *
+ * Titles are split into lower-cased words, and every distinct word is kept once in a trie,
+ * listing the movies whose titles contain it. A query word is matched by walking the trie
+ * like a Levenshtein automaton: each node computes one row of the edit distance table from its
+ * parent's, so words sharing a prefix share its work, and a prefix that is already too far
+ * from the query skips all of its words at once. Query words match title words within edit distance 2 (1 for words of
+ * up to four letters, exact for shorter ones). Candidates come from the query word with the
+ * fewest movies, must match every query word, and are ranked by the total distance, then by
+ * how close their number of words is to the query's.
+ *
+ * The index is loaded from the Movies table on first use and follows movies created or merged
+ * away later from the DomainEventBus. Implements the Singleton pattern so all lookups share one index.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class MovieTitleIndex implements DomainEventSubscriber
+{
+    private static MovieTitleIndex instance;    // Singleton instance
+
+    private final Map<String, Word> words;      // Every distinct title word
+    private final IntObjectMap<Movie> movies;   // Indexed movies by ID
+    private final IntObjectMap<String[]> titles; // Distinct words of each indexed title
+    // Trie of every distinct title word; node 0 is the root and each node holds one character
+    private char[] letters;                     // Character of each node
+    private int[] firstChild;                   // First child of each node, -1 for none
+    private int[] nextSibling;                  // Next child of the same parent, -1 for none
+    private Word[] nodeWords;                   // Word ending at each node, or null
+    private int nodeCount;                      // Number of used nodes
+
+    /**
+     * Creates an empty index
+     */
+    MovieTitleIndex()
+    {
+        this.words = new HashMap<>();
+        this.movies = new IntObjectMap<>();
+        this.titles = new IntObjectMap<>();
+        this.letters = new char[1024];
+        this.firstChild = new int[1024];
+        this.nextSibling = new int[1024];
+        this.nodeWords = new Word[1024];
+        this.firstChild[0] = -1;
+        this.nextSibling[0] = -1;
+        this.nodeCount = 1;
+    }
+
+    /**
+     * Gets the singleton instance, loading every movie title on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized MovieTitleIndex getInstance()
+    {
+        if (instance == null)
+        {
+            MovieTitleIndex index = new MovieTitleIndex();
+            // Subscribe before loading so no new movie is missed; movies seen twice are skipped
+            DomainEventBus.getInstance().subscribe("movie-titles", index);
+            index.load();
+            instance = index;
+        }
+        return instance;
+    }
+
+    /**
+     * Loads every movie from the database
+     */
+    private void load()
+    {
+        try
+        {
+            ResultSet resultSet = Database.getInstance().executeQuery("titleIndex.load", "SELECT id, title, genres FROM Movies");
+            while (resultSet.next())
+            {
+                String title = resultSet.getString("title");
+                String genre = resultSet.getString("genres");
+                if (title == null || genre == null)
+                {
+                    continue;
+                }
+                try
+                {
+                    add(new Movie(resultSet.getInt("id"), title,
+                            Genre.GenreType.valueOf(genre.trim().toUpperCase().replace(' ', '_'))));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Skip movies with an unrecognised genre
+                }
+            }
+            resultSet.close();
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to load movie titles: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a movie created after the index was loaded, or removes one merged into another
+     *
+     * @param event the event
+     * @param endOfBatch true for the last event currently available
+     */
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch)
+    {
+        if (event.getType() == DomainEvent.Type.MOVIE_CREATED)
+        {
+            add(event.getMovie());
+        }
+        else if (event.getType() == DomainEvent.Type.MOVIE_MERGED)
+        {
+            remove(event.getMovieID());
+        }
+    }
+
+    /**
+     * Indexes a movie's title
+     *
+     * @param movie the movie
+     */
+    public synchronized void add(Movie movie)
+    {
+        if (movies.containsKey(movie.getMovieID()))
+        {
+            return;
+        }
+        movies.put(movie.getMovieID(), movie);
+        Set<String> titleWords = distinctWords(movie.getTitle());
+        titles.put(movie.getMovieID(), titleWords.toArray(new String[0]));
+        for (String text : titleWords)
+        {
+            Word word = words.get(text);
+            if (word == null)
+            {
+                word = new Word(text);
+                words.put(text, word);
+                insert(word);
+            }
+            word.add(movie.getMovieID());
+        }
+    }
+
+    /**
+     * Removes a movie. Its words stay in the trie, possibly without movies.
+     *
+     * @param movieID the movie ID
+     */
+    public synchronized void remove(int movieID)
+    {
+        String[] titleWords = titles.remove(movieID);
+        if (titleWords == null)
+        {
+            return;
+        }
+        movies.remove(movieID);
+        for (String text : titleWords)
+        {
+            words.get(text).remove(movieID);
+        }
+    }
+
+    /**
+     * Gets the number of indexed movies
+     *
+     * @return the number of movies
+     */
+    public synchronized int size()
+    {
+        return movies.size();
+    }
+
+    /**
+     * Finds movies whose titles nearly match a query, best match first
+     *
+     * @param query the title, or part of it, possibly misspelled
+     * @param limit the maximum number of movies to return
+     * @return the matching movies
+     */
+    public synchronized List<Movie> findSimilar(String query, int limit)
+    {
+        List<Movie> results = new ArrayList<>();
+        Set<String> queryWords = distinctWords(query);
+        if (queryWords.isEmpty() || words.isEmpty() || limit <= 0)
+        {
+            return results;
+        }
+
+        // For each query word, the nearby title words and their distances
+        List<Map<String, Integer>> nearby = new ArrayList<>();
+        Map<String, Integer> driver = null;
+        int driverMovies = Integer.MAX_VALUE;
+        for (String text : queryWords)
+        {
+            Map<String, Integer> matches = new HashMap<>();
+            search(text, maxDistance(text), matches);
+            if (matches.isEmpty())
+            {
+                return results;
+            }
+            nearby.add(matches);
+            int movieCount = 0;
+            for (String match : matches.keySet())
+            {
+                movieCount += words.get(match).count;
+            }
+            if (movieCount < driverMovies)
+            {
+                driver = matches;
+                driverMovies = movieCount;
+            }
+        }
+
+        // Only the movies of the rarest query word are candidates; each is scored from its own title words
+        long[] ranked = new long[driverMovies];
+        int found = 0;
+        for (String match : driver.keySet())
+        {
+            Word word = words.get(match);
+            for (int i = 0; i < word.count; i++)
+            {
+                int movieID = word.movieIDs[i];
+                String[] titleWords = titles.get(movieID);
+                int total = 0;
+                for (Map<String, Integer> matches : nearby)
+                {
+                    int best = Integer.MAX_VALUE;
+                    for (String titleWord : titleWords)
+                    {
+                        Integer distance = matches.get(titleWord);
+                        if (distance != null && distance < best)
+                        {
+                            best = distance;
+                        }
+                    }
+                    if (best == Integer.MAX_VALUE)
+                    {
+                        total = -1;
+                        break;
+                    }
+                    total += best;
+                }
+                if (total < 0)
+                {
+                    continue;
+                }
+                int extraWords = Math.abs(titleWords.length - queryWords.size());
+                // Sort key: total distance, then extra words, then movie ID
+                ranked[found++] = ((long) Math.min(total, 0x7f) << 56) | ((long) Math.min(extraWords, 0xff) << 48) | movieID;
+            }
+        }
+        Arrays.sort(ranked, 0, found);
+        // A movie reached through several nearby words appears once per word with the same key
+        for (int i = 0; i < found && results.size() < limit; i++)
+        {
+            if (i == 0 || ranked[i] != ranked[i - 1])
+            {
+                results.add(movies.get((int) (ranked[i] & 0xffffffffL)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Gets the largest edit distance accepted for a query word
+     *
+     * @param word the query word
+     * @return 0 for words of up to two letters, 1 for up to four, 2 otherwise
+     */
+    static int maxDistance(String word)
+    {
+        return word.length() <= 2 ? 0 : word.length() <= 4 ? 1 : 2;
+    }
+
+    /**
+     * Splits a title into distinct lower-cased words of letters and digits
+     *
+     * @param title the title
+     * @return the words in order of first appearance
+     */
+    static Set<String> distinctWords(String title)
+    {
+        Set<String> result = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        String lower = title.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= lower.length(); i++)
+        {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c))
+            {
+                word.append(c);
+            }
+            else if (word.length() > 0)
+            {
+                result.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a word to the trie
+     *
+     * @param word the word
+     */
+    private void insert(Word word)
+    {
+        int node = 0;
+        for (int i = 0; i < word.text.length(); i++)
+        {
+            char c = word.text.charAt(i);
+            int child = firstChild[node];
+            while (child >= 0 && letters[child] != c)
+            {
+                child = nextSibling[child];
+            }
+            if (child < 0)
+            {
+                if (nodeCount == letters.length)
+                {
+                    int capacity = nodeCount * 2;
+                    letters = Arrays.copyOf(letters, capacity);
+                    firstChild = Arrays.copyOf(firstChild, capacity);
+                    nextSibling = Arrays.copyOf(nextSibling, capacity);
+                    nodeWords = Arrays.copyOf(nodeWords, capacity);
+                }
+                child = nodeCount++;
+                letters[child] = c;
+                firstChild[child] = -1;
+                nextSibling[child] = firstChild[node];
+                firstChild[node] = child;
+            }
+            node = child;
+        }
+        nodeWords[node] = word;
+    }
+
+    /**
+     * Finds every word within a distance of a query word
+     *
+     * @param text the query word
+     * @param maxDistance the largest accepted distance
+     * @param matches where to record each nearby word with its distance
+     */
+    private void search(String text, int maxDistance, Map<String, Integer> matches)
+    {
+        // A word within the distance has at most text.length() + maxDistance characters
+        int[][] rows = new int[text.length() + maxDistance + 1][text.length() + 1];
+        for (int i = 0; i <= text.length(); i++)
+        {
+            rows[0][i] = i;
+        }
+        for (int child = firstChild[0]; child >= 0; child = nextSibling[child])
+        {
+            search(text, maxDistance, child, rows, 1, matches);
+        }
+    }
+
+    /**
+     * Continues a search below a trie node.
+     * Computes the node's row of the edit distance table from its parent's row; once every
+     * entry of a row exceeds the distance, no word below the node can match and it is skipped.
+     *
+     * @param text the query word
+     * @param maxDistance the largest accepted distance
+     * @param node the node
+     * @param rows one row per depth, filled down to the parent's
+     * @param depth the node's depth, its parent's row being rows[depth - 1]
+     * @param matches where to record each nearby word with its distance
+     */
+    private void search(String text, int maxDistance, int node, int[][] rows, int depth, Map<String, Integer> matches)
+    {
+        char c = letters[node];
+        int[] above = rows[depth - 1];
+        int[] row = rows[depth];
+        row[0] = above[0] + 1;
+        int smallest = row[0];
+        for (int i = 1; i < row.length; i++)
+        {
+            int substitute = above[i - 1] + (text.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(substitute, Math.min(above[i], row[i - 1]) + 1);
+            smallest = Math.min(smallest, row[i]);
+        }
+        if (smallest > maxDistance)
+        {
+            return;
+        }
+        int distance = row[row.length - 1];
+        if (nodeWords[node] != null && distance <= maxDistance)
+        {
+            matches.put(nodeWords[node].text, distance);
+        }
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child])
+        {
+            if (depth + 1 < rows.length)
+            {
+                search(text, maxDistance, child, rows, depth + 1, matches);
+            }
+        }
+    }
+
+    /**
+     * A title word and the IDs of the movies whose titles contain it
+     */
+    private static final class Word
+    {
+        final String text;
+        int[] movieIDs = new int[2];
+        int count;
+
+        /**
+         * Creates a word without movies
+         */
+        Word(String text)
+        {
+            this.text = text;
+        }
+
+        /**
+         * Adds a movie
+         */
+        void add(int movieID)
+        {
+            if (count == movieIDs.length)
+            {
+                movieIDs = Arrays.copyOf(movieIDs, count * 2);
+            }
+            movieIDs[count++] = movieID;
+        }
+
+        /**
+         * Removes a movie, moving the last one into its place
+         */
+        void remove(int movieID)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                if (movieIDs[i] == movieID)
+                {
+                    movieIDs[i] = movieIDs[--count];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OffHeapSlab stores variable-length records outside the Java heap.
+ * Records are placed in fixed-size slots of a few power-of-two size classes; each class
+ * carves its slots out of 256 KB direct buffers that are allocated on demand, and freed
+ * slots are reused through a per-class free list. Keeping cached data off-heap keeps it
+ * out of garbage-collector scans and avoids one object graph per record.
+ * A record is addressed by an int handle holding its size class and slot number.
+ * Not thread-safe; callers synchronize.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class OffHeapSlab
+{
+    private static final int MIN_SLOT_SHIFT = 6;        // Smallest slot is 64 bytes
+    private static final int CLASS_COUNT = 7;           // Slots of 64 B up to 4 KB
+    private static final int CHUNK_BYTES = 256 * 1024;  // Size of each direct buffer
+    private static final int SLOT_BITS = 24;            // Low handle bits hold the slot number
+
+    /**
+     * The slots of one size class
+     */
+    private static final class SizeClass
+    {
+        final int slotSize;
+        final int slotsPerChunk;
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        int[] freeSlots = new int[16];
+        int freeCount;
+        int slotCount;
+
+        SizeClass(int slotSize)
+        {
+            this.slotSize = slotSize;
+            this.slotsPerChunk = CHUNK_BYTES / slotSize;
+        }
+    }
+
+    private final SizeClass[] classes;                  // Size classes, smallest first
+    private long usedBytes;                             // Bytes in slots currently holding records
+
+    /**
+     * Creates an empty slab; no memory is reserved until the first allocation
+     */
+    public OffHeapSlab()
+    {
+        classes = new SizeClass[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++)
+        {
+            classes[i] = new SizeClass(1 << (MIN_SLOT_SHIFT + i));
+        }
+    }
+
+    /**
+     * Gets the largest record the slab can hold
+     *
+     * @return the size of the largest slot in bytes
+     */
+    public int getMaxRecordSize()
+    {
+        return classes[CLASS_COUNT - 1].slotSize;
+    }
+
+    /**
+     * Reserves a slot large enough for a record
+     *
+     * @param length the record length in bytes
+     * @return the handle of the slot, or -1 if the record is larger than the largest slot
+     */
+    public int allocate(int length)
+    {
+        int index = 0;
+        while (index < CLASS_COUNT && classes[index].slotSize < length)
+        {
+            index++;
+        }
+        if (index == CLASS_COUNT)
+        {
+            return -1;
+        }
+
+        SizeClass sizeClass = classes[index];
+        int slot;
+        if (sizeClass.freeCount > 0)
+        {
+            slot = sizeClass.freeSlots[--sizeClass.freeCount];
+        }
+        else
+        {
+            slot = sizeClass.slotCount++;
+            if (slot / sizeClass.slotsPerChunk == sizeClass.chunks.size())
+            {
+                sizeClass.chunks.add(ByteBuffer.allocateDirect(CHUNK_BYTES));
+            }
+        }
+        usedBytes += sizeClass.slotSize;
+        return (index << SLOT_BITS) | slot;
+    }
+
+    /**
+     * Returns a slot to its free list
+     *
+     * @param handle the handle from allocate
+     */
+    public void free(int handle)
+    {
+        SizeClass sizeClass = classes[handle >>> SLOT_BITS];
+        if (sizeClass.freeCount == sizeClass.freeSlots.length)
+        {
+            int[] grown = new int[sizeClass.freeSlots.length * 2];
+            System.arraycopy(sizeClass.freeSlots, 0, grown, 0, sizeClass.freeCount);
+            sizeClass.freeSlots = grown;
+        }
+        sizeClass.freeSlots[sizeClass.freeCount++] = handle & ((1 << SLOT_BITS) - 1);
+        usedBytes -= sizeClass.slotSize;
+    }
+
+    /**
+     * Gets the buffer holding a slot; read and write it with absolute offsets from offset(handle)
+     *
+     * @param handle the slot handle
+     * @return the direct buffer containing the slot
+     */
+    public ByteBuffer buffer(int handle)
+    {
+        SizeClass sizeClass = classes[handle >>> SLOT_BITS];
+        return sizeClass.chunks.get((handle & ((1 << SLOT_BITS) - 1)) / sizeClass.slotsPerChunk);
+    }
+
+    /**
+     * Gets the byte offset of a slot within its buffer
+     *
+     * @param handle the slot handle
+     * @return the offset of the slot's first byte
+     */
+    public int offset(int handle)
+    {
+        SizeClass sizeClass = classes[handle >>> SLOT_BITS];
+        return ((handle & ((1 << SLOT_BITS) - 1)) % sizeClass.slotsPerChunk) * sizeClass.slotSize;
+    }
+
+    /**
+     * Gets the bytes in slots currently holding records
+     *
+     * @return the used bytes
+     */
+    public long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the bytes of direct memory reserved by the slab
+     *
+     * @return the reserved bytes
+     */
+    public long getReservedBytes()
+    {
+        long chunks = 0;
+        for (SizeClass sizeClass : classes)
+        {
+            chunks += sizeClass.chunks.size();
+        }
+        return chunks * CHUNK_BYTES;
+    }
+}
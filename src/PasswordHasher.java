@@ -0,0 +1,232 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PasswordHasher hashes and verifies passwords with salted PBKDF2-HMAC-SHA256.
+ * Hashes are stored as "pbkdf2$&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;" (Base64 salt and hash),
+ * so the work factor can be raised later without invalidating existing passwords.
+ *
+ * The key derivation is deliberately slow, so it runs on a small bounded pool of
+ * worker threads rather than on the thread handling the request. When the queue is
+ * full new work is rejected instead of piling up, which keeps a login burst from
+ * exhausting memory or starving other requests.
+ *
+ * Tuning: -Dauth.kdfIterations (default 120000), -Dauth.kdfThreads (default: CPU count).
+ * Passwords stored before hashing was introduced are plaintext; they still verify,
+ * and needsRehash reports them so they can be upgraded on the next login.
+ * Implements the Singleton pattern so the whole application shares one worker pool.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class PasswordHasher
+{
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2";      // Marks a hashed password
+    private static final int SALT_BYTES = 16;           // Random salt per password
+    private static final int HASH_BITS = 256;           // Derived key length
+    private static final int QUEUE_CAPACITY = 1024;     // Pending hash jobs before rejecting
+
+    private static PasswordHasher instance;             // Singleton instance
+
+    private final int iterations;                       // PBKDF2 iteration count for new hashes
+    private final ThreadPoolExecutor pool;              // Bounded pool running the key derivation
+    private final SecureRandom random;                  // Source of salts
+
+    /**
+     * Private constructor for Singleton pattern
+     */
+    private PasswordHasher()
+    {
+        this.iterations = Integer.getInteger("auth.kdfIterations", 120000);
+        this.random = new SecureRandom();
+
+        int threads = Integer.getInteger("auth.kdfThreads", Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable ->
+                {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Gets the singleton instance of PasswordHasher
+     *
+     * @return the singleton instance
+     */
+    public static synchronized PasswordHasher getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new PasswordHasher();
+        }
+        return instance;
+    }
+
+    /**
+     * Hashes a password with a new random salt on the worker pool
+     *
+     * @param password the plaintext password
+     * @return a future completing with the encoded hash
+     */
+    public CompletableFuture<String> hash(String password)
+    {
+        return submit(() -> hashNow(password));
+    }
+
+    /**
+     * Checks a password against a stored hash on the worker pool
+     *
+     * @param password the plaintext password
+     * @param stored the stored hash, or a legacy plaintext password
+     * @return a future completing with true if the password matches
+     */
+    public CompletableFuture<Boolean> verify(String password, String stored)
+    {
+        return submit(() -> verifyNow(password, stored));
+    }
+
+    /**
+     * Checks whether a stored password should be replaced with a fresh hash,
+     * because it is plaintext or was hashed with a different iteration count
+     *
+     * @param stored the stored password
+     * @return true if the password should be rehashed
+     */
+    public boolean needsRehash(String stored)
+    {
+        String[] parts = split(stored);
+        return parts == null || Integer.parseInt(parts[1]) != iterations;
+    }
+
+    /**
+     * Runs a job on the worker pool
+     *
+     * @param job the job
+     * @param <T> the result type
+     * @return a future for the job's result, failed if the pool is saturated
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> job)
+    {
+        try
+        {
+            return CompletableFuture.supplyAsync(job, pool);
+        }
+        catch (RejectedExecutionException e)
+        {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Password hashing is overloaded, try again later"));
+            return failed;
+        }
+    }
+
+    /**
+     * Hashes a password on the calling thread
+     *
+     * @param password the plaintext password
+     * @return the encoded hash
+     */
+    private String hashNow(String password)
+    {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Verifies a password on the calling thread, in constant time for a given stored value.
+     * A legacy plaintext password still costs one key derivation, so its check takes as long
+     * as a hashed one.
+     *
+     * @param password the plaintext password
+     * @param stored the stored hash or legacy plaintext password
+     * @return true if the password matches
+     */
+    private boolean verifyNow(String password, String stored)
+    {
+        if (password == null || stored == null)
+        {
+            return false;
+        }
+        String[] parts = split(stored);
+        if (parts == null)
+        {
+            derive(password, new byte[SALT_BYTES], iterations);
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                                         stored.getBytes(StandardCharsets.UTF_8));
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] salt = decoder.decode(parts[2]);
+        byte[] expected = decoder.decode(parts[3]);
+        return MessageDigest.isEqual(expected, derive(password, salt, Integer.parseInt(parts[1])));
+    }
+
+    /**
+     * Splits an encoded hash into its four fields
+     *
+     * @param stored the stored password
+     * @return the fields, or null if the value is not a hash in this format
+     */
+    private static String[] split(String stored)
+    {
+        if (stored == null || !stored.startsWith(PREFIX + "$"))
+        {
+            return null;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4)
+        {
+            return null;
+        }
+        try
+        {
+            Integer.parseInt(parts[1]);
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+        return parts;
+    }
+
+    /**
+     * Runs PBKDF2 over a password
+     *
+     * @param password the plaintext password
+     * @param salt the salt
+     * @param rounds the iteration count
+     * @return the derived key
+     */
+    private static byte[] derive(String password, byte[] salt, int rounds)
+    {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, rounds, HASH_BITS);
+        try
+        {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        }
+        catch (NoSuchAlgorithmException | InvalidKeySpecException e)
+        {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        }
+        finally
+        {
+            spec.clearPassword();
+        }
+    }
+}
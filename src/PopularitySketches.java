@@ -0,0 +1,622 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * PopularitySketches answers popularity questions approximately, in memory that does not grow
+ * with the number of movies or users:
+ * - review and like counts per movie from Count-Min sketches
+ * - the most-reviewed and most-liked movies from Space-Saving summaries
+ * - distinct reviewers per genre from one HyperLogLog per genre
+ * - distinct reviewers per movie from a small HyperLogLog for each movie the most-reviewed
+ *   summary has monitored since its first review; other movies fall back to their review
+ *   count, which is the same thing because a user reviews a movie at most once
+ *
+ * The sketches are fed by ReviewEvents when reviews are published and liked. Deletions and
+ * merged-away movies are not subtracted; the file then records that the counts are no longer
+ * exact, so the next start rebuilds them. The sketches are written to a file when the JVM exits
+ * and read back on startup. If the file is missing, not exact, or the database's review count,
+ * highest review ID or like total differs from it, they are rebuilt with one scan of the reviews.
+ * A file is read into fresh sketches that replace nothing until the whole file has been read.
+ * Sketches from other shards can be merged in with mergeFrom.
+ * The file is set with -Dsketches.file (default popularity.sketches).
+ * Implements the Singleton pattern so both write paths feed the same sketches.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class PopularitySketches implements ReviewEventListener
+{
+    private static final int FILE_MAGIC = 0x4d525053;    // "MRPS"
+    private static final int FILE_VERSION = 2;
+    private static final int SKETCH_DEPTH = 4;          // Count-Min rows
+    private static final int SKETCH_WIDTH = 1 << 16;    // Count-Min counters per row
+    private static final int HEAVY_HITTERS = 4096;      // Movies monitored by each Space-Saving summary
+    private static final int GENRE_PRECISION = 14;      // 16 KB per genre, about 0.8% error
+    private static final int MOVIE_PRECISION = 8;       // 256 bytes per monitored movie, about 6.5% error
+
+    private static PopularitySketches instance;         // Singleton instance
+
+    private final CountMinSketch reviewCounts;          // Reviews per movie
+    private final CountMinSketch likeCounts;            // Likes per movie
+    private final SpaceSaving mostReviewed;             // Movies with the most reviews
+    private final SpaceSaving mostLiked;                // Movies with the most likes
+    private final HyperLogLog[] genreReviewers;         // Distinct reviewers per genre ordinal
+    private final IntObjectMap<HyperLogLog> movieReviewers; // Distinct reviewers per monitored movie
+    private long lastReviewID;                          // Highest review ID counted
+    private long likesCounted;                          // Likes counted
+    private long reviewsCounted;                        // Reviews counted, less those deleted since
+    private boolean exact = true;                       // False once deleted reviews or merged movies are still counted
+    private File file;                                  // File the sketches are saved to
+
+    /**
+     * Creates empty sketches
+     */
+    PopularitySketches()
+    {
+        this.reviewCounts = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        this.likeCounts = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        this.mostReviewed = new SpaceSaving(HEAVY_HITTERS);
+        this.mostLiked = new SpaceSaving(HEAVY_HITTERS);
+        this.genreReviewers = new HyperLogLog[Genre.GenreType.values().length];
+        for (int i = 0; i < genreReviewers.length; i++)
+        {
+            genreReviewers[i] = new HyperLogLog(GENRE_PRECISION);
+        }
+        this.movieReviewers = new IntObjectMap<>(HEAVY_HITTERS);
+    }
+
+    /**
+     * Gets the singleton instance, loading the sketches from their file or rebuilding them
+     * from the database on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized PopularitySketches getInstance()
+    {
+        if (instance == null)
+        {
+            File file = new File(System.getProperty("sketches.file", "popularity.sketches"));
+            PopularitySketches sketches = new PopularitySketches();
+            // Listen before loading so no write is missed
+            ReviewEvents.getInstance().addListener(sketches);
+            if (!sketches.load(file))
+            {
+                sketches.rebuild();
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> sketches.save(file)));
+            sketches.file = file;
+            instance = sketches;
+        }
+        return instance;
+    }
+
+    /**
+     * Estimates how many reviews a movie has had
+     *
+     * @param movieID the movie ID
+     * @return an estimate that is never below the true count
+     */
+    public synchronized long estimateReviewCount(int movieID)
+    {
+        return reviewCounts.estimate(movieID);
+    }
+
+    /**
+     * Estimates how many likes the reviews of a movie have had
+     *
+     * @param movieID the movie ID
+     * @return an estimate that is never below the true count
+     */
+    public synchronized long estimateLikeCount(int movieID)
+    {
+        return likeCounts.estimate(movieID);
+    }
+
+    /**
+     * Gets the movies with the most reviews
+     *
+     * @param limit the maximum number of movies
+     * @return movie IDs with estimated review counts, largest first
+     */
+    public synchronized List<HeavyHitter> mostReviewedMovies(int limit)
+    {
+        return tighten(mostReviewed.top(HEAVY_HITTERS), reviewCounts, limit);
+    }
+
+    /**
+     * Gets the movies whose reviews have the most likes
+     *
+     * @param limit the maximum number of movies
+     * @return movie IDs with estimated like counts, largest first
+     */
+    public synchronized List<HeavyHitter> mostLikedMovies(int limit)
+    {
+        return tighten(mostLiked.top(HEAVY_HITTERS), likeCounts, limit);
+    }
+
+    /**
+     * Narrows Space-Saving counts with the Count-Min estimates. Both are upper bounds, so the
+     * smaller one is kept, and the lists are re-ranked by it.
+     *
+     * @param hitters the monitored keys
+     * @param counts the Count-Min sketch of the same stream
+     * @param limit the maximum number of keys returned
+     * @return the keys with tightened counts, largest first
+     */
+    private static List<HeavyHitter> tighten(List<HeavyHitter> hitters, CountMinSketch counts, int limit)
+    {
+        List<HeavyHitter> tightened = new ArrayList<>(hitters.size());
+        for (HeavyHitter hitter : hitters)
+        {
+            long count = Math.min(hitter.getCount(), counts.estimate(hitter.getKey()));
+            tightened.add(new HeavyHitter(hitter.getKey(), count, Math.max(0, count - hitter.getGuaranteedCount())));
+        }
+        tightened.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed()
+                .thenComparingInt(HeavyHitter::getKey));
+        return tightened.size() > limit ? new ArrayList<>(tightened.subList(0, limit)) : tightened;
+    }
+
+    /**
+     * Estimates the number of different users who reviewed movies of a genre
+     *
+     * @param genre the genre
+     * @return the estimated number of reviewers
+     */
+    public synchronized long estimateDistinctReviewers(Genre.GenreType genre)
+    {
+        return genreReviewers[genre.ordinal()].estimate();
+    }
+
+    /**
+     * Estimates the number of different users who reviewed a movie
+     *
+     * @param movieID the movie ID
+     * @return the estimated number of reviewers
+     */
+    public synchronized long estimateDistinctReviewers(int movieID)
+    {
+        // A movie's sketch has seen every reviewer only if it was monitored from its first review
+        HyperLogLog reviewers = movieReviewers.get(movieID);
+        if (reviewers != null && mostReviewed.getError(movieID) == 0)
+        {
+            return reviewers.estimate();
+        }
+        return reviewCounts.estimate(movieID);
+    }
+
+    /**
+     * Counts a new review
+     *
+     * @param review the new review
+     */
+    @Override
+    public void onReviewPublished(Review review)
+    {
+        Genre.GenreType genre = Movie.getGenreByID(review.getMovieID());
+        synchronized (this)
+        {
+            countReview(review.getMovieID(), review.getUserID(), genre);
+            lastReviewID = Math.max(lastReviewID, review.getReviewID());
+            reviewsCounted++;
+        }
+    }
+
+    /**
+     * Edits do not change popularity
+     *
+     * @param review the updated review
+     */
+    @Override
+    public void onReviewUpdated(Review review)
+    {
+    }
+
+    /**
+     * Deletions are not subtracted; the counts are marked inexact so the next start rebuilds them
+     *
+     * @param reviewID the ID of the deleted review
+     */
+    @Override
+    public synchronized void onReviewDeleted(int reviewID)
+    {
+        reviewsCounted--;
+        exact = false;
+    }
+
+    /**
+     * Counts a like for the movie of the liked review
+     *
+     * @param reviewID the ID of the liked review
+     * @param userID the ID of the user who liked it
+     */
+    @Override
+    public void onReviewLiked(int reviewID, int userID)
+    {
+        int movieID = ReviewStore.getInstance().getMovieID(reviewID);
+        synchronized (this)
+        {
+            if (movieID >= 0)
+            {
+                countLikes(movieID, 1);
+            }
+            likesCounted++;
+        }
+    }
+
+    /**
+     * Adds the counts of merged movies to the movies they were merged into. As with deletions,
+     * the merged-away movies keep their own counts until the next start rebuilds them.
+     *
+     * @param merged maps each merged-away movie ID to the ID of the movie that kept its reviews
+     */
+    @Override
+    public synchronized void onMoviesMerged(IntIntMap merged)
+    {
+        exact = false;
+        merged.forEach((duplicateID, movieID) ->
+        {
+            long reviews = reviewCounts.estimate(duplicateID);
+            if (reviews > 0)
+            {
+                reviewCounts.add(movieID, reviews);
+                int evicted = mostReviewed.offer(movieID, reviews);
+                if (evicted != SpaceSaving.NO_EVICTION)
+                {
+                    movieReviewers.remove(evicted);
+                }
+            }
+            HyperLogLog reviewers = movieReviewers.get(duplicateID);
+            if (reviewers != null && mostReviewed.isMonitored(movieID))
+            {
+                HyperLogLog into = movieReviewers.get(movieID);
+                if (into == null)
+                {
+                    into = new HyperLogLog(MOVIE_PRECISION);
+                    movieReviewers.put(movieID, into);
+                }
+                into.merge(reviewers);
+            }
+            countLikes(movieID, likeCounts.estimate(duplicateID));
+        });
+    }
+
+    /**
+     * Adds one review to every sketch. Caller holds the lock.
+     *
+     * @param movieID the reviewed movie
+     * @param userID the reviewer
+     * @param genre the movie's genre, or null if unknown
+     */
+    private void countReview(int movieID, int userID, Genre.GenreType genre)
+    {
+        reviewCounts.add(movieID, 1);
+        int evicted = mostReviewed.offer(movieID, 1);
+        if (evicted != SpaceSaving.NO_EVICTION)
+        {
+            movieReviewers.remove(evicted);
+        }
+        if (mostReviewed.isMonitored(movieID))
+        {
+            HyperLogLog reviewers = movieReviewers.get(movieID);
+            if (reviewers == null)
+            {
+                reviewers = new HyperLogLog(MOVIE_PRECISION);
+                movieReviewers.put(movieID, reviewers);
+            }
+            reviewers.add(userID);
+        }
+        if (genre != null)
+        {
+            genreReviewers[genre.ordinal()].add(userID);
+        }
+    }
+
+    /**
+     * Adds likes of a movie's reviews. Caller holds the lock.
+     *
+     * @param movieID the movie
+     * @param likes the number of likes
+     */
+    private void countLikes(int movieID, long likes)
+    {
+        if (likes > 0)
+        {
+            likeCounts.add(movieID, likes);
+            mostLiked.offer(movieID, likes);
+        }
+    }
+
+    /**
+     * Builds the sketches from every review in the database
+     */
+    private synchronized void rebuild()
+    {
+        String query = "SELECT r.reviewID, r.movieID, r.userID, r.likeCount, m.genres " +
+                       "FROM reviews r LEFT JOIN Movies m ON m.id = r.movieID ORDER BY r.reviewID";
+        try
+        {
+            ResultSet resultSet = Database.getInstance().executeQuery("sketches.rebuild", query);
+            while (resultSet.next())
+            {
+                int movieID = resultSet.getInt("movieID");
+                countReview(movieID, resultSet.getInt("userID"), parseGenre(resultSet.getString("genres")));
+                countLikes(movieID, resultSet.getInt("likeCount"));
+                likesCounted += resultSet.getInt("likeCount");
+                lastReviewID = Math.max(lastReviewID, resultSet.getInt("reviewID"));
+                reviewsCounted++;
+            }
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to build popularity sketches: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the sketches from a file, if it exists, is exact and matches the database.
+     * Nothing changes unless the whole file is read.
+     *
+     * @param file the file
+     * @return true if the sketches were loaded, false if they must be rebuilt
+     */
+    private synchronized boolean load(File file)
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+            {
+                System.err.println("Ignoring popularity sketches in unknown format: " + file);
+                return false;
+            }
+            long savedReviewID = in.readLong();
+            long savedLikes = in.readLong();
+            long savedReviews = in.readLong();
+            boolean savedExact = in.readBoolean();
+            long[] totals = databaseTotals();
+            if (!savedExact || totals == null || savedReviewID != totals[0] || savedLikes != totals[1]
+                    || savedReviews != totals[2])
+            {
+                return false; // Deletions are still counted, or the database changed while the sketches were not listening
+            }
+            mergeFrom(read(in));
+            lastReviewID = savedReviewID;
+            likesCounted = savedLikes;
+            reviewsCounted = savedReviews;
+            return true;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to read popularity sketches: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Merges sketches written by another shard into these ones
+     *
+     * @param file a file written by save
+     * @throws IOException if the file cannot be read or has another format
+     */
+    public synchronized void mergeFrom(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+            {
+                throw new IOException("Not a popularity sketch file: " + file);
+            }
+            in.readLong();
+            in.readLong();
+            in.readLong();
+            in.readBoolean();
+            mergeFrom(read(in));
+        }
+    }
+
+    /**
+     * Reads every sketch from a stream into new sketches, so a stream that fails part way
+     * leaves no trace in the live ones
+     *
+     * @param in the stream, positioned after the file header
+     * @return the sketches read
+     * @throws IOException if reading fails
+     */
+    private static PopularitySketches read(DataInputStream in) throws IOException
+    {
+        PopularitySketches read = new PopularitySketches();
+        read.reviewCounts.merge(CountMinSketch.readFrom(in));
+        read.likeCounts.merge(CountMinSketch.readFrom(in));
+        read.mostReviewed.merge(SpaceSaving.readFrom(in));
+        read.mostLiked.merge(SpaceSaving.readFrom(in));
+        int genres = in.readInt();
+        for (int i = 0; i < genres; i++)
+        {
+            HyperLogLog sketch = HyperLogLog.readFrom(in);
+            if (i < read.genreReviewers.length)
+            {
+                read.genreReviewers[i].merge(sketch);
+            }
+        }
+        int movies = in.readInt();
+        for (int i = 0; i < movies; i++)
+        {
+            int movieID = in.readInt();
+            read.movieReviewers.put(movieID, HyperLogLog.readFrom(in));
+        }
+        return read;
+    }
+
+    /**
+     * Merges other sketches into the matching ones here. Caller holds the lock.
+     *
+     * @param other sketches no other thread uses
+     */
+    private void mergeFrom(PopularitySketches other)
+    {
+        reviewCounts.merge(other.reviewCounts);
+        likeCounts.merge(other.likeCounts);
+        mostReviewed.merge(other.mostReviewed);
+        mostLiked.merge(other.mostLiked);
+        for (int i = 0; i < genreReviewers.length; i++)
+        {
+            genreReviewers[i].merge(other.genreReviewers[i]);
+        }
+        other.movieReviewers.forEach((sketch, movieID) ->
+        {
+            HyperLogLog existing = movieReviewers.get(movieID);
+            if (existing != null)
+            {
+                existing.merge(sketch);
+            }
+            else
+            {
+                movieReviewers.put(movieID, sketch);
+            }
+        });
+
+        // Keep per-movie sketches only for movies the merged summary still monitors
+        List<HeavyHitter> monitored = mostReviewed.top(HEAVY_HITTERS);
+        HyperLogLog[] kept = new HyperLogLog[monitored.size()];
+        for (int i = 0; i < kept.length; i++)
+        {
+            kept[i] = movieReviewers.get(monitored.get(i).getKey());
+        }
+        movieReviewers.clear();
+        for (int i = 0; i < kept.length; i++)
+        {
+            if (kept[i] != null)
+            {
+                movieReviewers.put(monitored.get(i).getKey(), kept[i]);
+            }
+        }
+    }
+
+    /**
+     * Saves the sketches to the file they were loaded from. A restart after a crash loads
+     * them only if no review was written, liked or deleted since; otherwise it rebuilds them.
+     */
+    public synchronized void checkpoint()
+    {
+        save(file);
+    }
+
+    /**
+     * Writes the sketches to a file, replacing it atomically
+     *
+     * @param file the file
+     */
+    public synchronized void save(File file)
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(lastReviewID);
+            out.writeLong(likesCounted);
+            out.writeLong(reviewsCounted);
+            out.writeBoolean(exact);
+            reviewCounts.writeTo(out);
+            likeCounts.writeTo(out);
+            mostReviewed.writeTo(out);
+            mostLiked.writeTo(out);
+            out.writeInt(genreReviewers.length);
+            for (HyperLogLog sketch : genreReviewers)
+            {
+                sketch.writeTo(out);
+            }
+            List<HeavyHitter> monitored = mostReviewed.top(HEAVY_HITTERS);
+            int withSketch = 0;
+            for (HeavyHitter hitter : monitored)
+            {
+                withSketch += movieReviewers.get(hitter.getKey()) != null ? 1 : 0;
+            }
+            out.writeInt(withSketch);
+            for (HeavyHitter hitter : monitored)
+            {
+                HyperLogLog sketch = movieReviewers.get(hitter.getKey());
+                if (sketch != null)
+                {
+                    out.writeInt(hitter.getKey());
+                    sketch.writeTo(out);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to save popularity sketches: " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file))
+        {
+            file.delete();
+            if (!temp.renameTo(file))
+            {
+                System.err.println("Failed to replace popularity sketch file: " + file);
+            }
+        }
+    }
+
+    /**
+     * Gets the highest review ID, the number of likes and the number of reviews in the database
+     *
+     * @return the three totals, or null if the query fails
+     */
+    private static long[] databaseTotals()
+    {
+        try
+        {
+            ResultSet resultSet = Database.getInstance().executeQuery("sketches.totals",
+                    "SELECT MAX(reviewID), SUM(likeCount), COUNT(*) FROM reviews");
+            long[] totals = new long[3];
+            if (resultSet.next())
+            {
+                totals[0] = resultSet.getLong(1);
+                totals[1] = resultSet.getLong(2);
+                totals[2] = resultSet.getLong(3);
+            }
+            resultSet.close();
+            return totals;
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to read review totals: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses a movie's genre column
+     *
+     * @param genre the stored genre name
+     * @return the genre, or null if it is missing or not recognised
+     */
+    private static Genre.GenreType parseGenre(String genre)
+    {
+        if (genre == null)
+        {
+            return null;
+        }
+        try
+        {
+            return Genre.GenreType.valueOf(genre.trim().toUpperCase().replace(' ', '_'));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+}
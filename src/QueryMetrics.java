@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * QueryMetrics collects per-statement statistics for every Database call:
+ * how often each logical statement (e.g. "movie.avgRating", "review.like") ran,
+ * how many rows it returned or changed, how many calls failed, and a latency histogram.
+ * Statistics can be dumped as text or JSON and are exposed through a JMX MBean.
+ * Implements the Singleton pattern so every Database call records into one place.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class QueryMetrics implements QueryMetricsMXBean
+{
+    private static QueryMetrics instance; // Singleton instance
+
+    // JMX name the metrics are registered under
+    private static final String MBEAN_NAME = "MovieReviewSocialNetwork:type=QueryMetrics";
+
+    // Statistics per logical statement name
+    private final Map<String, StatementStats> statements;
+
+    /**
+     * Statistics for one logical statement
+     */
+    static class StatementStats
+    {
+        final LongAdder calls = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    /**
+     * Private constructor for Singleton pattern.
+     * Registers the MBean; metrics still work if JMX is unavailable.
+     */
+    private QueryMetrics()
+    {
+        this.statements = new ConcurrentHashMap<>();
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        }
+        catch (Exception e)
+        {
+            System.err.println("Query metrics MBean not registered: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the singleton instance of QueryMetrics
+     *
+     * @return the singleton instance
+     */
+    public static synchronized QueryMetrics getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new QueryMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the statistics for a statement, creating them on first use
+     *
+     * @param name the logical statement name
+     * @return the statistics
+     */
+    private StatementStats stats(String name)
+    {
+        StatementStats stats = statements.get(name);
+        if (stats == null)
+        {
+            stats = statements.computeIfAbsent(name, key -> new StatementStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Records a completed update statement
+     *
+     * @param name the logical statement name
+     * @param nanos how long the statement took
+     * @param rowsAffected the number of rows changed
+     */
+    public void recordUpdate(String name, long nanos, int rowsAffected)
+    {
+        StatementStats stats = stats(name);
+        stats.calls.increment();
+        stats.rows.add(rowsAffected);
+        stats.latency.record(nanos);
+    }
+
+    /**
+     * Records a completed query and wraps its result set so returned rows are counted as they are read
+     *
+     * @param name the logical statement name
+     * @param nanos how long executing the query took
+     * @param resultSet the query's result set
+     * @return a result set that behaves like the original and counts rows
+     */
+    public ResultSet recordQuery(String name, long nanos, ResultSet resultSet)
+    {
+        StatementStats stats = stats(name);
+        stats.calls.increment();
+        stats.latency.record(nanos);
+        return new RowCountingResultSet(resultSet, stats.rows);
+    }
+
+    /**
+     * Records a failed statement
+     *
+     * @param name the logical statement name
+     * @param nanos how long the statement ran before failing
+     */
+    public void recordError(String name, long nanos)
+    {
+        StatementStats stats = stats(name);
+        stats.calls.increment();
+        stats.errors.increment();
+        stats.latency.record(nanos);
+    }
+
+    @Override
+    public List<String> getStatementNames()
+    {
+        List<String> names = new ArrayList<>(statements.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public long getCallCount(String name)
+    {
+        StatementStats stats = statements.get(name);
+        return stats == null ? 0 : stats.calls.sum();
+    }
+
+    @Override
+    public long getRowCount(String name)
+    {
+        StatementStats stats = statements.get(name);
+        return stats == null ? 0 : stats.rows.sum();
+    }
+
+    @Override
+    public double getLatencyMicros(String name, double percentile)
+    {
+        StatementStats stats = statements.get(name);
+        return stats == null ? 0.0 : stats.latency.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    @Override
+    public String dumpText()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-28s %9s %10s %7s %10s %10s %10s %10s%n",
+                "statement", "calls", "rows", "errors", "mean(us)", "p50(us)", "p99(us)", "max(us)"));
+        for (String name : getStatementNames())
+        {
+            StatementStats stats = statements.get(name);
+            LatencyHistogram latency = stats.latency;
+            sb.append(String.format(Locale.ROOT, "%-28s %9d %10d %7d %10.1f %10.1f %10.1f %10.1f%n",
+                    name, stats.calls.sum(), stats.rows.sum(), stats.errors.sum(),
+                    latency.getMean() / 1e3,
+                    latency.getValueAtPercentile(50) / 1e3,
+                    latency.getValueAtPercentile(99) / 1e3,
+                    latency.getMax() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String dumpJson()
+    {
+        StringBuilder sb = new StringBuilder("{\"statements\":[");
+        boolean first = true;
+        for (String name : getStatementNames())
+        {
+            StatementStats stats = statements.get(name);
+            LatencyHistogram latency = stats.latency;
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(String.format(Locale.ROOT,
+                    "{\"name\":\"%s\",\"calls\":%d,\"rows\":%d,\"errors\":%d," +
+                    "\"meanMicros\":%.1f,\"p50Micros\":%.1f,\"p99Micros\":%.1f,\"p999Micros\":%.1f,\"maxMicros\":%.1f}",
+                    name.replace("\\", "\\\\").replace("\"", "\\\""),
+                    stats.calls.sum(), stats.rows.sum(), stats.errors.sum(),
+                    latency.getMean() / 1e3,
+                    latency.getValueAtPercentile(50) / 1e3,
+                    latency.getValueAtPercentile(99) / 1e3,
+                    latency.getValueAtPercentile(99.9) / 1e3,
+                    latency.getMax() / 1e3));
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Writes the statistics to a file, as JSON when the name ends in .json and as text otherwise
+     *
+     * @param path the file to write
+     */
+    public void writeDump(String path)
+    {
+        String content = path.endsWith(".json") ? dumpJson() : dumpText();
+        try
+        {
+            Files.write(Paths.get(path), content.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to write query metrics: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void reset()
+    {
+        statements.clear();
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * Management interface for QueryMetrics, registered with the platform MBean server
+ * as "MovieReviewSocialNetwork:type=QueryMetrics" so statement statistics can be
+ * inspected with JConsole or any other JMX client.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface QueryMetricsMXBean
+{
+    /**
+     * @return the logical names of all statements executed so far
+     */
+    List<String> getStatementNames();
+
+    /**
+     * @param name the logical statement name
+     * @return the number of times the statement ran
+     */
+    long getCallCount(String name);
+
+    /**
+     * @param name the logical statement name
+     * @return the total rows returned (queries) or affected (updates)
+     */
+    long getRowCount(String name);
+
+    /**
+     * @param name the logical statement name
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at the percentile in microseconds
+     */
+    double getLatencyMicros(String name, double percentile);
+
+    /**
+     * @return all statistics as a plain-text table
+     */
+    String dumpText();
+
+    /**
+     * @return all statistics as a JSON document
+     */
+    String dumpJson();
+
+    /**
+     * Clears all statistics
+     */
+    void reset();
+}
@@ -1,3 +1,4 @@
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -12,6 +13,10 @@ import java.sql.*;
  */
 public class Review
 {
+    // Held while a review is created or movies are merged, so the one-review-per-movie check
+    // and the write that depends on it cannot interleave with another such write
+    static final Object CREATE_LOCK = new Object();
+
     private int reviewID;   // Unique identifier for the review
     private String text;    // Review text
     private int rating;     // Movie rating from 1 to 5
@@ -97,78 +102,128 @@ public class Review
     }
 
     /**
-     * Deletes the review from the database.
-     * Uses the reviewID to remove the corresponding record from the reviews table.
+     * Get the ID of the user who wrote the review.
+     * @return the user ID
+     */
+    public int getUserID()
+    {
+        return userID;
+    }
+
+    /**
+     * Get the date the review was written.
+     * @return the review date
+     */
+    public Date getReviewDate()
+    {
+        return reviewDate;
+    }
+
+    /**
+     * Get the number of likes the review has received.
+     * @return the like count
      */
-    public void deleteReview()
+    public int getLikeCount()
     {
-        // SQL query to delete the review
-        String query = "DELETE FROM reviews WHERE reviewID = " + this.reviewID;
+        return likeCount;
+    }
 
+    /**
+     * Deletes the review.
+     * A deleted record is appended to the event log and then applied to the reviews table.
+     * @return true if the review was deleted, false otherwise
+     */
+    public boolean deleteReview()
+    {
+        long write = ReviewEvents.getInstance().beginWrite();
         try
         {
-            int rowsDeleted = Database.getInstance().executeUpdate(query);
-            if (rowsDeleted > 0)
+            long sequence = appendToLog(LogRecord.reviewDeleted(this.reviewID));
+            if (sequence < 0)
             {
-                System.out.println("Review successfully deleted from database.");
-            } else
+                System.err.println("Review delete failed: could not write to the event log.");
+                return false;
+            }
+            if (LogProjection.getInstance().catchUpTo(sequence))
             {
-                System.err.println("No review found with the specified ID.");
+                ReviewCache.getInstance().invalidate(this.reviewID);
+                ReviewEvents.getInstance().reviewDeleted(this);
+                System.out.println("Review successfully deleted from database.");
+                return true;
             }
+            System.err.println("No review found with the specified ID.");
+            return false;
         }
-        catch (SQLException e)
+        finally
         {
-            System.err.println("Review delete failed: " + e.getMessage());
+            ReviewEvents.getInstance().endWrite(write);
         }
     }
 
     /**
-     * Allows the current user to like the review.
+     * Allows the session's user to like the review.
      * Checks if the user has already liked the review and, if not, inserts a like record
      * and increments the like count in the database.
+     * 
+     * @param session the session of the user liking the review
+     * @return true if the like was recorded, false if it already existed or failed
      */
-    public void likeReview()
+    public boolean likeReview(Session session)
     {
-        // Get the current user from AuthenticationManager
-        AuthenticationManager authManager = AuthenticationManager.getInstance();
-        int currentUserID = authManager.getCurrentUser().getUserID();
+        return likeReview(session.getUserID());
+    }
 
+    /**
+     * Likes the review on behalf of the given user.
+     * Checks if the user has already liked the review and, if not, inserts a like record
+     * and increments the like count in the database.
+     * 
+     * @param currentUserID the ID of the user liking the review
+     * @return true if the like was recorded, false if it already existed or failed
+     */
+    public boolean likeReview(int currentUserID)
+    {
         // Check if the user has already liked this review
         String checkLikeQuery = "SELECT * FROM Likes WHERE reviewID = " + this.reviewID + " AND userID = " + currentUserID;
         try
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(checkLikeQuery);
+            ResultSet resultSet = Database.getInstance().executeQuery("review.likeExists", checkLikeQuery);
             if (resultSet.next())
             {
                 System.out.println("You have already liked this review.");
-                return;
+                return false;
             }
         }
         catch (SQLException e)
         {
             System.err.println("Error checking if review is already liked: " + e.getMessage());
-            return;
+            return false;
         }
 
-        // Insert a new like and update the like count
-        String insertLikeQuery = "INSERT INTO Likes (reviewID, userID) VALUES (" + this.reviewID + ", " + currentUserID + ")";
+        long write = ReviewEvents.getInstance().beginWrite();
         try
         {
-            int rowsAffected = Database.getInstance().executeUpdate(insertLikeQuery);
-            if (rowsAffected > 0)
+            // Log the like; applying it inserts the like record and increments the like count
+            long sequence = appendToLog(LogRecord.reviewLiked(this.reviewID, currentUserID));
+            if (sequence < 0)
             {
-                String updateLikeCountQuery = "UPDATE Reviews SET likeCount = likeCount + 1 WHERE reviewID = " + this.reviewID;
-                Database.getInstance().executeUpdate(updateLikeCountQuery);
-                System.out.println("Liked review ID: " + this.reviewID);
+                System.err.println("Error liking review: could not write to the event log.");
+                return false;
             }
-            else
+            if (LogProjection.getInstance().catchUpTo(sequence))
             {
-                System.err.println("Failed to insert like.");
+                ReviewCache.getInstance().incrementLikes(this.reviewID);
+                this.likeCount++;
+                ReviewEvents.getInstance().reviewLiked(this, currentUserID);
+                System.out.println("Liked review ID: " + this.reviewID);
+                return true;
             }
+            System.err.println("Failed to insert like.");
+            return false;
         }
-        catch (SQLException e)
+        finally
         {
-            System.err.println("Error liking review: " + e.getMessage());
+            ReviewEvents.getInstance().endWrite(write);
         }
     }
 
@@ -183,10 +238,9 @@ public class Review
     public static boolean userHasReviewedMovie(int userID, int movieID)
     {
         // Query to count reviews by this user for this movie
-        String query = "SELECT COUNT(*) FROM Reviews WHERE userID = " + userID + " AND movieID = " + movieID;
-        try
+        String query = "SELECT COUNT(*) FROM Reviews WHERE userID = ? AND movieID = ?";
+        try (ResultSet resultSet = Database.getInstance().executeQuery("review.userHasReviewed", query, userID, movieID))
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(query);
             if (resultSet.next())
             {
                 return resultSet.getInt(1) > 0;
@@ -200,68 +254,120 @@ public class Review
     }
 
     /**
-     * Saves the review to the database by inserting a new record
+     * Saves the review as a new record unless its author has already reviewed the movie.
+     * The check and the save run under CREATE_LOCK, so two concurrent requests cannot both
+     * pass the check and publish two reviews of one movie.
+     * @return true if the review was saved, false if the movie was already reviewed or saving failed
+     */
+    public boolean saveIfNotReviewed()
+    {
+        synchronized (CREATE_LOCK)
+        {
+            if (userHasReviewedMovie(this.userID, this.movieID))
+            {
+                System.out.println("You have already published a review for this movie.");
+                return false;
+            }
+            return save();
+        }
+    }
+
+    /**
+     * Saves the review as a new record.
+     * The review gets a new ID, is appended to the event log as a created record and is
+     * then applied to the reviews table.
      * @return true if the review was saved successfully, false otherwise
      */
     public boolean save()
     {
-        // Convert Date to timestamp and insert review
-        long timestamp = this.reviewDate.getTime();
-        String query = "INSERT INTO reviews (movieID, userID, content, rating, reviewDate, likeCount) " +
-                "VALUES (" + this.movieID + ", " + this.userID + ", '" + this.text + "', " + 
-                this.rating + ", '" + timestamp + "', " + this.likeCount + ")";
+        try
+        {
+            this.reviewID = (int) LogProjection.getInstance().nextReviewID();
+        }
+        catch (IllegalStateException e)
+        {
+            System.err.println("Review save failed: " + e.getMessage());
+            return false;
+        }
 
+        long write = ReviewEvents.getInstance().beginWrite();
         try
         {
-            int rowsAffected = Database.getInstance().executeUpdate(query);
-            if (rowsAffected > 0)
+            long sequence = appendToLog(LogRecord.reviewCreated(this));
+            if (sequence < 0)
             {
-                System.out.println("Review saved to database.");
-                return true;
+                System.err.println("Review save failed: could not write to the event log.");
+                return false;
             }
-            else
+            if (LogProjection.getInstance().catchUpTo(sequence))
             {
-                System.err.println("Review save failed: no rows affected.");
-                return false;
+                System.out.println("Review saved to database.");
+                ReviewEvents.getInstance().reviewPublished(this);
+                return true;
             }
+            System.err.println("Review save failed: no rows affected.");
+            return false;
         }
-        catch (SQLException e)
+        finally
         {
-            System.err.println("Review save failed: " + e.getMessage());
-            return false;
+            ReviewEvents.getInstance().endWrite(write);
         }
     }
 
     /**
-     * Updates the review's text and rating in the database
-     * Updates existing review content and rating.
+     * Updates the review's text and rating.
+     * An updated record is appended to the event log and then applied to the reviews table.
+     * @return true if the review was updated, false otherwise
      */
-    public void update()
+    public boolean update()
     {
-        // Query to update review text and rating
-        String query = "UPDATE reviews SET content = '" + this.text + "', rating = " + this.rating + 
-                " WHERE reviewID = " + this.reviewID;
-
+        long write = ReviewEvents.getInstance().beginWrite();
         try
         {
-            int rowsAffected = Database.getInstance().executeUpdate(query);
-            if (rowsAffected > 0)
+            long sequence = appendToLog(LogRecord.reviewUpdated(this.reviewID, this.rating, this.text));
+            if (sequence < 0)
             {
-                System.out.println("Review updated successfully.");
+                System.err.println("Review update failed: could not write to the event log.");
+                return false;
             }
-            else
+            boolean updated = LogProjection.getInstance().catchUpTo(sequence);
+            ReviewCache.getInstance().invalidate(this.reviewID);
+            if (updated)
             {
-                System.err.println("Review update failed: review ID not found.");
+                ReviewEvents.getInstance().reviewUpdated(this);
+                System.out.println("Review updated successfully.");
+                return true;
             }
+            System.err.println("Review update failed: review ID not found.");
+            return false;
         }
-        catch (SQLException e)
+        finally
         {
-            System.err.println("Review update failed: " + e.getMessage());
+            ReviewEvents.getInstance().endWrite(write);
         }
     }
 
     /**
-     * Get a review from the database by its ID.
+     * Appends a record to the event log and waits until it is on disk
+     *
+     * @param record the record to append
+     * @return the record's sequence, or -1 if it could not be written
+     */
+    private static long appendToLog(LogRecord record)
+    {
+        try
+        {
+            return EventLog.getInstance().append(record);
+        }
+        catch (UncheckedIOException e)
+        {
+            System.err.println("Event log write failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Get a review by its ID, from the ReviewCache when possible and otherwise from the database.
      * Static utility method to retrieve a review by ID.
      * 
      * @param reviewID the ID of the review to get
@@ -269,14 +375,22 @@ public class Review
      */
     public static Review getReviewByID(int reviewID)
     {
+        ReviewCache cache = ReviewCache.getInstance();
+        Review cached = cache.get(reviewID);
+        if (cached != null)
+        {
+            return cached;
+        }
+        long stamp = cache.readStamp();
+
         // Query to get review by ID
         String query = "SELECT * FROM reviews WHERE reviewID = " + reviewID;
         try
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(query);
+            ResultSet resultSet = Database.getInstance().executeQuery("review.byId", query);
             if (resultSet.next())
             {
-                return new Review(
+                Review review = new Review(
                         resultSet.getInt("reviewID"),
                         resultSet.getString("content"),
                         resultSet.getInt("rating"),
@@ -285,6 +399,8 @@ public class Review
                         resultSet.getDate("reviewDate"),
                         resultSet.getInt("likeCount")
                 );
+                cache.put(review, stamp);
+                return review;
             }
         }
         catch (SQLException e)
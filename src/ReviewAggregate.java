@@ -0,0 +1,69 @@
+/**
+ * ReviewAggregate is one group in the result of a ReviewQuery: the group key
+ * (a movie ID, user ID, genre ordinal or day number, depending on the grouping)
+ * with the number of reviews, their rating total and their like total.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewAggregate
+{
+    private final int key;          // Group key
+    private final long count;       // Number of reviews in the group
+    private final long ratingSum;   // Sum of their ratings
+    private final long likeSum;     // Sum of their likes
+
+    /**
+     * Constructs a group result
+     *
+     * @param key the group key
+     * @param count the number of reviews
+     * @param ratingSum the sum of their ratings
+     * @param likeSum the sum of their likes
+     */
+    public ReviewAggregate(int key, long count, long ratingSum, long likeSum)
+    {
+        this.key = key;
+        this.count = count;
+        this.ratingSum = ratingSum;
+        this.likeSum = likeSum;
+    }
+
+    /**
+     * @return the group key
+     */
+    public int getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return the number of reviews in the group
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the sum of the group's ratings
+     */
+    public long getRatingSum()
+    {
+        return ratingSum;
+    }
+
+    /**
+     * @return the sum of the group's likes
+     */
+    public long getLikeSum()
+    {
+        return likeSum;
+    }
+
+    /**
+     * @return the average rating, or 0 for an empty group
+     */
+    public double getAverageRating()
+    {
+        return count == 0 ? 0 : (double) ratingSum / count;
+    }
+}
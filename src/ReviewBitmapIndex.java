@@ -0,0 +1,671 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ReviewBitmapIndex keeps compressed bitmaps (RoaringBitmap) of review IDs per genre, per
+ * rating, per calendar month (UTC) and per author, plus a bitmap of every live review.
+ * Filters are answered by ORing the bitmaps a criterion accepts and ANDing the criteria, and
+ * counts by AND/ANDNOT cardinality, without touching the reviews themselves.
+ *
+ * Deleting a review only clears it from the live bitmap, so the month and author bitmaps need
+ * no lookup of the deleted review; every query must AND with live(). Updates move the review
+ * between rating bitmaps. The index is kept current through ReviewEvents.
+ *
+ * The bitmaps are written to a file when the JVM exits, through a memory-mapped buffer, and
+ * read back by mapping the file at startup. The file records the number of reviews and the event
+ * log position the bitmaps have seen every review event up to, which can trail the projection
+ * while writes are in flight. The index is rebuilt from the ReviewStore if the database has moved
+ * on since. The file is set with -Dbitmaps.file (default reviews.bitmaps).
+ *
+ * Readers must hold readLock() while using the bitmaps returned by the getters.
+ * Implements the Singleton pattern so searches and analytics share one index.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewBitmapIndex implements ReviewEventListener
+{
+    private static final int FILE_MAGIC = 0x4d525242;   // "MRRB"
+    private static final int FILE_VERSION = 1;
+    private static final int NO_GENRE = -1;             // Genre of an unknown movie
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private static ReviewBitmapIndex instance;          // Singleton instance
+
+    private final ReentrantReadWriteLock lock;          // Guards every bitmap
+    private final RoaringBitmap[] byGenre;              // Review IDs per genre ordinal
+    private final RoaringBitmap[] byRating;             // Review IDs per rating, index 1 to 5
+    private IntObjectMap<RoaringBitmap> byMonth;        // Review IDs per month number
+    private IntObjectMap<RoaringBitmap> byAuthor;       // Review IDs per author's user ID
+    private RoaringBitmap live;                         // IDs of reviews that are not deleted
+    private final IntIntMap genreByMovie;               // Genre ordinal per movie ID
+    private int firstMonth = Integer.MAX_VALUE;         // Earliest month with a review
+    private int lastMonth = Integer.MIN_VALUE;          // Latest month with a review
+    private File file;                                  // File the index is saved to
+
+    /**
+     * Creates an empty index
+     */
+    ReviewBitmapIndex()
+    {
+        this.lock = new ReentrantReadWriteLock();
+        this.byGenre = new RoaringBitmap[Genre.GenreType.values().length];
+        this.byRating = new RoaringBitmap[6];
+        this.byMonth = new IntObjectMap<>();
+        this.byAuthor = new IntObjectMap<>();
+        this.live = new RoaringBitmap();
+        this.genreByMovie = new IntIntMap();
+        for (int i = 0; i < byGenre.length; i++)
+        {
+            byGenre[i] = new RoaringBitmap();
+        }
+        for (int i = 0; i < byRating.length; i++)
+        {
+            byRating[i] = new RoaringBitmap();
+        }
+    }
+
+    /**
+     * Gets the singleton index, loading it from its file or building it on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ReviewBitmapIndex getInstance()
+    {
+        if (instance == null)
+        {
+            File file = new File(System.getProperty("bitmaps.file", "reviews.bitmaps"));
+            ReviewBitmapIndex index = new ReviewBitmapIndex();
+            // Listen before loading so no write is missed; replays of indexed reviews are harmless
+            ReviewEvents.getInstance().addListener(index);
+            index.loadMovieGenres();
+            if (!index.load(file))
+            {
+                index.rebuild();
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> index.save(file)));
+            index.file = file;
+            instance = index;
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the singleton index only if something has already loaded it
+     *
+     * @return the singleton instance, or null if it has not been loaded
+     */
+    public static synchronized ReviewBitmapIndex getInstanceIfLoaded()
+    {
+        return instance;
+    }
+
+    /**
+     * Gets the lock to hold while using bitmaps returned by the getters
+     *
+     * @return the read lock
+     */
+    public Lock readLock()
+    {
+        return lock.readLock();
+    }
+
+    /** @return the IDs of every live review; hold readLock() while using it */
+    public RoaringBitmap live()
+    {
+        return live;
+    }
+
+    /**
+     * Gets the reviews of movies in a genre
+     *
+     * @param genre the genre
+     * @return the review IDs, including deleted ones; hold readLock() while using it
+     */
+    public RoaringBitmap genre(Genre.GenreType genre)
+    {
+        return byGenre[genre.ordinal()];
+    }
+
+    /**
+     * Gets the reviews with a rating
+     *
+     * @param rating the rating, 1 to 5
+     * @return the review IDs, including deleted ones; hold readLock() while using it
+     */
+    public RoaringBitmap rating(int rating)
+    {
+        return rating >= 1 && rating <= 5 ? byRating[rating] : EMPTY;
+    }
+
+    /**
+     * Gets the reviews written in a month
+     *
+     * @param month the month number, see monthOf
+     * @return the review IDs, including deleted ones; hold readLock() while using it
+     */
+    public RoaringBitmap month(int month)
+    {
+        RoaringBitmap bitmap = byMonth.get(month);
+        return bitmap != null ? bitmap : EMPTY;
+    }
+
+    /**
+     * Gets the months of a time range that have reviews
+     *
+     * @param from the first month number
+     * @param to the last month number
+     * @return the bitmaps of those months; hold readLock() while using them
+     */
+    public RoaringBitmap[] monthsBetween(int from, int to)
+    {
+        List<RoaringBitmap> months = new ArrayList<>();
+        for (int month = Math.max(from, firstMonth); month <= Math.min(to, lastMonth); month++)
+        {
+            RoaringBitmap bitmap = byMonth.get(month);
+            if (bitmap != null)
+            {
+                months.add(bitmap);
+            }
+        }
+        return months.toArray(new RoaringBitmap[0]);
+    }
+
+    /**
+     * Gets the reviews written by a user
+     *
+     * @param userID the author's user ID
+     * @return the review IDs, including deleted ones; hold readLock() while using it
+     */
+    public RoaringBitmap author(int userID)
+    {
+        RoaringBitmap bitmap = byAuthor.get(userID);
+        return bitmap != null ? bitmap : EMPTY;
+    }
+
+    /**
+     * Gets the month number (years * 12 + month, UTC) of a time
+     *
+     * @param millis epoch milliseconds
+     * @return the month number
+     */
+    public static int monthOf(long millis)
+    {
+        ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC);
+        return time.getYear() * 12 + time.getMonthValue() - 1;
+    }
+
+    /**
+     * Gets the first instant of a month
+     *
+     * @param month the month number
+     * @return epoch milliseconds
+     */
+    public static long monthStart(int month)
+    {
+        return ZonedDateTime.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1, 0, 0, 0, 0, ZoneOffset.UTC)
+                .toInstant().toEpochMilli();
+    }
+
+    /**
+     * Gets the approximate memory used by the bitmaps
+     *
+     * @return the bytes
+     */
+    public long getSizeInBytes()
+    {
+        lock.readLock().lock();
+        try
+        {
+            long[] bytes = {live.getSizeInBytes()};
+            for (RoaringBitmap bitmap : byGenre)
+            {
+                bytes[0] += bitmap.getSizeInBytes();
+            }
+            for (RoaringBitmap bitmap : byRating)
+            {
+                bytes[0] += bitmap.getSizeInBytes();
+            }
+            byMonth.forEach((bitmap, month) -> bytes[0] += bitmap.getSizeInBytes());
+            byAuthor.forEach((bitmap, userID) -> bytes[0] += bitmap.getSizeInBytes());
+            return bytes[0];
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the genre of every movie in one query
+     */
+    private void loadMovieGenres()
+    {
+        try
+        {
+            ResultSet resultSet = Database.getInstance().executeQuery("bitmapIndex.movieGenres", "SELECT id, genres FROM Movies");
+            while (resultSet.next())
+            {
+                String genre = resultSet.getString("genres");
+                if (genre == null)
+                {
+                    continue;
+                }
+                try
+                {
+                    genreByMovie.put(resultSet.getInt("id"),
+                            Genre.GenreType.valueOf(genre.trim().toUpperCase().replace(' ', '_')).ordinal());
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Leave movies with an unrecognised genre as unknown
+                }
+            }
+            resultSet.close();
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to load movie genres: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets a movie's genre ordinal, looking up movies created since the genres were loaded.
+     * Caller holds the write lock.
+     *
+     * @param movieID the movie ID
+     * @return the genre ordinal, or NO_GENRE if the movie or its genre is unknown
+     */
+    private int genreOf(int movieID)
+    {
+        int known = genreByMovie.get(movieID);
+        if (known >= 0)
+        {
+            return known;
+        }
+        Genre.GenreType genre = Movie.getGenreByID(movieID);
+        if (genre == null)
+        {
+            return NO_GENRE;
+        }
+        genreByMovie.put(movieID, genre.ordinal());
+        return genre.ordinal();
+    }
+
+    /**
+     * Indexes every live review in the ReviewStore
+     */
+    private void rebuild()
+    {
+        ReviewStore store = ReviewStore.getInstance();
+        lock.writeLock().lock();
+        store.readLock().lock();
+        try
+        {
+            ReviewStore.Cursor cursor = store.cursor();
+            int rows = store.getRowCount();
+            for (int row = 0; row < rows; row++)
+            {
+                cursor.at(row);
+                if (cursor.isLive())
+                {
+                    add(cursor.getReviewID(), cursor.getUserID(), cursor.getMovieID(),
+                        cursor.getRating(), cursor.getTimestamp());
+                }
+            }
+        }
+        finally
+        {
+            store.readLock().unlock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a review to its bitmaps. Caller holds the write lock.
+     */
+    private void add(int reviewID, int userID, int movieID, int rating, long timestamp)
+    {
+        int genre = genreOf(movieID);
+        if (genre != NO_GENRE)
+        {
+            byGenre[genre].add(reviewID);
+        }
+        if (rating >= 1 && rating <= 5)
+        {
+            byRating[rating].add(reviewID);
+        }
+        int month = monthOf(timestamp);
+        bitmapFor(byMonth, month).add(reviewID);
+        firstMonth = Math.min(firstMonth, month);
+        lastMonth = Math.max(lastMonth, month);
+        bitmapFor(byAuthor, userID).add(reviewID);
+        live.add(reviewID);
+    }
+
+    /**
+     * Gets the bitmap for a key, creating it if needed. Caller holds the write lock.
+     */
+    private static RoaringBitmap bitmapFor(IntObjectMap<RoaringBitmap> bitmaps, int key)
+    {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap == null)
+        {
+            bitmap = new RoaringBitmap();
+            bitmaps.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Indexes a newly published review
+     *
+     * @param review the new review
+     */
+    @Override
+    public void onReviewPublished(Review review)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            add(review.getReviewID(), review.getUserID(), review.getMovieID(), review.getRating(),
+                review.getReviewDate().getTime());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves an updated review to the bitmap of its new rating
+     *
+     * @param review the updated review
+     */
+    @Override
+    public void onReviewUpdated(Review review)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for (int rating = 1; rating <= 5; rating++)
+            {
+                if (rating == review.getRating())
+                {
+                    byRating[rating].add(review.getReviewID());
+                }
+                else
+                {
+                    byRating[rating].remove(review.getReviewID());
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears a deleted review from the live bitmap
+     *
+     * @param reviewID the ID of the deleted review
+     */
+    @Override
+    public void onReviewDeleted(int reviewID)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            live.remove(reviewID);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Likes are not indexed
+     *
+     * @param reviewID the ID of the liked review
+     * @param userID the ID of the user who liked it
+     */
+    @Override
+    public void onReviewLiked(int reviewID, int userID)
+    {
+    }
+
+    /**
+     * Merged movies have the same genre and their reviews keep their IDs, so no bitmap changes
+     *
+     * @param merged maps each merged-away movie ID to the ID of the movie that kept its reviews
+     */
+    @Override
+    public void onMoviesMerged(IntIntMap merged)
+    {
+    }
+
+    /**
+     * Reads the bitmaps from a file, if it exists and matches the database
+     *
+     * @param file the file
+     * @return true if the bitmaps were loaded, false if they must be rebuilt
+     */
+    private boolean load(File file)
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION)
+            {
+                System.err.println("Ignoring review bitmaps in unknown format: " + file);
+                return false;
+            }
+            long savedPosition = buffer.getLong();
+            long savedReviews = buffer.getLong();
+            if (savedPosition != LogProjection.getInstance().getPosition() || savedReviews != databaseReviewCount())
+            {
+                return false; // The database changed while the index was not listening
+            }
+
+            RoaringBitmap[] genres = new RoaringBitmap[byGenre.length];
+            int genreCount = buffer.getInt();
+            for (int i = 0; i < genreCount; i++)
+            {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                RoaringBitmap bitmap = RoaringBitmap.readFrom(buffer);
+                try
+                {
+                    genres[Genre.GenreType.valueOf(new String(name, StandardCharsets.UTF_8)).ordinal()] = bitmap;
+                }
+                catch (IllegalArgumentException e)
+                {
+                    return false; // Written with a different set of genres
+                }
+            }
+            RoaringBitmap[] ratings = new RoaringBitmap[6];
+            for (int rating = 1; rating <= 5; rating++)
+            {
+                ratings[rating] = RoaringBitmap.readFrom(buffer);
+            }
+            IntObjectMap<RoaringBitmap> months = readBitmaps(buffer);
+            IntObjectMap<RoaringBitmap> authors = readBitmaps(buffer);
+            RoaringBitmap liveReviews = RoaringBitmap.readFrom(buffer);
+
+            lock.writeLock().lock();
+            try
+            {
+                for (int i = 0; i < genres.length; i++)
+                {
+                    byGenre[i] = genres[i] != null ? genres[i] : new RoaringBitmap();
+                }
+                System.arraycopy(ratings, 1, byRating, 1, 5);
+                byMonth = months;
+                byAuthor = authors;
+                live = liveReviews;
+                byMonth.forEach((bitmap, month) ->
+                {
+                    firstMonth = Math.min(firstMonth, month);
+                    lastMonth = Math.max(lastMonth, month);
+                });
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+            return true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            System.err.println("Failed to read review bitmaps: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads a count followed by that many key and bitmap pairs
+     */
+    private static IntObjectMap<RoaringBitmap> readBitmaps(ByteBuffer buffer)
+    {
+        int count = buffer.getInt();
+        IntObjectMap<RoaringBitmap> bitmaps = new IntObjectMap<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int key = buffer.getInt();
+            bitmaps.put(key, RoaringBitmap.readFrom(buffer));
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Saves the bitmaps to the file they were loaded from, so a restart after a crash
+     * does not have to rebuild them from the database
+     */
+    public void checkpoint()
+    {
+        save(file);
+    }
+
+    /**
+     * Writes the bitmaps to a file through a memory-mapped buffer, replacing it atomically.
+     * One save runs at a time, so a checkpoint and the shutdown hook cannot share the temporary file.
+     *
+     * @param file the file
+     */
+    public synchronized void save(File file)
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        temp.delete();
+        lock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long[] size = {4 + 4 + 8 + 8 + 4};
+            for (Genre.GenreType genre : Genre.GenreType.values())
+            {
+                size[0] += 2 + genre.name().getBytes(StandardCharsets.UTF_8).length + byGenre[genre.ordinal()].serializedSize();
+            }
+            for (int rating = 1; rating <= 5; rating++)
+            {
+                size[0] += byRating[rating].serializedSize();
+            }
+            size[0] += 4 + 4;
+            byMonth.forEach((bitmap, month) -> size[0] += 4 + bitmap.serializedSize());
+            byAuthor.forEach((bitmap, userID) -> size[0] += 4 + bitmap.serializedSize());
+            size[0] += live.serializedSize();
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size[0]);
+            buffer.putInt(FILE_MAGIC);
+            buffer.putInt(FILE_VERSION);
+            // Events wait for the write lock, so nothing can reach the bitmaps while they are written
+            buffer.putLong(ReviewEvents.getInstance().getDeliveredPosition());
+            buffer.putLong(live.getCardinality());
+            buffer.putInt(Genre.GenreType.values().length);
+            for (Genre.GenreType genre : Genre.GenreType.values())
+            {
+                byte[] name = genre.name().getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) name.length);
+                buffer.put(name);
+                byGenre[genre.ordinal()].writeTo(buffer);
+            }
+            for (int rating = 1; rating <= 5; rating++)
+            {
+                byRating[rating].writeTo(buffer);
+            }
+            writeBitmaps(buffer, byMonth);
+            writeBitmaps(buffer, byAuthor);
+            live.writeTo(buffer);
+            buffer.force();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            System.err.println("Failed to save review bitmaps: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        if (!temp.renameTo(file))
+        {
+            file.delete();
+            if (!temp.renameTo(file))
+            {
+                System.err.println("Failed to replace review bitmap file: " + file);
+            }
+        }
+    }
+
+    /**
+     * Writes a count followed by every key and bitmap pair
+     */
+    private static void writeBitmaps(ByteBuffer buffer, IntObjectMap<RoaringBitmap> bitmaps)
+    {
+        buffer.putInt(bitmaps.size());
+        bitmaps.forEach((bitmap, key) ->
+        {
+            buffer.putInt(key);
+            bitmap.writeTo(buffer);
+        });
+    }
+
+    /**
+     * Gets the number of reviews in the database
+     *
+     * @return the number of reviews, or -1 if the query fails
+     */
+    private static long databaseReviewCount()
+    {
+        try
+        {
+            ResultSet resultSet = Database.getInstance().executeQuery("bitmapIndex.reviewCount", "SELECT COUNT(*) FROM reviews");
+            long count = resultSet.next() ? resultSet.getLong(1) : 0;
+            resultSet.close();
+            return count;
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to count reviews: " + e.getMessage());
+            return -1;
+        }
+    }
+}
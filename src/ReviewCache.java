@@ -0,0 +1,442 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import javax.management.ObjectName;
+
+/**
+ * ReviewCache keeps recently and frequently read reviews in memory so Review.getReviewByID
+ * does not query the database for every lookup.
+ *
+ * Eviction follows W-TinyLFU: new entries enter a small LRU window (1% of the cache);
+ * entries leaving the window compete with the least recently used entry of the main area,
+ * and only the one a FrequencySketch has seen more often stays. The main area is a
+ * segmented LRU in which entries read a second time move from probation to a protected
+ * segment (80% of the main area). This keeps one-off lookups from flushing popular reviews.
+ *
+ * Review fields are stored in a compact binary form in an OffHeapSlab rather than as Review
+ * objects; every hit decodes a fresh Review, so callers may modify what they get back.
+ * Review.update and Review.deleteReview invalidate their entry and Review.likeReview
+ * increments the cached like count in place. A read that started before an invalidation
+ * is not cached, so a slow database read cannot bring back stale data.
+ *
+ * Size: -Dreview.cache.size (default 10000 reviews, 0 disables the cache).
+ * Statistics are exposed as the MBean "MovieReviewSocialNetwork:type=ReviewCache".
+ * Implements the Singleton pattern so all lookups share one cache.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewCache implements ReviewCacheMXBean
+{
+    private static final String MBEAN_NAME = "MovieReviewSocialNetwork:type=ReviewCache";
+    private static final byte WINDOW = 0;       // Entry is in the admission window
+    private static final byte PROBATION = 1;    // Entry is in the main area, read once
+    private static final byte PROTECTED = 2;    // Entry is in the main area, read again
+
+    // Encoded layout: reviewID, userID, movieID, likeCount (int), reviewDate (long), rating (byte), text length (int), text
+    private static final int LIKES_OFFSET = 12;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 1 + 4;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static ReviewCache instance;        // Singleton instance
+
+    /**
+     * A cached review: its slab handle and its place in one of the three LRU lists
+     */
+    private static final class Node
+    {
+        final int key;
+        final int handle;
+        byte queue;
+        Node prev;
+        Node next;
+
+        Node(int key, int handle)
+        {
+            this.key = key;
+            this.handle = handle;
+        }
+    }
+
+    private final int maximumSize;              // Maximum number of cached reviews
+    private final int windowMaximum;            // Maximum entries in the window
+    private final int protectedMaximum;         // Maximum entries in the protected segment
+    private final IntObjectMap<Node> nodes;     // Review ID to node
+    private final Node[] heads;                 // Sentinel of each list; head.next is most recent
+    private final int[] sizes;                  // Number of entries in each list
+    private final FrequencySketch sketch;       // Recent access frequency per review ID
+    private final OffHeapSlab slab;             // Encoded review fields
+
+    private long invalidations;                 // Bumped on every invalidation, see readStamp
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * Creates a cache holding up to the given number of reviews
+     *
+     * @param maximumSize the maximum number of cached reviews
+     */
+    ReviewCache(int maximumSize)
+    {
+        this.maximumSize = Math.max(0, maximumSize);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        this.protectedMaximum = (this.maximumSize - windowMaximum) * 80 / 100;
+        this.nodes = new IntObjectMap<>();
+        this.heads = new Node[3];
+        for (int i = 0; i < heads.length; i++)
+        {
+            heads[i] = new Node(0, -1);
+            heads[i].prev = heads[i];
+            heads[i].next = heads[i];
+        }
+        this.sizes = new int[3];
+        this.sketch = new FrequencySketch(Math.max(1, this.maximumSize));
+        this.slab = new OffHeapSlab();
+    }
+
+    /**
+     * Gets the singleton instance of ReviewCache, registering its MBean on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ReviewCache getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new ReviewCache(Integer.getInteger("review.cache.size", 10000));
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(MBEAN_NAME));
+            }
+            catch (Exception e)
+            {
+                System.err.println("Review cache MBean not registered: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Gets a cached review
+     *
+     * @param reviewID the review ID
+     * @return a new Review decoded from the cache, or null on a miss
+     */
+    public synchronized Review get(int reviewID)
+    {
+        sketch.increment(reviewID);
+        Node node = nodes.get(reviewID);
+        if (node == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return decode(node.handle);
+    }
+
+    /**
+     * Gets a stamp to pass to put after reading a review from the database
+     *
+     * @return the current invalidation count
+     */
+    public synchronized long readStamp()
+    {
+        return invalidations;
+    }
+
+    /**
+     * Adds a review read from the database, unless an invalidation happened since the read began
+     *
+     * @param review the review
+     * @param stamp the value of readStamp taken before the database read
+     */
+    public synchronized void put(Review review, long stamp)
+    {
+        if (maximumSize == 0 || stamp != invalidations || nodes.containsKey(review.getReviewID()))
+        {
+            return;
+        }
+
+        byte[] text = review.getText() == null ? null : review.getText().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + (text == null ? 0 : text.length);
+        int handle = slab.allocate(length);
+        if (handle < 0)
+        {
+            return; // Too long to cache
+        }
+        encode(handle, review, text);
+
+        Node node = new Node(review.getReviewID(), handle);
+        nodes.put(node.key, node);
+        link(node, WINDOW);
+        evict();
+    }
+
+    /**
+     * Drops a review from the cache after it changed or was deleted
+     *
+     * @param reviewID the review ID
+     */
+    public synchronized void invalidate(int reviewID)
+    {
+        invalidations++;
+        Node node = nodes.remove(reviewID);
+        if (node != null)
+        {
+            unlink(node);
+            slab.free(node.handle);
+        }
+    }
+
+    /**
+     * Adds one like to a cached review, if it is cached
+     *
+     * @param reviewID the review ID
+     */
+    public synchronized void incrementLikes(int reviewID)
+    {
+        invalidations++; // A concurrent read may have seen the old count
+        Node node = nodes.get(reviewID);
+        if (node != null)
+        {
+            ByteBuffer buffer = slab.buffer(node.handle);
+            int at = slab.offset(node.handle) + LIKES_OFFSET;
+            buffer.putInt(at, buffer.getInt(at) + 1);
+        }
+    }
+
+    /**
+     * Moves an entry after a hit: to the front of the window, from probation to
+     * protected, or to the front of protected
+     *
+     * @param node the entry that was read
+     */
+    private void onAccess(Node node)
+    {
+        if (node.queue == WINDOW)
+        {
+            unlink(node);
+            link(node, WINDOW);
+        }
+        else
+        {
+            unlink(node);
+            link(node, PROTECTED);
+            // Demote the least recently used protected entries back to probation
+            while (sizes[PROTECTED] > protectedMaximum)
+            {
+                Node demoted = heads[PROTECTED].prev;
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        }
+    }
+
+    /**
+     * Moves entries out of an overfull window and, when the cache is full, lets each one
+     * compete with the main area's eviction victim on estimated frequency
+     */
+    private void evict()
+    {
+        while (sizes[WINDOW] > windowMaximum)
+        {
+            Node candidate = heads[WINDOW].prev;
+            unlink(candidate);
+            if (nodes.size() <= maximumSize)
+            {
+                link(candidate, PROBATION);
+                continue;
+            }
+
+            int victimQueue = sizes[PROBATION] > 0 ? PROBATION : PROTECTED;
+            Node victim = heads[victimQueue].prev;
+            if (victim == heads[victimQueue] || sketch.frequency(candidate.key) > sketch.frequency(victim.key))
+            {
+                if (victim != heads[victimQueue])
+                {
+                    remove(victim);
+                    evictions++;
+                }
+                link(candidate, PROBATION);
+            }
+            else
+            {
+                remove(candidate);
+                rejections++;
+            }
+        }
+    }
+
+    /**
+     * Removes an unlinked or linked entry from the map and frees its slot
+     *
+     * @param node the entry
+     */
+    private void remove(Node node)
+    {
+        if (node.prev != null)
+        {
+            unlink(node);
+        }
+        nodes.remove(node.key);
+        slab.free(node.handle);
+    }
+
+    /**
+     * Inserts an entry at the front of a list
+     *
+     * @param node the entry
+     * @param queue the list
+     */
+    private void link(Node node, byte queue)
+    {
+        Node head = heads[queue];
+        node.queue = queue;
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+        sizes[queue]++;
+    }
+
+    /**
+     * Takes an entry out of its list
+     *
+     * @param node the entry
+     */
+    private void unlink(Node node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        sizes[node.queue]--;
+    }
+
+    /**
+     * Writes a review's fields into a slab slot
+     *
+     * @param handle the slot
+     * @param review the review
+     * @param text the UTF-8 review text, or null
+     */
+    private void encode(int handle, Review review, byte[] text)
+    {
+        ByteBuffer buffer = slab.buffer(handle);
+        int at = slab.offset(handle);
+        buffer.putInt(at, review.getReviewID());
+        buffer.putInt(at + 4, review.getUserID());
+        buffer.putInt(at + 8, review.getMovieID());
+        buffer.putInt(at + LIKES_OFFSET, review.getLikeCount());
+        buffer.putLong(at + 16, review.getReviewDate() == null ? NO_DATE : review.getReviewDate().getTime());
+        buffer.put(at + 24, (byte) review.getRating());
+        buffer.putInt(at + 25, text == null ? -1 : text.length);
+        if (text != null)
+        {
+            ByteBuffer target = buffer.duplicate();
+            target.position(at + HEADER_BYTES);
+            target.put(text);
+        }
+    }
+
+    /**
+     * Reads a review back from a slab slot
+     *
+     * @param handle the slot
+     * @return a new Review with the stored fields
+     */
+    private Review decode(int handle)
+    {
+        ByteBuffer buffer = slab.buffer(handle);
+        int at = slab.offset(handle);
+        long date = buffer.getLong(at + 16);
+        int textLength = buffer.getInt(at + 25);
+        String text = null;
+        if (textLength >= 0)
+        {
+            byte[] bytes = new byte[textLength];
+            ByteBuffer source = buffer.duplicate();
+            source.position(at + HEADER_BYTES);
+            source.get(bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Review(buffer.getInt(at), text, buffer.get(at + 24), buffer.getInt(at + 4),
+                          buffer.getInt(at + 8), date == NO_DATE ? null : new Date(date),
+                          buffer.getInt(at + LIKES_OFFSET));
+    }
+
+    @Override
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    @Override
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    @Override
+    public synchronized double getHitRatio()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    @Override
+    public synchronized long getRejectionCount()
+    {
+        return rejections;
+    }
+
+    @Override
+    public synchronized int getSize()
+    {
+        return nodes.size();
+    }
+
+    @Override
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    @Override
+    public synchronized long getOffHeapUsedBytes()
+    {
+        return slab.getUsedBytes();
+    }
+
+    @Override
+    public synchronized long getOffHeapReservedBytes()
+    {
+        return slab.getReservedBytes();
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        invalidations++;
+        for (Node head : heads)
+        {
+            while (head.next != head)
+            {
+                remove(head.next);
+            }
+        }
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        rejections = 0;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Management interface for ReviewCache, registered with the platform MBean server
+ * as "MovieReviewSocialNetwork:type=ReviewCache" so hit ratio and memory use can be
+ * inspected with JConsole or any other JMX client.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface ReviewCacheMXBean
+{
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of lookups that went to the database
+     */
+    long getMissCount();
+
+    /**
+     * @return hits divided by lookups, or 0 before the first lookup
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of entries removed to make room for others
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of new entries turned away by the frequency filter
+     */
+    long getRejectionCount();
+
+    /**
+     * @return the number of cached reviews
+     */
+    int getSize();
+
+    /**
+     * @return the maximum number of cached reviews
+     */
+    int getMaximumSize();
+
+    /**
+     * @return the bytes of direct memory holding cached reviews
+     */
+    long getOffHeapUsedBytes();
+
+    /**
+     * @return the bytes of direct memory reserved by the cache
+     */
+    long getOffHeapReservedBytes();
+
+    /**
+     * Removes every entry and clears the counters
+     */
+    void clear();
+}
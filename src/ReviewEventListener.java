@@ -0,0 +1,45 @@
+/**
+ * ReviewEventListener is notified when reviews change in the database.
+ * In-memory structures such as the ReviewStore implement it to stay in sync
+ * without reloading everything from the database.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface ReviewEventListener
+{
+    /**
+     * Called after a new review has been saved to the database
+     *
+     * @param review the new review, with its database ID
+     */
+    void onReviewPublished(Review review);
+
+    /**
+     * Called after a review's rating and text have been updated in the database
+     *
+     * @param review the review with its new rating and text
+     */
+    void onReviewUpdated(Review review);
+
+    /**
+     * Called after a review has been deleted from the database
+     *
+     * @param reviewID the ID of the deleted review
+     */
+    void onReviewDeleted(int reviewID);
+
+    /**
+     * Called after a like has been recorded for a review
+     *
+     * @param reviewID the ID of the liked review
+     * @param userID the ID of the user who liked it
+     */
+    void onReviewLiked(int reviewID, int userID);
+
+    /**
+     * Called after the reviews of duplicate movies have been moved to the movies they were
+     * merged into. Merged movies always have the same genre.
+     *
+     * @param merged maps each merged-away movie ID to the ID of the movie that kept its reviews
+     */
+    void onMoviesMerged(IntIntMap merged);
+}
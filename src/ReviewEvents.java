@@ -0,0 +1,185 @@
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * ReviewEvents publishes review changes to registered listeners.
+ * Review fires these events after its database writes succeed.
+ * Listeners run synchronously, before the write returns; each event is then also published
+ * to the DomainEventBus for subscribers that can be updated asynchronously.
+ * Writers bracket the log append, the catch-up and the event with beginWrite and endWrite, so
+ * getDeliveredPosition can tell listeners how far into the event log their events reach.
+ * Implements the Singleton pattern so every part of the application shares one set of listeners.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewEvents
+{
+    private static ReviewEvents instance; // Singleton instance
+
+    // Registered listeners, safe to iterate while listeners are added or removed
+    private final List<ReviewEventListener> listeners;
+
+    // Lowest sequence each unfinished write may append at, with the number of writes sharing it
+    private final TreeMap<Long, Integer> pendingWrites = new TreeMap<>();
+
+    /**
+     * Private constructor for Singleton pattern
+     */
+    private ReviewEvents()
+    {
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Gets the singleton instance of ReviewEvents
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ReviewEvents getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new ReviewEvents();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a listener for review events
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(ReviewEventListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(ReviewEventListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Marks the start of a write whose event will be published, before its record is appended
+     *
+     * @return a token to pass to endWrite
+     */
+    public long beginWrite()
+    {
+        // Read before the append, so the record's sequence can only be higher
+        long from = EventLog.getInstance().getLastSequence() + 1;
+        synchronized (pendingWrites)
+        {
+            pendingWrites.merge(from, 1, Integer::sum);
+        }
+        return from;
+    }
+
+    /**
+     * Marks the end of a write started with beginWrite, after its event was published or
+     * the write failed
+     *
+     * @param token the value beginWrite returned
+     */
+    public void endWrite(long token)
+    {
+        synchronized (pendingWrites)
+        {
+            pendingWrites.computeIfPresent(token, (from, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Gets the event log position up to which every applied review record has also reached the
+     * listeners. A listener that blocks event delivery while calling this gets a position its
+     * own state is complete up to.
+     *
+     * @return the position, at most LogProjection's
+     */
+    public long getDeliveredPosition()
+    {
+        // A record applied by the time the position is read was appended after its beginWrite
+        long position = LogProjection.getInstance().getPosition();
+        synchronized (pendingWrites)
+        {
+            return pendingWrites.isEmpty() ? position : Math.min(position, pendingWrites.firstKey() - 1);
+        }
+    }
+
+    /**
+     * Notifies listeners that a review was published
+     *
+     * @param review the new review
+     */
+    public void reviewPublished(Review review)
+    {
+        for (ReviewEventListener listener : listeners)
+        {
+            listener.onReviewPublished(review);
+        }
+        DomainEventBus.getInstance().reviewPublished(review);
+    }
+
+    /**
+     * Notifies listeners that a review was updated
+     *
+     * @param review the updated review
+     */
+    public void reviewUpdated(Review review)
+    {
+        for (ReviewEventListener listener : listeners)
+        {
+            listener.onReviewUpdated(review);
+        }
+        DomainEventBus.getInstance().reviewUpdated(review);
+    }
+
+    /**
+     * Notifies listeners that a review was deleted
+     *
+     * @param review the deleted review
+     */
+    public void reviewDeleted(Review review)
+    {
+        for (ReviewEventListener listener : listeners)
+        {
+            listener.onReviewDeleted(review.getReviewID());
+        }
+        DomainEventBus.getInstance().reviewDeleted(review);
+    }
+
+    /**
+     * Notifies listeners that a review was liked
+     *
+     * @param review the liked review
+     * @param userID the ID of the user who liked it
+     */
+    public void reviewLiked(Review review, int userID)
+    {
+        for (ReviewEventListener listener : listeners)
+        {
+            listener.onReviewLiked(review.getReviewID(), userID);
+        }
+        DomainEventBus.getInstance().reviewLiked(review, userID);
+    }
+
+    /**
+     * Notifies listeners that the reviews of duplicate movies were moved to the movies they
+     * were merged into
+     *
+     * @param merged maps each merged-away movie ID to the ID of the movie that kept its reviews
+     */
+    public void moviesMerged(IntIntMap merged)
+    {
+        for (ReviewEventListener listener : listeners)
+        {
+            listener.onMoviesMerged(merged);
+        }
+        merged.forEach((duplicateID, movieID) -> DomainEventBus.getInstance().movieMerged(duplicateID, movieID));
+    }
+}
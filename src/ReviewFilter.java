@@ -0,0 +1,107 @@
+import java.util.Date;
+import java.util.EnumSet;
+
+/**
+ * ReviewFilter describes a combined review search for ReviewSearchIndex: any mix of genres,
+ * a date range, a minimum rating, an author, a minimum number of likes and "only people I follow".
+ * Criteria left unset match every review. Setters return the filter so it can be written as one
+ * expression, e.g. new ReviewFilter().genres(EnumSet.of(Genre.GenreType.DRAMA)).minRating(4).limit(20).
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewFilter
+{
+    EnumSet<Genre.GenreType> genres;            // Only reviews of movies in these genres, or null for all
+    long fromMillis = ReviewQuery.MIN_TIME;     // Earliest review date, inclusive
+    long toMillis = ReviewQuery.MAX_TIME;       // Latest review date, inclusive
+    int minRating = 1;                          // Lowest accepted rating
+    int authorID = -1;                          // Only reviews by this user, or -1 for all
+    int minLikes = 0;                           // Lowest accepted like count
+    int followerID = -1;                        // Only reviews by users this user follows, or -1 for all
+    int limit = 20;                             // Maximum number of reviews returned by search
+
+    /**
+     * Restricts the search to reviews of movies in any of the given genres
+     *
+     * @param genres the genres, or null for all genres
+     * @return this filter
+     */
+    public ReviewFilter genres(EnumSet<Genre.GenreType> genres)
+    {
+        this.genres = genres == null ? null : EnumSet.copyOf(genres);
+        return this;
+    }
+
+    /**
+     * Restricts the search to reviews written in a time range
+     *
+     * @param from the earliest review date, inclusive
+     * @param to the latest review date, inclusive
+     * @return this filter
+     */
+    public ReviewFilter between(Date from, Date to)
+    {
+        this.fromMillis = Math.max(ReviewQuery.MIN_TIME, from.getTime());
+        this.toMillis = Math.min(ReviewQuery.MAX_TIME, to.getTime());
+        return this;
+    }
+
+    /**
+     * Restricts the search to reviews with at least a rating
+     *
+     * @param minRating the lowest rating, 1 to 5
+     * @return this filter
+     */
+    public ReviewFilter minRating(int minRating)
+    {
+        this.minRating = minRating;
+        return this;
+    }
+
+    /**
+     * Restricts the search to reviews by one user
+     *
+     * @param userID the author's user ID
+     * @return this filter
+     */
+    public ReviewFilter byAuthor(int userID)
+    {
+        this.authorID = userID;
+        return this;
+    }
+
+    /**
+     * Restricts the search to reviews with at least a number of likes
+     *
+     * @param minLikes the lowest like count
+     * @return this filter
+     */
+    public ReviewFilter minLikes(int minLikes)
+    {
+        this.minLikes = minLikes;
+        return this;
+    }
+
+    /**
+     * Restricts the search to reviews by users a user follows
+     *
+     * @param userID the follower's user ID
+     * @return this filter
+     */
+    public ReviewFilter followedBy(int userID)
+    {
+        this.followerID = userID;
+        return this;
+    }
+
+    /**
+     * Caps the number of reviews returned by search
+     *
+     * @param limit the maximum number of reviews
+     * @return this filter
+     */
+    public ReviewFilter limit(int limit)
+    {
+        this.limit = limit;
+        return this;
+    }
+}
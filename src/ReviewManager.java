@@ -1,5 +1,6 @@
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -25,7 +26,7 @@ public class ReviewManager
      * it creates a new one.
      * @return The single instance of ReviewManager.
      */
-    public static ReviewManager getInstance()
+    public static synchronized ReviewManager getInstance()
     {
         if (instance == null)
         {
@@ -36,6 +37,7 @@ public class ReviewManager
 
     /**
      * Allows the user to select a movie either by searching for an existing movie or creating a new one.
+     * When no title contains the text, near matches from the MovieTitleIndex are offered first.
      * @param scanner The Scanner object used for input
      * @return The selected Movie object, or null if the process was canceled
      */
@@ -46,9 +48,32 @@ public class ReviewManager
         ArrayList<Movie> matchedMovies = SearchReview.match(movieTitle);
         Movie selectedMovie = null;
 
-        // If no matching movies, offer to create a new one
+        // If no matching movies, suggest near matches, then offer to create a new one
         if (matchedMovies.isEmpty())
         {
+            List<Movie> similarMovies = MovieTitleIndex.getInstance().findSimilar(movieTitle, 10);
+            if (!similarMovies.isEmpty())
+            {
+                System.out.println("No exact match. Did you mean:");
+                for (Movie m : similarMovies)
+                {
+                    System.out.println(m.toString());
+                }
+                int selectedID = InputValidator.getValidatedInt(scanner, "Enter the Movie ID (0 if none of these): ");
+                if (selectedID != 0)
+                {
+                    for (Movie m : similarMovies)
+                    {
+                        if (m.getMovieID() == selectedID)
+                        {
+                            return m;
+                        }
+                    }
+                    System.out.println("Invalid Movie ID selected.");
+                    return null;
+                }
+            }
+
             System.out.println("No matching movies found.");
             boolean createNew = InputValidator.confirmYes("Would you like to create a new movie? (y/n): ", scanner);
             if (createNew)
@@ -183,7 +208,7 @@ public class ReviewManager
         {
             Review review = new Review(0, reviewText, rating, userID,
                     selectedMovie.getMovieID(), new Date(), 0);
-            if (review.save())
+            if (review.saveIfNotReviewed())
             {
                 System.out.println("Review published successfully.");
             }
@@ -277,9 +302,10 @@ public class ReviewManager
     /**
      * Allows the user to like a review by entering its ID.
      * Validates the review ID and increments the review's like count if valid.
+     * @param session the session of the user liking the review
      * @param scanner the Scanner object used for user input
      */
-    public void likeReviewMenu(Scanner scanner)
+    public void likeReviewMenu(Session session, Scanner scanner)
     {
         int reviewID = InputValidator.getValidatedInt(scanner, "Enter Review ID to like: ");
 
@@ -290,7 +316,89 @@ public class ReviewManager
             return;
         }
 
-        review.likeReview();
+        review.likeReview(session);
+    }
+
+    /**
+     * Publishes a new review without prompting. Used by the HTTP service.
+     * @param userID the ID of the user writing the review
+     * @param movieID the ID of the movie being reviewed
+     * @param rating the rating from 1 to 5
+     * @param text the review text
+     * @return true if the review was saved, false if the input was invalid, the user
+     *         already reviewed the movie, or saving failed
+     */
+    public boolean publishReview(int userID, int movieID, int rating, String text)
+    {
+        if (rating < 1 || rating > 5 || text == null)
+        {
+            return false;
+        }
+        Review review = new Review(0, text, rating, userID, movieID, new Date(), 0);
+        return review.saveIfNotReviewed();
+    }
+
+    /**
+     * Gets a review only if it was written by the given user
+     * @param userID the ID of the user who must own the review
+     * @param reviewID the ID of the review
+     * @return the review, or null if it does not exist or belongs to someone else
+     */
+    public Review findOwnedReview(int userID, int reviewID)
+    {
+        Review review = Review.getReviewByID(reviewID);
+        if (review == null || review.getUserID() != userID)
+        {
+            return null;
+        }
+        return review;
+    }
+
+    /**
+     * Changes the rating and, if given, the text of one of the user's reviews without prompting.
+     * @param userID the ID of the user who owns the review
+     * @param reviewID the ID of the review
+     * @param rating the new rating from 1 to 5
+     * @param text the new text, or null or empty to keep the current text
+     * @return true if the review was updated, false otherwise
+     */
+    public boolean editReview(int userID, int reviewID, int rating, String text)
+    {
+        Review review = findOwnedReview(userID, reviewID);
+        if (review == null || rating < 1 || rating > 5)
+        {
+            return false;
+        }
+        review.setRating(rating);
+        if (text != null && !text.isEmpty())
+        {
+            review.setText(text);
+        }
+        return review.update();
+    }
+
+    /**
+     * Deletes one of the user's reviews without prompting.
+     * @param userID the ID of the user who owns the review
+     * @param reviewID the ID of the review
+     * @return true if the review was deleted, false otherwise
+     */
+    public boolean deleteReview(int userID, int reviewID)
+    {
+        Review review = findOwnedReview(userID, reviewID);
+        return review != null && review.deleteReview();
+    }
+
+    /**
+     * Likes a review on behalf of a user without prompting.
+     * @param userID the ID of the user liking the review
+     * @param reviewID the ID of the review
+     * @return true if the like was recorded, false if the review does not exist or was already liked
+     */
+    public boolean likeReview(int userID, int reviewID)
+    {
+        Review review = Review.getReviewByID(reviewID);
+        return review != null && review.likeReview(userID);
     }
 
     /**
@@ -0,0 +1,146 @@
+import java.util.Date;
+
+/**
+ * ReviewQuery describes an aggregate question over reviews for ReviewQueryEngine:
+ * which reviews to include, how to group them, and how to order and cut the groups.
+ * Setters return the query so it can be written as one expression, e.g.
+ * new ReviewQuery().genre(Genre.GenreType.DRAMA).between(from, to).groupBy(ReviewQuery.GroupBy.MOVIE).
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewQuery
+{
+    /**
+     * What the matching reviews are grouped by
+     */
+    public enum GroupBy
+    {
+        NONE,   // One group with every matching review
+        MOVIE,  // Group key is the movie ID
+        USER,   // Group key is the author's user ID
+        GENRE,  // Group key is the Genre.GenreType ordinal of the movie
+        DAY     // Group key is the UTC day number since 1970-01-01
+    }
+
+    /**
+     * How the resulting groups are ordered
+     */
+    public enum OrderBy
+    {
+        AVERAGE_RATING, // Highest average rating first, ties by more reviews
+        REVIEW_COUNT,   // Most reviews first
+        LIKES,          // Most likes first
+        KEY             // Ascending group key
+    }
+
+    // Widest accepted time range; keeps the engine's range arithmetic from overflowing
+    static final long MIN_TIME = -(1L << 62);
+    static final long MAX_TIME = 1L << 62;
+
+    Genre.GenreType genre;              // Only reviews of movies in this genre, or null for all
+    long fromMillis = MIN_TIME;         // Earliest review date, inclusive
+    long toMillis = MAX_TIME;           // Latest review date, inclusive
+    int userID = -1;                    // Only reviews by this user, or -1 for all
+    int movieID = -1;                   // Only reviews of this movie, or -1 for all
+    GroupBy groupBy = GroupBy.NONE;     // Grouping of the matching reviews
+    OrderBy orderBy = OrderBy.KEY;      // Ordering of the groups
+    int minCount = 1;                   // Groups with fewer reviews are dropped
+    int limit = Integer.MAX_VALUE;      // Maximum number of groups returned
+
+    /**
+     * Restricts the query to reviews of movies in a genre
+     *
+     * @param genre the genre, or null for all genres
+     * @return this query
+     */
+    public ReviewQuery genre(Genre.GenreType genre)
+    {
+        this.genre = genre;
+        return this;
+    }
+
+    /**
+     * Restricts the query to reviews written in a time range
+     *
+     * @param from the earliest review date, inclusive
+     * @param to the latest review date, inclusive
+     * @return this query
+     */
+    public ReviewQuery between(Date from, Date to)
+    {
+        this.fromMillis = Math.max(MIN_TIME, from.getTime());
+        this.toMillis = Math.min(MAX_TIME, to.getTime());
+        return this;
+    }
+
+    /**
+     * Restricts the query to reviews by one user
+     *
+     * @param userID the user ID
+     * @return this query
+     */
+    public ReviewQuery byUser(int userID)
+    {
+        this.userID = userID;
+        return this;
+    }
+
+    /**
+     * Restricts the query to reviews of one movie
+     *
+     * @param movieID the movie ID
+     * @return this query
+     */
+    public ReviewQuery ofMovie(int movieID)
+    {
+        this.movieID = movieID;
+        return this;
+    }
+
+    /**
+     * Sets how matching reviews are grouped
+     *
+     * @param groupBy the grouping
+     * @return this query
+     */
+    public ReviewQuery groupBy(GroupBy groupBy)
+    {
+        this.groupBy = groupBy;
+        return this;
+    }
+
+    /**
+     * Sets how groups are ordered
+     *
+     * @param orderBy the ordering
+     * @return this query
+     */
+    public ReviewQuery orderBy(OrderBy orderBy)
+    {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    /**
+     * Drops groups with fewer reviews, e.g. movies with a single five-star review
+     *
+     * @param minCount the minimum number of reviews per group
+     * @return this query
+     */
+    public ReviewQuery minCount(int minCount)
+    {
+        this.minCount = minCount;
+        return this;
+    }
+
+    /**
+     * Caps the number of groups returned
+     *
+     * @param limit the maximum number of groups
+     * @return this query
+     */
+    public ReviewQuery limit(int limit)
+    {
+        this.limit = limit;
+        return this;
+    }
+}
@@ -0,0 +1,435 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ReviewQueryEngine answers ReviewQuery aggregates (filter, group by, count/average/sum)
+ * by scanning the columns of the ReviewStore instead of running SQL.
+ *
+ * The row range is split across the fork-join pool. Each task first filters its rows with a
+ * branch-free loop: every predicate is turned into a 0/1 value with sign-bit arithmetic,
+ * the values are ANDed, and the row number is written to a selection vector whose length
+ * grows by that value, so the loop has no data-dependent branches for the CPU to mispredict
+ * and its column reads stay sequential. The selected rows are then folded into per-task
+ * groups, and the tasks' groups are merged.
+ *
+ * The JDK Vector API is not used: the build targets Java 8 and the API is still an
+ * incubator module, so the loops are written for the JIT's own auto-vectorisation instead.
+ * Movie genres come from the Movies table, cached in a dense array indexed by movie ID.
+ * The array is reloaded after a movie is created or merged on the event bus, or when SQLite's
+ * data_version shows that another connection has written to the database.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewQueryEngine implements DomainEventSubscriber
+{
+    // Number of rows handled by one fork-join task before it stops splitting
+    private static final int SPLIT_THRESHOLD = 1 << 16;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final byte NO_GENRE = -1;            // Genre of an unknown movie
+    private static final int MAX_DENSE_MOVIE_ID = 1 << 24; // Larger IDs are treated as unknown
+
+    private static ReviewQueryEngine instance;          // Singleton instance
+
+    private final ReviewStore store;                    // Review columns
+    private final ForkJoinPool pool;                    // Pool the scans run on
+    private byte[] genreByMovie;                        // Genre ordinal per movie ID, NO_GENRE if unknown
+    private volatile boolean moviesChanged = true;      // Set when movies were created or merged since the load
+    private long dataVersion = -1;                      // PRAGMA data_version when genreByMovie was loaded
+
+    /**
+     * Constructs an engine over a review store
+     *
+     * @param store the review store
+     * @param pool the pool scans run on
+     */
+    public ReviewQueryEngine(ReviewStore store, ForkJoinPool pool)
+    {
+        this.store = store;
+        this.pool = pool;
+        this.genreByMovie = new byte[0];
+    }
+
+    /**
+     * Gets the singleton engine over the shared ReviewStore and the common fork-join pool
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ReviewQueryEngine getInstance()
+    {
+        if (instance == null)
+        {
+            ReviewQueryEngine engine = new ReviewQueryEngine(ReviewStore.getInstance(), ForkJoinPool.commonPool());
+            DomainEventBus.getInstance().subscribe("query-engine-movies", engine);
+            instance = engine;
+        }
+        return instance;
+    }
+
+    /**
+     * Runs an aggregate query
+     *
+     * @param query the query
+     * @return the groups, filtered by minCount, ordered and limited as the query asks
+     */
+    public List<ReviewAggregate> execute(ReviewQuery query)
+    {
+        byte[] genres = movieGenres();
+        Groups groups;
+        store.readLock().lock();
+        try
+        {
+            groups = pool.invoke(new ScanTask(store, genres, query, 0, store.getRowCount()));
+        }
+        finally
+        {
+            store.readLock().unlock();
+        }
+
+        List<ReviewAggregate> results = new ArrayList<>();
+        for (int slot = 0; slot < groups.size; slot++)
+        {
+            if (groups.counts[slot] >= query.minCount)
+            {
+                results.add(new ReviewAggregate(groups.keys[slot], groups.counts[slot],
+                                                groups.ratingSums[slot], groups.likeSums[slot]));
+            }
+        }
+        results.sort(comparator(query.orderBy));
+        return results.size() > query.limit ? new ArrayList<>(results.subList(0, query.limit)) : results;
+    }
+
+    /**
+     * Builds the comparator for a group ordering
+     *
+     * @param orderBy the ordering
+     * @return the comparator
+     */
+    private static Comparator<ReviewAggregate> comparator(ReviewQuery.OrderBy orderBy)
+    {
+        Comparator<ReviewAggregate> byKey = Comparator.comparingInt(ReviewAggregate::getKey);
+        switch (orderBy)
+        {
+            case AVERAGE_RATING:
+                return Comparator.comparingDouble(ReviewAggregate::getAverageRating).reversed()
+                        .thenComparing(Comparator.comparingLong(ReviewAggregate::getCount).reversed())
+                        .thenComparing(byKey);
+            case REVIEW_COUNT:
+                return Comparator.comparingLong(ReviewAggregate::getCount).reversed().thenComparing(byKey);
+            case LIKES:
+                return Comparator.comparingLong(ReviewAggregate::getLikeSum).reversed().thenComparing(byKey);
+            default:
+                return byKey;
+        }
+    }
+
+    /**
+     * Marks the movie-to-genre table as stale when a movie is created or merged into another
+     *
+     * @param event the event
+     * @param endOfBatch true for the last event currently available
+     */
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch)
+    {
+        if (event.getType() == DomainEvent.Type.MOVIE_CREATED || event.getType() == DomainEvent.Type.MOVIE_MERGED)
+        {
+            moviesChanged = true;
+        }
+    }
+
+    /**
+     * Gets the movie-to-genre table, reloading it if movies changed since it was loaded
+     *
+     * @return genre ordinals indexed by movie ID
+     */
+    private synchronized byte[] movieGenres()
+    {
+        try
+        {
+            // data_version only moves for commits made by other connections, so writes through
+            // this process's connection are caught by the events instead
+            ResultSet version = Database.getInstance().executeQuery("queryEngine.dataVersion", "PRAGMA data_version");
+            long currentVersion = version.next() ? version.getLong(1) : -1;
+            version.close();
+            if (!moviesChanged && currentVersion == dataVersion)
+            {
+                return genreByMovie;
+            }
+            // Cleared before reading so an event that arrives during the load forces another one
+            moviesChanged = false;
+
+            ResultSet maxID = Database.getInstance().executeQuery("queryEngine.maxMovieId", "SELECT MAX(id) FROM Movies");
+            int size = Math.min(MAX_DENSE_MOVIE_ID, (maxID.next() ? maxID.getInt(1) : 0) + 1);
+            maxID.close();
+            byte[] table = new byte[size];
+            Arrays.fill(table, NO_GENRE);
+
+            ResultSet resultSet = Database.getInstance().executeQuery("queryEngine.movieGenres", "SELECT id, genres FROM Movies");
+            while (resultSet.next())
+            {
+                int id = resultSet.getInt("id");
+                String genre = resultSet.getString("genres");
+                if (id < 0 || id >= size || genre == null)
+                {
+                    continue;
+                }
+                try
+                {
+                    table[id] = (byte) Genre.GenreType.valueOf(genre.trim().toUpperCase().replace(' ', '_')).ordinal();
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Leave movies with an unrecognised genre as unknown
+                }
+            }
+            resultSet.close();
+            genreByMovie = table;
+            dataVersion = currentVersion;
+        }
+        catch (SQLException e)
+        {
+            moviesChanged = true;
+            System.err.println("Failed to load movie genres: " + e.getMessage());
+        }
+        return genreByMovie;
+    }
+
+    /**
+     * Groups built by one scan task: parallel arrays of key, count and sums,
+     * with an IntIntMap from key to slot
+     */
+    private static final class Groups
+    {
+        final IntIntMap slots = new IntIntMap();
+        int[] keys = new int[16];
+        long[] counts = new long[16];
+        long[] ratingSums = new long[16];
+        long[] likeSums = new long[16];
+        int size;
+
+        /**
+         * Adds reviews to a group, creating the group if needed
+         */
+        void add(int key, long count, long ratingSum, long likeSum)
+        {
+            int slot = slots.get(key);
+            if (slot < 0)
+            {
+                if (size == keys.length)
+                {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                    ratingSums = Arrays.copyOf(ratingSums, size * 2);
+                    likeSums = Arrays.copyOf(likeSums, size * 2);
+                }
+                slot = size++;
+                slots.put(key, slot);
+                keys[slot] = key;
+            }
+            counts[slot] += count;
+            ratingSums[slot] += ratingSum;
+            likeSums[slot] += likeSum;
+        }
+
+        /**
+         * Adds every group of another result into this one
+         */
+        Groups merge(Groups other)
+        {
+            Groups into = size >= other.size ? this : other;
+            Groups from = into == this ? other : this;
+            for (int slot = 0; slot < from.size; slot++)
+            {
+                into.add(from.keys[slot], from.counts[slot], from.ratingSums[slot], from.likeSums[slot]);
+            }
+            return into;
+        }
+    }
+
+    /**
+     * Filters and groups a range of rows, splitting it across the pool while it is large
+     */
+    private static class ScanTask extends RecursiveTask<Groups>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ReviewStore store;
+        private final byte[] genreByMovie;
+        private final ReviewQuery query;
+        private final int from;
+        private final int to;
+
+        ScanTask(ReviewStore store, byte[] genreByMovie, ReviewQuery query, int from, int to)
+        {
+            this.store = store;
+            this.genreByMovie = genreByMovie;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Groups compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(store, genreByMovie, query, from, mid);
+                left.fork();
+                Groups right = new ScanTask(store, genreByMovie, query, mid, to).compute();
+                return left.join().merge(right);
+            }
+            int[] selected = new int[to - from];
+            int count = select(selected);
+            return group(selected, count);
+        }
+
+        /**
+         * Writes the numbers of the rows that match the query into a selection vector
+         *
+         * @param selected receives the matching row numbers
+         * @return the number of matching rows
+         */
+        private int select(int[] selected)
+        {
+            byte[] live = store.liveFlags();
+            long[] timestamps = store.timestamps();
+            int[] userIds = store.userIds();
+            int[] movieIds = store.movieIds();
+            byte[] genres = genreByMovie;
+
+            long fromMillis = query.fromMillis;
+            long toMillis = query.toMillis;
+            int targetGenre = query.genre == null ? 0 : query.genre.ordinal();
+            int anyGenre = query.genre == null ? 1 : 0;
+            int targetUser = query.userID;
+            int anyUser = query.userID < 0 ? 1 : 0;
+            int targetMovie = query.movieID;
+            int anyMovie = query.movieID < 0 ? 1 : 0;
+
+            int count = 0;
+            for (int row = from; row < to; row++)
+            {
+                long time = timestamps[row];
+                int movie = movieIds[row];
+                // 1 when fromMillis <= time <= toMillis: both differences are non-negative
+                int inRange = (int) (~((time - fromMillis) | (toMillis - time)) >>> 63);
+                int genre = movie >= 0 && movie < genres.length ? genres[movie] : NO_GENRE;
+                int keep = live[row] & inRange
+                         & (equal(genre, targetGenre) | anyGenre)
+                         & (equal(userIds[row], targetUser) | anyUser)
+                         & (equal(movie, targetMovie) | anyMovie);
+                selected[count] = row;
+                count += keep;
+            }
+            return count;
+        }
+
+        /**
+         * Folds the selected rows into groups
+         *
+         * @param selected the matching row numbers
+         * @param count the number of matching rows
+         * @return the groups
+         */
+        private Groups group(int[] selected, int count)
+        {
+            byte[] ratings = store.ratings();
+            int[] likes = store.likeCounts();
+            Groups groups = new Groups();
+
+            switch (query.groupBy)
+            {
+                case NONE:
+                {
+                    long ratingSum = 0;
+                    long likeSum = 0;
+                    for (int i = 0; i < count; i++)
+                    {
+                        ratingSum += ratings[selected[i]];
+                        likeSum += likes[selected[i]];
+                    }
+                    if (count > 0)
+                    {
+                        groups.add(0, count, ratingSum, likeSum);
+                    }
+                    return groups;
+                }
+                case GENRE:
+                {
+                    // Few distinct keys: accumulate into dense arrays first
+                    int[] movieIds = store.movieIds();
+                    int genreCount = Genre.GenreType.values().length;
+                    long[] counts = new long[genreCount + 1];
+                    long[] ratingSums = new long[genreCount + 1];
+                    long[] likeSums = new long[genreCount + 1];
+                    for (int i = 0; i < count; i++)
+                    {
+                        int row = selected[i];
+                        int movie = movieIds[row];
+                        int genre = movie >= 0 && movie < genreByMovie.length ? genreByMovie[movie] : NO_GENRE;
+                        int index = genre + 1; // Unknown genres go to index 0 and are skipped below
+                        counts[index]++;
+                        ratingSums[index] += ratings[row];
+                        likeSums[index] += likes[row];
+                    }
+                    for (int index = 1; index <= genreCount; index++)
+                    {
+                        if (counts[index] > 0)
+                        {
+                            groups.add(index - 1, counts[index], ratingSums[index], likeSums[index]);
+                        }
+                    }
+                    return groups;
+                }
+                default:
+                {
+                    int[] keys = keyColumn();
+                    long[] timestamps = store.timestamps();
+                    boolean byDay = query.groupBy == ReviewQuery.GroupBy.DAY;
+                    for (int i = 0; i < count; i++)
+                    {
+                        int row = selected[i];
+                        int key = byDay ? (int) Math.floorDiv(timestamps[row], DAY_MILLIS) : keys[row];
+                        groups.add(key, 1, ratings[row], likes[row]);
+                    }
+                    return groups;
+                }
+            }
+        }
+
+        /**
+         * Gets the column holding the group key for MOVIE and USER grouping
+         *
+         * @return the key column, or null when the key is computed from the timestamp
+         */
+        private int[] keyColumn()
+        {
+            switch (query.groupBy)
+            {
+                case MOVIE:
+                    return store.movieIds();
+                case USER:
+                    return store.userIds();
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Compares two ints without a branch
+         *
+         * @return 1 if a equals b, 0 otherwise
+         */
+        private static int equal(int a, int b)
+        {
+            int x = a ^ b;
+            return ~(x | -x) >>> 31;
+        }
+    }
+}
@@ -0,0 +1,480 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ReviewSearchIndex answers ReviewFilter searches that combine several criteria.
+ *
+ * Genres, ratings, months, authors and "followed by" are answered from the ReviewBitmapIndex:
+ * each criterion becomes the OR of the bitmaps it accepts (e.g. minRating 4 accepts the bitmaps
+ * for 4 and 5, "followed by" those of every followed author), and the criteria are ANDed with
+ * each other and with the live reviews, smallest first. A count needs nothing else unless the
+ * filter has a minimum number of likes or dates that do not fall on month boundaries; those
+ * are checked against the ReviewStore columns, in parallel on the fork-join pool for large
+ * candidate sets. Searches also use the store to pick the newest matches.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewSearchIndex
+{
+    // Number of candidates one fork-join task checks before it stops splitting
+    private static final int SPLIT_THRESHOLD = 1 << 14;
+
+    private static ReviewSearchIndex instance;          // Singleton instance
+
+    private final ReviewBitmapIndex bitmaps;            // Bitmaps of review IDs per attribute
+    private final ReviewStore store;                    // Review columns used to check candidates
+    private final ForkJoinPool pool;                    // Pool the checks run on
+
+    /**
+     * Constructs a search over a bitmap index and a review store
+     *
+     * @param bitmaps the bitmap index
+     * @param store the review store
+     * @param pool the pool checks run on
+     */
+    ReviewSearchIndex(ReviewBitmapIndex bitmaps, ReviewStore store, ForkJoinPool pool)
+    {
+        this.bitmaps = bitmaps;
+        this.store = store;
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the singleton search over the shared bitmap index and ReviewStore
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ReviewSearchIndex getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new ReviewSearchIndex(ReviewBitmapIndex.getInstance(), ReviewStore.getInstance(),
+                                             ForkJoinPool.commonPool());
+        }
+        return instance;
+    }
+
+    /**
+     * Counts the reviews that match a filter. Filters without a like minimum or partial
+     * months are answered from the bitmaps alone.
+     *
+     * @param filter the filter
+     * @return the number of matching reviews
+     */
+    public int count(ReviewFilter filter)
+    {
+        if (needsCheck(filter))
+        {
+            return find(filter).count;
+        }
+        List<RoaringBitmap> criteria = new ArrayList<>();
+        bitmaps.readLock().lock();
+        try
+        {
+            addCriteria(filter, criteria);
+            RoaringBitmap matching = criteria.get(0);
+            for (int i = 1; i < criteria.size() - 1 && !matching.isEmpty(); i++)
+            {
+                matching = RoaringBitmap.and(matching, criteria.get(i));
+            }
+            return criteria.size() == 1 ? matching.getCardinality()
+                                        : RoaringBitmap.andCardinality(matching, criteria.get(criteria.size() - 1));
+        }
+        finally
+        {
+            bitmaps.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the newest reviews that match a filter
+     *
+     * @param filter the filter; its limit caps the number of reviews returned
+     * @return the matching reviews, newest first
+     */
+    public List<Review> search(ReviewFilter filter)
+    {
+        return newest(find(filter), filter.limit);
+    }
+
+    /**
+     * Counts the reviews that match a filter and finds the newest of them with one evaluation
+     *
+     * @param filter the filter; its limit caps the number of reviews returned
+     * @return the count and the matching reviews, newest first
+     */
+    public SearchResult searchWithCount(ReviewFilter filter)
+    {
+        Matches matches = find(filter);
+        return new SearchResult(matches.count, newest(matches, filter.limit));
+    }
+
+    /**
+     * Materialises the newest matching reviews
+     *
+     * @param matches the matching rows
+     * @param maxReviews the maximum number of reviews to return
+     * @return the newest reviews, newest first
+     */
+    private List<Review> newest(Matches matches, int maxReviews)
+    {
+        int limit = Math.max(0, Math.min(maxReviews, matches.count));
+        List<Review> reviews = new ArrayList<>(limit);
+        if (limit == 0)
+        {
+            return reviews;
+        }
+        store.readLock().lock();
+        try
+        {
+            // Keep the newest rows in a min-heap of size limit, then materialise only those
+            long[] timestamps = store.timestamps();
+            int[] reviewIds = store.reviewIds();
+            Comparator<Integer> oldestFirst = (a, b) ->
+            {
+                int byDate = Long.compare(timestamps[a], timestamps[b]);
+                return byDate != 0 ? byDate : Integer.compare(reviewIds[a], reviewIds[b]);
+            };
+            PriorityQueue<Integer> newest = new PriorityQueue<>(limit, oldestFirst);
+            for (int i = 0; i < matches.count; i++)
+            {
+                int row = matches.rows[i];
+                if (newest.size() < limit)
+                {
+                    newest.add(row);
+                }
+                else if (oldestFirst.compare(row, newest.peek()) > 0)
+                {
+                    newest.poll();
+                    newest.add(row);
+                }
+            }
+            ReviewStore.Cursor cursor = store.cursor();
+            while (!newest.isEmpty())
+            {
+                reviews.add(cursor.at(newest.poll()).toReview());
+            }
+        }
+        finally
+        {
+            store.readLock().unlock();
+        }
+        Collections.reverse(reviews);
+        return reviews;
+    }
+
+    /**
+     * Finds the store rows of every review that matches a filter
+     *
+     * @param filter the filter
+     * @return the matching rows
+     */
+    private Matches find(ReviewFilter filter)
+    {
+        int[] candidates;
+        List<RoaringBitmap> criteria = new ArrayList<>();
+        bitmaps.readLock().lock();
+        try
+        {
+            addCriteria(filter, criteria);
+            RoaringBitmap matching = criteria.get(0);
+            for (int i = 1; i < criteria.size() && !matching.isEmpty(); i++)
+            {
+                matching = RoaringBitmap.and(matching, criteria.get(i));
+            }
+            // With no indexed criterion every live review is a candidate; scanning rows is cheaper
+            candidates = criteria.size() == 1 ? null : matching.toArray();
+        }
+        finally
+        {
+            bitmaps.readLock().unlock();
+        }
+
+        store.readLock().lock();
+        try
+        {
+            int to = candidates != null ? candidates.length : store.getRowCount();
+            return pool.invoke(new CheckTask(store, new Predicate(filter), candidates, 0, to));
+        }
+        finally
+        {
+            store.readLock().unlock();
+        }
+    }
+
+    /**
+     * Turns a filter into bitmaps to AND, smallest first: one per indexed criterion, holding
+     * every review the criterion accepts, and the live reviews. Caller holds the bitmap read lock.
+     *
+     * @param filter the filter
+     * @param criteria the list to add the bitmaps to
+     */
+    private void addCriteria(ReviewFilter filter, List<RoaringBitmap> criteria)
+    {
+        if (filter.genres != null)
+        {
+            List<RoaringBitmap> genres = new ArrayList<>();
+            for (Genre.GenreType genre : filter.genres)
+            {
+                genres.add(bitmaps.genre(genre));
+            }
+            criteria.add(union(genres.toArray(new RoaringBitmap[0])));
+        }
+        if (filter.minRating > 1)
+        {
+            List<RoaringBitmap> ratings = new ArrayList<>();
+            for (int rating = filter.minRating; rating <= 5; rating++)
+            {
+                ratings.add(bitmaps.rating(rating));
+            }
+            criteria.add(union(ratings.toArray(new RoaringBitmap[0])));
+        }
+        if (filter.fromMillis > ReviewQuery.MIN_TIME || filter.toMillis < ReviewQuery.MAX_TIME)
+        {
+            int from = filter.fromMillis > ReviewQuery.MIN_TIME ? ReviewBitmapIndex.monthOf(filter.fromMillis) : Integer.MIN_VALUE;
+            int to = filter.toMillis < ReviewQuery.MAX_TIME ? ReviewBitmapIndex.monthOf(filter.toMillis) : Integer.MAX_VALUE;
+            criteria.add(union(bitmaps.monthsBetween(from, to)));
+        }
+        if (filter.authorID >= 0)
+        {
+            criteria.add(bitmaps.author(filter.authorID));
+        }
+        if (filter.followerID >= 0)
+        {
+            int[] followed = followedAuthors(filter.followerID);
+            RoaringBitmap[] authors = new RoaringBitmap[followed.length];
+            for (int i = 0; i < followed.length; i++)
+            {
+                authors[i] = bitmaps.author(followed[i]);
+            }
+            criteria.add(union(authors));
+        }
+        criteria.add(bitmaps.live());
+        criteria.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+    }
+
+    /**
+     * Computes the union of bitmaps, without copying a single bitmap
+     */
+    private static RoaringBitmap union(RoaringBitmap[] parts)
+    {
+        return parts.length == 1 ? parts[0] : RoaringBitmap.or(parts);
+    }
+
+    /**
+     * Checks whether a filter has criteria the bitmaps cannot answer exactly
+     *
+     * @param filter the filter
+     * @return true if a minimum like count or a date range that does not fall on month
+     *         boundaries must be checked against the review columns
+     */
+    private static boolean needsCheck(ReviewFilter filter)
+    {
+        if (filter.minLikes > 0)
+        {
+            return true;
+        }
+        boolean fromAligned = filter.fromMillis <= ReviewQuery.MIN_TIME
+                || filter.fromMillis == ReviewBitmapIndex.monthStart(ReviewBitmapIndex.monthOf(filter.fromMillis));
+        boolean toAligned = filter.toMillis >= ReviewQuery.MAX_TIME
+                || filter.toMillis + 1 == ReviewBitmapIndex.monthStart(ReviewBitmapIndex.monthOf(filter.toMillis) + 1);
+        return !fromAligned || !toAligned;
+    }
+
+    /**
+     * Gets the IDs of the authors a user follows
+     *
+     * @param followerID the follower's user ID
+     * @return the followed user IDs
+     */
+    private static int[] followedAuthors(int followerID)
+    {
+        User follower = Graph.getInstance().getUserByKey(followerID);
+        if (follower == null)
+        {
+            return new int[0];
+        }
+        List<User> following = Graph.getInstance().getFollowing(follower);
+        int[] ids = new int[following.size()];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = following.get(i).getUserID();
+        }
+        return ids;
+    }
+
+    /**
+     * The number of reviews matching a filter and the newest of them
+     */
+    public static final class SearchResult
+    {
+        private final int count;                // Number of matching reviews
+        private final List<Review> reviews;     // The newest matching reviews, newest first
+
+        /**
+         * Creates a result
+         *
+         * @param count the number of matching reviews
+         * @param reviews the newest matching reviews
+         */
+        SearchResult(int count, List<Review> reviews)
+        {
+            this.count = count;
+            this.reviews = reviews;
+        }
+
+        /**
+         * Gets the number of matching reviews
+         *
+         * @return the count
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Gets the newest matching reviews
+         *
+         * @return the reviews, newest first
+         */
+        public List<Review> getReviews()
+        {
+            return reviews;
+        }
+    }
+
+    /**
+     * The criteria of a filter the bitmaps do not answer exactly, checked against one store row
+     * at a time: the review is live, has enough likes and falls inside the exact dates
+     */
+    private static final class Predicate
+    {
+        final int minLikes;
+        final long fromMillis;
+        final long toMillis;
+
+        /**
+         * Prepares a filter for checking
+         */
+        Predicate(ReviewFilter filter)
+        {
+            this.minLikes = filter.minLikes;
+            this.fromMillis = filter.fromMillis;
+            this.toMillis = filter.toMillis;
+        }
+
+        /**
+         * Checks the cursor's row
+         */
+        boolean matches(ReviewStore.Cursor row)
+        {
+            long timestamp = row.getTimestamp();
+            return row.isLive() && row.getLikeCount() >= minLikes && timestamp >= fromMillis && timestamp <= toMillis;
+        }
+    }
+
+    /**
+     * Matching store rows: rows[0, count)
+     */
+    private static final class Matches
+    {
+        int[] rows;
+        int count;
+
+        /**
+         * Creates an empty result
+         */
+        Matches(int capacity)
+        {
+            this.rows = new int[capacity];
+        }
+
+        /**
+         * Appends the rows of another result
+         */
+        Matches merge(Matches other)
+        {
+            if (count + other.count > rows.length)
+            {
+                rows = Arrays.copyOf(rows, count + other.count);
+            }
+            System.arraycopy(other.rows, 0, rows, count, other.count);
+            count += other.count;
+            return this;
+        }
+    }
+
+    /**
+     * Checks a range of candidate review IDs, or of store rows when there are no candidates,
+     * splitting it across the pool while it is large
+     */
+    private static class CheckTask extends RecursiveTask<Matches>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ReviewStore store;
+        private final Predicate predicate;
+        private final int[] candidates;     // Candidate review IDs, or null to check rows directly
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a task for candidates[from, to), or rows [from, to) if candidates is null
+         */
+        CheckTask(ReviewStore store, Predicate predicate, int[] candidates, int from, int to)
+        {
+            this.store = store;
+            this.predicate = predicate;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Checks the range, or splits it in two
+         *
+         * @return the matching rows
+         */
+        @Override
+        protected Matches compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int middle = (from + to) >>> 1;
+                CheckTask left = new CheckTask(store, predicate, candidates, from, middle);
+                left.fork();
+                Matches right = new CheckTask(store, predicate, candidates, middle, to).compute();
+                return left.join().merge(right);
+            }
+
+            Matches matches = new Matches(Math.max(16, Math.min(to - from, 1024)));
+            ReviewStore.Cursor cursor = store.cursor();
+            for (int i = from; i < to; i++)
+            {
+                if (candidates == null)
+                {
+                    cursor.at(i);
+                }
+                else if (!cursor.find(candidates[i]))
+                {
+                    continue;
+                }
+                if (predicate.matches(cursor))
+                {
+                    if (matches.count == matches.rows.length)
+                    {
+                        matches.rows = Arrays.copyOf(matches.rows, matches.count * 2);
+                    }
+                    matches.rows[matches.count++] = cursor.getRow();
+                }
+            }
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,997 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ReviewService runs the review network as a headless HTTP service with JSON endpoints,
+ * so one process can serve many users at once instead of the single user of MainMenu.
+ * Each request carries a session token (Authorization: Bearer &lt;token&gt;) issued by
+ * /api/login and kept in the shared SessionStore, and operations run on behalf of
+ * that session's user. Requests are handled on virtual threads when
+ * the JVM supports them and on a cached thread pool otherwise.
+ * The service listens on the loopback interface only, since logins send plain passwords;
+ * -Dservice.host=&lt;address&gt; binds it to another address instead.
+ *
+ * Endpoints:
+ *   POST   /api/login                 {"email", "password"} -&gt; {"token", "userID", "username"}
+ *   POST   /api/logout
+ *   GET    /api/movies?title=..       movies whose title contains the text, or near matches if none does
+ *   GET    /api/reviews?movie=..      latest reviews for matching movies
+ *   GET    /api/reviews?user=..       reviews by a username
+ *   GET    /api/reviews?genre=..      reviews of movies in a genre
+ *   GET    /api/reviews?from=YYYY-MM-DD&amp;to=YYYY-MM-DD
+ *   GET    /api/reviews/search?genres=A,B&amp;from=&amp;to=&amp;minRating=&amp;author=&amp;minLikes=&amp;followed=true&amp;limit=
+ *                                     newest reviews matching every given criterion, with the total count;
+ *                                     followed=true needs a session
+ *   GET    /api/trending?limit=..     trending movies, reviews and reviewers with activity counts
+ *   GET    /api/popularity?limit=..   approximate most-reviewed and most-liked movies, reviewers per genre
+ *   POST   /api/reviews               {"movieID", "rating", "text"}
+ *   PUT    /api/reviews/{id}          {"rating", "text"}
+ *   DELETE /api/reviews/{id}
+ *   POST   /api/reviews/{id}/like
+ *   GET    /api/feed                  latest review of every followed user
+ *   POST   /api/follows               {"username"}
+ *   DELETE /api/follows/{username}
+ *   GET    /api/recommendations
+ *   GET    /api/connection?to=..&amp;maxDepth=..
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewService
+{
+    private static final int DEFAULT_MAX_SEPARATION = 6;   // Default depth for /api/connection
+
+    private final HttpServer server;                       // The embedded HTTP server
+    private final ExecutorService executor;                // Runs one task per request
+
+    /**
+     * Signals a request error that should be returned to the client with a status code
+     */
+    private static class ApiException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        /**
+         * Creates an error with the status to send
+         *
+         * @param status the HTTP status code
+         * @param message the error message for the client
+         */
+        ApiException(int status, String message)
+        {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Creates a service listening on the given port of the loopback interface,
+     * or of the address given with -Dservice.host
+     *
+     * @param port the TCP port, 0 picks a free one
+     * @throws IOException if the host is unknown or the port cannot be bound
+     */
+    public ReviewService(int port) throws IOException
+    {
+        String host = System.getProperty("service.host");
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        this.executor = newRequestExecutor();
+
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor when available, otherwise a cached thread pool
+     *
+     * @return the executor requests run on
+     */
+    private static ExecutorService newRequestExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start()
+    {
+        // Load the graph up front so the first request does not pay for it
+        Graph.getInstance();
+        server.start();
+        System.out.println("Review service listening on " + server.getAddress().getAddress().getHostAddress()
+                           + " port " + getPort());
+    }
+
+    /**
+     * Stops the server and the background jobs and closes the database
+     */
+    public void stop()
+    {
+        server.stop(1);
+        executor.shutdown();
+        JobScheduler.getInstance().shutdown();
+        Database.getInstance().disconnect();
+    }
+
+    /**
+     * Gets the port the server is bound to
+     *
+     * @return the TCP port
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles one request: routes it, writes the JSON response and maps errors to status codes
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        int status = 200;
+        Object body;
+        try
+        {
+            body = route(exchange);
+        }
+        catch (ApiException e)
+        {
+            status = e.status;
+            body = error(e.getMessage());
+        }
+        catch (IllegalArgumentException e)
+        {
+            status = 400;
+            body = error(e.getMessage());
+        }
+        catch (IOException e)
+        {
+            // The client sent a body that ended early or could not be read
+            status = 400;
+            body = error("Could not read request body: " + e.getMessage());
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println("Request failed: " + e);
+            status = 500;
+            body = error("Internal server error");
+        }
+
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Dispatches a request to the matching endpoint
+     *
+     * @param exchange the HTTP exchange
+     * @return the response body
+     * @throws IOException if the request body cannot be read
+     */
+    private Object route(HttpExchange exchange) throws IOException
+    {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String resource = path[0];
+
+        if (resource.equals("login") && method.equals("POST"))
+        {
+            return login(Json.parseObject(readBody(exchange)));
+        }
+        if (resource.equals("movies") && method.equals("GET"))
+        {
+            String title = required(query, "title");
+            List<Movie> found = SearchReview.match(title);
+            return movies(found.isEmpty() ? MovieTitleIndex.getInstance().findSimilar(title, 20) : found);
+        }
+        if (resource.equals("reviews") && path.length == 1 && method.equals("GET"))
+        {
+            return searchReviews(query);
+        }
+        if (resource.equals("reviews") && path.length == 2 && path[1].equals("search") && method.equals("GET"))
+        {
+            return combinedSearch(exchange, query);
+        }
+        if (resource.equals("trending") && method.equals("GET"))
+        {
+            return trending(query);
+        }
+        if (resource.equals("popularity") && method.equals("GET"))
+        {
+            return popularity(query);
+        }
+
+        // Everything else acts on behalf of a logged-in user
+        Session session = requireSession(exchange);
+        User user = session.getUser();
+        if (user == null)
+        {
+            throw new ApiException(401, "Login required");
+        }
+        switch (resource)
+        {
+            case "logout":
+                requireMethod(method, "POST");
+                AuthenticationManager.getInstance().logout(session);
+                return message("Logged out");
+            case "reviews":
+                return reviewCommand(exchange, method, path, user);
+            case "feed":
+                requireMethod(method, "GET");
+                return reviews(UserGraphManager.getInstance().getFollowingLatestReviews(user));
+            case "follows":
+                return followCommand(exchange, method, path, user);
+            case "recommendations":
+                requireMethod(method, "GET");
+                return recommendations(user);
+            case "connection":
+                requireMethod(method, "GET");
+                return connection(user, query);
+            case "genres":
+                requireMethod(method, "PUT");
+                return updateGenres(Json.parseObject(readBody(exchange)), user);
+            default:
+                throw new ApiException(404, "Unknown endpoint");
+        }
+    }
+
+    /**
+     * Logs in with an email and password and returns the new session's token
+     *
+     * @param request the request body with "email" and "password"
+     * @return the token, user ID and username
+     * @throws ApiException 401 if the credentials are wrong
+     */
+    private Object login(Map<String, Object> request)
+    {
+        Session session = AuthenticationManager.getInstance().login(
+                stringField(request, "email"), stringField(request, "password"));
+        if (session == null)
+        {
+            throw new ApiException(401, "Invalid email or password");
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", session.getToken());
+        response.put("userID", session.getUserID());
+        response.put("username", session.getUsername());
+        return response;
+    }
+
+    /**
+     * Finds reviews by movie title, username, genre or date range, whichever the query names first
+     *
+     * @param query the query parameters
+     * @return the matching reviews
+     */
+    private Object searchReviews(Map<String, String> query)
+    {
+        List<Review> found;
+        if (query.containsKey("movie"))
+        {
+            found = SearchReview.findReviewsByMovie(query.get("movie"));
+        }
+        else if (query.containsKey("user"))
+        {
+            found = SearchReview.findReviewsByUsername(query.get("user"));
+        }
+        else if (query.containsKey("genre"))
+        {
+            found = SearchReview.findReviewsByGenre(query.get("genre"));
+            if (found == null)
+            {
+                throw new IllegalArgumentException("Invalid movie genre: " + query.get("genre"));
+            }
+        }
+        else if (query.containsKey("from") && query.containsKey("to"))
+        {
+            Date from = parseDate(query.get("from"));
+            Date to = parseDate(query.get("to"));
+            if (from.after(to))
+            {
+                throw new IllegalArgumentException("from must be before or equal to to");
+            }
+            found = SearchReview.findReviewsByDateRange(from, to);
+        }
+        else
+        {
+            throw new IllegalArgumentException("Specify movie, user, genre, or from and to");
+        }
+        return reviews(found);
+    }
+
+    /**
+     * Searches the review bitmaps with every criterion the query gives
+     *
+     * @param exchange the HTTP exchange, for the session when followed=true
+     * @param query the query parameters
+     * @return the number of matches and the newest matching reviews
+     */
+    private Object combinedSearch(HttpExchange exchange, Map<String, String> query)
+    {
+        ReviewFilter filter = new ReviewFilter().limit(query.containsKey("limit") ? parseInt(query.get("limit")) : 20);
+        if (query.containsKey("genres"))
+        {
+            EnumSet<Genre.GenreType> genres = EnumSet.noneOf(Genre.GenreType.class);
+            for (String name : query.get("genres").split(","))
+            {
+                try
+                {
+                    genres.add(Genre.GenreType.valueOf(name.trim().toUpperCase().replace(' ', '_')));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    throw new IllegalArgumentException("Invalid movie genre: " + name);
+                }
+            }
+            filter.genres(genres);
+        }
+        if (query.containsKey("from") || query.containsKey("to"))
+        {
+            Date from = query.containsKey("from") ? parseDate(query.get("from")) : new Date(Long.MIN_VALUE);
+            Date to = query.containsKey("to")
+                    ? new Date(parseDate(query.get("to")).getTime() + (24L * 60 * 60 * 1000) - 1) // End of the day
+                    : new Date(Long.MAX_VALUE);
+            filter.between(from, to);
+        }
+        if (query.containsKey("minRating"))
+        {
+            filter.minRating(parseInt(query.get("minRating")));
+        }
+        if (query.containsKey("author"))
+        {
+            filter.byAuthor(requireUser(query.get("author")).getUserID());
+        }
+        if (query.containsKey("minLikes"))
+        {
+            filter.minLikes(parseInt(query.get("minLikes")));
+        }
+        if ("true".equalsIgnoreCase(query.get("followed")))
+        {
+            filter.followedBy(requireSession(exchange).getUserID());
+        }
+
+        ReviewSearchIndex.SearchResult result = ReviewSearchIndex.getInstance().searchWithCount(filter);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("count", result.getCount());
+        response.put("reviews", reviews(result.getReviews()));
+        return response;
+    }
+
+    /**
+     * Lists the trending movies, reviews and reviewers with recent activity counts
+     *
+     * @param query the query parameters, with an optional limit
+     * @return the trending lists and the counts per window
+     */
+    private Object trending(Map<String, String> query)
+    {
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit")) : 10;
+        TrendingEngine engine = TrendingEngine.getInstance();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        List<Object> movies = new ArrayList<>();
+        for (TrendingEntry entry : engine.trendingMovies(limit))
+        {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("movieID", entry.getId());
+            json.put("title", Movie.getMovieTitleByID(entry.getId()));
+            json.put("score", entry.getScore());
+            movies.add(json);
+        }
+        response.put("movies", movies);
+        response.put("reviews", trendingIds(engine.trendingReviews(limit), "reviewID"));
+        response.put("reviewers", trendingIds(engine.trendingReviewers(limit), "userID"));
+
+        Map<String, Object> activity = new LinkedHashMap<>();
+        for (TrendingEngine.Window window : TrendingEngine.Window.values())
+        {
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("reviews", engine.getReviewCount(window));
+            counts.put("likes", engine.getLikeCount(window));
+            counts.put("follows", engine.getFollowCount(window));
+            activity.put(window.name().toLowerCase(), counts);
+        }
+        response.put("activity", activity);
+        return response;
+    }
+
+    /**
+     * Converts trending entries to JSON objects
+     *
+     * @param entries the entries
+     * @param idName the name of the ID field
+     * @return the ID and score of each entry
+     */
+    private static List<Object> trendingIds(List<TrendingEntry> entries, String idName)
+    {
+        List<Object> list = new ArrayList<>();
+        for (TrendingEntry entry : entries)
+        {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put(idName, entry.getId());
+            json.put("score", entry.getScore());
+            list.add(json);
+        }
+        return list;
+    }
+
+    /**
+     * Reports the most-reviewed and most-liked movies and the reviewers per genre from the sketches
+     *
+     * @param query the query parameters, with an optional limit
+     * @return the estimates
+     */
+    private Object popularity(Map<String, String> query)
+    {
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit")) : 10;
+        PopularitySketches sketches = PopularitySketches.getInstance();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("mostReviewed", heavyHitters(sketches.mostReviewedMovies(limit)));
+        response.put("mostLiked", heavyHitters(sketches.mostLikedMovies(limit)));
+        Map<String, Object> reviewers = new LinkedHashMap<>();
+        for (Genre.GenreType genre : Genre.GenreType.values())
+        {
+            reviewers.put(genre.name(), sketches.estimateDistinctReviewers(genre));
+        }
+        response.put("reviewersPerGenre", reviewers);
+        return response;
+    }
+
+    /**
+     * Converts heavy hitters to JSON objects
+     *
+     * @param hitters the heavy hitters
+     * @return the movie, count and error bound of each
+     */
+    private static List<Object> heavyHitters(List<HeavyHitter> hitters)
+    {
+        List<Object> list = new ArrayList<>();
+        for (HeavyHitter hitter : hitters)
+        {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("movieID", hitter.getKey());
+            json.put("title", Movie.getMovieTitleByID(hitter.getKey()));
+            json.put("count", hitter.getCount());
+            json.put("error", hitter.getError());
+            list.add(json);
+        }
+        return list;
+    }
+
+    /**
+     * Publishes, likes, edits or deletes a review on behalf of the logged-in user
+     *
+     * @param exchange the HTTP exchange
+     * @param method the HTTP method
+     * @param path the path segments after /api/
+     * @param user the logged-in user
+     * @return a confirmation message
+     * @throws IOException if the request body cannot be read
+     */
+    private Object reviewCommand(HttpExchange exchange, String method, String[] path, User user) throws IOException
+    {
+        ReviewManager manager = ReviewManager.getInstance();
+        if (path.length == 1)
+        {
+            requireMethod(method, "POST");
+            Map<String, Object> request = Json.parseObject(readBody(exchange));
+            boolean published = manager.publishReview(user.getUserID(), intField(request, "movieID"),
+                    intField(request, "rating"), stringField(request, "text"));
+            if (!published)
+            {
+                throw new ApiException(409, "Review not published: invalid rating or movie already reviewed");
+            }
+            return message("Review published");
+        }
+
+        int reviewID = parseInt(path[1]);
+        if (path.length == 3 && path[2].equals("like"))
+        {
+            requireMethod(method, "POST");
+            if (!manager.likeReview(user.getUserID(), reviewID))
+            {
+                throw new ApiException(409, "Review not found or already liked");
+            }
+            return message("Review liked");
+        }
+        if (path.length != 2)
+        {
+            throw new ApiException(404, "Unknown endpoint");
+        }
+        if (method.equals("PUT"))
+        {
+            Map<String, Object> request = Json.parseObject(readBody(exchange));
+            String text = request.get("text") == null ? null : stringField(request, "text");
+            if (!manager.editReview(user.getUserID(), reviewID, intField(request, "rating"), text))
+            {
+                throw new ApiException(404, "Review not found, not yours, or invalid rating");
+            }
+            return message("Review updated");
+        }
+        if (method.equals("DELETE"))
+        {
+            if (!manager.deleteReview(user.getUserID(), reviewID))
+            {
+                throw new ApiException(404, "Review not found or not yours");
+            }
+            return message("Review deleted");
+        }
+        throw new ApiException(405, "Method not allowed");
+    }
+
+    /**
+     * Follows or unfollows a user on behalf of the logged-in user
+     *
+     * @param exchange the HTTP exchange
+     * @param method the HTTP method
+     * @param path the path segments after /api/
+     * @param user the logged-in user
+     * @return a confirmation message
+     * @throws IOException if the request body cannot be read
+     */
+    private Object followCommand(HttpExchange exchange, String method, String[] path, User user) throws IOException
+    {
+        UserGraphManager manager = UserGraphManager.getInstance();
+        if (path.length == 1 && method.equals("POST"))
+        {
+            User target = requireUser(stringField(Json.parseObject(readBody(exchange)), "username"));
+            if (!manager.follow(user, target))
+            {
+                throw new ApiException(409, "Cannot follow yourself or already following " + target.getUserName());
+            }
+            return message("You are now following " + target.getUserName());
+        }
+        if (path.length == 2 && method.equals("DELETE"))
+        {
+            User target = requireUser(decode(path[1]));
+            if (!manager.unfollow(user, target))
+            {
+                throw new ApiException(409, "You are not following " + target.getUserName());
+            }
+            return message("You have unfollowed " + target.getUserName());
+        }
+        throw new ApiException(405, "Method not allowed");
+    }
+
+    /**
+     * Recommends up to five users to follow, by shared genres first and then friends of friends
+     *
+     * @param user the logged-in user
+     * @return the recommended users
+     */
+    private Object recommendations(User user)
+    {
+        UserGraphManager manager = UserGraphManager.getInstance();
+        List<User> recommended = new ArrayList<>(manager.recommendUsersBySimilarCategories(user));
+        for (User candidate : manager.getPotentialConnections(user))
+        {
+            if (recommended.size() >= 5)
+            {
+                break;
+            }
+            if (!recommended.contains(candidate))
+            {
+                recommended.add(candidate);
+            }
+        }
+        return users(recommended);
+    }
+
+    /**
+     * Finds the shortest chain of follows from the logged-in user to another
+     *
+     * @param user the logged-in user
+     * @param query the query parameters, with "to" and an optional maxDepth
+     * @return whether they are connected, the number of hops and the chain
+     */
+    private Object connection(User user, Map<String, String> query)
+    {
+        User target = requireUser(required(query, "to"));
+        int maxDepth = query.containsKey("maxDepth") ? parseInt(query.get("maxDepth")) : DEFAULT_MAX_SEPARATION;
+        List<User> chain = UserGraphManager.getInstance().findConnection(user, target, maxDepth);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("connected", !chain.isEmpty());
+        response.put("degrees", chain.isEmpty() ? null : chain.size() - 1);
+        response.put("path", users(chain));
+        return response;
+    }
+
+    /**
+     * Replaces the logged-in user's favorite genres
+     *
+     * @param request the request body with a "genres" array of genre names
+     * @param user the logged-in user
+     * @return the user with the new genres
+     */
+    private Object updateGenres(Map<String, Object> request, User user)
+    {
+        Object names = request.get("genres");
+        if (!(names instanceof List))
+        {
+            throw new IllegalArgumentException("Missing array field: genres");
+        }
+        ArrayList<Genre.GenreType> genres = new ArrayList<>();
+        for (Object name : (List<?>) names)
+        {
+            try
+            {
+                Genre.GenreType genre = Genre.GenreType.valueOf(String.valueOf(name).trim().toUpperCase().replace(' ', '_'));
+                if (!genres.contains(genre))
+                {
+                    genres.add(genre);
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Invalid movie genre: " + name);
+            }
+        }
+        if (!user.updateGenres(genres))
+        {
+            throw new ApiException(500, "Could not save favorite genres");
+        }
+        List<User> updated = new ArrayList<>();
+        updated.add(user);
+        return users(updated).get(0);
+    }
+
+    /**
+     * Gets the live session named by the request's bearer token
+     *
+     * @param exchange the HTTP exchange
+     * @return the session
+     * @throws ApiException 401 if there is no live session
+     */
+    private static Session requireSession(HttpExchange exchange)
+    {
+        Session session = SessionStore.getInstance().get(token(exchange));
+        if (session == null)
+        {
+            throw new ApiException(401, "Login required");
+        }
+        return session;
+    }
+
+    /**
+     * Gets the bearer token from the Authorization header
+     *
+     * @param exchange the HTTP exchange
+     * @return the token, or null if there is none
+     */
+    private static String token(HttpExchange exchange)
+    {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer "))
+        {
+            return null;
+        }
+        return header.substring("Bearer ".length()).trim();
+    }
+
+    /**
+     * Looks up a user by username
+     *
+     * @param username the username
+     * @return the user
+     * @throws ApiException 404 if there is no such user
+     */
+    private static User requireUser(String username)
+    {
+        User user = Graph.getInstance().getUserByUsername(username);
+        if (user == null)
+        {
+            throw new ApiException(404, "User not found: " + username);
+        }
+        return user;
+    }
+
+    /**
+     * Rejects a request made with the wrong HTTP method
+     *
+     * @param method the request's method
+     * @param expected the method the endpoint accepts
+     * @throws ApiException 405 if they differ
+     */
+    private static void requireMethod(String method, String expected)
+    {
+        if (!method.equals(expected))
+        {
+            throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    /**
+     * Reads the whole request body as UTF-8
+     *
+     * @param exchange the HTTP exchange
+     * @return the body
+     * @throws IOException if the body cannot be read
+     */
+    private static String readBody(HttpExchange exchange) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody())
+        {
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1)
+            {
+                buffer.write(chunk, 0, read);
+            }
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a URL query string into a map
+     *
+     * @param rawQuery the raw query string, or null
+     * @return the parameters by name
+     */
+    private static Map<String, String> parseQuery(String rawQuery)
+    {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty())
+        {
+            return query;
+        }
+        for (String pair : rawQuery.split("&"))
+        {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+            {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * URL-decodes a query string part
+     *
+     * @param value the encoded value
+     * @return the decoded value
+     */
+    private static String decode(String value)
+    {
+        try
+        {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets a query parameter that must be present
+     *
+     * @param query the query parameters
+     * @param name the parameter name
+     * @return the non-empty value
+     * @throws IllegalArgumentException if the parameter is missing
+     */
+    private static String required(Map<String, String> query, String name)
+    {
+        String value = query.get(name);
+        if (value == null || value.isEmpty())
+        {
+            throw new IllegalArgumentException("Missing query parameter: " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Gets a string field of a JSON request body
+     *
+     * @param request the request body
+     * @param name the field name
+     * @return the value
+     * @throws IllegalArgumentException if the field is missing or not a string
+     */
+    private static String stringField(Map<String, Object> request, String name)
+    {
+        Object value = request.get(name);
+        if (!(value instanceof String))
+        {
+            throw new IllegalArgumentException("Missing string field: " + name);
+        }
+        return (String) value;
+    }
+
+    /**
+     * Gets a number field of a JSON request body as an int
+     *
+     * @param request the request body
+     * @param name the field name
+     * @return the value
+     * @throws IllegalArgumentException if the field is missing or not a number
+     */
+    private static int intField(Map<String, Object> request, String name)
+    {
+        Object value = request.get(name);
+        if (!(value instanceof Number))
+        {
+            throw new IllegalArgumentException("Missing number field: " + name);
+        }
+        return ((Number) value).intValue();
+    }
+
+    /**
+     * Parses an int from a path segment or query parameter
+     *
+     * @param value the text
+     * @return the number
+     * @throws IllegalArgumentException if the text is not a number
+     */
+    private static int parseInt(String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date
+     *
+     * @param value the text
+     * @return the start of that day in local time
+     * @throws IllegalArgumentException if the text is not a valid date
+     */
+    private static Date parseDate(String value)
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+        try
+        {
+            return dateFormat.parse(value);
+        }
+        catch (ParseException e)
+        {
+            throw new IllegalArgumentException("Invalid date, expected YYYY-MM-DD: " + value);
+        }
+    }
+
+    /**
+     * Builds a {"message": ...} response body
+     *
+     * @param text the message
+     * @return the body
+     */
+    private static Map<String, Object> message(String text)
+    {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("message", text);
+        return response;
+    }
+
+    /**
+     * Builds an {"error": ...} response body
+     *
+     * @param text the error message
+     * @return the body
+     */
+    private static Map<String, Object> error(String text)
+    {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", text);
+        return response;
+    }
+
+    /**
+     * Converts movies to JSON objects
+     *
+     * @param movies the movies
+     * @return the ID, title and genre of each
+     */
+    private static List<Object> movies(List<Movie> movies)
+    {
+        List<Object> result = new ArrayList<>();
+        for (Movie movie : movies)
+        {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("movieID", movie.getMovieID());
+            json.put("title", movie.getTitle());
+            json.put("genre", movie.getGenre() == null ? null : movie.getGenre().name());
+            result.add(json);
+        }
+        return result;
+    }
+
+    /**
+     * Converts reviews to JSON objects
+     *
+     * @param reviews the reviews
+     * @return the fields of each review, with the date in milliseconds since the epoch
+     */
+    private static List<Object> reviews(List<Review> reviews)
+    {
+        List<Object> result = new ArrayList<>();
+        for (Review review : reviews)
+        {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("reviewID", review.getReviewID());
+            json.put("movieID", review.getMovieID());
+            json.put("userID", review.getUserID());
+            json.put("rating", review.getRating());
+            json.put("likes", review.getLikeCount());
+            json.put("date", review.getReviewDate() == null ? null : review.getReviewDate().getTime());
+            json.put("text", review.getText());
+            result.add(json);
+        }
+        return result;
+    }
+
+    /**
+     * Converts users to JSON objects
+     *
+     * @param users the users
+     * @return the ID, username and favorite genres of each
+     */
+    private static List<Object> users(List<User> users)
+    {
+        List<Object> result = new ArrayList<>();
+        for (User user : users)
+        {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("userID", user.getUserID());
+            json.put("username", user.getUserName());
+            List<String> genres = new ArrayList<>();
+            for (Genre.GenreType genre : user.getFavoriteGenres())
+            {
+                genres.add(genre.name());
+            }
+            json.put("favoriteGenres", genres);
+            result.add(json);
+        }
+        return result;
+    }
+}
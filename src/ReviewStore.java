@@ -0,0 +1,579 @@
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ReviewStore holds every review in memory in columnar form: one primitive array per field
+ * (reviewID, userID, movieID, rating, timestamp, likeCount), with review text kept as UTF-8
+ * in an off-heap TextArena and addressed by offset. A review costs about forty bytes of heap
+ * instead of a Review object with its Date and String, so tens of millions of reviews fit in
+ * memory for analytics and feeds, and scans run over contiguous arrays.
+ *
+ * The store is loaded from the reviews table on first use and then kept in sync through
+ * ReviewEvents. Deleted reviews stay in place with their live flag cleared.
+ * Rendering code gets Review objects on demand from getReview or a reusable Cursor.
+ *
+ * Readers that scan the column arrays directly must hold readLock() for the whole scan;
+ * the arrays may be replaced by larger ones when the store grows.
+ * Implements the Singleton pattern so the whole application shares one copy of the reviews.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class ReviewStore implements ReviewEventListener
+{
+    private static final int INITIAL_CAPACITY = 1024;   // Rows allocated before the first resize
+    private static final int NO_TEXT = -1;              // Text length of a review without text
+
+    private static ReviewStore instance;                // Singleton instance
+
+    private final ReentrantReadWriteLock lock;          // Guards every column and the index
+    private final IntIntMap rowsById;                   // Review ID to row number
+    private final TextArena texts;                      // Review text, UTF-8, off-heap
+
+    private int[] reviewIds;        // Review ID per row
+    private int[] userIds;          // Author per row
+    private int[] movieIds;         // Movie per row
+    private byte[] ratings;         // Rating 1 to 5 per row
+    private long[] timestamps;      // Review date in milliseconds since the epoch per row
+    private int[] likeCounts;       // Likes per row
+    private long[] textOffsets;     // Offset of the text in the arena per row
+    private int[] textLengths;      // UTF-8 length of the text per row, NO_TEXT if none
+    private byte[] live;            // 1 for live rows, 0 for deleted ones
+    private int rowCount;           // Rows in use, live or deleted
+    private int liveCount;          // Live rows
+
+    /**
+     * Creates an empty store
+     */
+    ReviewStore()
+    {
+        this.lock = new ReentrantReadWriteLock();
+        this.rowsById = new IntIntMap();
+        this.texts = new TextArena();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Gets the singleton instance of ReviewStore, loading it from the database on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized ReviewStore getInstance()
+    {
+        if (instance == null)
+        {
+            ReviewStore store = new ReviewStore();
+            // Listen before loading so no write is missed; replays of loaded rows are harmless
+            ReviewEvents.getInstance().addListener(store);
+            store.load();
+            instance = store;
+        }
+        return instance;
+    }
+
+    /**
+     * Loads every review from the database
+     */
+    private void load()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            ResultSet count = Database.getInstance().executeQuery("reviewStore.count", "SELECT COUNT(*) FROM reviews");
+            if (count.next() && count.getInt(1) > reviewIds.length)
+            {
+                allocate(count.getInt(1));
+            }
+            count.close();
+
+            String query = "SELECT reviewID, userID, movieID, rating, reviewDate, likeCount, content " +
+                           "FROM reviews ORDER BY reviewID";
+            ResultSet resultSet = Database.getInstance().executeQuery("reviewStore.load", query);
+            while (resultSet.next())
+            {
+                upsert(resultSet.getInt("reviewID"), resultSet.getInt("userID"), resultSet.getInt("movieID"),
+                       resultSet.getInt("rating"), resultSet.getLong("reviewDate"),
+                       resultSet.getInt("likeCount"), resultSet.getString("content"));
+            }
+            resultSet.close();
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Failed to load reviews into memory: " + e.getMessage());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Resizes every column to the given capacity
+     *
+     * @param capacity the number of rows the columns can hold
+     */
+    private void allocate(int capacity)
+    {
+        if (reviewIds == null)
+        {
+            reviewIds = new int[capacity];
+            userIds = new int[capacity];
+            movieIds = new int[capacity];
+            ratings = new byte[capacity];
+            timestamps = new long[capacity];
+            likeCounts = new int[capacity];
+            textOffsets = new long[capacity];
+            textLengths = new int[capacity];
+            live = new byte[capacity];
+            return;
+        }
+        reviewIds = Arrays.copyOf(reviewIds, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        movieIds = Arrays.copyOf(movieIds, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        likeCounts = Arrays.copyOf(likeCounts, capacity);
+        textOffsets = Arrays.copyOf(textOffsets, capacity);
+        textLengths = Arrays.copyOf(textLengths, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+
+    /**
+     * Adds a review, or overwrites its row if the review is already stored.
+     * Caller holds the write lock.
+     *
+     * @param reviewID the review ID
+     * @param userID the author's user ID
+     * @param movieID the movie ID
+     * @param rating the rating
+     * @param timestamp the review date in epoch milliseconds
+     * @param likeCount the number of likes
+     * @param text the review text, or null
+     */
+    private void upsert(int reviewID, int userID, int movieID, int rating, long timestamp, int likeCount, String text)
+    {
+        int row = rowsById.get(reviewID);
+        if (row < 0)
+        {
+            if (rowCount == reviewIds.length)
+            {
+                allocate(reviewIds.length * 2);
+            }
+            row = rowCount++;
+            rowsById.put(reviewID, row);
+            liveCount++;
+        }
+        else
+        {
+            releaseText(row);
+            if (live[row] == 0)
+            {
+                liveCount++;
+            }
+        }
+
+        reviewIds[row] = reviewID;
+        userIds[row] = userID;
+        movieIds[row] = movieID;
+        ratings[row] = (byte) rating;
+        timestamps[row] = timestamp;
+        likeCounts[row] = likeCount;
+        live[row] = 1;
+        storeText(row, text);
+    }
+
+    /**
+     * Appends a row's text to the arena. Caller holds the write lock.
+     *
+     * @param row the row number
+     * @param text the text, or null
+     */
+    private void storeText(int row, String text)
+    {
+        if (text == null)
+        {
+            textLengths[row] = NO_TEXT;
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        textOffsets[row] = texts.append(bytes);
+        textLengths[row] = bytes.length;
+    }
+
+    /**
+     * Marks a row's current text as garbage. Caller holds the write lock.
+     *
+     * @param row the row number
+     */
+    private void releaseText(int row)
+    {
+        if (textLengths[row] != NO_TEXT)
+        {
+            texts.release(textLengths[row]);
+        }
+    }
+
+    /**
+     * Gets the lock readers must hold while scanning the column arrays
+     *
+     * @return the read lock
+     */
+    public Lock readLock()
+    {
+        return lock.readLock();
+    }
+
+    /**
+     * Gets the number of rows, live or deleted; rows are numbered from 0
+     *
+     * @return the number of rows
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of live reviews
+     *
+     * @return the number of reviews
+     */
+    public int getLiveCount()
+    {
+        return liveCount;
+    }
+
+    /** @return the review ID column; hold readLock() while using it */
+    public int[] reviewIds()
+    {
+        return reviewIds;
+    }
+
+    /** @return the user ID column; hold readLock() while using it */
+    public int[] userIds()
+    {
+        return userIds;
+    }
+
+    /** @return the movie ID column; hold readLock() while using it */
+    public int[] movieIds()
+    {
+        return movieIds;
+    }
+
+    /** @return the rating column; hold readLock() while using it */
+    public byte[] ratings()
+    {
+        return ratings;
+    }
+
+    /** @return the timestamp column in epoch milliseconds; hold readLock() while using it */
+    public long[] timestamps()
+    {
+        return timestamps;
+    }
+
+    /** @return the like count column; hold readLock() while using it */
+    public int[] likeCounts()
+    {
+        return likeCounts;
+    }
+
+    /** @return the live flag column, 1 for live rows and 0 for deleted ones; hold readLock() while using it */
+    public byte[] liveFlags()
+    {
+        return live;
+    }
+
+    /**
+     * Gets a review as a Review object
+     *
+     * @param reviewID the review ID
+     * @return a new Review, or null if the review is not stored or was deleted
+     */
+    public Review getReview(int reviewID)
+    {
+        lock.readLock().lock();
+        try
+        {
+            int row = rowsById.get(reviewID);
+            return row < 0 || live[row] == 0 ? null : toReview(row);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the movie a review is about
+     *
+     * @param reviewID the review ID
+     * @return the movie ID, or -1 if the review is not stored or was deleted
+     */
+    public int getMovieID(int reviewID)
+    {
+        lock.readLock().lock();
+        try
+        {
+            int row = rowsById.get(reviewID);
+            return row < 0 || live[row] == 0 ? -1 : movieIds[row];
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a Review object from a row. Caller holds readLock().
+     *
+     * @param row the row number
+     * @return a new Review with the row's fields
+     */
+    public Review toReview(int row)
+    {
+        return new Review(reviewIds[row], readText(row), ratings[row], userIds[row], movieIds[row],
+                          new Date(timestamps[row]), likeCounts[row]);
+    }
+
+    /**
+     * Decodes a row's text from the arena. Caller holds readLock().
+     *
+     * @param row the row number
+     * @return the text, or null if the review has none
+     */
+    public String readText(int row)
+    {
+        int length = textLengths[row];
+        return length == NO_TEXT ? null : texts.read(textOffsets[row], length);
+    }
+
+    /**
+     * Creates a reusable flyweight view over the store's rows
+     *
+     * @return a new cursor, positioned nowhere
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * A flyweight view of one row at a time. Moving it costs nothing and its getters read
+     * the columns directly, so rendering a long list does not create a Review per row.
+     * Use it while holding readLock().
+     */
+    public class Cursor
+    {
+        private int row = -1;   // The row the cursor is on
+
+        /**
+         * Moves to a row
+         *
+         * @param row the row number
+         * @return this cursor
+         */
+        public Cursor at(int row)
+        {
+            this.row = row;
+            return this;
+        }
+
+        /**
+         * Moves to a review by ID
+         *
+         * @param reviewID the review ID
+         * @return true if the review is stored and live
+         */
+        public boolean find(int reviewID)
+        {
+            row = rowsById.get(reviewID);
+            return row >= 0 && live[row] != 0;
+        }
+
+        /** @return the row number the cursor is on */
+        public int getRow()
+        {
+            return row;
+        }
+
+        /** @return true if the row is a live review */
+        public boolean isLive()
+        {
+            return live[row] != 0;
+        }
+
+        /** @return the review ID */
+        public int getReviewID()
+        {
+            return reviewIds[row];
+        }
+
+        /** @return the author's user ID */
+        public int getUserID()
+        {
+            return userIds[row];
+        }
+
+        /** @return the movie ID */
+        public int getMovieID()
+        {
+            return movieIds[row];
+        }
+
+        /** @return the rating */
+        public int getRating()
+        {
+            return ratings[row];
+        }
+
+        /** @return the review date in epoch milliseconds */
+        public long getTimestamp()
+        {
+            return timestamps[row];
+        }
+
+        /** @return the number of likes */
+        public int getLikeCount()
+        {
+            return likeCounts[row];
+        }
+
+        /** @return the review text, decoded from the arena */
+        public String getText()
+        {
+            return readText(row);
+        }
+
+        /**
+         * Materialises the current row as a Review object
+         *
+         * @return a new Review
+         */
+        public Review toReview()
+        {
+            return ReviewStore.this.toReview(row);
+        }
+    }
+
+    /**
+     * Gets the approximate heap used by the columns and index
+     *
+     * @return the heap bytes
+     */
+    public long getHeapBytes()
+    {
+        // Per row: 6 ints, 2 longs and 2 bytes of columns, plus about 16 bytes of index
+        return (long) reviewIds.length * (6 * 4 + 2 * 8 + 2) + (long) rowsById.size() * 16;
+    }
+
+    /**
+     * Gets the direct memory reserved for review text
+     *
+     * @return the off-heap bytes
+     */
+    public long getOffHeapBytes()
+    {
+        return texts.getReservedBytes();
+    }
+
+    @Override
+    public void onReviewPublished(Review review)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            long timestamp = review.getReviewDate() == null ? 0 : review.getReviewDate().getTime();
+            upsert(review.getReviewID(), review.getUserID(), review.getMovieID(), review.getRating(),
+                   timestamp, review.getLikeCount(), review.getText());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onReviewUpdated(Review review)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            int row = rowsById.get(review.getReviewID());
+            if (row >= 0)
+            {
+                ratings[row] = (byte) review.getRating();
+                releaseText(row);
+                storeText(row, review.getText());
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onReviewDeleted(int reviewID)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            int row = rowsById.get(reviewID);
+            if (row >= 0 && live[row] != 0)
+            {
+                live[row] = 0;
+                liveCount--;
+                releaseText(row);
+                textLengths[row] = NO_TEXT;
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onReviewLiked(int reviewID, int userID)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            int row = rowsById.get(reviewID);
+            if (row >= 0)
+            {
+                likeCounts[row]++;
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onMoviesMerged(IntIntMap merged)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for (int row = 0; row < rowCount; row++)
+            {
+                int movieID = merged.get(movieIds[row]);
+                if (movieID >= 0)
+                {
+                    movieIds[row] = movieID;
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,993 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * RoaringBitmap is a compressed set of non-negative ints, following the Roaring format.
+ * The 32-bit space is split into chunks of 65536 values keyed by the high 16 bits. Each chunk
+ * is stored in a container chosen by its density: a sorted array of the low 16 bits while it
+ * holds at most 4096 values, or a 65536-bit bitmap once it holds more. Sparse sets cost two
+ * bytes per value and dense ones an eighth of a byte, and AND/OR/ANDNOT work container by
+ * container, so chunks that only one side has are skipped or copied without looking inside.
+ *
+ * Bitmaps are written to and read from a ByteBuffer (e.g. a memory-mapped file) with
+ * writeTo and readFrom. Instances are not thread-safe.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class RoaringBitmap
+{
+    private static final int ARRAY_MAX = 4096;          // Largest array container
+    private static final int BITMAP_WORDS = 1 << 10;    // 65536 bits per bitmap container
+    private static final byte ARRAY_TYPE = 0;           // Serialized container types
+    private static final byte BITMAP_TYPE = 1;
+
+    private char[] keys;                // High 16 bits of each chunk, sorted
+    private Container[] containers;     // Low 16 bits of each chunk's values
+    private int size;                   // Number of chunks
+
+    /**
+     * Creates an empty bitmap
+     */
+    public RoaringBitmap()
+    {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Creates a bitmap with room for a number of chunks
+     *
+     * @param capacity the number of chunks
+     */
+    private RoaringBitmap(int capacity)
+    {
+        this.keys = new char[Math.max(1, capacity)];
+        this.containers = new Container[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a value
+     *
+     * @param value the value, not negative
+     */
+    public void add(int value)
+    {
+        char high = (char) (value >>> 16);
+        int at = find(high);
+        if (at < 0)
+        {
+            at = -at - 1;
+            insert(at, high, new ArrayContainer(4));
+        }
+        containers[at] = containers[at].add((char) value);
+    }
+
+    /**
+     * Removes a value
+     *
+     * @param value the value
+     */
+    public void remove(int value)
+    {
+        int at = find((char) (value >>> 16));
+        if (at < 0)
+        {
+            return;
+        }
+        containers[at] = containers[at].remove((char) value);
+        if (containers[at].cardinality() == 0)
+        {
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            System.arraycopy(containers, at + 1, containers, at, size - at - 1);
+            containers[--size] = null;
+        }
+    }
+
+    /**
+     * Checks whether a value is in the set
+     *
+     * @param value the value
+     * @return true if it is present
+     */
+    public boolean contains(int value)
+    {
+        int at = find((char) (value >>> 16));
+        return at >= 0 && containers[at].contains((char) value);
+    }
+
+    /**
+     * Gets the number of values in the set
+     *
+     * @return the cardinality
+     */
+    public int getCardinality()
+    {
+        int total = 0;
+        for (int i = 0; i < size; i++)
+        {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    /**
+     * Checks whether the set is empty
+     *
+     * @return true if it holds no values
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Calls an action for every value in ascending order
+     *
+     * @param action the action
+     */
+    public void forEach(IntConsumer action)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Gets every value in ascending order
+     *
+     * @return the values
+     */
+    public int[] toArray()
+    {
+        int[] values = new int[getCardinality()];
+        int[] count = new int[1];
+        forEach(value -> values[count[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Gets the approximate memory used by the containers
+     *
+     * @return the bytes
+     */
+    public long getSizeInBytes()
+    {
+        long bytes = 16L + size * 3L;
+        for (int i = 0; i < size; i++)
+        {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes the values in both bitmaps
+     *
+     * @param a a bitmap
+     * @param b another bitmap
+     * @return a new bitmap
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b)
+    {
+        RoaringBitmap result = new RoaringBitmap(Math.min(a.size, b.size));
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size)
+        {
+            if (a.keys[i] < b.keys[j])
+            {
+                i++;
+            }
+            else if (a.keys[i] > b.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                Container both = a.containers[i].and(b.containers[j]);
+                if (both.cardinality() > 0)
+                {
+                    result.append(a.keys[i], both);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the values in both bitmaps without building their intersection
+     *
+     * @param a a bitmap
+     * @param b another bitmap
+     * @return the size of the intersection
+     */
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b)
+    {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size)
+        {
+            if (a.keys[i] < b.keys[j])
+            {
+                i++;
+            }
+            else if (a.keys[i] > b.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                total += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Computes the values in either bitmap
+     *
+     * @param a a bitmap
+     * @param b another bitmap
+     * @return a new bitmap
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b)
+    {
+        RoaringBitmap result = new RoaringBitmap(a.size + b.size);
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size)
+        {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j]))
+            {
+                result.append(a.keys[i], a.containers[i].copy());
+                i++;
+            }
+            else if (i == a.size || a.keys[i] > b.keys[j])
+            {
+                result.append(b.keys[j], b.containers[j].copy());
+                j++;
+            }
+            else
+            {
+                result.append(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the values in any of several bitmaps. Chunks are accumulated in bitmap
+     * containers, so a union of many sparse bitmaps does not copy arrays over and over.
+     *
+     * @param bitmaps the bitmaps
+     * @return a new bitmap
+     */
+    public static RoaringBitmap or(RoaringBitmap... bitmaps)
+    {
+        if (bitmaps.length == 0)
+        {
+            return new RoaringBitmap();
+        }
+        if (bitmaps.length <= 2)
+        {
+            return bitmaps.length == 1 ? bitmaps[0].copy() : or(bitmaps[0], bitmaps[1]);
+        }
+
+        RoaringBitmap result = new RoaringBitmap();
+        for (RoaringBitmap bitmap : bitmaps)
+        {
+            for (int i = 0; i < bitmap.size; i++)
+            {
+                int at = result.find(bitmap.keys[i]);
+                if (at < 0)
+                {
+                    result.insert(-at - 1, bitmap.keys[i], bitmap.containers[i].copy());
+                }
+                else
+                {
+                    BitmapContainer into = result.containers[at].toBitmap();
+                    into.orInPlace(bitmap.containers[i]);
+                    result.containers[at] = into;
+                }
+            }
+        }
+        for (int i = 0; i < result.size; i++)
+        {
+            result.containers[i] = result.containers[i].optimize();
+        }
+        return result;
+    }
+
+    /**
+     * Computes the values in the first bitmap but not the second
+     *
+     * @param a the bitmap to take values from
+     * @param b the bitmap of values to leave out
+     * @return a new bitmap
+     */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b)
+    {
+        RoaringBitmap result = new RoaringBitmap(a.size);
+        int j = 0;
+        for (int i = 0; i < a.size; i++)
+        {
+            while (j < b.size && b.keys[j] < a.keys[i])
+            {
+                j++;
+            }
+            Container left = j < b.size && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+            if (left.cardinality() > 0)
+            {
+                result.append(a.keys[i], left);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the values in the first bitmap but not the second
+     *
+     * @param a the bitmap to take values from
+     * @param b the bitmap of values to leave out
+     * @return the size of the difference
+     */
+    public static int andNotCardinality(RoaringBitmap a, RoaringBitmap b)
+    {
+        return a.getCardinality() - andCardinality(a, b);
+    }
+
+    /**
+     * Copies the bitmap
+     *
+     * @return a new bitmap with the same values
+     */
+    public RoaringBitmap copy()
+    {
+        RoaringBitmap copy = new RoaringBitmap(size);
+        for (int i = 0; i < size; i++)
+        {
+            copy.append(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the number of bytes writeTo will write
+     *
+     * @return the serialized size
+     */
+    public int serializedSize()
+    {
+        int bytes = 4;
+        for (int i = 0; i < size; i++)
+        {
+            bytes += 2 + 1 + 4 + containers[i].serializedSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the bitmap: the number of chunks, then per chunk its key, container type,
+     * cardinality and either the sorted low bits or the 1024 bitmap words
+     *
+     * @param buffer the buffer to write to, with at least serializedSize() bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer)
+    {
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++)
+        {
+            buffer.putChar(keys[i]);
+            containers[i].writeTo(buffer);
+        }
+    }
+
+    /**
+     * Reads a bitmap written by writeTo, advancing the buffer past it
+     *
+     * @param buffer the buffer to read from
+     * @return the bitmap
+     * @throws IllegalArgumentException if the data is not a valid bitmap
+     */
+    public static RoaringBitmap readFrom(ByteBuffer buffer)
+    {
+        int chunks = buffer.getInt();
+        if (chunks < 0 || chunks > (1 << 16))
+        {
+            throw new IllegalArgumentException("Invalid chunk count " + chunks);
+        }
+        RoaringBitmap bitmap = new RoaringBitmap(chunks);
+        for (int i = 0; i < chunks; i++)
+        {
+            char key = buffer.getChar();
+            byte type = buffer.get();
+            int cardinality = buffer.getInt();
+            Container container;
+            if (type == ARRAY_TYPE && cardinality > 0 && cardinality <= ARRAY_MAX)
+            {
+                char[] values = new char[cardinality];
+                buffer.asCharBuffer().get(values);
+                buffer.position(buffer.position() + cardinality * 2);
+                container = new ArrayContainer(values, cardinality);
+            }
+            else if (type == BITMAP_TYPE && cardinality > 0 && cardinality <= (1 << 16))
+            {
+                long[] words = new long[BITMAP_WORDS];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + BITMAP_WORDS * 8);
+                container = new BitmapContainer(words, cardinality);
+            }
+            else
+            {
+                throw new IllegalArgumentException("Invalid container type " + type + " of " + cardinality + " values");
+            }
+            if (i > 0 && key <= bitmap.keys[i - 1])
+            {
+                throw new IllegalArgumentException("Chunks out of order");
+            }
+            bitmap.append(key, container);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Finds a chunk by key
+     *
+     * @return its index, or -(insertion point) - 1 if absent
+     */
+    private int find(char key)
+    {
+        // Values usually arrive in increasing order, so check the last chunk first
+        if (size > 0 && keys[size - 1] == key)
+        {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+     * Inserts a chunk at an index
+     */
+    private void insert(int at, char key, Container container)
+    {
+        if (size == keys.length)
+        {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = container;
+        size++;
+    }
+
+    /**
+     * Appends a chunk whose key is larger than every existing key
+     */
+    private void append(char key, Container container)
+    {
+        insert(size, key, container);
+    }
+
+    /**
+     * The low 16 bits of the values in one chunk
+     */
+    private abstract static class Container
+    {
+        /** @return the container holding this one's values plus x, possibly this one */
+        abstract Container add(char x);
+
+        /** @return the container holding this one's values minus x, possibly this one */
+        abstract Container remove(char x);
+
+        /** @return true if x is present */
+        abstract boolean contains(char x);
+
+        /** @return the number of values */
+        abstract int cardinality();
+
+        /** @return a new container with the values in both */
+        abstract Container and(Container other);
+
+        /** @return the number of values in both */
+        abstract int andCardinality(Container other);
+
+        /** @return a new container with the values in either */
+        abstract Container or(Container other);
+
+        /** @return a new container with this one's values that are not in other */
+        abstract Container andNot(Container other);
+
+        /** @return an independent copy */
+        abstract Container copy();
+
+        /** @return this container's values as a bitmap container, which may be this one */
+        abstract BitmapContainer toBitmap();
+
+        /** @return the smallest container for the values, which may be this one */
+        abstract Container optimize();
+
+        /** Calls action with high | value for each value in ascending order */
+        abstract void forEach(int high, IntConsumer action);
+
+        /** @return the approximate memory used */
+        abstract long sizeInBytes();
+
+        /** @return the bytes written after the type and cardinality */
+        abstract int serializedSize();
+
+        /** Writes the type, the cardinality and the values */
+        abstract void writeTo(ByteBuffer buffer);
+    }
+
+    /**
+     * A sorted array of up to 4096 values
+     */
+    private static final class ArrayContainer extends Container
+    {
+        private char[] values;
+        private int cardinality;
+
+        /**
+         * Creates an empty container
+         */
+        ArrayContainer(int capacity)
+        {
+            this.values = new char[capacity];
+        }
+
+        /**
+         * Creates a container over sorted values
+         */
+        ArrayContainer(char[] values, int cardinality)
+        {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char x)
+        {
+            int at = cardinality > 0 && values[cardinality - 1] < x
+                    ? -cardinality - 1
+                    : Arrays.binarySearch(values, 0, cardinality, x);
+            if (at >= 0)
+            {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX)
+            {
+                return toBitmap().add(x);
+            }
+            at = -at - 1;
+            if (cardinality == values.length)
+            {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, at, values, at + 1, cardinality - at);
+            values[at] = x;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char x)
+        {
+            int at = Arrays.binarySearch(values, 0, cardinality, x);
+            if (at >= 0)
+            {
+                System.arraycopy(values, at + 1, values, at, cardinality - at - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char x)
+        {
+            return Arrays.binarySearch(values, 0, cardinality, x) >= 0;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer)
+            {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality)
+                {
+                    if (values[i] < array.values[j])
+                    {
+                        i++;
+                    }
+                    else if (values[i] > array.values[j])
+                    {
+                        j++;
+                    }
+                    else
+                    {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else
+            {
+                for (int i = 0; i < cardinality; i++)
+                {
+                    if (other.contains(values[i]))
+                    {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other)
+        {
+            if (!(other instanceof ArrayContainer))
+            {
+                int count = 0;
+                for (int i = 0; i < cardinality; i++)
+                {
+                    if (other.contains(values[i]))
+                    {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            return and(other).cardinality();
+        }
+
+        @Override
+        Container or(Container other)
+        {
+            if (!(other instanceof ArrayContainer))
+            {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_MAX)
+            {
+                BitmapContainer bitmap = toBitmap();
+                bitmap.orInPlace(array);
+                return bitmap.optimize();
+            }
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality)
+            {
+                char next;
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j]))
+                {
+                    next = values[i++];
+                }
+                else if (i == cardinality || values[i] > array.values[j])
+                {
+                    next = array.values[j++];
+                }
+                else
+                {
+                    next = values[i++];
+                    j++;
+                }
+                result[count++] = next;
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other)
+        {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++)
+            {
+                if (!other.contains(values[i]))
+                {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container copy()
+        {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            bitmap.orInPlace(this);
+            return bitmap;
+        }
+
+        @Override
+        Container optimize()
+        {
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action)
+        {
+            for (int i = 0; i < cardinality; i++)
+            {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        long sizeInBytes()
+        {
+            return 16L + values.length * 2L;
+        }
+
+        @Override
+        int serializedSize()
+        {
+            return cardinality * 2;
+        }
+
+        @Override
+        void writeTo(ByteBuffer buffer)
+        {
+            buffer.put(ARRAY_TYPE);
+            buffer.putInt(cardinality);
+            for (int i = 0; i < cardinality; i++)
+            {
+                buffer.putChar(values[i]);
+            }
+        }
+    }
+
+    /**
+     * A 65536-bit bitmap, used once a chunk holds more than 4096 values
+     */
+    private static final class BitmapContainer extends Container
+    {
+        private final long[] words;
+        private int cardinality;
+
+        /**
+         * Creates a container over bitmap words
+         */
+        BitmapContainer(long[] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char x)
+        {
+            long before = words[x >>> 6];
+            words[x >>> 6] = before | (1L << x);
+            if (before != words[x >>> 6])
+            {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char x)
+        {
+            long before = words[x >>> 6];
+            words[x >>> 6] = before & ~(1L << x);
+            if (before != words[x >>> 6])
+            {
+                cardinality--;
+            }
+            return optimize();
+        }
+
+        @Override
+        boolean contains(char x)
+        {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, count).optimize();
+        }
+
+        @Override
+        int andCardinality(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        Container or(Container other)
+        {
+            BitmapContainer result = (BitmapContainer) copy();
+            result.orInPlace(other);
+            return result;
+        }
+
+        /**
+         * Adds every value of another container to this one
+         */
+        void orInPlace(Container other)
+        {
+            if (other instanceof ArrayContainer)
+            {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++)
+                {
+                    char x = array.values[i];
+                    long before = words[x >>> 6];
+                    words[x >>> 6] = before | (1L << x);
+                    cardinality += (int) ((before ^ words[x >>> 6]) >>> x) & 1;
+                }
+                return;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] |= otherWords[i];
+                count += Long.bitCount(words[i]);
+            }
+            cardinality = count;
+        }
+
+        @Override
+        Container andNot(Container other)
+        {
+            long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+            if (other instanceof ArrayContainer)
+            {
+                ArrayContainer array = (ArrayContainer) other;
+                int count = cardinality;
+                for (int i = 0; i < array.cardinality; i++)
+                {
+                    char x = array.values[i];
+                    if ((result[x >>> 6] & (1L << x)) != 0)
+                    {
+                        result[x >>> 6] &= ~(1L << x);
+                        count--;
+                    }
+                }
+                return new BitmapContainer(result, count).optimize();
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                result[i] &= ~otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, count).optimize();
+        }
+
+        @Override
+        Container copy()
+        {
+            return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap()
+        {
+            return this;
+        }
+
+        @Override
+        Container optimize()
+        {
+            if (cardinality > ARRAY_MAX)
+            {
+                return this;
+            }
+            char[] values = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                long word = words[i];
+                while (word != 0)
+                {
+                    values[count++] = (char) (i * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action)
+        {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                long word = words[i];
+                while (word != 0)
+                {
+                    action.accept(high | (i * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long sizeInBytes()
+        {
+            return 16L + BITMAP_WORDS * 8L;
+        }
+
+        @Override
+        int serializedSize()
+        {
+            return BITMAP_WORDS * 8;
+        }
+
+        @Override
+        void writeTo(ByteBuffer buffer)
+        {
+            buffer.put(BITMAP_TYPE);
+            buffer.putInt(cardinality);
+            buffer.asLongBuffer().put(words);
+            buffer.position(buffer.position() + BITMAP_WORDS * 8);
+        }
+    }
+}
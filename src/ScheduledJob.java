@@ -0,0 +1,16 @@
+/**
+ * ScheduledJob is the work of a job registered with the JobScheduler. A run happens on a
+ * worker thread, never at the same time as another run of the same job.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface ScheduledJob
+{
+    /**
+     * Does one run of the job. Long runs should check job.isCancelled() between steps and
+     * return early once it is set, so shutdown does not have to wait for them.
+     *
+     * @param job the registered job, used to check for cancellation
+     * @throws Exception if the run fails; the failure is counted and the next run still happens
+     */
+    void run(JobScheduler.Job job) throws Exception;
+}
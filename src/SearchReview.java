@@ -1,12 +1,18 @@
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.EnumSet;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.TimeZone;
 
 /**
  * SearchReview class handles searching and displaying movie reviews based on different criteria.
- * It provides methods to search reviews by movie title, genre, username, and date range.
+ * It provides methods to search reviews by movie title, genre, username, and date range,
+ * review statistics such as the top-rated movies of a genre over a period, what is trending,
+ * and combined searches over several criteria at once.
  * The class utilizes the Singleton pattern and interacts with the database to get reviews.
  * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
  */
@@ -21,7 +27,7 @@ public class SearchReview
     }
 
     // Returns the singleton instance of SearchReview
-    public static SearchReview getInstance()
+    public static synchronized SearchReview getInstance()
     {
         if (instance == null)
         {
@@ -39,11 +45,12 @@ public class SearchReview
     {
         ArrayList<Movie> matchedMovies = new ArrayList<>();
         // SQL query to find movies with matching titles
-        String sql = "SELECT * FROM movies WHERE title LIKE '%" + titleKeyword + "%'";
+        // The keyword is bound as a parameter; % and _ in it still act as LIKE wildcards
+        String sql = "SELECT * FROM movies WHERE title LIKE '%' || ? || '%'";
 
         try
         {
-            ResultSet rs = Database.getInstance().executeQuery(sql);
+            ResultSet rs = Database.getInstance().executeQuery("movie.matchTitle", sql, titleKeyword);
             while (rs.next())
             {
                 int id = rs.getInt("id");
@@ -91,7 +98,7 @@ public class SearchReview
                 "FROM reviews r WHERE r.movieID = " + movieId + 
                 " ORDER BY r.reviewDate DESC LIMIT 2";
    
-                ResultSet rs = Database.getInstance().executeQuery(sql);
+                ResultSet rs = Database.getInstance().executeQuery("review.byMovie", sql);
                 while (rs.next())
                 {
                     int reviewID = rs.getInt("reviewID");
@@ -125,11 +132,11 @@ public class SearchReview
         ArrayList<Review> reviews = new ArrayList<>();
         // SQL query to find reviews by username
         String sql = "SELECT r.reviewID, r.content, r.rating, r.userID, r.movieID, r.reviewDate, r.likeCount " +
-                "FROM reviews r JOIN users u ON r.userID = u.userID WHERE u.username = '" + username + "'";
+                "FROM reviews r JOIN users u ON r.userID = u.userID WHERE u.username = ?";
 
         try
         {
-            ResultSet rs = Database.getInstance().executeQuery(sql);
+            ResultSet rs = Database.getInstance().executeQuery("review.byUsername", sql, username);
             while (rs.next())
             {
                 int reviewID = rs.getInt("reviewID");
@@ -178,7 +185,7 @@ public class SearchReview
                 "FROM reviews r JOIN movies m ON r.movieID = m.id WHERE m.genres LIKE '%" + genreType.toString() + "%'";
 
         try {
-            ResultSet rs = Database.getInstance().executeQuery(sql);
+            ResultSet rs = Database.getInstance().executeQuery("review.byGenre", sql);
             while (rs.next())
             {
                 int reviewID = rs.getInt("reviewID");
@@ -218,7 +225,7 @@ public class SearchReview
         String sql = "SELECT * FROM reviews WHERE reviewDate BETWEEN " + startMillis + " AND " + endMillis;
 
         try {
-            ResultSet rs = Database.getInstance().executeQuery(sql);
+            ResultSet rs = Database.getInstance().executeQuery("review.byDateRange", sql);
             while (rs.next())
             {
                 int reviewID = rs.getInt("reviewID");
@@ -245,9 +252,10 @@ public class SearchReview
 
     /**
      * Asks the user to search for reviews by movie title and displays the results.
+     * @param session the session of the user searching, used when liking a review
      * @param scanner The scanner to read user input
      */
-    public static void searchByMovieTitle(Scanner scanner)
+    public static void searchByMovieTitle(Session session, Scanner scanner)
     {
         while (true)
         {
@@ -273,7 +281,7 @@ public class SearchReview
 
                 if (likeChoice)
                 {
-                    ReviewManager.getInstance().likeReviewMenu(scanner);
+                    ReviewManager.getInstance().likeReviewMenu(session, scanner);
                 }
             }
 
@@ -285,9 +293,10 @@ public class SearchReview
 
     /**
      * Asks the user to search for reviews by genre and displays the results.
+     * @param session the session of the user searching, used when liking a review
      * @param scanner The scanner to read user input
      */
-    public static void searchByGenre(Scanner scanner)
+    public static void searchByGenre(Session session, Scanner scanner)
     {
         while (true)
         {
@@ -319,7 +328,7 @@ public class SearchReview
 
                 if (likeChoice)
                 {
-                    ReviewManager.getInstance().likeReviewMenu(scanner);
+                    ReviewManager.getInstance().likeReviewMenu(session, scanner);
                 }
             }
 
@@ -331,9 +340,10 @@ public class SearchReview
 
     /**
      * Asks the user to search for reviews within a specific date range and displays the results.
+     * @param session the session of the user searching, used when liking a review
      * @param scanner The scanner to read user input
      */
-    public static void searchByDateRange(Scanner scanner)
+    public static void searchByDateRange(Session session, Scanner scanner)
     {
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
         dateFormat.setLenient(false);
@@ -370,7 +380,7 @@ public class SearchReview
 
                 if (likeChoice)
                 {
-                    ReviewManager.getInstance().likeReviewMenu(scanner);
+                    ReviewManager.getInstance().likeReviewMenu(session, scanner);
                 }
             }
 
@@ -384,9 +394,10 @@ public class SearchReview
 
     /**
      * Asks the user to search for reviews by username of the reviewer and displays the results.
+     * @param session the session of the user searching, used when liking a review
      * @param scanner The scanner to read user input
      */
-    public static void searchByUsername(Scanner scanner)
+    public static void searchByUsername(Session session, Scanner scanner)
     {
         while (true)
         {
@@ -410,7 +421,7 @@ public class SearchReview
 
                 if (likeChoice)
                 {
-                    ReviewManager.getInstance().likeReviewMenu(scanner);
+                    ReviewManager.getInstance().likeReviewMenu(session, scanner);
                 }
             }
 
@@ -419,4 +430,418 @@ public class SearchReview
             if (!again.equalsIgnoreCase("y")) break;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the movies with the highest average rating, optionally within a genre and time range.
+     * @param genre The genre of the movies, or null for all genres
+     * @param startDate The earliest review date counted, inclusive
+     * @param endDate The latest review date counted, inclusive
+     * @param minReviews The fewest reviews a movie needs to be ranked
+     * @param limit The maximum number of movies returned
+     * @return Aggregates keyed by movie ID, best rated first
+     */
+    public static List<ReviewAggregate> topRatedMovies(Genre.GenreType genre, Date startDate, Date endDate,
+                                                       int minReviews, int limit)
+    {
+        ReviewQuery query = new ReviewQuery()
+                .genre(genre)
+                .between(startDate, endDate)
+                .groupBy(ReviewQuery.GroupBy.MOVIE)
+                .orderBy(ReviewQuery.OrderBy.AVERAGE_RATING)
+                .minCount(minReviews)
+                .limit(limit);
+        return ReviewQueryEngine.getInstance().execute(query);
+    }
+
+    /**
+     * Gets the review count and average rating of every genre within a time range.
+     * @param startDate The earliest review date counted, inclusive
+     * @param endDate The latest review date counted, inclusive
+     * @return Aggregates keyed by Genre.GenreType ordinal, most reviewed first
+     */
+    public static List<ReviewAggregate> ratingsByGenre(Date startDate, Date endDate)
+    {
+        ReviewQuery query = new ReviewQuery()
+                .between(startDate, endDate)
+                .groupBy(ReviewQuery.GroupBy.GENRE)
+                .orderBy(ReviewQuery.OrderBy.REVIEW_COUNT);
+        return ReviewQueryEngine.getInstance().execute(query);
+    }
+
+    /**
+     * Gets the review count and average rating of every day within a time range.
+     * @param genre The genre of the reviewed movies, or null for all genres
+     * @param startDate The earliest review date counted, inclusive
+     * @param endDate The latest review date counted, inclusive
+     * @return Aggregates keyed by UTC day number, oldest day first
+     */
+    public static List<ReviewAggregate> ratingsByDay(Genre.GenreType genre, Date startDate, Date endDate)
+    {
+        ReviewQuery query = new ReviewQuery()
+                .genre(genre)
+                .between(startDate, endDate)
+                .groupBy(ReviewQuery.GroupBy.DAY)
+                .orderBy(ReviewQuery.OrderBy.KEY);
+        return ReviewQueryEngine.getInstance().execute(query);
+    }
+
+    /**
+     * Asks the user for a report and a date range and prints review statistics
+     * computed by the ReviewQueryEngine. Dates are read and shown in UTC, the time zone
+     * the engine groups days in, so a range covers exactly the days it lists.
+     * @param scanner The scanner to read user input
+     */
+    public static void showReviewStatistics(Scanner scanner)
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        while (true)
+        {
+            System.out.println("Review Statistics:");
+            System.out.println("1. Top-Rated Movies");
+            System.out.println("2. Ratings by Genre");
+            System.out.println("3. Ratings by Day");
+            System.out.println("4. Popularity Estimates");
+            System.out.println("5. Go Back");
+            int choice = InputValidator.getValidatedInt(scanner, "Enter your choice: ");
+            if (choice == 5)
+            {
+                return;
+            }
+            if (choice == 4)
+            {
+                showPopularityEstimates();
+                continue;
+            }
+            if (choice < 1 || choice > 5)
+            {
+                System.out.println("Invalid choice. Try again.");
+                continue;
+            }
+
+            Date startDate = InputValidator.readValidDate("Enter Start Review Date (YYYY-MM-DD, UTC): ", scanner, dateFormat);
+            Date endDate = InputValidator.readValidDate("Enter End Review Date (YYYY-MM-DD, UTC): ", scanner, dateFormat);
+            if (startDate.after(endDate))
+            {
+                System.out.println("Start date must be before or equal to end date. Try again.");
+                continue;
+            }
+            endDate = new Date(endDate.getTime() + (24L * 60 * 60 * 1000) - 1); // End of the day
+            String period = dateFormat.format(startDate) + " to " + dateFormat.format(endDate);
+
+            if (choice == 2)
+            {
+                System.out.println("Ratings by genre from " + period + ":");
+                Genre.GenreType[] genres = Genre.GenreType.values();
+                for (ReviewAggregate aggregate : ratingsByGenre(startDate, endDate))
+                {
+                    System.out.printf("%-15s %8d reviews, average %.2f/5%n",
+                            genres[aggregate.getKey()], aggregate.getCount(), aggregate.getAverageRating());
+                }
+                continue;
+            }
+
+            System.out.print("Enter Genre (or leave blank for all): ");
+            String genreInput = scanner.nextLine().trim();
+            Genre.GenreType genre = null;
+            if (!genreInput.isEmpty())
+            {
+                try
+                {
+                    genre = Genre.GenreType.valueOf(genreInput.toUpperCase().replace(' ', '_'));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    System.out.println("Invalid movie genre: " + genreInput);
+                    continue;
+                }
+            }
+            String scope = genre == null ? "all genres" : genre.toString();
+
+            if (choice == 1)
+            {
+                int minReviews = InputValidator.getValidatedInt(scanner, "Minimum number of reviews per movie: ");
+                List<ReviewAggregate> movies = topRatedMovies(genre, startDate, endDate, Math.max(1, minReviews), 10);
+                System.out.println("Top-rated movies in " + scope + " from " + period + ":");
+                if (movies.isEmpty())
+                {
+                    System.out.println("No movies have enough reviews in this period.");
+                }
+                int rank = 1;
+                for (ReviewAggregate aggregate : movies)
+                {
+                    System.out.printf("%2d. %s (ID: %d) - average %.2f/5 from %d reviews%n", rank++,
+                            Movie.getMovieTitleByID(aggregate.getKey()), aggregate.getKey(),
+                            aggregate.getAverageRating(), aggregate.getCount());
+                }
+            }
+            else
+            {
+                System.out.println("Ratings by day (UTC) in " + scope + " from " + period + ":");
+                for (ReviewAggregate aggregate : ratingsByDay(genre, startDate, endDate))
+                {
+                    System.out.printf("%s %8d reviews, average %.2f/5%n",
+                            dateFormat.format(new Date(aggregate.getKey() * (24L * 60 * 60 * 1000))),
+                            aggregate.getCount(), aggregate.getAverageRating());
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks the user for any mix of genres, dates, minimum rating, author, minimum likes and
+     * "only people I follow", then displays the newest matching reviews found by the
+     * ReviewSearchIndex. Criteria left blank match every review.
+     * @param session the session of the user searching, used for "only people I follow" and liking
+     * @param scanner The scanner to read user input
+     */
+    public static void searchCombined(Session session, Scanner scanner)
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+        ReviewFilter filter = new ReviewFilter().limit(20);
+
+        System.out.println("Leave a criterion blank to skip it.");
+        System.out.print("Genres (comma separated): ");
+        String genreInput = scanner.nextLine().trim();
+        if (!genreInput.isEmpty())
+        {
+            EnumSet<Genre.GenreType> genres = EnumSet.noneOf(Genre.GenreType.class);
+            for (String name : genreInput.split(","))
+            {
+                try
+                {
+                    genres.add(Genre.GenreType.valueOf(name.trim().toUpperCase().replace(' ', '_')));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    System.out.println("Unknown genre ignored: " + name.trim());
+                }
+            }
+            if (!genres.isEmpty())
+            {
+                filter.genres(genres);
+            }
+        }
+
+        Date startDate = readOptionalDate("Start Review Date (YYYY-MM-DD): ", scanner, dateFormat);
+        Date endDate = readOptionalDate("End Review Date (YYYY-MM-DD): ", scanner, dateFormat);
+        if (startDate != null || endDate != null)
+        {
+            filter.between(startDate != null ? startDate : new Date(Long.MIN_VALUE),
+                           endDate != null ? new Date(endDate.getTime() + (24L * 60 * 60 * 1000) - 1) // End of the day
+                                           : new Date(Long.MAX_VALUE));
+        }
+
+        int minRating = readOptionalInt("Minimum rating (1-5): ", scanner);
+        if (minRating > 0)
+        {
+            filter.minRating(minRating);
+        }
+
+        System.out.print("Author username: ");
+        String username = scanner.nextLine().trim();
+        if (!username.isEmpty())
+        {
+            User author = Graph.getInstance().getUserByUsername(username);
+            if (author == null)
+            {
+                System.out.println("User not found: " + username);
+                return;
+            }
+            filter.byAuthor(author.getUserID());
+        }
+
+        int minLikes = readOptionalInt("Minimum likes: ", scanner);
+        if (minLikes > 0)
+        {
+            filter.minLikes(minLikes);
+        }
+
+        if (InputValidator.confirmYes("Only reviews by people you follow? (y/n): ", scanner))
+        {
+            filter.followedBy(session.getUserID());
+        }
+
+        ReviewSearchIndex.SearchResult result = ReviewSearchIndex.getInstance().searchWithCount(filter);
+        if (result.getCount() == 0)
+        {
+            System.out.println("No reviews match these criteria.");
+            return;
+        }
+        System.out.println(result.getCount() + " matching reviews, newest " + result.getReviews().size() + ":");
+        for (Review review : result.getReviews())
+        {
+            System.out.println(review);
+        }
+
+        boolean likeChoice = InputValidator.confirmYes("Like any review? (y/n): ", scanner);
+        if (likeChoice)
+        {
+            ReviewManager.getInstance().likeReviewMenu(session, scanner);
+        }
+    }
+
+    /**
+     * Reads a date, or nothing
+     * @param prompt the prompt to show
+     * @param scanner The scanner to read user input
+     * @param dateFormat the expected format
+     * @return the date, or null if the input was blank
+     */
+    private static Date readOptionalDate(String prompt, Scanner scanner, SimpleDateFormat dateFormat)
+    {
+        while (true)
+        {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty())
+            {
+                return null;
+            }
+            try
+            {
+                if (input.matches("\\d{4}-\\d{2}-\\d{2}"))
+                {
+                    return dateFormat.parse(input);
+                }
+            }
+            catch (ParseException e)
+            {
+                // Fall through to the message below
+            }
+            System.out.println("Invalid date. Please enter the date in YYYY-MM-DD format or leave it blank.");
+        }
+    }
+
+    /**
+     * Reads a non-negative whole number, or nothing
+     * @param prompt the prompt to show
+     * @param scanner The scanner to read user input
+     * @return the number, or 0 if the input was blank
+     */
+    private static int readOptionalInt(String prompt, Scanner scanner)
+    {
+        while (true)
+        {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty())
+            {
+                return 0;
+            }
+            try
+            {
+                int value = Integer.parseInt(input);
+                if (value >= 0)
+                {
+                    return value;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                // Fall through to the message below
+            }
+            System.out.println("Please enter a whole number or leave it blank.");
+        }
+    }
+
+    /**
+     * Displays the trending movies, reviews and reviewers and recent activity counts,
+     * then lets the user like one of the reviews.
+     * @param session the session of the user, used when liking a review
+     * @param scanner The scanner to read user input
+     */
+    public static void showTrending(Session session, Scanner scanner)
+    {
+        TrendingEngine trending = TrendingEngine.getInstance();
+
+        System.out.println("Activity: " +
+                trending.getReviewCount(TrendingEngine.Window.HOUR) + " reviews, " +
+                trending.getLikeCount(TrendingEngine.Window.HOUR) + " likes in the last hour; " +
+                trending.getReviewCount(TrendingEngine.Window.DAY) + " reviews, " +
+                trending.getLikeCount(TrendingEngine.Window.DAY) + " likes today; " +
+                trending.getReviewCount(TrendingEngine.Window.WEEK) + " reviews this week.\n");
+
+        System.out.println("Trending Movies:");
+        int rank = 1;
+        for (TrendingEntry entry : trending.trendingMovies(10))
+        {
+            System.out.printf("%2d. %s (ID: %d) - score %.1f%n", rank++,
+                    Movie.getMovieTitleByID(entry.getId()), entry.getId(), entry.getScore());
+        }
+
+        System.out.println("\nTrending Reviewers:");
+        rank = 1;
+        for (TrendingEntry entry : trending.trendingReviewers(5))
+        {
+            User user = Graph.getInstance().getUserByKey(entry.getId());
+            if (user != null)
+            {
+                System.out.printf("%2d. %s - score %.1f%n", rank++, user.getUserName(), entry.getScore());
+            }
+        }
+
+        System.out.println("\nTrending Reviews:");
+        boolean anyReview = false;
+        for (TrendingEntry entry : trending.trendingReviews(5))
+        {
+            Review review = Review.getReviewByID(entry.getId());
+            if (review != null)
+            {
+                System.out.println(review);
+                anyReview = true;
+            }
+        }
+        if (!anyReview)
+        {
+            System.out.println("No reviews have been liked recently.");
+            return;
+        }
+
+        boolean likeChoice = InputValidator.confirmYes("Like any review? (y/n): ", scanner);
+        if (likeChoice)
+        {
+            ReviewManager.getInstance().likeReviewMenu(session, scanner);
+        }
+    }
+
+    /**
+     * Displays the most-reviewed and most-liked movies and the number of reviewers per genre,
+     * estimated from the PopularitySketches.
+     */
+    public static void showPopularityEstimates()
+    {
+        PopularitySketches sketches = PopularitySketches.getInstance();
+
+        System.out.println("Most Reviewed Movies (approximate):");
+        int rank = 1;
+        for (HeavyHitter hitter : sketches.mostReviewedMovies(10))
+        {
+            System.out.printf("%2d. %s (ID: %d) - about %d reviews by about %d reviewers%n", rank++,
+                    Movie.getMovieTitleByID(hitter.getKey()), hitter.getKey(), hitter.getCount(),
+                    sketches.estimateDistinctReviewers(hitter.getKey()));
+        }
+
+        System.out.println("\nMost Liked Movies (approximate):");
+        rank = 1;
+        for (HeavyHitter hitter : sketches.mostLikedMovies(10))
+        {
+            System.out.printf("%2d. %s (ID: %d) - about %d likes%n", rank++,
+                    Movie.getMovieTitleByID(hitter.getKey()), hitter.getKey(), hitter.getCount());
+        }
+
+        System.out.println("\nReviewers per Genre (approximate):");
+        for (Genre.GenreType genre : Genre.GenreType.values())
+        {
+            long reviewers = sketches.estimateDistinctReviewers(genre);
+            if (reviewers > 0)
+            {
+                System.out.printf("%-15s %8d%n", genre, reviewers);
+            }
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SeparationFinder answers "how are these two users connected" queries with a
+ * bidirectional breadth-first search over a GraphSnapshot. The forward search follows
+ * the users each user follows, the backward search follows each user's followers, and
+ * the smaller frontier is always expanded next.
+ * Frontiers, parents and visited marks live in int arrays that are reused between
+ * queries; visited marks are stamped with a query generation so nothing has to be
+ * cleared or allocated per query. Instances are not thread-safe.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class SeparationFinder
+{
+    private final GraphSnapshot snapshot;   // Graph the queries run on
+
+    private final int[] forwardStamp;       // Generation in which a user was reached going forward
+    private final int[] backwardStamp;      // Generation in which a user was reached going backward
+    private final int[] forwardParent;      // Previous user on the path from the source
+    private final int[] backwardParent;     // Next user on the path to the target
+    private int[] forwardFrontier;          // Users at the current forward level
+    private int[] backwardFrontier;         // Users at the current backward level
+    private int[] nextFrontier;             // Scratch array for the level being built
+    private int generation;                 // Stamp of the current query
+
+    /**
+     * Constructs a finder for a snapshot, allocating all scratch arrays once
+     *
+     * @param snapshot the graph snapshot to search
+     */
+    public SeparationFinder(GraphSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+        int n = snapshot.getUserCount();
+        this.forwardStamp = new int[n];
+        this.backwardStamp = new int[n];
+        this.forwardParent = new int[n];
+        this.backwardParent = new int[n];
+        this.forwardFrontier = new int[n];
+        this.backwardFrontier = new int[n];
+        this.nextFrontier = new int[n];
+    }
+
+    /**
+     * Gets the snapshot this finder searches
+     *
+     * @return the graph snapshot
+     */
+    public GraphSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * Finds a shortest follow path from one user to another
+     *
+     * @param fromUserId the user ID the path starts at
+     * @param toUserId the user ID the path ends at
+     * @param maxDepth the maximum number of follow hops to consider
+     * @return the user IDs on the path including both ends, or an empty list if
+     *         no path of at most maxDepth hops exists
+     */
+    public List<Integer> shortestPath(int fromUserId, int toUserId, int maxDepth)
+    {
+        List<Integer> path = new ArrayList<>();
+        int source = snapshot.indexOf(fromUserId);
+        int target = snapshot.indexOf(toUserId);
+        if (source < 0 || target < 0 || maxDepth < 0)
+        {
+            return path;
+        }
+        if (source == target)
+        {
+            path.add(fromUserId);
+            return path;
+        }
+
+        nextGeneration();
+        forwardStamp[source] = generation;
+        forwardParent[source] = -1;
+        backwardStamp[target] = generation;
+        backwardParent[target] = -1;
+
+        forwardFrontier[0] = source;
+        int forwardSize = 1;
+        int forwardLevel = 0;
+        backwardFrontier[0] = target;
+        int backwardSize = 1;
+        int backwardLevel = 0;
+
+        int[] following = snapshot.getFollowingTargets();
+        int[] followers = snapshot.getFollowerSources();
+
+        while (forwardSize > 0 && backwardSize > 0 && forwardLevel + backwardLevel < maxDepth)
+        {
+            int meeting = -1;
+            int nextSize = 0;
+
+            if (forwardSize <= backwardSize)
+            {
+                // Expand one level forward along "follows" edges
+                for (int f = 0; f < forwardSize; f++)
+                {
+                    int u = forwardFrontier[f];
+                    for (int e = snapshot.followingStart(u); e < snapshot.followingEnd(u); e++)
+                    {
+                        int v = following[e];
+                        if (forwardStamp[v] == generation)
+                        {
+                            continue;
+                        }
+                        forwardStamp[v] = generation;
+                        forwardParent[v] = u;
+                        nextFrontier[nextSize++] = v;
+                        if (meeting < 0 && backwardStamp[v] == generation)
+                        {
+                            meeting = v;
+                        }
+                    }
+                }
+                forwardLevel++;
+                int[] swap = forwardFrontier;
+                forwardFrontier = nextFrontier;
+                nextFrontier = swap;
+                forwardSize = nextSize;
+            }
+            else
+            {
+                // Expand one level backward along "followed by" edges
+                for (int b = 0; b < backwardSize; b++)
+                {
+                    int u = backwardFrontier[b];
+                    for (int e = snapshot.followerStart(u); e < snapshot.followerEnd(u); e++)
+                    {
+                        int v = followers[e];
+                        if (backwardStamp[v] == generation)
+                        {
+                            continue;
+                        }
+                        backwardStamp[v] = generation;
+                        backwardParent[v] = u;
+                        nextFrontier[nextSize++] = v;
+                        if (meeting < 0 && forwardStamp[v] == generation)
+                        {
+                            meeting = v;
+                        }
+                    }
+                }
+                backwardLevel++;
+                int[] swap = backwardFrontier;
+                backwardFrontier = nextFrontier;
+                nextFrontier = swap;
+                backwardSize = nextSize;
+            }
+
+            // Searches advance one whole level at a time, so the first meeting gives a shortest path
+            if (meeting >= 0)
+            {
+                return buildPath(meeting);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Rebuilds the path through the user where both searches met
+     *
+     * @param meeting the dense index of the meeting user
+     * @return the user IDs from source to target
+     */
+    private List<Integer> buildPath(int meeting)
+    {
+        List<Integer> path = new ArrayList<>();
+        for (int u = meeting; u >= 0; u = forwardParent[u])
+        {
+            path.add(0, snapshot.getUserId(u));
+        }
+        for (int u = backwardParent[meeting]; u >= 0; u = backwardParent[u])
+        {
+            path.add(snapshot.getUserId(u));
+        }
+        return path;
+    }
+
+    /**
+     * Advances the query generation, clearing the stamp arrays only when the counter wraps
+     */
+    private void nextGeneration()
+    {
+        generation++;
+        if (generation == Integer.MAX_VALUE)
+        {
+            Arrays.fill(forwardStamp, 0);
+            Arrays.fill(backwardStamp, 0);
+            generation = 1;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Session is an immutable record of one logged-in user, identified by an opaque token.
+ * Operations that act on behalf of a user take a Session instead of reading a global
+ * current user, so any number of users can be logged in at the same time.
+ * The user object is the Graph's copy, looked up once at login; the Graph keeps it up to
+ * date with genre changes, so reading it needs no lock.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public final class Session
+{
+    private final String token;     // Opaque random token identifying the session
+    private final int userID;       // The ID of the logged-in user
+    private final String username;  // The username at login time
+    private final long createdAt;   // Login time in milliseconds since the epoch
+    private final User user;        // The Graph's copy of the user, null if it was not found
+
+    /**
+     * Constructs a session
+     *
+     * @param token the opaque session token
+     * @param userID the ID of the logged-in user
+     * @param username the username of the logged-in user
+     * @param createdAt the login time in milliseconds since the epoch
+     * @param user the Graph's copy of the user, or null if the Graph does not have it
+     */
+    public Session(String token, int userID, String username, long createdAt, User user)
+    {
+        this.token = token;
+        this.userID = userID;
+        this.username = username;
+        this.createdAt = createdAt;
+        this.user = user;
+    }
+
+    /**
+     * Gets the session token
+     *
+     * @return the token
+     */
+    public String getToken()
+    {
+        return token;
+    }
+
+    /**
+     * Gets the ID of the logged-in user
+     *
+     * @return the user ID
+     */
+    public int getUserID()
+    {
+        return userID;
+    }
+
+    /**
+     * Gets the username of the logged-in user
+     *
+     * @return the username
+     */
+    public String getUsername()
+    {
+        return username;
+    }
+
+    /**
+     * Gets the time the session was created
+     *
+     * @return the login time in milliseconds since the epoch
+     */
+    public long getCreatedAt()
+    {
+        return createdAt;
+    }
+
+    /**
+     * Gets the logged-in user from the social graph
+     *
+     * @return the user, or null if the Graph did not have the user at login
+     */
+    public User getUser()
+    {
+        return user;
+    }
+}
@@ -0,0 +1,298 @@
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionStore is the registry of logged-in users. It maps opaque tokens to immutable
+ * Session objects in a sharded concurrent map, so looking up a session is a lock-free
+ * O(1) read no matter how many users are logged in.
+ *
+ * Sessions expire after a period without use (-Dsession.idleTimeoutMinutes, default 30).
+ * Expiry is tracked on a hashed timer wheel: each session sits in the slot of the tick at
+ * which it would expire, and a background thread visits one slot per tick. Using a session
+ * only updates its last-access time; when its slot comes round the session is either
+ * evicted or moved to the slot of its new deadline. Lookups check the deadline themselves,
+ * so an idle session is never returned even if the wheel has not reached it yet.
+ * Implements the Singleton pattern so the console menu and the HTTP service share one registry.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class SessionStore
+{
+    private static final int SHARD_COUNT = 16;          // Number of map shards (power of two)
+    private static final int WHEEL_SIZE = 64;           // Number of timer wheel slots (power of two)
+    private static final int TICKS_PER_TIMEOUT = 32;    // Wheel resolution; must stay below WHEEL_SIZE
+    private static final long MIN_TICK_MILLIS = 1000;   // Shortest wheel tick
+    private static final int TOKEN_BYTES = 32;          // Random bytes per token
+
+    private static volatile SessionStore instance;      // Singleton instance
+
+    /**
+     * A session together with its mutable last-access time
+     */
+    private static final class Entry
+    {
+        final Session session;
+        volatile long lastAccess;
+
+        Entry(Session session, long lastAccess)
+        {
+            this.session = session;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final List<Map<String, Entry>> shards;      // Token to entry, split by token hash
+    private final List<Set<Entry>> wheel;               // Entries by the tick they expire at
+    private final long idleTimeoutMillis;               // Idle time after which a session expires
+    private final long tickMillis;                      // Duration of one wheel tick
+    private final SecureRandom random;                  // Source of tokens
+    private long processedTick;                         // Last tick whose slot was visited
+    private final ScheduledExecutorService timer;       // Advances the wheel
+
+    /**
+     * Creates a store with the given idle timeout and starts the expiry thread
+     *
+     * @param idleTimeoutMillis idle time after which a session expires
+     */
+    SessionStore(long idleTimeoutMillis)
+    {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.tickMillis = Math.max(MIN_TICK_MILLIS, (idleTimeoutMillis + TICKS_PER_TIMEOUT - 1) / TICKS_PER_TIMEOUT);
+        this.random = new SecureRandom();
+
+        this.shards = new ArrayList<>(SHARD_COUNT);
+        for (int i = 0; i < SHARD_COUNT; i++)
+        {
+            shards.add(new ConcurrentHashMap<>());
+        }
+        this.wheel = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++)
+        {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.processedTick = System.currentTimeMillis() / tickMillis;
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the singleton instance of SessionStore
+     *
+     * @return the singleton instance
+     */
+    public static SessionStore getInstance()
+    {
+        if (instance == null)
+        {
+            synchronized (SessionStore.class)
+            {
+                if (instance == null)
+                {
+                    long minutes = Long.getLong("session.idleTimeoutMinutes", 30);
+                    instance = new SessionStore(TimeUnit.MINUTES.toMillis(minutes));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Picks the shard holding a token
+     *
+     * @param token the session token
+     * @return the shard map
+     */
+    private Map<String, Entry> shard(String token)
+    {
+        int h = token.hashCode();
+        return shards.get((h ^ (h >>> 16)) & (SHARD_COUNT - 1));
+    }
+
+    /**
+     * Puts an entry in the wheel slot of the first tick at or after its deadline
+     *
+     * @param entry the entry to schedule
+     */
+    private void schedule(Entry entry)
+    {
+        long deadline = entry.lastAccess + idleTimeoutMillis;
+        long tick = (deadline + tickMillis - 1) / tickMillis;
+        wheel.get((int) (tick & (WHEEL_SIZE - 1))).add(entry);
+    }
+
+    /**
+     * Creates a new session for a user
+     *
+     * @param user the user who logged in
+     * @return the new session
+     */
+    public Session create(User user)
+    {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        long now = System.currentTimeMillis();
+        User graphUser = Graph.getInstance().getUserByKey(user.getUserID());
+        Entry entry = new Entry(new Session(token, user.getUserID(), user.getUserName(), now, graphUser), now);
+        shard(token).put(token, entry);
+        schedule(entry);
+        return entry.session;
+    }
+
+    /**
+     * Gets a live session by token and marks it as used
+     *
+     * @param token the session token
+     * @return the session, or null if the token is unknown or the session has expired
+     */
+    public Session get(String token)
+    {
+        if (token == null)
+        {
+            return null;
+        }
+        Map<String, Entry> shard = shard(token);
+        Entry entry = shard.get(token);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        long lastAccess = entry.lastAccess;
+        if (now - lastAccess >= idleTimeoutMillis)
+        {
+            shard.remove(token, entry);
+            return null;
+        }
+        // Only write the shared field once per tick so hot sessions do not contend on it
+        if (now - lastAccess >= tickMillis)
+        {
+            entry.lastAccess = now;
+        }
+        return entry.session;
+    }
+
+    /**
+     * Checks whether a session is still live, marking it as used
+     *
+     * @param session the session to check, may be null
+     * @return true if the session exists and has not expired
+     */
+    public boolean isValid(Session session)
+    {
+        return session != null && get(session.getToken()) == session;
+    }
+
+    /**
+     * Ends a session
+     *
+     * @param token the session token
+     * @return true if a session was removed
+     */
+    public boolean invalidate(String token)
+    {
+        return token != null && shard(token).remove(token) != null;
+    }
+
+    /**
+     * Ends every session of a user
+     *
+     * @param userID the ID of the user
+     * @return the number of sessions removed
+     */
+    public int invalidateUser(int userID)
+    {
+        int removed = 0;
+        for (Map<String, Entry> shard : shards)
+        {
+            Iterator<Entry> it = shard.values().iterator();
+            while (it.hasNext())
+            {
+                if (it.next().session.getUserID() == userID)
+                {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the number of sessions in the store, including idle ones not yet evicted
+     *
+     * @return the number of sessions
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Map<String, Entry> shard : shards)
+        {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Visits the wheel slots of every tick up to now, evicting idle sessions and
+     * rescheduling the ones that were used since they were placed
+     */
+    private void advance()
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            long currentTick = now / tickMillis;
+            List<Entry> reschedule = new ArrayList<>();
+            // Never visit a slot twice in one pass, even after a long pause
+            long firstTick = Math.max(processedTick + 1, currentTick - WHEEL_SIZE + 1);
+            for (long tick = firstTick; tick <= currentTick; tick++)
+            {
+                Iterator<Entry> it = wheel.get((int) (tick & (WHEEL_SIZE - 1))).iterator();
+                while (it.hasNext())
+                {
+                    Entry entry = it.next();
+                    it.remove();
+                    Map<String, Entry> shard = shard(entry.session.getToken());
+                    if (shard.get(entry.session.getToken()) != entry)
+                    {
+                        continue; // Already logged out
+                    }
+                    if (now - entry.lastAccess >= idleTimeoutMillis)
+                    {
+                        shard.remove(entry.session.getToken(), entry);
+                    }
+                    else
+                    {
+                        reschedule.add(entry);
+                    }
+                }
+            }
+            processedTick = currentTick;
+            for (Entry entry : reschedule)
+            {
+                schedule(entry);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            System.err.println("Session expiry failed: " + e.getMessage());
+        }
+    }
+}
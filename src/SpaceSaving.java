@@ -0,0 +1,320 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SpaceSaving finds the most frequent int keys of a stream with a fixed number of counters.
+ * A key that is already monitored has its counter increased; a new key takes over the counter
+ * with the smallest count, inheriting that count as its possible overcount. Every key whose
+ * true count exceeds total / capacity is guaranteed to be monitored. The counters sit in a
+ * min-heap so each update costs O(log capacity), and an IntIntMap finds a key's counter.
+ * Summaries merge with the mergeable-summaries rule: counts of shared keys add up, a key
+ * missing from a full summary is charged that summary's minimum, and the largest counters
+ * are kept. Summaries can be written to and read from a stream.
+ * Not thread-safe; callers synchronize.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class SpaceSaving
+{
+    /** Returned by offer when no key was evicted */
+    public static final int NO_EVICTION = Integer.MIN_VALUE;
+
+    private final int capacity;         // Number of counters
+    private final IntIntMap slotsByKey; // Monitored key to slot
+    private final int[] keys;           // Key per slot
+    private final long[] counts;        // Estimated count per slot
+    private final long[] errors;        // Possible overcount per slot
+    private final int[] heap;           // Min-heap of slots by count
+    private final int[] heapPositions;  // Heap position of each slot
+    private int size;                   // Slots in use
+    private long total;                 // Sum of every count offered
+
+    /**
+     * Creates an empty summary
+     *
+     * @param capacity the number of keys monitored
+     */
+    public SpaceSaving(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slotsByKey = new IntIntMap(capacity);
+        this.keys = new int[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+    }
+
+    /**
+     * Counts occurrences of a key
+     *
+     * @param key the key, must not be NO_EVICTION
+     * @param count the number of occurrences, must be positive
+     * @return the key that lost its counter to make room, or NO_EVICTION
+     */
+    public int offer(int key, long count)
+    {
+        total += count;
+        int slot = slotsByKey.get(key);
+        if (slot >= 0)
+        {
+            counts[slot] += count;
+            siftDown(heapPositions[slot]);
+            return NO_EVICTION;
+        }
+        if (size < capacity)
+        {
+            insert(key, count, 0);
+            return NO_EVICTION;
+        }
+
+        // Replace the key with the smallest count
+        slot = heap[0];
+        int evicted = keys[slot];
+        slotsByKey.remove(evicted);
+        errors[slot] = counts[slot];
+        counts[slot] += count;
+        keys[slot] = key;
+        slotsByKey.put(key, slot);
+        siftDown(0);
+        return evicted;
+    }
+
+    /**
+     * Checks whether a key currently has a counter
+     *
+     * @param key the key
+     * @return true if the key is monitored
+     */
+    public boolean isMonitored(int key)
+    {
+        return slotsByKey.get(key) >= 0;
+    }
+
+    /**
+     * Gets the possible overcount of a monitored key; 0 means it has been monitored since
+     * its first occurrence and its count is exact
+     *
+     * @param key the key
+     * @return the error bound, or -1 if the key is not monitored
+     */
+    public long getError(int key)
+    {
+        int slot = slotsByKey.get(key);
+        return slot < 0 ? -1 : errors[slot];
+    }
+
+    /**
+     * Gets the monitored keys with the largest counts
+     *
+     * @param limit the maximum number of keys
+     * @return the keys, largest count first
+     */
+    public List<HeavyHitter> top(int limit)
+    {
+        List<HeavyHitter> hitters = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++)
+        {
+            hitters.add(new HeavyHitter(keys[slot], counts[slot], errors[slot]));
+        }
+        hitters.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed()
+                .thenComparingInt(HeavyHitter::getKey));
+        return hitters.size() > limit ? new ArrayList<>(hitters.subList(0, limit)) : hitters;
+    }
+
+    /**
+     * Gets the sum of every count offered
+     *
+     * @return the total count
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Gets the number of counters
+     *
+     * @return the capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Combines another summary into this one
+     *
+     * @param other a summary of another part of the stream, of any capacity
+     */
+    public void merge(SpaceSaving other)
+    {
+        long ownMinimum = size == capacity ? counts[heap[0]] : 0;
+        long otherMinimum = other.size == other.capacity ? other.counts[other.heap[0]] : 0;
+
+        List<HeavyHitter> combined = new ArrayList<>(size + other.size);
+        for (int slot = 0; slot < size; slot++)
+        {
+            int otherSlot = other.slotsByKey.get(keys[slot]);
+            long otherCount = otherSlot >= 0 ? other.counts[otherSlot] : otherMinimum;
+            long otherError = otherSlot >= 0 ? other.errors[otherSlot] : otherMinimum;
+            combined.add(new HeavyHitter(keys[slot], counts[slot] + otherCount, errors[slot] + otherError));
+        }
+        for (int slot = 0; slot < other.size; slot++)
+        {
+            if (slotsByKey.get(other.keys[slot]) < 0)
+            {
+                combined.add(new HeavyHitter(other.keys[slot], other.counts[slot] + ownMinimum,
+                                             other.errors[slot] + ownMinimum));
+            }
+        }
+        combined.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed()
+                .thenComparingInt(HeavyHitter::getKey));
+
+        long mergedTotal = total + other.total;
+        clear();
+        for (int i = 0; i < combined.size() && i < capacity; i++)
+        {
+            HeavyHitter hitter = combined.get(i);
+            insert(hitter.getKey(), hitter.getCount(), hitter.getError());
+        }
+        total = mergedTotal;
+    }
+
+    /**
+     * Writes the summary to a stream
+     *
+     * @param out the stream
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(capacity);
+        out.writeInt(size);
+        out.writeLong(total);
+        for (int slot = 0; slot < size; slot++)
+        {
+            out.writeInt(keys[slot]);
+            out.writeLong(counts[slot]);
+            out.writeLong(errors[slot]);
+        }
+    }
+
+    /**
+     * Reads a summary written by writeTo
+     *
+     * @param in the stream
+     * @return the summary
+     * @throws IOException if reading fails or the data is not a summary
+     */
+    public static SpaceSaving readFrom(DataInput in) throws IOException
+    {
+        int capacity = in.readInt();
+        int size = in.readInt();
+        if (capacity < 1 || size < 0 || size > capacity)
+        {
+            throw new IOException("Corrupt Space-Saving summary");
+        }
+        SpaceSaving summary = new SpaceSaving(capacity);
+        long total = in.readLong();
+        for (int i = 0; i < size; i++)
+        {
+            summary.insert(in.readInt(), in.readLong(), in.readLong());
+        }
+        summary.total = total;
+        return summary;
+    }
+
+    /**
+     * Adds a counter for a key that is not monitored, while there is a free slot
+     *
+     * @param key the key
+     * @param count the estimated count
+     * @param error the possible overcount
+     */
+    private void insert(int key, long count, long error)
+    {
+        int slot = size;
+        keys[slot] = key;
+        counts[slot] = count;
+        errors[slot] = error;
+        slotsByKey.put(key, slot);
+        heap[size] = slot;
+        heapPositions[slot] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes every counter
+     */
+    private void clear()
+    {
+        slotsByKey.clear();
+        Arrays.fill(counts, 0);
+        Arrays.fill(errors, 0);
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * Moves a heap entry towards the root while its count is below its parent's
+     *
+     * @param position the heap position
+     */
+    private void siftUp(int position)
+    {
+        int slot = heap[position];
+        while (position > 0)
+        {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot])
+            {
+                break;
+            }
+            heap[position] = heap[parent];
+            heapPositions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * Moves a heap entry towards the leaves while its count is above a child's
+     *
+     * @param position the heap position
+     */
+    private void siftDown(int position)
+    {
+        int slot = heap[position];
+        while (true)
+        {
+            int child = 2 * position + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]])
+            {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[slot])
+            {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+}
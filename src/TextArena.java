@@ -0,0 +1,116 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TextArena stores strings as UTF-8 bytes in large direct buffers outside the Java heap.
+ * Strings are appended and addressed by a long offset, so millions of texts cost no object
+ * headers and no garbage-collector work. Space is never reused: replacing a text appends
+ * the new bytes and the old ones are only counted as garbage.
+ * Not thread-safe; callers synchronize.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class TextArena
+{
+    private static final int CHUNK_BYTES = 16 * 1024 * 1024; // Size of each direct buffer
+
+    private final List<ByteBuffer> chunks;  // Direct buffers, filled in order
+    private int position;                   // Next free byte in the last chunk
+    private long usedBytes;                 // Bytes of all appended texts
+    private long garbageBytes;              // Bytes of texts that were replaced or removed
+
+    /**
+     * Creates an empty arena; no memory is reserved until the first append
+     */
+    public TextArena()
+    {
+        this.chunks = new ArrayList<>();
+        this.position = CHUNK_BYTES;
+    }
+
+    /**
+     * Appends the UTF-8 bytes of a string
+     *
+     * @param bytes the UTF-8 encoded text
+     * @return the offset of the stored bytes
+     * @throws IllegalArgumentException if the text is larger than one chunk
+     */
+    public long append(byte[] bytes)
+    {
+        if (bytes.length > CHUNK_BYTES)
+        {
+            throw new IllegalArgumentException("Text of " + bytes.length + " bytes does not fit in the arena");
+        }
+        // A text never spans two chunks
+        if (CHUNK_BYTES - position < bytes.length)
+        {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_BYTES));
+            position = 0;
+        }
+        ByteBuffer target = chunks.get(chunks.size() - 1).duplicate();
+        target.position(position);
+        target.put(bytes);
+
+        long offset = (long) (chunks.size() - 1) * CHUNK_BYTES + position;
+        position += bytes.length;
+        usedBytes += bytes.length;
+        return offset;
+    }
+
+    /**
+     * Reads a string back
+     *
+     * @param offset the offset returned by append
+     * @param length the number of bytes appended
+     * @return the string
+     */
+    public String read(long offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = chunks.get((int) (offset / CHUNK_BYTES)).duplicate();
+        source.position((int) (offset % CHUNK_BYTES));
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records that a stored text is no longer referenced
+     *
+     * @param length the UTF-8 length of the text
+     */
+    public void release(int length)
+    {
+        garbageBytes += length;
+    }
+
+    /**
+     * Gets the bytes of all texts appended so far, including replaced ones
+     *
+     * @return the used bytes
+     */
+    public long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the bytes of texts that were replaced or removed
+     *
+     * @return the garbage bytes
+     */
+    public long getGarbageBytes()
+    {
+        return garbageBytes;
+    }
+
+    /**
+     * Gets the bytes of direct memory reserved by the arena
+     *
+     * @return the reserved bytes
+     */
+    public long getReservedBytes()
+    {
+        return (long) chunks.size() * CHUNK_BYTES;
+    }
+}
@@ -0,0 +1,320 @@
+import java.util.List;
+
+/**
+ * TrendingEngine tracks what is hot right now: movies, reviews and reviewers ranked by
+ * recent activity. Review publications, likes and follows arrive through ReviewEvents and
+ * UserEvents and add weight to exponentially time-decayed scores, so activity from one
+ * half-life ago counts half as much as activity now. Each ranking keeps its top entries in a
+ * heap that is updated in O(log K) per event, and the number of reviews, likes and follows in
+ * the last hour, day and week is counted in per-minute buckets. Reading a trending list only
+ * sorts the K heap entries, so it is served from memory in microseconds.
+ *
+ * On first use the engine replays the last week of reviews from the ReviewStore, counting each
+ * review's likes at the time of the review, so the lists are not empty after a restart.
+ * Configured with -Dtrending.halfLifeHours (default 24) and -Dtrending.size (default 100).
+ * Implements the Singleton pattern so every event source feeds one engine.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class TrendingEngine implements ReviewEventListener, UserEventListener
+{
+    private static final double REVIEW_WEIGHT = 3;  // Movie score added by a new review
+    private static final double LIKE_WEIGHT = 1;    // Movie and review score added by a like
+    private static final double FOLLOW_WEIGHT = 1;  // Reviewer score added by a new follower
+    private static final int DEFAULT_HALF_LIFE_HOURS = 24;
+    private static final int DEFAULT_SIZE = 100;
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    private static TrendingEngine instance;         // Singleton instance
+
+    /**
+     * Time windows for activity counts
+     */
+    public enum Window
+    {
+        HOUR(60),
+        DAY(24 * 60),
+        WEEK(7 * 24 * 60);
+
+        private final int minutes;  // Length of the window
+
+        Window(int minutes)
+        {
+            this.minutes = minutes;
+        }
+
+        /**
+         * Get the length of the window
+         * @return the length in minutes
+         */
+        public int getMinutes()
+        {
+            return minutes;
+        }
+    }
+
+    private final DecayingScores movies;        // Score per movie ID
+    private final DecayingScores reviews;       // Score per review ID
+    private final DecayingScores reviewers;     // Score per user ID, from new followers
+    private final MinuteCounter reviewCounts;   // Reviews published per minute
+    private final MinuteCounter likeCounts;     // Likes per minute
+    private final MinuteCounter followCounts;   // Follows per minute
+
+    /**
+     * Constructs an empty engine
+     *
+     * @param halfLifeMillis the time after which a score has halved
+     * @param size the number of entries kept in each trending list
+     * @param now the current time in epoch milliseconds
+     */
+    TrendingEngine(long halfLifeMillis, int size, long now)
+    {
+        this.movies = new DecayingScores(halfLifeMillis, size, now);
+        this.reviews = new DecayingScores(halfLifeMillis, size, now);
+        this.reviewers = new DecayingScores(halfLifeMillis, size, now);
+        this.reviewCounts = new MinuteCounter(Window.WEEK.getMinutes());
+        this.likeCounts = new MinuteCounter(Window.WEEK.getMinutes());
+        this.followCounts = new MinuteCounter(Window.WEEK.getMinutes());
+    }
+
+    /**
+     * Gets the singleton instance of TrendingEngine, registering it for events and replaying
+     * the last week of reviews on first use
+     *
+     * @return the singleton instance
+     */
+    public static synchronized TrendingEngine getInstance()
+    {
+        if (instance == null)
+        {
+            long halfLifeHours = Long.getLong("trending.halfLifeHours", DEFAULT_HALF_LIFE_HOURS);
+            int size = Integer.getInteger("trending.size", DEFAULT_SIZE);
+            TrendingEngine engine = new TrendingEngine(Math.max(1, halfLifeHours) * HOUR_MILLIS,
+                                                       Math.max(1, size), System.currentTimeMillis());
+            ReviewStore store = ReviewStore.getInstance();
+            ReviewEvents.getInstance().addListener(engine);
+            UserEvents.getInstance().addListener(engine);
+            engine.replay(store, System.currentTimeMillis());
+            instance = engine;
+        }
+        return instance;
+    }
+
+    /**
+     * Adds the reviews written in the last week to the scores and counts
+     *
+     * @param store the review store
+     * @param now the current time in epoch milliseconds
+     */
+    private synchronized void replay(ReviewStore store, long now)
+    {
+        long since = now - Window.WEEK.getMinutes() * 60L * 1000;
+        store.readLock().lock();
+        try
+        {
+            int[] reviewIds = store.reviewIds();
+            int[] movieIds = store.movieIds();
+            long[] timestamps = store.timestamps();
+            int[] likes = store.likeCounts();
+            byte[] live = store.liveFlags();
+            for (int row = 0; row < store.getRowCount(); row++)
+            {
+                long time = timestamps[row];
+                if (live[row] == 0 || time < since || time > now)
+                {
+                    continue;
+                }
+                movies.add(movieIds[row], REVIEW_WEIGHT + likes[row] * LIKE_WEIGHT, time);
+                reviews.add(reviewIds[row], likes[row] * LIKE_WEIGHT, time);
+                reviewCounts.record(time);
+            }
+        }
+        finally
+        {
+            store.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the movies with the most recent activity
+     *
+     * @param limit the maximum number of movies
+     * @return movie IDs with their scores, highest first
+     */
+    public synchronized List<TrendingEntry> trendingMovies(int limit)
+    {
+        return movies.top(limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the reviews with the most recent likes
+     *
+     * @param limit the maximum number of reviews
+     * @return review IDs with their scores, highest first
+     */
+    public synchronized List<TrendingEntry> trendingReviews(int limit)
+    {
+        return reviews.top(limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the users gaining followers fastest
+     *
+     * @param limit the maximum number of users
+     * @return user IDs with their scores, highest first
+     */
+    public synchronized List<TrendingEntry> trendingReviewers(int limit)
+    {
+        return reviewers.top(limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the current score of a movie
+     *
+     * @param movieID the movie ID
+     * @return the decayed score, 0 if the movie had no recent activity
+     */
+    public synchronized double getMovieScore(int movieID)
+    {
+        return movies.score(movieID, System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the reviews published in a window ending now
+     *
+     * @param window the window
+     * @return the number of reviews
+     */
+    public synchronized long getReviewCount(Window window)
+    {
+        return reviewCounts.count(window.getMinutes(), System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the likes in a window ending now
+     *
+     * @param window the window
+     * @return the number of likes
+     */
+    public synchronized long getLikeCount(Window window)
+    {
+        return likeCounts.count(window.getMinutes(), System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the follows in a window ending now
+     *
+     * @param window the window
+     * @return the number of follows
+     */
+    public synchronized long getFollowCount(Window window)
+    {
+        return followCounts.count(window.getMinutes(), System.currentTimeMillis());
+    }
+
+    /**
+     * Scores a new review for its movie and records it
+     *
+     * @param review the new review
+     */
+    @Override
+    public synchronized void onReviewPublished(Review review)
+    {
+        long now = System.currentTimeMillis();
+        movies.add(review.getMovieID(), REVIEW_WEIGHT, now);
+        reviewCounts.record(now);
+    }
+
+    /**
+     * Edits do not count as activity
+     *
+     * @param review the updated review
+     */
+    @Override
+    public void onReviewUpdated(Review review)
+    {
+    }
+
+    /**
+     * Drops a deleted review from the review ranking; its movie keeps the activity
+     *
+     * @param reviewID the ID of the deleted review
+     */
+    @Override
+    public synchronized void onReviewDeleted(int reviewID)
+    {
+        reviews.remove(reviewID);
+    }
+
+    /**
+     * Scores a like for the review and its movie and records it
+     *
+     * @param reviewID the ID of the liked review
+     * @param userID the ID of the user who liked it
+     */
+    @Override
+    public void onReviewLiked(int reviewID, int userID)
+    {
+        int movieID = ReviewStore.getInstance().getMovieID(reviewID);
+        long now = System.currentTimeMillis();
+        synchronized (this)
+        {
+            reviews.add(reviewID, LIKE_WEIGHT, now);
+            if (movieID >= 0)
+            {
+                movies.add(movieID, LIKE_WEIGHT, now);
+            }
+            likeCounts.record(now);
+        }
+    }
+
+    /**
+     * Moves the scores of merged movies to the movies they were merged into
+     *
+     * @param merged maps each merged-away movie ID to the ID of the movie that kept its reviews
+     */
+    @Override
+    public synchronized void onMoviesMerged(IntIntMap merged)
+    {
+        long now = System.currentTimeMillis();
+        merged.forEach((duplicateID, movieID) ->
+        {
+            movies.add(movieID, movies.score(duplicateID, now), now);
+            movies.remove(duplicateID);
+        });
+    }
+
+    /**
+     * Scores a new follower for the followed user and records it
+     *
+     * @param followerID the ID of the user who followed
+     * @param targetID the ID of the user being followed
+     */
+    @Override
+    public synchronized void onUserFollowed(int followerID, int targetID)
+    {
+        long now = System.currentTimeMillis();
+        reviewers.add(targetID, FOLLOW_WEIGHT, now);
+        followCounts.record(now);
+    }
+
+    /**
+     * New users have no activity yet
+     *
+     * @param user the newly registered user
+     */
+    @Override
+    public void onUserRegistered(User user)
+    {
+    }
+
+    /**
+     * Genre changes do not count as activity
+     *
+     * @param userID the ID of the user
+     * @param genres the user's new favorite genres
+     */
+    @Override
+    public void onUserGenresChanged(int userID, List<Genre.GenreType> genres)
+    {
+    }
+}
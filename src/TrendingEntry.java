@@ -0,0 +1,40 @@
+/**
+ * TrendingEntry is one row of a trending list: the ID of a movie, review or user
+ * and its time-decayed activity score at the moment the list was read.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class TrendingEntry
+{
+    private final int id;           // Movie, review or user ID
+    private final double score;     // Decayed score when the list was read
+
+    /**
+     * Constructs a trending entry
+     *
+     * @param id the movie, review or user ID
+     * @param score the decayed score
+     */
+    public TrendingEntry(int id, double score)
+    {
+        this.id = id;
+        this.score = score;
+    }
+
+    /**
+     * Get the movie, review or user ID
+     * @return the ID
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Get the decayed score
+     * @return the score
+     */
+    public double getScore()
+    {
+        return score;
+    }
+}
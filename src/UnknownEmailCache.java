@@ -0,0 +1,102 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UnknownEmailCache remembers for a short time which login emails have no account.
+ * Repeated login attempts for those emails, as in a credential-stuffing burst, are
+ * rejected from memory without touching the database. Entries expire after
+ * -Dauth.unknownEmailTtlSeconds (default 60) and an email is dropped from the cache
+ * as soon as an account is registered with it.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class UnknownEmailCache implements UserEventListener
+{
+    private static final int MAX_ENTRIES = 100000;  // Upper bound on remembered emails
+
+    private final Map<String, Long> expiresAt;      // Email to expiry time in milliseconds
+    private final long ttlMillis;                   // How long an email is remembered
+
+    /**
+     * Constructs an empty cache and subscribes it to user events
+     */
+    public UnknownEmailCache()
+    {
+        this.expiresAt = new ConcurrentHashMap<>();
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Long.getLong("auth.unknownEmailTtlSeconds", 60));
+        UserEvents.getInstance().addListener(this);
+    }
+
+    /**
+     * Checks whether an email is known to have no account
+     *
+     * @param email the email to check
+     * @return true if the email was recently looked up and not found
+     */
+    public boolean contains(String email)
+    {
+        Long expiry = expiresAt.get(email);
+        if (expiry == null)
+        {
+            return false;
+        }
+        if (expiry <= System.currentTimeMillis())
+        {
+            expiresAt.remove(email, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers that an email has no account
+     *
+     * @param email the email that was not found
+     */
+    public void add(String email)
+    {
+        long now = System.currentTimeMillis();
+        if (expiresAt.size() >= MAX_ENTRIES)
+        {
+            evictExpired(now);
+            if (expiresAt.size() >= MAX_ENTRIES)
+            {
+                return; // Still full of live entries; the database stays the fallback
+            }
+        }
+        expiresAt.put(email, now + ttlMillis);
+    }
+
+    /**
+     * Removes every expired entry
+     *
+     * @param now the current time in milliseconds
+     */
+    private void evictExpired(long now)
+    {
+        Iterator<Long> it = expiresAt.values().iterator();
+        while (it.hasNext())
+        {
+            if (it.next() <= now)
+            {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void onUserRegistered(User user)
+    {
+        if (user.getEmail() != null)
+        {
+            expiresAt.remove(user.getEmail());
+        }
+    }
+
+    @Override
+    public void onUserGenresChanged(int userID, List<Genre.GenreType> genres)
+    {
+    }
+}
@@ -53,6 +53,25 @@ public class User
         return username;
     }
 
+    /**
+     * Get the user's email
+     * @return the email
+     */
+    public String getEmail()
+    {
+        return email;
+    }
+
+    /**
+     * Get the user's stored password, a salted hash for accounts created or
+     * logged into since hashing was introduced
+     * @return the stored password
+     */
+    public String getPassword()
+    {
+        return password;
+    }
+
     /**
      * Get the list of the user's favorite genres
      * @return the list of favorite genres
@@ -63,24 +82,34 @@ public class User
     }
 
     /**
-     * Checks if a username is already taken in the database
+     * Replaces the list of the user's favorite genres in memory only
+     * @param genres the new list of favorite genres
+     */
+    public void setFavoriteGenres(ArrayList<Genre.GenreType> genres)
+    {
+        this.genres = genres != null ? genres : new ArrayList<>();
+    }
+
+    /**
+     * Checks if a username is already taken.
+     * Answered from memory when the name is definitely free, otherwise by an indexed query.
      * @param username the username to check
      * @return true if the username is taken, false otherwise
      */
     public static boolean isUsernameTaken(String username)
     {
-        try
-        {
-            // Query to check if username exists
-            String query = "SELECT 1 FROM users WHERE username = '" + username + "'";
-            ResultSet resultSet = Database.getInstance().executeQuery(query);
-            return resultSet.next(); // returns true if username exists
-        }
-        catch (SQLException e)
-        {
-            System.err.println("Failed to check username: " + e.getMessage());
-            return true;
-        }
+        return AccountDirectory.getInstance().isUsernameTaken(username);
+    }
+
+    /**
+     * Checks if an email is already used by an account.
+     * Answered from memory when the email is definitely free, otherwise by an indexed query.
+     * @param email the email to check
+     * @return true if the email is taken, false otherwise
+     */
+    public static boolean isEmailTaken(String email)
+    {
+        return AccountDirectory.getInstance().isEmailTaken(email);
     }
 
     /**
@@ -123,16 +152,17 @@ public class User
 
         try
         {
-            Database.getInstance().executeUpdate(query);
+            Database.getInstance().executeUpdate("user.insert", query);
 
             // Save each genre
             for (Genre.GenreType genre : this.genres)
             {
                 String genreQuery = "INSERT INTO UserGenres (userID, genre) VALUES (" + 
                                     this.userID + ", '" + genre.name() + "')";
-                Database.getInstance().executeUpdate(genreQuery);
+                Database.getInstance().executeUpdate("user.insertGenre", genreQuery);
             }
             System.out.println("User and genres saved to database.");
+            UserEvents.getInstance().userRegistered(this);
         }
         catch (SQLException e)
         {
@@ -141,44 +171,72 @@ public class User
     }
 
     /**
-     * Gets the next available userID from the database
+     * Replaces the user's favorite genres in the database and in this object.
+     * Listeners are notified so in-memory copies of the user stay up to date.
      * 
-     * @return the next available userID
+     * @param newGenres the new list of favorite genres
+     * @return true if the genres were saved, false otherwise
      */
-    public static int getNextUserID()
+    public boolean updateGenres(ArrayList<Genre.GenreType> newGenres)
     {
-        // Query to find the maximum userID
-        String query = "SELECT MAX(userID) AS max_id FROM users";
         try
         {
-            ResultSet result = Database.getInstance().executeQuery(query);
-            if (result.next())
+            Database.getInstance().executeUpdate("user.deleteGenres", "DELETE FROM UserGenres WHERE userID = " + this.userID);
+            for (Genre.GenreType genre : newGenres)
             {
-                return result.getInt("max_id") + 1;
+                String genreQuery = "INSERT INTO UserGenres (userID, genre) VALUES (" + 
+                                    this.userID + ", '" + genre.name() + "')";
+                Database.getInstance().executeUpdate("user.insertGenre", genreQuery);
             }
         }
         catch (SQLException e)
         {
-            System.err.println("Failed to get max user ID: " + e.getMessage());
+            System.err.println("Genre update failed: " + e.getMessage());
+            return false;
         }
-        return 1;
+
+        setFavoriteGenres(new ArrayList<>(newGenres));
+        UserEvents.getInstance().userGenresChanged(this.userID, this.genres);
+        return true;
     }
 
     /**
-     * Gets the user's most recent review from the database
+     * Reserves the next available userID.
+     * IDs are reserved in blocks from a persistent sequence, so concurrent registrations
+     * get distinct IDs without a query per signup.
+     * 
+     * @return the next available userID
+     */
+    public static int getNextUserID()
+    {
+        return AccountDirectory.getInstance().nextUserID();
+    }
+
+    /**
+     * Gets the user's most recent review, from the LatestReviewCache when possible
+     * and otherwise from the database
      * 
      * @return the latest Review object, or null if no reviews exist
      */
     public Review getLatestReview()
     {
+        LatestReviewCache cache = LatestReviewCache.getInstance();
+        Review cached = cache.get(this.userID);
+        if (cached != null)
+        {
+            return cached == LatestReviewCache.NONE ? null : cached;
+        }
+        long stamp = cache.readStamp();
+
         // Query to get the most recent review by this user
         String query = "SELECT * FROM Reviews WHERE userID = " + this.userID + " ORDER BY reviewDate DESC LIMIT 1";
         try
         {
-            ResultSet resultSet = Database.getInstance().executeQuery(query);
+            ResultSet resultSet = Database.getInstance().executeQuery("user.latestReview", query);
+            Review latest = null;
             if (resultSet.next())
             {
-                return new Review(
+                latest = new Review(
                         resultSet.getInt("reviewID"),
                         resultSet.getString("content"), 
                         resultSet.getInt("rating"),
@@ -188,6 +246,9 @@ public class User
                         resultSet.getInt("likeCount")
                 );
             }
+            resultSet.close();
+            cache.put(this.userID, latest, stamp);
+            return latest;
         }
         catch (SQLException e)
         {
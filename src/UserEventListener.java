@@ -0,0 +1,47 @@
+import java.util.List;
+
+/**
+ * UserEventListener is notified when user accounts change in the database.
+ * In-memory structures such as the Graph implement it to stay in sync
+ * without reloading everything from the database.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public interface UserEventListener
+{
+    /**
+     * Called after a new user has been saved to the database
+     *
+     * @param user the newly registered user
+     */
+    void onUserRegistered(User user);
+
+    /**
+     * Called after a user's favorite genres have been replaced in the database
+     *
+     * @param userID the ID of the user
+     * @param genres the user's new favorite genres
+     */
+    void onUserGenresChanged(int userID, List<Genre.GenreType> genres);
+
+    /**
+     * Called after one user started following another.
+     * Does nothing by default, since most listeners only track accounts.
+     *
+     * @param followerID the ID of the user who followed
+     * @param targetID the ID of the user being followed
+     */
+    default void onUserFollowed(int followerID, int targetID)
+    {
+    }
+
+    /**
+     * Called after one user stopped following another.
+     * Does nothing by default, since most listeners only track accounts.
+     *
+     * @param followerID the ID of the user who unfollowed
+     * @param targetID the ID of the user no longer followed
+     */
+    default void onUserUnfollowed(int followerID, int targetID)
+    {
+    }
+}
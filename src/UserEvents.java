@@ -0,0 +1,119 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * UserEvents publishes user account changes to registered listeners.
+ * User fires these events after its database writes succeed.
+ * Listeners run synchronously, before the write returns; each event is then also published
+ * to the DomainEventBus for subscribers that can be updated asynchronously.
+ * Implements the Singleton pattern so every part of the application shares one set of listeners.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class UserEvents
+{
+    private static UserEvents instance; // Singleton instance
+
+    // Registered listeners, safe to iterate while listeners are added or removed
+    private final List<UserEventListener> listeners;
+
+    /**
+     * Private constructor for Singleton pattern
+     */
+    private UserEvents()
+    {
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Gets the singleton instance of UserEvents
+     *
+     * @return the singleton instance
+     */
+    public static synchronized UserEvents getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new UserEvents();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a listener for user events
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(UserEventListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(UserEventListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies listeners that a user has registered
+     *
+     * @param user the new user
+     */
+    public void userRegistered(User user)
+    {
+        for (UserEventListener listener : listeners)
+        {
+            listener.onUserRegistered(user);
+        }
+        DomainEventBus.getInstance().userRegistered(user);
+    }
+
+    /**
+     * Notifies listeners that a user's favorite genres changed
+     *
+     * @param userID the ID of the user
+     * @param genres the new favorite genres
+     */
+    public void userGenresChanged(int userID, List<Genre.GenreType> genres)
+    {
+        for (UserEventListener listener : listeners)
+        {
+            listener.onUserGenresChanged(userID, genres);
+        }
+        DomainEventBus.getInstance().userGenresChanged(userID);
+    }
+
+    /**
+     * Notifies listeners that one user started following another
+     *
+     * @param followerID the ID of the user who followed
+     * @param targetID the ID of the user being followed
+     */
+    public void userFollowed(int followerID, int targetID)
+    {
+        for (UserEventListener listener : listeners)
+        {
+            listener.onUserFollowed(followerID, targetID);
+        }
+        DomainEventBus.getInstance().userFollowed(followerID, targetID);
+    }
+
+    /**
+     * Notifies listeners that one user stopped following another
+     *
+     * @param followerID the ID of the user who unfollowed
+     * @param targetID the ID of the user no longer followed
+     */
+    public void userUnfollowed(int followerID, int targetID)
+    {
+        for (UserEventListener listener : listeners)
+        {
+            listener.onUserUnfollowed(followerID, targetID);
+        }
+        DomainEventBus.getInstance().userUnfollowed(followerID, targetID);
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.UncheckedIOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -5,6 +6,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * UserGraphManager handles all social network operations between users including following,
@@ -17,6 +19,18 @@ public class UserGraphManager
     // Static instance of the class for Singleton pattern
     private static UserGraphManager instance;
 
+    // Default number of follow hops searched when looking for a connection
+    private static final int DEFAULT_MAX_SEPARATION = 6;
+
+    // Last graph snapshot, replaced by the graph-snapshot job when the graph changes
+    private volatile GraphSnapshot snapshot;
+
+    // Path finders over the current snapshot that no search is using; each search borrows one
+    private final ConcurrentLinkedQueue<SeparationFinder> idleFinders = new ConcurrentLinkedQueue<>();
+
+    // Serializes follows and unfollows so the check, the log append and the graph change are one step
+    private final Object followLock = new Object();
+
     // Private constructor to prevent instantiation
     private UserGraphManager() {
     }
@@ -46,20 +60,22 @@ public class UserGraphManager
      * Allows the current user to follow another user.
      * Handles the user search, profile display, and confirmation process.
      * 
+     * @param session the session of the user who wants to follow
      * @param scanner Scanner object for user input
      */
-    public void followUser(Scanner scanner)
+    public void followUser(Session session, Scanner scanner)
     {
         System.out.print("Enter the username of the user you want to follow: ");
         String username = scanner.nextLine();
     
         User userToFollow = Graph.getInstance().getUserByUsername(username);
-        User currentUser = AuthenticationManager.getInstance().getCurrentUser();
+        User currentUser = session.getUser();
 
         // Check if the user exists
         if (userToFollow == null)
         {
             System.out.println("User not found.");
+            suggestUsernames(username);
             return;
         }
     
@@ -84,8 +100,14 @@ public class UserGraphManager
         if (choice.equals("y"))
         {
             // Add follower relationship
-            Graph.getInstance().addFollower(currentUser, userToFollow);
-            System.out.println("You are now following " + userToFollow.getUserName() + ".");
+            if (follow(currentUser, userToFollow))
+            {
+                System.out.println("You are now following " + userToFollow.getUserName() + ".");
+            }
+            else
+            {
+                System.out.println("Failed to follow " + userToFollow.getUserName() + ".");
+            }
         }
         else
         {
@@ -97,21 +119,23 @@ public class UserGraphManager
      * Allows the current user to unfollow another user.
      * Handles the user search, profile display, and confirmation process.
      * 
+     * @param session the session of the user who wants to unfollow
      * @param scanner Scanner object for user input
      */
-    public void unfollowUser(Scanner scanner)
+    public void unfollowUser(Session session, Scanner scanner)
     {
         System.out.print("Enter the username of the user you want to unfollow: ");
         String username = scanner.nextLine();
         System.out.println();
     
         User userToUnfollow = Graph.getInstance().getUserByUsername(username);
-        User currentUser = AuthenticationManager.getInstance().getCurrentUser();
+        User currentUser = session.getUser();
     
         // Check if the user exists
         if (userToUnfollow == null)
         {
             System.out.println("User not found.");
+            suggestUsernames(username);
             return;
         }
     
@@ -137,7 +161,7 @@ public class UserGraphManager
         if (choice.equals("y"))
         {
             // Remove follower relationship
-            boolean unfollowSuccessful = Graph.getInstance().removeFollower(currentUser, userToUnfollow);
+            boolean unfollowSuccessful = unfollow(currentUser, userToUnfollow);
             
             if (unfollowSuccessful)
             {
@@ -154,13 +178,160 @@ public class UserGraphManager
         }
     }
 
+    /**
+     * Prints usernames that start with the given text, ignoring case.
+     * Helps the user retry a follow or unfollow when the exact username was mistyped.
+     * 
+     * @param prefix the text the user entered
+     */
+    private void suggestUsernames(String prefix)
+    {
+        if (prefix == null || prefix.trim().isEmpty())
+        {
+            return;
+        }
+
+        List<User> suggestions = Graph.getInstance().findUsersByPrefix(prefix.trim(), 5);
+        if (suggestions.isEmpty())
+        {
+            return;
+        }
+
+        System.out.print("Did you mean: ");
+        for (int i = 0; i < suggestions.size(); i++)
+        {
+            System.out.print(suggestions.get(i).getUserName());
+            if (i < suggestions.size() - 1) System.out.print(", ");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Finds a shortest chain of follows from one user to another. The search runs on the last
+     * graph snapshot, which the graph-snapshot job replaces after follows change, so follows
+     * made since then are not seen yet. Only the first call builds a snapshot itself.
+     * Searches run in parallel, each with its own finder's scratch arrays over the shared snapshot.
+     * 
+     * @param from the user the chain starts at
+     * @param to the user the chain ends at
+     * @param maxDepth the maximum number of follow hops to consider
+     * @return the users on the chain including both ends, or an empty list if they are not connected within maxDepth
+     */
+    public List<User> findConnection(User from, User to, int maxDepth)
+    {
+        GraphSnapshot current = snapshot;
+        if (current == null)
+        {
+            refreshGraphSnapshot();
+            current = snapshot;
+        }
+
+        // Reuse an idle finder's arrays unless it was built for an older snapshot
+        SeparationFinder finder = idleFinders.poll();
+        if (finder == null || finder.getSnapshot() != current)
+        {
+            finder = new SeparationFinder(current);
+        }
+        List<Integer> path;
+        try
+        {
+            path = finder.shortestPath(from.getUserID(), to.getUserID(), maxDepth);
+        }
+        finally
+        {
+            if (finder.getSnapshot() == snapshot)
+            {
+                idleFinders.offer(finder);
+            }
+        }
+
+        Graph graph = Graph.getInstance();
+        List<User> chain = new ArrayList<>();
+        for (int userID : path)
+        {
+            User user = graph.getUserByKey(userID);
+            if (user == null)
+            {
+                // The user was removed after the snapshot was taken
+                return new ArrayList<>();
+            }
+            chain.add(user);
+        }
+        return chain;
+    }
+
+    /**
+     * Takes a new graph snapshot for findConnection if the graph has changed, and drops the
+     * finders built for the old one. Called by the graph-snapshot job.
+     */
+    public void refreshGraphSnapshot()
+    {
+        Graph graph = Graph.getInstance();
+        GraphSnapshot current = snapshot;
+        if (current != null && current.getVersion() == graph.getVersion())
+        {
+            return;
+        }
+        GraphSnapshot next = graph.snapshot();
+        synchronized (this)
+        {
+            // Another refresh or the first findConnection may have taken a newer one meanwhile
+            if (snapshot == null || snapshot.getVersion() < next.getVersion())
+            {
+                snapshot = next;
+                idleFinders.clear();
+            }
+        }
+    }
+
+    /**
+     * Asks for a username and shows how the current user is connected to them through follows
+     * 
+     * @param session the session of the user asking
+     * @param scanner Scanner object for user input
+     */
+    public void showConnection(Session session, Scanner scanner)
+    {
+        System.out.print("Enter the username of the user you want to find a connection to: ");
+        String username = scanner.nextLine();
+        System.out.println();
+
+        User target = Graph.getInstance().getUserByUsername(username);
+        User currentUser = session.getUser();
+
+        if (target == null)
+        {
+            System.out.println("User not found.");
+            suggestUsernames(username);
+            return;
+        }
+
+        List<User> chain = findConnection(currentUser, target, DEFAULT_MAX_SEPARATION);
+        if (chain.isEmpty())
+        {
+            System.out.println("No connection to " + target.getUserName() + " within " +
+                               DEFAULT_MAX_SEPARATION + " degrees of separation.");
+            return;
+        }
+
+        System.out.println("Degrees of separation: " + (chain.size() - 1));
+        for (int i = 0; i < chain.size(); i++)
+        {
+            System.out.print(chain.get(i).getUserName());
+            if (i < chain.size() - 1) System.out.print(" -> ");
+        }
+        System.out.println();
+    }
+
     /**
      * Displays a list of the latest reviews made by the people the user follows
      * Shows what the user's network has been reviewing recently
+     * 
+     * @param session the session of the logged-in user
      */
-    public void displayLatestReviews()
+    public void displayLatestReviews(Session session)
     {
-        User currentUser = AuthenticationManager.getInstance().getCurrentUser();
+        User currentUser = session.getUser();
         UserGraphManager.getInstance().printFollowingLatestReviews(currentUser);
     }
 
@@ -170,10 +341,12 @@ public class UserGraphManager
      * 2. Users who are followed by users you follow (friends of friends)
      * 
      * Generates and displays personalized user recommendations
+     * 
+     * @param session the session of the logged-in user
      */
-    public void followRecomendations()
+    public void followRecomendations(Session session)
     {
-        User currentUser = AuthenticationManager.getInstance().getCurrentUser();
+        User currentUser = session == null ? null : session.getUser();
         if (currentUser == null)
         {
             System.out.println("You need to be logged in to see recommendations.");
@@ -282,7 +455,7 @@ public class UserGraphManager
                 "JOIN Movies m ON r.movieID = m.id " +
                 "WHERE l.userID = " + currentUser.getUserID();
                 
-            ResultSet likedGenresRS = Database.getInstance().executeQuery(likedGenresQuery);
+            ResultSet likedGenresRS = Database.getInstance().executeQuery("recommend.likedGenres", likedGenresQuery);
             
             Set<String> likedGenres = new HashSet<>();
             while (likedGenresRS.next())
@@ -359,7 +532,7 @@ public class UserGraphManager
                 "ORDER BY reviewCount DESC " +
                 "LIMIT 5";
                 
-            ResultSet usersRS = Database.getInstance().executeQuery(usersQuery);
+            ResultSet usersRS = Database.getInstance().executeQuery("recommend.usersByGenre", usersQuery);
             
             System.out.println("Finding users who review movies in categories you enjoy...");
             
@@ -434,6 +607,102 @@ public class UserGraphManager
         return new ArrayList<>(result);
     }
 
+    /**
+     * Makes one user follow another without prompting and notifies UserEvents listeners.
+     * The follow is appended to the event log and applied to the UserFollower table before
+     * the graph changes, so the graph never shows a follow the log does not have.
+     * 
+     * @param currentUser the user who wants to follow
+     * @param target the user to follow
+     * @return true if the follow was added, false if the target is the user themselves,
+     *         already followed, or the follow could not be recorded
+     */
+    public boolean follow(User currentUser, User target)
+    {
+        if (currentUser.equals(target))
+        {
+            return false;
+        }
+        Graph graph = Graph.getInstance();
+        synchronized (followLock)
+        {
+            if (graph.isFollowing(currentUser, target)
+                    || !logFollowChange(LogRecord.userFollowed(currentUser.getUserID(), target.getUserID())))
+            {
+                return false;
+            }
+            graph.addFollower(currentUser, target);
+        }
+        UserEvents.getInstance().userFollowed(currentUser.getUserID(), target.getUserID());
+        return true;
+    }
+
+    /**
+     * Makes one user unfollow another without prompting and notifies UserEvents listeners.
+     * The unfollow is appended to the event log and applied to the UserFollower table before
+     * the graph changes.
+     * 
+     * @param currentUser the user who wants to unfollow
+     * @param target the user to unfollow
+     * @return true if the follow was removed, false if it did not exist or the unfollow could not be recorded
+     */
+    public boolean unfollow(User currentUser, User target)
+    {
+        Graph graph = Graph.getInstance();
+        synchronized (followLock)
+        {
+            if (!graph.isFollowing(currentUser, target)
+                    || !logFollowChange(LogRecord.userUnfollowed(currentUser.getUserID(), target.getUserID())))
+            {
+                return false;
+            }
+            graph.removeFollower(currentUser, target);
+        }
+        UserEvents.getInstance().userUnfollowed(currentUser.getUserID(), target.getUserID());
+        return true;
+    }
+
+    /**
+     * Appends a follow or unfollow to the event log and applies it to the database
+     * 
+     * @param record the follow or unfollow record
+     * @return true if the record is in the log, false if it could not be appended
+     */
+    private boolean logFollowChange(LogRecord record)
+    {
+        try
+        {
+            long sequence = EventLog.getInstance().append(record);
+            LogProjection.getInstance().catchUpTo(sequence);
+            return true;
+        }
+        catch (UncheckedIOException e)
+        {
+            System.err.println("Failed to record follow change in the event log: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gets the latest review of every user the specified user is following
+     * 
+     * @param user the user whose followed users' reviews are wanted
+     * @return one review per followed user who has written a review
+     */
+    public List<Review> getFollowingLatestReviews(User user)
+    {
+        List<Review> latestReviews = new ArrayList<>();
+        for (User followedUser : Graph.getInstance().getFollowing(user))
+        {
+            Review latestReview = followedUser.getLatestReview();
+            if (latestReview != null)
+            {
+                latestReviews.add(latestReview);
+            }
+        }
+        return latestReviews;
+    }
+
     /**
      * Displays the latest reviews from users that the specified user is following
      * 
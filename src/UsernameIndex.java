@@ -0,0 +1,131 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * UsernameIndex maps usernames to users for the social graph.
+ * It supports exact (case-sensitive) lookups through a hash map and
+ * case-insensitive prefix lookups through a sorted map of lower-cased names,
+ * which is used for username autocomplete when following or unfollowing users.
+ * Authors: Phakin Dhamsirimongkol, Pon Yimcharoen
+ */
+public class UsernameIndex
+{
+    // Separates the folded name from the original so names differing only in case stay distinct
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    // Exact username to user
+    private final Map<String, User> exact;
+    // Lower-cased username + separator + username to user, kept in sorted order
+    private final TreeMap<String, User> folded;
+
+    /**
+     * Constructs an empty username index
+     */
+    public UsernameIndex()
+    {
+        this.exact = new HashMap<>();
+        this.folded = new TreeMap<>();
+    }
+
+    /**
+     * Builds the sorted key for a username
+     *
+     * @param username the username
+     * @return the lower-cased key used in the sorted map
+     */
+    private static String foldedKey(String username)
+    {
+        return username.toLowerCase(Locale.ROOT) + KEY_SEPARATOR + username;
+    }
+
+    /**
+     * Adds or replaces the user stored under their username
+     *
+     * @param user the user to index
+     */
+    public void put(User user)
+    {
+        String username = user.getUserName();
+        if (username == null)
+        {
+            return;
+        }
+        exact.put(username, user);
+        folded.put(foldedKey(username), user);
+    }
+
+    /**
+     * Removes a username from the index
+     *
+     * @param username the username to remove
+     * @return the removed user, or null if the username was not indexed
+     */
+    public User remove(String username)
+    {
+        if (username == null)
+        {
+            return null;
+        }
+        User removed = exact.remove(username);
+        if (removed != null)
+        {
+            folded.remove(foldedKey(username));
+        }
+        return removed;
+    }
+
+    /**
+     * Gets a user by their exact username
+     *
+     * @param username the username to look up
+     * @return the user if found, null otherwise
+     */
+    public User get(String username)
+    {
+        return username == null ? null : exact.get(username);
+    }
+
+    /**
+     * Finds users whose username starts with the given prefix, ignoring case.
+     * Results are returned in alphabetical order.
+     *
+     * @param prefix the prefix to match
+     * @param limit the maximum number of users to return
+     * @return a list of up to limit matching users
+     */
+    public List<User> findByPrefix(String prefix, int limit)
+    {
+        List<User> matches = new ArrayList<>();
+        if (prefix == null || limit <= 0)
+        {
+            return matches;
+        }
+
+        String from = prefix.toLowerCase(Locale.ROOT);
+        SortedMap<String, User> range = folded.subMap(from, from + Character.MAX_VALUE);
+        for (User user : range.values())
+        {
+            matches.add(user);
+            if (matches.size() >= limit)
+            {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the number of indexed usernames
+     *
+     * @return the number of usernames
+     */
+    public int size()
+    {
+        return exact.size();
+    }
+}